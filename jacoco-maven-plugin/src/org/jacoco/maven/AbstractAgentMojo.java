@@ -148,11 +148,65 @@ public abstract class AbstractAgentMojo extends AbstractJacocoMojo {
 	 */
 	@Parameter(property = "jacoco.classDumpDir")
 	File classDumpDir;
+	/**
+	 * Location where instrumented classes are cached across JVM runs to reduce
+	 * the startup overhead of the agent. The cache can be shared by concurrent
+	 * JVMs.
+	 */
+	@Parameter(property = "jacoco.classCacheDir")
+	File classCacheDir;
+	/**
+	 * Maximum size of the class cache directory in megabytes. Least recently
+	 * used entries are removed if the cache grows beyond this limit.
+	 */
+	@Parameter(property = "jacoco.classCacheSize")
+	Integer classCacheSize;
+	/**
+	 * Interval in seconds in which classes where all probes have been executed
+	 * are retransformed to a version without probes. This reduces the overhead
+	 * of long running processes, but uninstrumented classes do not record
+	 * coverage again after a reset. A value of 0 disables this feature.
+	 */
+	@Parameter(property = "jacoco.uninstrumentInterval")
+	Integer uninstrumentInterval;
+	/**
+	 * If set to true probes are omitted where their execution can be inferred
+	 * from subsequent probes. The report goals infer the coverage of the
+	 * omitted probes if their <code>minimizeProbes</code> parameter is set as
+	 * well, which is the case if the <code>jacoco.minimizeProbes</code>
+	 * property is used. Classes are not uninstrumented with this option.
+	 */
+	@Parameter(property = "jacoco.minimizeProbes")
+	Boolean minimizeProbes;
+	/**
+	 * If set to true methods with at most one probe access the probe array
+	 * directly at the probe instead of storing it in a local variable first.
+	 * This keeps small methods like accessors below the inlining thresholds of
+	 * the JIT compiler.
+	 */
+	@Parameter(property = "jacoco.compact")
+	Boolean compact;
+	/**
+	 * If set to true probes of Java 11+ class files are inserted as
+	 * invokedynamic instructions which disable themselves after their first
+	 * execution. After warm-up such probes have no runtime overhead, but they
+	 * do not record executions again after a reset. This option is
+	 * experimental.
+	 */
+	@Parameter(property = "jacoco.indyProbes")
+	Boolean indyProbes;
 	/**
 	 * If set to true the agent exposes functionality via JMX.
 	 */
 	@Parameter(property = "jacoco.jmx")
 	Boolean jmx;
+	/**
+	 * If set to true dumps after the first one only contain the probes executed
+	 * since the previous dump. Consumers of the dumps have to merge them, file
+	 * output therefore requires append mode.
+	 */
+	@Parameter(property = "jacoco.incremental")
+	Boolean incremental;
 
 	@Override
 	public void executeMojo() {
@@ -225,9 +279,31 @@ public abstract class AbstractAgentMojo extends AbstractJacocoMojo {
 		if (classDumpDir != null) {
 			agentOptions.setClassDumpDir(classDumpDir.getAbsolutePath());
 		}
+		if (classCacheDir != null) {
+			agentOptions.setClassCacheDir(classCacheDir.getAbsolutePath());
+		}
+		if (classCacheSize != null) {
+			agentOptions.setClassCacheSize(classCacheSize.intValue());
+		}
+		if (uninstrumentInterval != null) {
+			agentOptions
+					.setUninstrumentInterval(uninstrumentInterval.intValue());
+		}
+		if (minimizeProbes != null) {
+			agentOptions.setMinimizeProbes(minimizeProbes.booleanValue());
+		}
+		if (compact != null) {
+			agentOptions.setCompact(compact.booleanValue());
+		}
+		if (indyProbes != null) {
+			agentOptions.setIndyProbes(indyProbes.booleanValue());
+		}
 		if (jmx != null) {
 			agentOptions.setJmx(jmx.booleanValue());
 		}
+		if (incremental != null) {
+			agentOptions.setIncremental(incremental.booleanValue());
+		}
 		return agentOptions;
 	}
 
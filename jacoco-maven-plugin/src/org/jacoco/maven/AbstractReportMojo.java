@@ -74,6 +74,15 @@ public abstract class AbstractReportMojo extends AbstractMavenReport {
 	@Parameter
 	List<String> excludes;
 
+	/**
+	 * Must be set to true if the execution data has been recorded with the
+	 * <code>minimizeProbes</code> parameter of the agent, so the coverage of
+	 * the omitted probes is inferred. Uses the same property as the agent
+	 * parameter.
+	 */
+	@Parameter(property = "jacoco.minimizeProbes", defaultValue = "false")
+	boolean minimizeProbes;
+
 	/**
 	 * Flag used to suppress execution.
 	 */
@@ -175,6 +184,7 @@ public abstract class AbstractReportMojo extends AbstractMavenReport {
 			throws MavenReportException {
 		try {
 			final ReportSupport support = new ReportSupport(getLog());
+			support.setMinimizeProbes(minimizeProbes);
 			loadExecutionData(support);
 			addFormatters(support, locale);
 			final IReportVisitor visitor = support.initRootVisitor();
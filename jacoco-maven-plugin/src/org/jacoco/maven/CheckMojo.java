@@ -143,6 +143,15 @@ public class CheckMojo extends AbstractJacocoMojo implements IViolationsOutput {
 	@Parameter
 	private List<String> excludes;
 
+	/**
+	 * Must be set to true if the execution data has been recorded with the
+	 * <code>minimizeProbes</code> parameter of the agent, so the coverage of
+	 * the omitted probes is inferred. Uses the same property as the agent
+	 * parameter.
+	 */
+	@Parameter(property = "jacoco.minimizeProbes", defaultValue = "false")
+	private boolean minimizeProbes;
+
 	private boolean violations;
 
 	private boolean canCheckCoverage() {
@@ -173,6 +182,7 @@ public class CheckMojo extends AbstractJacocoMojo implements IViolationsOutput {
 		violations = false;
 
 		final ReportSupport support = new ReportSupport(getLog());
+		support.setMinimizeProbes(minimizeProbes);
 
 		final List<Rule> checkerrules = new ArrayList<Rule>();
 		for (final RuleConfiguration r : rules) {
@@ -23,7 +23,7 @@ import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.shared.model.fileset.FileSet;
 import org.apache.maven.shared.model.fileset.util.FileSetManager;
-import org.jacoco.core.tools.ExecFileLoader;
+import org.jacoco.core.tools.ExecFileMerger;
 
 /**
  * Mojo for merging a set of execution data files (*.exec) into a single file
@@ -78,13 +78,16 @@ public class MergeMojo extends AbstractJacocoMojo {
 	}
 
 	private void executeMerge() throws MojoExecutionException {
-		final ExecFileLoader loader = new ExecFileLoader();
-
-		load(loader);
-		save(loader);
+		final ExecFileMerger merger = new ExecFileMerger();
+		try {
+			load(merger);
+			save(merger);
+		} finally {
+			merger.dispose();
+		}
 	}
 
-	private void load(final ExecFileLoader loader)
+	private void load(final ExecFileMerger merger)
 			throws MojoExecutionException {
 		final FileSetManager fileSetManager = new FileSetManager(getLog());
 		for (final FileSet fileSet : fileSets) {
@@ -95,28 +98,28 @@ public class MergeMojo extends AbstractJacocoMojo {
 				if (inputFile.isDirectory()) {
 					continue;
 				}
-				try {
-					getLog().info("Loading execution data file "
-							+ inputFile.getAbsolutePath());
-					loader.load(inputFile);
-				} catch (final IOException e) {
-					throw new MojoExecutionException(
-							"Unable to read " + inputFile.getAbsolutePath(), e);
-				}
+				getLog().info("Loading execution data file "
+						+ inputFile.getAbsolutePath());
+				merger.add(inputFile);
 			}
 		}
+		try {
+			merger.merge();
+		} catch (final IOException e) {
+			throw new MojoExecutionException(e.getMessage(), e);
+		}
 	}
 
-	private void save(final ExecFileLoader loader)
+	private void save(final ExecFileMerger merger)
 			throws MojoExecutionException {
-		if (loader.getExecutionDataStore().getContents().isEmpty()) {
+		if (merger.getClassCount() == 0) {
 			getLog().info(MSG_SKIPPING);
 			return;
 		}
 		getLog().info("Writing merged execution data to "
 				+ destFile.getAbsolutePath());
 		try {
-			loader.save(destFile, false);
+			merger.save(destFile, false);
 		} catch (final IOException e) {
 			throw new MojoExecutionException(
 					"Unable to write merged file " + destFile.getAbsolutePath(),
@@ -63,6 +63,7 @@ final class ReportSupport {
 	private final Log log;
 	private final ExecFileLoader loader;
 	private final List<IReportVisitor> formatters;
+	private boolean minimizeProbes;
 
 	/**
 	 * Construct a new instance with the given log output.
@@ -76,6 +77,18 @@ final class ReportSupport {
 		this.formatters = new ArrayList<IReportVisitor>();
 	}
 
+	/**
+	 * Sets whether the execution data has been recorded with probe
+	 * minimization, so the coverage of omitted probes is inferred.
+	 *
+	 * @param minimizeProbes
+	 *            <code>true</code> if classes have been instrumented with probe
+	 *            minimization
+	 */
+	public void setMinimizeProbes(final boolean minimizeProbes) {
+		this.minimizeProbes = minimizeProbes;
+	}
+
 	/**
 	 * Loads the given execution data file.
 	 *
@@ -197,6 +210,7 @@ final class ReportSupport {
 		if (classesDir.isDirectory()) {
 			final Analyzer analyzer = new Analyzer(
 					loader.getExecutionDataStore(), builder);
+			analyzer.setMinimizeProbes(minimizeProbes);
 			final FileFilter filter = new FileFilter(includes, excludes);
 			for (final File file : filter.getFiles(classesDir)) {
 				analyzer.analyzeAll(file);
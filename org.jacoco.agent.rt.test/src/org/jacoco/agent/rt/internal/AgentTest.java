@@ -28,8 +28,10 @@ import javax.management.ObjectName;
 
 import org.jacoco.agent.rt.internal.output.FileOutput;
 import org.jacoco.agent.rt.internal.output.IAgentOutput;
+import org.jacoco.agent.rt.internal.output.MappedFileOutput;
 import org.jacoco.agent.rt.internal.output.NoneOutput;
 import org.jacoco.agent.rt.internal.output.TcpClientOutput;
+import org.jacoco.agent.rt.internal.output.TcpNioServerOutput;
 import org.jacoco.agent.rt.internal.output.TcpServerOutput;
 import org.jacoco.core.JaCoCo;
 import org.jacoco.core.runtime.AgentOptions;
@@ -70,10 +72,18 @@ public class AgentTest implements IExceptionLogger, IAgentOutput {
 		assertEquals(TcpServerOutput.class,
 				agent.createAgentOutput().getClass());
 
+		options.setOutput(OutputMode.tcpnioserver);
+		assertEquals(TcpNioServerOutput.class,
+				agent.createAgentOutput().getClass());
+
 		options.setOutput(OutputMode.tcpclient);
 		assertEquals(TcpClientOutput.class,
 				agent.createAgentOutput().getClass());
 
+		options.setOutput(OutputMode.mmap);
+		assertEquals(MappedFileOutput.class,
+				agent.createAgentOutput().getClass());
+
 		options.setOutput(OutputMode.none);
 		assertEquals(NoneOutput.class, agent.createAgentOutput().getClass());
 	}
@@ -324,6 +334,24 @@ public class AgentTest implements IExceptionLogger, IAgentOutput {
 		assertTrue(probes[0]);
 	}
 
+	@Test
+	public void getExecutionData_should_return_complete_data_when_incremental()
+			throws Exception {
+		options.setIncremental(true);
+		Agent agent = createAgent();
+		agent.startup();
+		agent.getData().getExecutionData(Long.valueOf(0x12345678), "Foo", 1)
+				.getProbes()[0] = true;
+
+		agent.getExecutionData(false);
+		byte[] data = agent.getExecutionData(false);
+
+		ExecFileLoader loader = new ExecFileLoader();
+		loader.load(new ByteArrayInputStream(data));
+		assertTrue(
+				loader.getExecutionDataStore().get(0x12345678).getProbes()[0]);
+	}
+
 	@Test
 	public void dump_should_trigger_writeExecutionData_with_reset()
 			throws Exception {
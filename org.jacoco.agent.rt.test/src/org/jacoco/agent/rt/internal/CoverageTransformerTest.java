@@ -12,6 +12,7 @@
  *******************************************************************************/
 package org.jacoco.agent.rt.internal;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
@@ -19,19 +20,29 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.instrument.IllegalClassFormatException;
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.security.CodeSource;
 import java.security.ProtectionDomain;
 import java.security.cert.Certificate;
 
 import org.jacoco.core.JaCoCo;
+import org.jacoco.core.instr.Instrumenter;
+import org.jacoco.core.internal.data.CRC64;
 import org.jacoco.core.runtime.AbstractRuntime;
 import org.jacoco.core.runtime.AgentOptions;
+import org.jacoco.core.runtime.RuntimeData;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.objectweb.asm.MethodVisitor;
 
 /**
@@ -39,6 +50,9 @@ import org.objectweb.asm.MethodVisitor;
  */
 public class CoverageTransformerTest {
 
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	private ExceptionRecorder recorder;
 
 	private AgentOptions options;
@@ -233,6 +247,187 @@ public class CoverageTransformerTest {
 				protectionDomain, getClassData(target)));
 	}
 
+	@Test
+	public void testTransformWithClassCache() throws Exception {
+		final File cacheDir = folder.newFolder("cache");
+		options.setClassCacheDir(cacheDir.getAbsolutePath());
+		final byte[] original = getClassData(JaCoCo.class);
+
+		final byte[] instrumented = createTransformer().transform(classLoader,
+				"org/jacoco/core/JaCoCo", null, protectionDomain, original);
+
+		final InstrumentedClassCache cache = new InstrumentedClassCache(
+				cacheDir, Long.MAX_VALUE, runtime);
+		assertArrayEquals(instrumented, cache.get(CRC64.classId(original),
+				"org/jacoco/core/JaCoCo", original));
+	}
+
+	@Test
+	public void testTransformFromClassCache() throws Exception {
+		final File cacheDir = folder.newFolder("cache");
+		options.setClassCacheDir(cacheDir.getAbsolutePath());
+		final byte[] original = getClassData(JaCoCo.class);
+		final byte[] cached = new byte[] { 1, 2, 3 };
+		new InstrumentedClassCache(cacheDir, Long.MAX_VALUE, runtime).put(
+				CRC64.classId(original), "org/jacoco/core/JaCoCo", original,
+				cached);
+
+		final byte[] instrumented = createTransformer().transform(classLoader,
+				"org/jacoco/core/JaCoCo", null, protectionDomain, original);
+
+		assertArrayEquals(cached, instrumented);
+	}
+
+	@Test
+	public void testTransformMinimizeProbes() throws Exception {
+		final File cacheDir = folder.newFolder("cache");
+		options.setClassCacheDir(cacheDir.getAbsolutePath());
+		options.setMinimizeProbes(true);
+		final byte[] original = getClassData(JaCoCo.class);
+
+		final byte[] instrumented = createTransformer().transform(classLoader,
+				"org/jacoco/core/JaCoCo", null, protectionDomain, original);
+
+		final Instrumenter instrumenter = new Instrumenter(runtime);
+		instrumenter.setMinimizeProbes(true);
+		assertArrayEquals(instrumenter.instrument(original, "JaCoCo"),
+				instrumented);
+		assertNull(new InstrumentedClassCache(cacheDir, Long.MAX_VALUE, runtime)
+				.get(CRC64.classId(original), "org/jacoco/core/JaCoCo",
+						original));
+		assertArrayEquals(instrumented,
+				new InstrumentedClassCache(cacheDir, Long.MAX_VALUE, runtime,
+						"-min").get(CRC64.classId(original),
+								"org/jacoco/core/JaCoCo", original));
+	}
+
+	@Test
+	public void testTransformCompact() throws Exception {
+		final File cacheDir = folder.newFolder("cache");
+		options.setClassCacheDir(cacheDir.getAbsolutePath());
+		options.setCompact(true);
+		final byte[] original = getClassData(JaCoCo.class);
+
+		final byte[] instrumented = createTransformer().transform(classLoader,
+				"org/jacoco/core/JaCoCo", null, protectionDomain, original);
+
+		final Instrumenter instrumenter = new Instrumenter(runtime);
+		instrumenter.setCompact(true);
+		assertArrayEquals(instrumenter.instrument(original, "JaCoCo"),
+				instrumented);
+		assertNull(new InstrumentedClassCache(cacheDir, Long.MAX_VALUE, runtime)
+				.get(CRC64.classId(original), "org/jacoco/core/JaCoCo",
+						original));
+		assertArrayEquals(instrumented,
+				new InstrumentedClassCache(cacheDir, Long.MAX_VALUE, runtime,
+						"-compact").get(CRC64.classId(original),
+								"org/jacoco/core/JaCoCo", original));
+	}
+
+	@Test
+	public void testTransformIndyProbes() throws Exception {
+		final File cacheDir = folder.newFolder("cache");
+		options.setClassCacheDir(cacheDir.getAbsolutePath());
+		options.setIndyProbes(true);
+		final byte[] original = getClassData(JaCoCo.class);
+
+		final byte[] instrumented = createTransformer().transform(classLoader,
+				"org/jacoco/core/JaCoCo", null, protectionDomain, original);
+
+		final Instrumenter instrumenter = new Instrumenter(runtime);
+		instrumenter.setIndyProbes(true);
+		assertArrayEquals(instrumenter.instrument(original, "JaCoCo"),
+				instrumented);
+		assertArrayEquals(instrumented,
+				new InstrumentedClassCache(cacheDir, Long.MAX_VALUE, runtime,
+						"-indy").get(CRC64.classId(original),
+								"org/jacoco/core/JaCoCo", original));
+	}
+
+	@Test
+	public void testRetransformedClass() throws Exception {
+		final Uninstrumenter uninstrumenter = new Uninstrumenter(null,
+				new RuntimeData(), recorder);
+		final CoverageTransformer t = new CoverageTransformer(runtime, options,
+				recorder, uninstrumenter);
+		final byte[] original = getClassData(JaCoCo.class);
+
+		final byte[] retransformed = t.transform(classLoader,
+				"org/jacoco/core/JaCoCo", JaCoCo.class, protectionDomain,
+				original);
+
+		assertArrayEquals(
+				new Instrumenter(runtime).instrument(original, "JaCoCo"),
+				retransformed);
+	}
+
+	@Test
+	public void testRetransformedUninstrumentedClass() throws Exception {
+		final byte[] original = getClassData(JaCoCo.class);
+		final RuntimeData data = new RuntimeData();
+		data.getProbes(CRC64.classId(original), "org/jacoco/core/JaCoCo",
+				1)[0] = true;
+		final Uninstrumenter uninstrumenter = new Uninstrumenter(
+				(Instrumentation) Proxy.newProxyInstance(
+						getClass().getClassLoader(),
+						new Class<?>[] { Instrumentation.class },
+						new InvocationHandler() {
+							public Object invoke(Object proxy, Method method,
+									Object[] args) {
+								return new Class<?>[0];
+							}
+						}),
+				data, recorder);
+		uninstrumenter.uninstrument();
+		final CoverageTransformer t = new CoverageTransformer(runtime, options,
+				recorder, uninstrumenter);
+
+		final byte[] retransformed = t.transform(classLoader,
+				"org/jacoco/core/JaCoCo", JaCoCo.class, protectionDomain,
+				original);
+
+		assertArrayEquals(new Instrumenter(runtime)
+				.instrumentWithoutProbes(original, "JaCoCo"), retransformed);
+	}
+
+	@Test
+	public void testTransformRegistersClassForUninstrumentation()
+			throws Exception {
+		final byte[] original = getClassData(JaCoCo.class);
+		final RuntimeData data = new RuntimeData();
+		data.getProbes(CRC64.classId(original), "org/jacoco/core/JaCoCo",
+				1)[0] = true;
+		final int[] retransformations = new int[1];
+		final Uninstrumenter uninstrumenter = new Uninstrumenter(
+				(Instrumentation) Proxy.newProxyInstance(
+						getClass().getClassLoader(),
+						new Class<?>[] { Instrumentation.class },
+						new InvocationHandler() {
+							public Object invoke(Object proxy, Method method,
+									Object[] args) {
+								if ("getAllLoadedClasses"
+										.equals(method.getName())) {
+									return new Class<?>[] { JaCoCo.class };
+								}
+								if ("isModifiableClass"
+										.equals(method.getName())) {
+									return Boolean.TRUE;
+								}
+								retransformations[0]++;
+								return null;
+							}
+						}),
+				data, recorder);
+		final CoverageTransformer t = new CoverageTransformer(runtime, options,
+				recorder, uninstrumenter);
+
+		t.transform(classLoader, "org/jacoco/core/JaCoCo", null,
+				protectionDomain, original);
+
+		assertEquals(1, uninstrumenter.uninstrument());
+		assertEquals(1, retransformations[0]);
+	}
+
 	private CoverageTransformer createTransformer() {
 		return new CoverageTransformer(runtime, options, recorder);
 	}
@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jacoco.core.runtime.IExecutionDataAccessorGenerator;
+import org.jacoco.core.runtime.OfflineInstrumentationAccessGenerator;
+import org.jacoco.core.runtime.SystemPropertiesRuntime;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link InstrumentedClassCache}.
+ */
+public class InstrumentedClassCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File root;
+
+	private IExecutionDataAccessorGenerator generator;
+
+	private InstrumentedClassCache cache;
+
+	private static final byte[] ORIGINAL = new byte[] { 9, 8, 7, 6, 5, 4, 3, 2,
+			1, 0 };
+
+	@Before
+	public void setup() {
+		root = folder.getRoot();
+		generator = new OfflineInstrumentationAccessGenerator();
+		cache = new InstrumentedClassCache(root, 1000, generator);
+	}
+
+	@Test
+	public void get_should_return_null_when_entry_does_not_exist() {
+		assertNull(cache.get(0x1234, "Foo", ORIGINAL));
+	}
+
+	@Test
+	public void get_should_return_stored_entry() throws IOException {
+		cache.put(0x1234, "Foo", ORIGINAL, new byte[] { 1, 2, 3 });
+
+		assertArrayEquals(new byte[] { 1, 2, 3 },
+				cache.get(0x1234, "Foo", ORIGINAL));
+	}
+
+	@Test
+	public void get_should_return_stored_entry_from_other_instance()
+			throws IOException {
+		cache.put(0x1234, "Foo", ORIGINAL, new byte[] { 1, 2, 3 });
+
+		final InstrumentedClassCache other = new InstrumentedClassCache(root,
+				1000, new OfflineInstrumentationAccessGenerator());
+		assertArrayEquals(new byte[] { 1, 2, 3 },
+				other.get(0x1234, "Foo", ORIGINAL));
+	}
+
+	@Test
+	public void get_should_not_return_entry_of_other_variant()
+			throws IOException {
+		cache.put(0x1234, "Foo", ORIGINAL, new byte[] { 1, 2, 3 });
+
+		final InstrumentedClassCache other = new InstrumentedClassCache(root,
+				1000, generator, "-compact");
+		assertNull(other.get(0x1234, "Foo", ORIGINAL));
+	}
+
+	@Test
+	public void get_should_return_null_when_length_differs()
+			throws IOException {
+		cache.put(0x1234, "Foo", ORIGINAL, new byte[] { 1, 2, 3 });
+
+		assertNull(cache.get(0x1234, "Foo", new byte[11]));
+	}
+
+	@Test
+	public void get_should_return_null_when_name_differs() throws IOException {
+		cache.put(0x1234, "Foo", ORIGINAL, new byte[] { 1, 2, 3 });
+
+		assertNull(cache.get(0x1234, "Bar", ORIGINAL));
+	}
+
+	@Test
+	public void get_should_return_null_for_colliding_class_id()
+			throws IOException {
+		cache.put(0x1234, "Foo", ORIGINAL, new byte[] { 1, 2, 3 });
+
+		// Same id, name and length but different content:
+		final byte[] other = ORIGINAL.clone();
+		other[5]++;
+		assertNull(cache.get(0x1234, "Foo", other));
+	}
+
+	@Test
+	public void get_should_return_null_for_corrupt_entry() throws IOException {
+		cache.put(0x1234, "Foo", ORIGINAL, new byte[] { 1, 2, 3 });
+		final File entry = findEntries(root)[0];
+		final FileOutputStream out = new FileOutputStream(entry);
+		out.write(new byte[] { 0, 1, 2 });
+		out.close();
+
+		assertNull(cache.get(0x1234, "Foo", ORIGINAL));
+	}
+
+	@Test
+	public void getNamespace_should_depend_on_generated_accessor() {
+		assertEquals(InstrumentedClassCache.getNamespace(generator),
+				InstrumentedClassCache.getNamespace(
+						new OfflineInstrumentationAccessGenerator()));
+		assertFalse(InstrumentedClassCache.getNamespace(generator)
+				.equals(InstrumentedClassCache
+						.getNamespace(new SystemPropertiesRuntime())));
+	}
+
+	@Test
+	public void trim_should_remove_least_recently_used_entries()
+			throws IOException {
+		// Fill without automatic trimming, every entry has 107 bytes
+		final InstrumentedClassCache unlimited = new InstrumentedClassCache(
+				root, Long.MAX_VALUE, generator);
+		final long now = System.currentTimeMillis();
+		for (int i = 0; i < 10; i++) {
+			unlimited.put(i, "Foo", ORIGINAL, new byte[70]);
+		}
+		for (final File entry : findEntries(root)) {
+			// Entries with lower ids are older
+			final long id = Long.parseLong(
+					entry.getParentFile().getName() + entry.getName(), 16);
+			entry.setLastModified(now - (10 - id) * 10000);
+		}
+
+		cache.trim();
+
+		for (int i = 0; i < 2; i++) {
+			assertNull(cache.get(i, "Foo", ORIGINAL));
+		}
+		for (int i = 2; i < 10; i++) {
+			assertNotNull(cache.get(i, "Foo", ORIGINAL));
+		}
+	}
+
+	@Test
+	public void trim_should_remove_abandoned_temp_files() throws IOException {
+		final File tmp = new File(root, "abandoned.tmp");
+		tmp.createNewFile();
+		tmp.setLastModified(System.currentTimeMillis() - 2 * 60 * 60 * 1000);
+		final File recent = new File(root, "recent.tmp");
+		recent.createNewFile();
+
+		cache.trim();
+
+		assertFalse(tmp.exists());
+		assertTrue(recent.exists());
+	}
+
+	private static File[] findEntries(final File root) {
+		final File namespace = root.listFiles()[0];
+		final List<File> entries = new ArrayList<File>();
+		for (final File prefix : namespace.listFiles()) {
+			for (final File entry : prefix.listFiles()) {
+				entries.add(entry);
+			}
+		}
+		return entries.toArray(new File[entries.size()]);
+	}
+
+}
@@ -0,0 +1,259 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.Instrumentation;
+import java.lang.instrument.UnmodifiableClassException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jacoco.core.runtime.RuntimeData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link Uninstrumenter}.
+ */
+public class UninstrumenterTest implements InvocationHandler {
+
+	private static final String NAME = "org/jacoco/agent/rt/internal/UninstrumenterTest";
+
+	private ExceptionRecorder recorder;
+
+	private RuntimeData data;
+
+	private boolean supported;
+
+	private boolean modifiable;
+
+	private Exception retransformException;
+
+	private List<Class<?>> retransformed;
+
+	private List<Object> transformers;
+
+	private Uninstrumenter uninstrumenter;
+
+	@Before
+	public void setup() {
+		recorder = new ExceptionRecorder();
+		data = new RuntimeData();
+		supported = true;
+		modifiable = true;
+		retransformed = new ArrayList<Class<?>>();
+		transformers = new ArrayList<Object>();
+		final Instrumentation inst = (Instrumentation) Proxy.newProxyInstance(
+				getClass().getClassLoader(),
+				new Class<?>[] { Instrumentation.class }, this);
+		uninstrumenter = new Uninstrumenter(inst, data, recorder);
+		uninstrumenter.register(UninstrumenterTest.class.getClassLoader(), NAME,
+				42);
+	}
+
+	@After
+	public void teardown() {
+		recorder.assertNoException();
+	}
+
+	@Test
+	public void isSupported_should_return_true_when_supported() {
+		assertTrue(uninstrumenter.isSupported());
+	}
+
+	@Test
+	public void isSupported_should_return_false_when_not_supported() {
+		supported = false;
+		assertFalse(uninstrumenter.isSupported());
+	}
+
+	@Test
+	public void addTransformer_should_register_retransforming_transformer()
+			throws Exception {
+		final ClassFileTransformer transformer = new ClassFileTransformer() {
+			public byte[] transform(ClassLoader loader, String className,
+					Class<?> classBeingRedefined,
+					ProtectionDomain protectionDomain, byte[] classfileBuffer) {
+				return null;
+			}
+		};
+		uninstrumenter.addTransformer(transformer);
+		assertEquals(Arrays.asList(transformer, Boolean.TRUE), transformers);
+	}
+
+	@Test
+	public void uninstrument_should_retransform_fully_covered_classes() {
+		final boolean[] probes = data.getProbes(42, NAME, 2);
+		probes[0] = true;
+		probes[1] = true;
+
+		assertEquals(1, uninstrumenter.uninstrument());
+
+		assertTrue(uninstrumenter.isUninstrumented(42));
+		assertEquals(Arrays.<Class<?>> asList(UninstrumenterTest.class),
+				retransformed);
+	}
+
+	@Test
+	public void uninstrument_should_retransform_bootstrap_classes() {
+		uninstrumenter.register(null, "java/lang/String", 7);
+		data.getProbes(7, "java/lang/String", 1)[0] = true;
+
+		assertEquals(1, uninstrumenter.uninstrument());
+
+		assertEquals(Arrays.<Class<?>> asList(String.class), retransformed);
+	}
+
+	@Test
+	public void uninstrument_should_not_retransform_other_class_with_same_name() {
+		// The loaded class is a different version than the covered one:
+		uninstrumenter.register(UninstrumenterTest.class.getClassLoader(), NAME,
+				43);
+		data.getProbes(43, NAME, 1);
+		data.getProbes(42, NAME, 1)[0] = true;
+
+		assertEquals(0, uninstrumenter.uninstrument());
+
+		assertTrue(uninstrumenter.isUninstrumented(42));
+		assertFalse(uninstrumenter.isUninstrumented(43));
+		assertTrue(retransformed.isEmpty());
+	}
+
+	@Test
+	public void uninstrument_should_not_retransform_unregistered_classes() {
+		data.getProbes(7, "java/lang/String", 1)[0] = true;
+
+		assertEquals(0, uninstrumenter.uninstrument());
+
+		assertTrue(retransformed.isEmpty());
+	}
+
+	@Test
+	public void uninstrument_should_retransform_classes_only_once() {
+		final boolean[] probes = data.getProbes(42, NAME, 1);
+		probes[0] = true;
+		uninstrumenter.uninstrument();
+		retransformed.clear();
+
+		assertEquals(0, uninstrumenter.uninstrument());
+
+		assertTrue(retransformed.isEmpty());
+	}
+
+	@Test
+	public void uninstrument_should_keep_execution_data() {
+		final boolean[] probes = data.getProbes(42, NAME, 1);
+		probes[0] = true;
+
+		uninstrumenter.uninstrument();
+
+		assertArrayEquals(new boolean[] { true },
+				data.getExecutionData(Long.valueOf(42), NAME, 1).getProbes());
+	}
+
+	@Test
+	public void uninstrument_should_not_retransform_partly_covered_classes() {
+		final boolean[] probes = data.getProbes(42, NAME, 2);
+		probes[0] = true;
+
+		assertEquals(0, uninstrumenter.uninstrument());
+
+		assertFalse(uninstrumenter.isUninstrumented(42));
+		assertTrue(retransformed.isEmpty());
+	}
+
+	@Test
+	public void uninstrument_should_not_retransform_classes_without_probes() {
+		data.getProbes(42, NAME, 0);
+
+		assertEquals(0, uninstrumenter.uninstrument());
+
+		assertFalse(uninstrumenter.isUninstrumented(42));
+	}
+
+	@Test
+	public void uninstrument_should_not_retransform_unmodifiable_classes() {
+		modifiable = false;
+		final boolean[] probes = data.getProbes(42, NAME, 1);
+		probes[0] = true;
+
+		assertEquals(0, uninstrumenter.uninstrument());
+
+		assertTrue(retransformed.isEmpty());
+	}
+
+	@Test
+	public void uninstrument_should_log_retransformation_errors() {
+		retransformException = new UnmodifiableClassException("test");
+		final boolean[] probes = data.getProbes(42, NAME, 1);
+		probes[0] = true;
+
+		assertEquals(0, uninstrumenter.uninstrument());
+
+		recorder.assertException(UnmodifiableClassException.class, "test");
+		recorder.clear();
+	}
+
+	@Test
+	public void startup_should_uninstrument_periodically() throws Exception {
+		final boolean[] probes = data.getProbes(42, NAME, 1);
+		probes[0] = true;
+
+		uninstrumenter.startup(10);
+		for (int i = 0; i < 500 && retransformed.isEmpty(); i++) {
+			Thread.sleep(10);
+		}
+		uninstrumenter.shutdown();
+
+		assertTrue(uninstrumenter.isUninstrumented(42));
+	}
+
+	// === InvocationHandler ===
+
+	public Object invoke(Object proxy, Method method, Object[] args)
+			throws Throwable {
+		final String name = method.getName();
+		if ("isRetransformClassesSupported".equals(name)) {
+			return Boolean.valueOf(supported);
+		}
+		if ("addTransformer".equals(name)) {
+			transformers.addAll(Arrays.asList(args));
+			return null;
+		}
+		if ("getAllLoadedClasses".equals(name)) {
+			return new Class<?>[] { String.class, UninstrumenterTest.class };
+		}
+		if ("isModifiableClass".equals(name)) {
+			return Boolean.valueOf(modifiable);
+		}
+		if ("retransformClasses".equals(name)) {
+			if (retransformException != null) {
+				throw retransformException;
+			}
+			synchronized (retransformed) {
+				retransformed.addAll(Arrays.asList((Class<?>[]) args[0]));
+			}
+			return null;
+		}
+		throw new AssertionError(name);
+	}
+
+}
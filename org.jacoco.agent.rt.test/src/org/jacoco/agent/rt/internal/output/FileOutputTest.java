@@ -12,12 +12,20 @@
  *******************************************************************************/
 package org.jacoco.agent.rt.internal.output;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataReader;
+import org.jacoco.core.data.IExecutionDataVisitor;
+import org.jacoco.core.data.SessionInfoStore;
 import org.jacoco.core.runtime.AgentOptions;
 import org.jacoco.core.runtime.RuntimeData;
 import org.junit.Rule;
@@ -62,6 +70,45 @@ public class FileOutputTest {
 				destFile.length() > 0);
 	}
 
+	@Test
+	public void testWriteDataIncremental() throws Exception {
+		File destFile = folder.newFile("jacoco.exec");
+		AgentOptions options = new AgentOptions();
+		options.setDestfile(destFile.getAbsolutePath());
+		options.setAppend(true);
+		options.setIncremental(true);
+		RuntimeData data = new RuntimeData();
+		boolean[] probes = data.getExecutionData(Long.valueOf(1), "Foo", 3)
+				.getProbes();
+
+		FileOutput controller = new FileOutput();
+		controller.startup(options, data);
+		probes[0] = true;
+		controller.writeExecutionData(false);
+		controller.writeExecutionData(false);
+		probes[2] = true;
+		controller.writeExecutionData(false);
+		controller.shutdown();
+
+		final List<boolean[]> blocks = new ArrayList<boolean[]>();
+		final FileInputStream in = new FileInputStream(destFile);
+		try {
+			ExecutionDataReader reader = new ExecutionDataReader(in);
+			reader.setSessionInfoVisitor(new SessionInfoStore());
+			reader.setExecutionDataVisitor(new IExecutionDataVisitor() {
+				public void visitClassExecution(ExecutionData data) {
+					blocks.add(data.getProbes());
+				}
+			});
+			reader.read();
+		} finally {
+			in.close();
+		}
+		assertEquals(2, blocks.size());
+		assertArrayEquals(new boolean[] { true, false, false }, blocks.get(0));
+		assertArrayEquals(new boolean[] { false, false, true }, blocks.get(1));
+	}
+
 	@Test(expected = IOException.class)
 	public void testInvalidDestFile() throws Exception {
 		AgentOptions options = new AgentOptions();
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal.output;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.jacoco.agent.rt.internal.ExceptionRecorder;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.MappedExecutionDataReader;
+import org.jacoco.core.data.SessionInfoStore;
+import org.jacoco.core.runtime.AgentOptions;
+import org.jacoco.core.runtime.RuntimeData;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link MappedFileOutput}.
+ */
+public class MappedFileOutputTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private ExceptionRecorder logger;
+
+	private RuntimeData data;
+
+	private File destFile;
+
+	private AgentOptions options;
+
+	private MappedFileOutput controller;
+
+	@Before
+	public void setup() {
+		logger = new ExceptionRecorder();
+		data = new RuntimeData();
+		data.setSessionId("stubid");
+		destFile = new File(folder.getRoot(), "sub/jacoco.mmap");
+		options = new AgentOptions();
+		options.setDestfile(destFile.getAbsolutePath());
+		controller = new MappedFileOutput(logger);
+	}
+
+	@Test
+	public void startup_should_create_dest_file() throws Exception {
+		controller.startup(options, data);
+
+		assertTrue(destFile.isFile());
+		controller.shutdown();
+		logger.assertNoException();
+	}
+
+	@Test
+	public void writeExecutionData_should_update_mapped_file()
+			throws Exception {
+		final boolean[] probes = data
+				.getExecutionData(Long.valueOf(0x12), "Foo", 2).getProbes();
+		controller.startup(options, data);
+
+		probes[1] = true;
+		controller.writeExecutionData(false);
+		ExecutionDataStore store = read();
+		assertEquals("Foo", store.get(0x12).getName());
+		assertArrayEquals(new boolean[] { false, true },
+				store.get(0x12).getProbes());
+
+		controller.writeExecutionData(true);
+		store = read();
+		assertArrayEquals(new boolean[] { false, true },
+				store.get(0x12).getProbes());
+
+		controller.writeExecutionData(false);
+		store = read();
+		assertArrayEquals(new boolean[] { false, false },
+				store.get(0x12).getProbes());
+
+		controller.shutdown();
+		logger.assertNoException();
+	}
+
+	@Test
+	public void should_update_mapped_file_periodically() throws Exception {
+		final boolean[] probes = data
+				.getExecutionData(Long.valueOf(0x12), "Foo", 1).getProbes();
+		controller.startup(options, data);
+
+		probes[0] = true;
+		final long deadline = System.currentTimeMillis() + 10000;
+		while (!read().get(0x12).getProbes()[0]) {
+			assertTrue("Timeout", System.currentTimeMillis() < deadline);
+			Thread.sleep(50);
+		}
+
+		controller.shutdown();
+		logger.assertNoException();
+	}
+
+	@Test
+	public void shutdown_should_write_final_state() throws Exception {
+		controller.startup(options, data);
+		data.getExecutionData(Long.valueOf(0x12), "Foo", 1)
+				.getProbes()[0] = true;
+
+		controller.shutdown();
+
+		assertArrayEquals(new boolean[] { true }, read().get(0x12).getProbes());
+		logger.assertNoException();
+	}
+
+	@Test(expected = IOException.class)
+	public void startup_should_fail_for_invalid_dest_file() throws Exception {
+		options.setDestfile(folder.newFolder("folder").getAbsolutePath());
+
+		controller.startup(options, data);
+	}
+
+	private ExecutionDataStore read() throws IOException {
+		final ExecutionDataStore store = new ExecutionDataStore();
+		final MappedExecutionDataReader reader = new MappedExecutionDataReader(
+				destFile);
+		reader.setSessionInfoVisitor(new SessionInfoStore());
+		reader.setExecutionDataVisitor(store);
+		reader.read();
+		return store;
+	}
+
+}
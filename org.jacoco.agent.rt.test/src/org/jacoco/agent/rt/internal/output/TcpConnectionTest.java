@@ -197,6 +197,51 @@ public class TcpConnectionTest extends ExecutorTestBase {
 				mockConnection.getSocketB().getInputStream().available());
 	}
 
+	@Test
+	public void testConcurrentRemoteAndLocalDumps() throws Exception {
+		for (int i = 0; i < 100; i++) {
+			data.getExecutionData(Long.valueOf(i), "Foo" + i, 64)
+					.getProbes()[0] = true;
+		}
+		data.setSessionId("stubid");
+
+		final RemoteControlWriter remoteWriter = new RemoteControlWriter(
+				mockConnection.getSocketB().getOutputStream());
+
+		final TcpConnection con = new TcpConnection(mockConnection.getSocketA(),
+				data);
+		con.init();
+
+		final Future<Void> f = executor.submit(new Callable<Void>() {
+			public Void call() throws Exception {
+				con.run();
+				return null;
+			}
+		});
+		// Remote dumps are answered while local dumps are written:
+		for (int i = 0; i < 20; i++) {
+			remoteWriter.visitDumpCommand(true, false);
+		}
+		for (int i = 0; i < 20; i++) {
+			con.writeExecutionData(false);
+		}
+
+		final RemoteControlReader remoteReader = new RemoteControlReader(
+				mockConnection.getSocketB().getInputStream());
+		for (int i = 0; i < 40; i++) {
+			final ExecutionDataStore execStore = new ExecutionDataStore();
+			remoteReader.setExecutionDataVisitor(execStore);
+			final SessionInfoStore infoStore = new SessionInfoStore();
+			remoteReader.setSessionInfoVisitor(infoStore);
+			assertTrue(remoteReader.read());
+			assertEquals(1, infoStore.getInfos().size());
+			assertEquals(100, execStore.getContents().size());
+		}
+
+		con.close();
+		f.get();
+	}
+
 	private void readAndAssertData() throws IOException {
 		final RemoteControlReader remoteReader = new RemoteControlReader(
 				mockConnection.getSocketB().getInputStream());
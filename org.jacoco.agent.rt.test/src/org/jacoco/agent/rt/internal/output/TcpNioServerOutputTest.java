@@ -0,0 +1,335 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal.output;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.jacoco.agent.rt.internal.ExceptionRecorder;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.data.SessionInfoStore;
+import org.jacoco.core.runtime.AgentOptions;
+import org.jacoco.core.runtime.RemoteControlReader;
+import org.jacoco.core.runtime.RemoteControlWriter;
+import org.jacoco.core.runtime.RuntimeData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link TcpNioServerOutput}.
+ */
+public class TcpNioServerOutputTest {
+
+	private ExceptionRecorder logger;
+
+	private AgentOptions options;
+
+	private TcpNioServerOutput controller;
+
+	private RuntimeData data;
+
+	private List<Socket> sockets;
+
+	@Before
+	public void setup() throws Exception {
+		options = new AgentOptions();
+		options.setPort(0);
+		logger = new ExceptionRecorder();
+		data = new RuntimeData();
+		data.setSessionId("stubid");
+		sockets = new ArrayList<Socket>();
+		controller = new TcpNioServerOutput(logger);
+		controller.startup(options, data);
+	}
+
+	@After
+	public void teardown() throws Exception {
+		for (final Socket socket : sockets) {
+			socket.close();
+		}
+	}
+
+	@Test
+	public void testShutdownWithoutConnection() throws Exception {
+		controller.shutdown();
+		logger.assertNoException();
+	}
+
+	@Test
+	public void testShutdownWithConnection() throws Exception {
+		final Client client = new Client();
+		client.dump(false, false);
+		client.read();
+
+		controller.shutdown();
+
+		assertEquals(-1, client.socket.getInputStream().read());
+		logger.assertNoException();
+	}
+
+	@Test
+	public void testDumpCommand() throws Exception {
+		data.getExecutionData(Long.valueOf(0x12345678), "Foo", 42)
+				.getProbes()[0] = true;
+		final Client client = new Client();
+
+		client.dump(true, false);
+		final Response response = client.read();
+
+		assertEquals("Foo", response.execStore.get(0x12345678).getName());
+		final List<SessionInfo> infos = response.infoStore.getInfos();
+		assertEquals(1, infos.size());
+		assertEquals("stubid", infos.get(0).getId());
+
+		controller.shutdown();
+		logger.assertNoException();
+	}
+
+	@Test
+	public void testResetCommand() throws Exception {
+		final boolean[] probes = data
+				.getExecutionData(Long.valueOf(0x12345678), "Foo", 42)
+				.getProbes();
+		probes[0] = true;
+		final Client client = new Client();
+
+		client.dump(false, true);
+		final Response response = client.read();
+
+		assertTrue(response.execStore.getContents().isEmpty());
+		assertFalse(probes[0]);
+
+		controller.shutdown();
+		logger.assertNoException();
+	}
+
+	@Test
+	public void testWriteExecutionData() throws Exception {
+		data.getExecutionData(Long.valueOf(0x12345678), "Foo", 42)
+				.getProbes()[0] = true;
+		final Client client1 = new Client();
+		final Client client2 = new Client();
+		// First process a NOP command to ensure the connections are accepted:
+		client1.dump(false, false);
+		client1.read();
+		client2.dump(false, false);
+		client2.read();
+
+		controller.writeExecutionData(false);
+
+		assertEquals("Foo", client1.read().execStore.get(0x12345678).getName());
+		assertEquals("Foo", client2.read().execStore.get(0x12345678).getName());
+
+		controller.shutdown();
+		logger.assertNoException();
+	}
+
+	@Test
+	public void testWriteExecutionDataWithoutConnection() throws Exception {
+		final boolean[] probes = data
+				.getExecutionData(Long.valueOf(0x12345678), "Foo", 42)
+				.getProbes();
+		probes[0] = true;
+
+		controller.writeExecutionData(true);
+
+		assertTrue(probes[0]);
+		controller.shutdown();
+		logger.assertNoException();
+	}
+
+	@Test
+	public void testWriteExecutionDataClosesStalledConnection()
+			throws Exception {
+		final Random random = new Random(1);
+		for (int i = 0; i < 10000; i++) {
+			final boolean[] probes = data
+					.getExecutionData(Long.valueOf(i), "Foo" + i, 8000)
+					.getProbes();
+			for (int j = 0; j < probes.length; j++) {
+				probes[j] = random.nextBoolean();
+			}
+		}
+		// A client which never reads the dump:
+		final Client client = new Client();
+		client.dump(false, false);
+		client.read();
+		controller.writeTimeout = 500;
+
+		final long start = System.currentTimeMillis();
+		controller.writeExecutionData(false);
+		assertTrue(System.currentTimeMillis() - start < 5000);
+
+		final InputStream in = client.socket.getInputStream();
+		final byte[] buffer = new byte[8192];
+		while (in.read(buffer) != -1) {
+		}
+		controller.shutdown();
+		logger.assertNoException();
+	}
+
+	@Test
+	public void testConcurrentDumpsWithReset() throws Exception {
+		data.getExecutionData(Long.valueOf(0x12345678), "Foo", 42)
+				.getProbes()[0] = true;
+		final List<Client> clients = new ArrayList<Client>();
+		for (int i = 0; i < 10; i++) {
+			clients.add(new Client());
+		}
+
+		for (final Client client : clients) {
+			client.dump(true, true);
+		}
+
+		int hits = 0;
+		for (final Client client : clients) {
+			final ExecutionData d = client.read().execStore.get(0x12345678);
+			if (d != null && d.getProbes()[0]) {
+				hits++;
+			}
+		}
+		// The hit is reported by all requests of the first snapshot only
+		assertTrue(hits > 0);
+		assertFalse(data.getExecutionData(Long.valueOf(0x12345678), "Foo", 42)
+				.getProbes()[0]);
+
+		controller.shutdown();
+		logger.assertNoException();
+	}
+
+	@Test
+	public void testSlowConnectionDoesNotBlockOthers() throws Exception {
+		for (int i = 0; i < 2000; i++) {
+			data.getExecutionData(Long.valueOf(i), "Foo" + i, 1000)
+					.getProbes()[0] = true;
+		}
+		final Client slow = new Client();
+		for (int i = 0; i < 20; i++) {
+			slow.dump(true, false);
+		}
+
+		final Client client = new Client();
+		client.dump(true, false);
+
+		assertEquals(2000, client.read().execStore.getContents().size());
+
+		controller.shutdown();
+		logger.assertNoException();
+	}
+
+	@Test
+	public void testIncremental() throws Exception {
+		controller.shutdown();
+		options.setIncremental(true);
+		controller = new TcpNioServerOutput(logger);
+		controller.startup(options, data);
+		data.getExecutionData(Long.valueOf(0x12345678), "Foo", 42)
+				.getProbes()[0] = true;
+		final Client client = new Client();
+
+		client.dump(true, false);
+		assertEquals(1, client.read().execStore.getContents().size());
+		client.dump(true, false);
+		assertEquals(0, client.read().execStore.getContents().size());
+
+		controller.shutdown();
+		logger.assertNoException();
+	}
+
+	@Test
+	public void testInvalidHeader() throws Exception {
+		final Socket socket = connect();
+		final OutputStream out = socket.getOutputStream();
+		out.write(0xca);
+		out.write(0xfe);
+		out.write(0xba);
+		out.write(0xbe);
+
+		final InputStream in = socket.getInputStream();
+		while (in.read() != -1) {
+		}
+
+		logger.assertException(IOException.class,
+				"Invalid execution data file.");
+		controller.shutdown();
+	}
+
+	@Test
+	public void testGetInetAddressLoopback() throws UnknownHostException {
+		final InetAddress addr = controller.getInetAddress(null);
+		assertTrue(addr.isLoopbackAddress());
+	}
+
+	@Test
+	public void testGetInetAddressAny() throws UnknownHostException {
+		final InetAddress addr = controller.getInetAddress("*");
+		assertNull(addr);
+	}
+
+	private Socket connect() throws IOException {
+		final Socket socket = new Socket(InetAddress.getByName(null),
+				controller.getLocalPort());
+		socket.setSoTimeout(10000);
+		sockets.add(socket);
+		return socket;
+	}
+
+	private static class Response {
+
+		final ExecutionDataStore execStore = new ExecutionDataStore();
+
+		final SessionInfoStore infoStore = new SessionInfoStore();
+
+	}
+
+	private class Client {
+
+		final Socket socket;
+
+		final RemoteControlWriter writer;
+
+		final RemoteControlReader reader;
+
+		Client() throws IOException {
+			socket = connect();
+			writer = new RemoteControlWriter(socket.getOutputStream());
+			reader = new RemoteControlReader(socket.getInputStream());
+		}
+
+		void dump(final boolean dump, final boolean reset) throws IOException {
+			writer.visitDumpCommand(dump, reset);
+		}
+
+		Response read() throws IOException {
+			final Response response = new Response();
+			reader.setExecutionDataVisitor(response.execStore);
+			reader.setSessionInfoVisitor(response.infoStore);
+			assertTrue(reader.read());
+			return response;
+		}
+
+	}
+
+}
@@ -20,8 +20,10 @@ import java.util.concurrent.Callable;
 import org.jacoco.agent.rt.IAgent;
 import org.jacoco.agent.rt.internal.output.FileOutput;
 import org.jacoco.agent.rt.internal.output.IAgentOutput;
+import org.jacoco.agent.rt.internal.output.MappedFileOutput;
 import org.jacoco.agent.rt.internal.output.NoneOutput;
 import org.jacoco.agent.rt.internal.output.TcpClientOutput;
+import org.jacoco.agent.rt.internal.output.TcpNioServerOutput;
 import org.jacoco.agent.rt.internal.output.TcpServerOutput;
 import org.jacoco.core.JaCoCo;
 import org.jacoco.core.data.ExecutionDataWriter;
@@ -165,8 +167,12 @@ public class Agent implements IAgent {
 			return new FileOutput();
 		case tcpserver:
 			return new TcpServerOutput(logger);
+		case tcpnioserver:
+			return new TcpNioServerOutput(logger);
 		case tcpclient:
 			return new TcpClientOutput(logger);
+		case mmap:
+			return new MappedFileOutput(logger);
 		case none:
 			return new NoneOutput();
 		default:
@@ -208,6 +214,7 @@ public class Agent implements IAgent {
 		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
 		try {
 			final ExecutionDataWriter writer = new ExecutionDataWriter(buffer);
+			// Callers can't be told apart, so they always get complete data:
 			data.collect(writer, writer, reset);
 		} catch (final IOException e) {
 			// Must not happen with ByteArrayOutputStream
@@ -12,12 +12,15 @@
  *******************************************************************************/
 package org.jacoco.agent.rt.internal;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.instrument.ClassFileTransformer;
 import java.lang.instrument.IllegalClassFormatException;
 import java.security.CodeSource;
 import java.security.ProtectionDomain;
 
 import org.jacoco.core.instr.Instrumenter;
+import org.jacoco.core.internal.data.CRC64;
 import org.jacoco.core.runtime.AgentOptions;
 import org.jacoco.core.runtime.IRuntime;
 import org.jacoco.core.runtime.WildcardMatcher;
@@ -46,6 +49,10 @@ public class CoverageTransformer implements ClassFileTransformer {
 
 	private final ClassFileDumper classFileDumper;
 
+	private final InstrumentedClassCache classCache;
+
+	private final Uninstrumenter uninstrumenter;
+
 	private final boolean inclBootstrapClasses;
 
 	private final boolean inclNoLocationClasses;
@@ -62,13 +69,40 @@ public class CoverageTransformer implements ClassFileTransformer {
 	 */
 	public CoverageTransformer(final IRuntime runtime,
 			final AgentOptions options, final IExceptionLogger logger) {
+		this(runtime, options, logger, null);
+	}
+
+	/**
+	 * New transformer with the given delegates which also handles class
+	 * retransformations. Classes are instrumented again on retransformation
+	 * except the ones which have been uninstrumented.
+	 *
+	 * @param runtime
+	 *            coverage runtime
+	 * @param options
+	 *            configuration options for the generator
+	 * @param logger
+	 *            logger for exceptions during instrumentation
+	 * @param uninstrumenter
+	 *            decides which classes must not be instrumented on
+	 *            retransformation or <code>null</code> if retransformation is
+	 *            not supported
+	 */
+	CoverageTransformer(final IRuntime runtime, final AgentOptions options,
+			final IExceptionLogger logger,
+			final Uninstrumenter uninstrumenter) {
+		this.uninstrumenter = uninstrumenter;
 		this.instrumenter = new Instrumenter(runtime);
+		this.instrumenter.setMinimizeProbes(options.getMinimizeProbes());
+		this.instrumenter.setCompact(options.getCompact());
+		this.instrumenter.setIndyProbes(options.getIndyProbes());
 		this.logger = logger;
 		// Class names will be reported in VM notation:
 		includes = new WildcardMatcher(toVMName(options.getIncludes()));
 		excludes = new WildcardMatcher(toVMName(options.getExcludes()));
 		exclClassloader = new WildcardMatcher(options.getExclClassloader());
 		classFileDumper = new ClassFileDumper(options.getClassDumpDir());
+		classCache = createClassCache(runtime, options);
 		inclBootstrapClasses = options.getInclBootstrapClasses();
 		inclNoLocationClasses = options.getInclNoLocationClasses();
 	}
@@ -78,8 +112,9 @@ public class CoverageTransformer implements ClassFileTransformer {
 			final ProtectionDomain protectionDomain,
 			final byte[] classfileBuffer) throws IllegalClassFormatException {
 
-		// We do not support class retransformation:
-		if (classBeingRedefined != null) {
+		// We do not support class retransformation unless classes are
+		// uninstrumented:
+		if (classBeingRedefined != null && uninstrumenter == null) {
 			return null;
 		}
 
@@ -88,8 +123,15 @@ public class CoverageTransformer implements ClassFileTransformer {
 		}
 
 		try {
+			if (classBeingRedefined != null) {
+				return retransform(classname, classfileBuffer);
+			}
 			classFileDumper.dump(classname, classfileBuffer);
-			return instrumenter.instrument(classfileBuffer, classname);
+			if (uninstrumenter != null) {
+				uninstrumenter.register(loader, classname,
+						CRC64.classId(classfileBuffer));
+			}
+			return instrument(classname, classfileBuffer);
 		} catch (final Exception ex) {
 			final IllegalClassFormatException wrapper = new IllegalClassFormatException(
 					ex.getMessage());
@@ -100,6 +142,65 @@ public class CoverageTransformer implements ClassFileTransformer {
 		}
 	}
 
+	private byte[] retransform(final String classname,
+			final byte[] classfileBuffer) throws IOException {
+		// Members must be kept, as they can't be removed by retransformation
+		if (uninstrumenter.isUninstrumented(CRC64.classId(classfileBuffer))) {
+			return instrumenter.instrumentWithoutProbes(classfileBuffer,
+					classname);
+		}
+		return instrument(classname, classfileBuffer);
+	}
+
+	private byte[] instrument(final String classname,
+			final byte[] classfileBuffer) throws IOException {
+		if (classCache == null) {
+			return instrumenter.instrument(classfileBuffer, classname);
+		}
+		final long classId = CRC64.classId(classfileBuffer);
+		final byte[] cached = classCache.get(classId, classname,
+				classfileBuffer);
+		if (cached != null) {
+			return cached;
+		}
+		final byte[] instrumented = instrumenter.instrument(classfileBuffer,
+				classname);
+		try {
+			classCache.put(classId, classname, classfileBuffer, instrumented);
+		} catch (final IOException e) {
+			// A broken cache must not break the application
+			logger.logExeption(e);
+		}
+		return instrumented;
+	}
+
+	private static InstrumentedClassCache createClassCache(
+			final IRuntime runtime, final AgentOptions options) {
+		final String location = options.getClassCacheDir();
+		if (location == null) {
+			return null;
+		}
+		final InstrumentedClassCache cache = new InstrumentedClassCache(
+				new File(location), options.getClassCacheSize() * 1024L * 1024L,
+				runtime, getVariant(options));
+		cache.startTrim();
+		return cache;
+	}
+
+	private static String getVariant(final AgentOptions options) {
+		final StringBuilder variant = new StringBuilder();
+		if (options.getMinimizeProbes()) {
+			variant.append("-min");
+		}
+		if (options.getCompact()) {
+			variant.append("-compact");
+		}
+		if (options.getIndyProbes()) {
+			variant.append("-indy");
+		}
+		return variant.toString();
+	}
+
 	/**
 	 * Checks whether this class should be instrumented.
 	 *
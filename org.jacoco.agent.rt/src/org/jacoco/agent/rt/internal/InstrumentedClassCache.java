@@ -0,0 +1,340 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jacoco.core.JaCoCo;
+import org.jacoco.core.internal.data.CRC64;
+import org.jacoco.core.runtime.IExecutionDataAccessorGenerator;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Persistent cache for instrumented class files. Entries are keyed by the id of
+ * the original class file within a namespace which identifies the JaCoCo
+ * version and the code generated by the runtime, so entries of different agents
+ * never get mixed up. Entries are written to a temporary file first and then
+ * renamed, therefore the cache can be shared by concurrent JVMs. The size of
+ * the cache directory is limited by removing the least recently used entries,
+ * the modification time of an entry is updated on every hit. As the id is only
+ * a 64 bit hash, every entry also records the class name and the SHA-1 digest
+ * of the original class file, which are verified before an entry is used.
+ */
+class InstrumentedClassCache {
+
+	/** Marker at the beginning of every cache entry. */
+	private static final int MAGIC = 0xC0C0CAC5;
+
+	/** Temporary files older than this are considered as abandoned. */
+	private static final long TEMP_FILE_TIMEOUT = 60 * 60 * 1000;
+
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	private static final int DIGEST_LENGTH = 20;
+
+	private final File root;
+
+	private final File directory;
+
+	private final long maxSize;
+
+	private final AtomicLong written;
+
+	private final AtomicBoolean trimming;
+
+	/**
+	 * Creates a new cache for classes instrumented with the given accessor
+	 * generator.
+	 *
+	 * @param root
+	 *            cache directory, created on demand
+	 * @param maxSize
+	 *            maximum size of the cache directory in bytes
+	 * @param accessorGenerator
+	 *            generator used by the instrumenter
+	 */
+	InstrumentedClassCache(final File root, final long maxSize,
+			final IExecutionDataAccessorGenerator accessorGenerator) {
+		this(root, maxSize, accessorGenerator, "");
+	}
+
+	/**
+	 * Creates a new cache for classes instrumented with the given accessor
+	 * generator. Classes instrumented with different instrumenter settings are
+	 * stored in separate namespaces.
+	 *
+	 * @param root
+	 *            cache directory, created on demand
+	 * @param maxSize
+	 *            maximum size of the cache directory in bytes
+	 * @param accessorGenerator
+	 *            generator used by the instrumenter
+	 * @param variant
+	 *            identifier of the instrumenter settings, empty for the
+	 *            defaults
+	 */
+	InstrumentedClassCache(final File root, final long maxSize,
+			final IExecutionDataAccessorGenerator accessorGenerator,
+			final String variant) {
+		this.root = root;
+		this.directory = new File(root,
+				getNamespace(accessorGenerator) + variant);
+		this.maxSize = maxSize;
+		this.written = new AtomicLong();
+		this.trimming = new AtomicBoolean();
+	}
+
+	/**
+	 * Calculates a name which identifies the JaCoCo version and the data
+	 * accessor code generated by the given generator. Generators which use
+	 * random keys will result in a different namespace for every JVM.
+	 */
+	static String getNamespace(
+			final IExecutionDataAccessorGenerator accessorGenerator) {
+		final ClassWriter writer = new ClassWriter(0);
+		writer.visit(Opcodes.V1_5, 0, "Namespace", null, "java/lang/Object",
+				null);
+		writer.visitSource(JaCoCo.VERSION, null);
+		final MethodVisitor mv = writer.visitMethod(Opcodes.ACC_STATIC,
+				"accessor", "()V", null, null);
+		mv.visitCode();
+		accessorGenerator.generateDataAccessor(0, "Namespace", 0, mv);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+		writer.visitEnd();
+		return String.format("%016x",
+				Long.valueOf(CRC64.classId(writer.toByteArray())));
+	}
+
+	/**
+	 * Returns the cached instrumented version of the given class.
+	 *
+	 * @param classId
+	 *            id of the original class file
+	 * @param name
+	 *            VM name of the class
+	 * @param original
+	 *            original class file
+	 * @return instrumented class file or <code>null</code> if no valid entry
+	 *         exists
+	 */
+	byte[] get(final long classId, final String name, final byte[] original) {
+		final File file = getFile(classId);
+		if (!file.isFile()) {
+			return null;
+		}
+		try {
+			final DataInputStream in = new DataInputStream(
+					new BufferedInputStream(new FileInputStream(file)));
+			try {
+				if (in.readInt() != MAGIC || in.readInt() != original.length
+						|| !in.readUTF().equals(String.valueOf(name))) {
+					return null;
+				}
+				final byte[] digest = new byte[DIGEST_LENGTH];
+				in.readFully(digest);
+				if (!MessageDigest.isEqual(digest, digest(original))) {
+					// Different class with the same id
+					return null;
+				}
+				final byte[] bytes = new byte[in.readInt()];
+				in.readFully(bytes);
+				file.setLastModified(System.currentTimeMillis());
+				return bytes;
+			} finally {
+				in.close();
+			}
+		} catch (final IOException e) {
+			// Incomplete, concurrently removed or foreign entries are treated
+			// as cache misses
+			return null;
+		}
+	}
+
+	/**
+	 * Stores the instrumented version of the given class. If the total size of
+	 * entries written since the last trim exceeds a tenth of the maximum size
+	 * the cache is trimmed in the background.
+	 *
+	 * @param classId
+	 *            id of the original class file
+	 * @param name
+	 *            VM name of the class
+	 * @param original
+	 *            original class file
+	 * @param instrumented
+	 *            instrumented class file
+	 * @throws IOException
+	 *             if the entry can't be written
+	 */
+	void put(final long classId, final String name, final byte[] original,
+			final byte[] instrumented) throws IOException {
+		final File file = getFile(classId);
+		final File folder = file.getParentFile();
+		folder.mkdirs();
+		final File tmp = File.createTempFile(file.getName(), TEMP_SUFFIX,
+				folder);
+		try {
+			final DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(tmp)));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(original.length);
+				out.writeUTF(String.valueOf(name));
+				out.write(digest(original));
+				out.writeInt(instrumented.length);
+				out.write(instrumented);
+			} finally {
+				out.close();
+			}
+			// Some other JVM might have won the race. As the content is the
+			// same we don't care which entry survives.
+			if (!tmp.renameTo(file) && !file.isFile()) {
+				throw new IOException(
+						String.format("Can't write cache entry %s.", file));
+			}
+		} finally {
+			tmp.delete();
+		}
+		if (written.addAndGet(instrumented.length) > maxSize / 10) {
+			startTrim();
+		}
+	}
+
+	/**
+	 * Trims the cache in a background thread unless a trim is already running.
+	 */
+	void startTrim() {
+		if (!trimming.compareAndSet(false, true)) {
+			return;
+		}
+		written.set(0);
+		final Thread worker = new Thread(new Runnable() {
+			public void run() {
+				try {
+					trim();
+				} finally {
+					trimming.set(false);
+				}
+			}
+		});
+		worker.setName(getClass().getName());
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	/**
+	 * Removes the least recently used entries of all namespaces until the total
+	 * size of the cache directory is below 90% of the maximum size. Abandoned
+	 * temporary files are removed as well.
+	 */
+	void trim() {
+		final List<File> files = new ArrayList<File>();
+		collectFiles(root, files);
+		final long now = System.currentTimeMillis();
+		final List<Entry> entries = new ArrayList<Entry>(files.size());
+		long size = 0;
+		for (final File file : files) {
+			final long lastModified = file.lastModified();
+			if (file.getName().endsWith(TEMP_SUFFIX)) {
+				if (now - lastModified > TEMP_FILE_TIMEOUT) {
+					file.delete();
+				}
+				continue;
+			}
+			final Entry entry = new Entry(file, lastModified);
+			entries.add(entry);
+			size += entry.size;
+		}
+		if (size <= maxSize) {
+			return;
+		}
+		final Entry[] sorted = entries.toArray(new Entry[entries.size()]);
+		Arrays.sort(sorted, new Comparator<Entry>() {
+			public int compare(final Entry e1, final Entry e2) {
+				return e1.lastModified < e2.lastModified ? -1
+						: (e1.lastModified == e2.lastModified ? 0 : 1);
+			}
+		});
+		final long target = maxSize / 10 * 9;
+		for (final Entry entry : sorted) {
+			if (size <= target) {
+				break;
+			}
+			// A concurrent JVM might have removed the file already
+			entry.file.delete();
+			size -= entry.size;
+		}
+	}
+
+	private static void collectFiles(final File folder,
+			final List<File> files) {
+		final File[] children = folder.listFiles();
+		if (children == null) {
+			return;
+		}
+		for (final File child : children) {
+			if (child.isDirectory()) {
+				collectFiles(child, files);
+			} else {
+				files.add(child);
+			}
+		}
+	}
+
+	private static byte[] digest(final byte[] bytes) {
+		try {
+			return MessageDigest.getInstance("SHA-1").digest(bytes);
+		} catch (final NoSuchAlgorithmException e) {
+			// Every Java platform is required to support SHA-1
+			throw new AssertionError(e);
+		}
+	}
+
+	private File getFile(final long classId) {
+		final String name = String.format("%016x", Long.valueOf(classId));
+		return new File(new File(directory, name.substring(0, 2)),
+				name.substring(2));
+	}
+
+	private static class Entry {
+
+		final File file;
+
+		final long lastModified;
+
+		final long size;
+
+		Entry(final File file, final long lastModified) {
+			this.file = file;
+			this.lastModified = lastModified;
+			this.size = file.length();
+		}
+
+	}
+
+}
@@ -51,8 +51,32 @@ public final class PreMain {
 
 		final IRuntime runtime = createRuntime(inst);
 		runtime.startup(agent.getData());
-		inst.addTransformer(new CoverageTransformer(runtime, agentOptions,
-				IExceptionLogger.SYSTEM_ERR));
+		final int interval = agentOptions.getUninstrumentInterval();
+		if (interval > 0) {
+			addUninstrumentingTransformer(inst, runtime, agent, agentOptions,
+					interval);
+		} else {
+			inst.addTransformer(new CoverageTransformer(runtime, agentOptions,
+					IExceptionLogger.SYSTEM_ERR));
+		}
+	}
+
+	private static void addUninstrumentingTransformer(
+			final Instrumentation inst, final IRuntime runtime,
+			final Agent agent, final AgentOptions agentOptions,
+			final int interval) throws Exception {
+		final Uninstrumenter uninstrumenter = new Uninstrumenter(inst,
+				agent.getData(), IExceptionLogger.SYSTEM_ERR);
+		if (!uninstrumenter.isSupported()) {
+			IExceptionLogger.SYSTEM_ERR.logExeption(new IllegalStateException(
+					"Class retransformation is not supported by this JVM."));
+			inst.addTransformer(new CoverageTransformer(runtime, agentOptions,
+					IExceptionLogger.SYSTEM_ERR));
+			return;
+		}
+		uninstrumenter.addTransformer(new CoverageTransformer(runtime,
+				agentOptions, IExceptionLogger.SYSTEM_ERR, uninstrumenter));
+		uninstrumenter.startup(interval * 1000L);
 	}
 
 	private static IRuntime createRuntime(final Instrumentation inst)
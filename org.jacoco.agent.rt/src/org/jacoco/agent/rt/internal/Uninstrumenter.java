@@ -0,0 +1,270 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.IExecutionDataVisitor;
+import org.jacoco.core.data.ISessionInfoVisitor;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.runtime.RuntimeData;
+
+/**
+ * Periodically retransforms classes where all probes have been executed to a
+ * version without probes. Recorded execution data is kept, but as those classes
+ * do not record execution data any more they will not be covered again after a
+ * reset. As different class loaders may define different versions of a class
+ * with the same name, the ids of all instrumented classes are registered per
+ * defining class loader and only loaded classes whose id is fully covered are
+ * retransformed. The class retransformation API has been introduced with Java 6
+ * and is therefore accessed via reflection.
+ */
+class Uninstrumenter {
+
+	private final Instrumentation inst;
+
+	private final RuntimeData data;
+
+	private final IExceptionLogger logger;
+
+	private final Set<Long> classIds;
+
+	/** Class ids by VM name for every defining class loader */
+	private final Map<ClassLoader, Map<String, Long>> loaders;
+
+	/** Class ids by VM name for the bootstrap class loader */
+	private final Map<String, Long> bootstrapClasses;
+
+	private Thread worker;
+
+	/**
+	 * Creates a new instance for the given instrumentation service.
+	 *
+	 * @param inst
+	 *            instrumentation callback provided by the JVM
+	 * @param data
+	 *            execution data of the agent
+	 * @param logger
+	 *            logger for exceptions during retransformation
+	 */
+	Uninstrumenter(final Instrumentation inst, final RuntimeData data,
+			final IExceptionLogger logger) {
+		this.inst = inst;
+		this.data = data;
+		this.logger = logger;
+		this.classIds = new HashSet<Long>();
+		this.loaders = new WeakHashMap<ClassLoader, Map<String, Long>>();
+		this.bootstrapClasses = new HashMap<String, Long>();
+	}
+
+	/**
+	 * Checks whether classes can be retransformed in this JVM.
+	 *
+	 * @return <code>true</code> if retransformation is supported
+	 */
+	boolean isSupported() {
+		try {
+			return ((Boolean) invoke("isRetransformClassesSupported",
+					new Class<?>[0])).booleanValue();
+		} catch (final Exception e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Registers the given transformer so that it is called for
+	 * retransformations.
+	 *
+	 * @param transformer
+	 *            transformer which instruments classes
+	 * @throws Exception
+	 *             if the transformer can't be registered
+	 */
+	void addTransformer(final ClassFileTransformer transformer)
+			throws Exception {
+		invoke("addTransformer",
+				new Class<?>[] { ClassFileTransformer.class, Boolean.TYPE },
+				transformer, Boolean.TRUE);
+	}
+
+	/**
+	 * Registers the id of a class which has been instrumented when it was
+	 * defined.
+	 *
+	 * @param loader
+	 *            defining class loader or <code>null</code> for the bootstrap
+	 *            class loader
+	 * @param name
+	 *            VM name of the class
+	 * @param classId
+	 *            id of the original class definition
+	 */
+	void register(final ClassLoader loader, final String name,
+			final long classId) {
+		synchronized (loaders) {
+			getClasses(loader, true).put(name, Long.valueOf(classId));
+		}
+	}
+
+	private Long getClassId(final ClassLoader loader, final String name) {
+		synchronized (loaders) {
+			final Map<String, Long> classes = getClasses(loader, false);
+			return classes == null ? null : classes.get(name);
+		}
+	}
+
+	private Map<String, Long> getClasses(final ClassLoader loader,
+			final boolean create) {
+		if (loader == null) {
+			return bootstrapClasses;
+		}
+		Map<String, Long> classes = loaders.get(loader);
+		if (classes == null && create) {
+			classes = new HashMap<String, Long>();
+			loaders.put(loader, classes);
+		}
+		return classes;
+	}
+
+	/**
+	 * Checks whether the class with the given id has been uninstrumented.
+	 *
+	 * @param classId
+	 *            id of the original class definition
+	 * @return <code>true</code> if probes must not be inserted
+	 */
+	boolean isUninstrumented(final long classId) {
+		synchronized (classIds) {
+			return classIds.contains(Long.valueOf(classId));
+		}
+	}
+
+	/**
+	 * Starts a background thread which uninstruments fully covered classes in
+	 * the given interval.
+	 *
+	 * @param interval
+	 *            interval in milliseconds
+	 */
+	void startup(final long interval) {
+		worker = new Thread(new Runnable() {
+			public void run() {
+				while (true) {
+					try {
+						Thread.sleep(interval);
+					} catch (final InterruptedException e) {
+						return;
+					}
+					uninstrument();
+				}
+			}
+		});
+		worker.setName(getClass().getName());
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	/**
+	 * Stops the background thread.
+	 *
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the thread
+	 */
+	void shutdown() throws InterruptedException {
+		worker.interrupt();
+		worker.join();
+	}
+
+	/**
+	 * Retransforms all loaded classes where all probes have been executed since
+	 * the last call. Only classes which have been registered with the id of a
+	 * fully covered class are retransformed.
+	 *
+	 * @return number of retransformed classes
+	 */
+	int uninstrument() {
+		final Set<Long> ids = new HashSet<Long>();
+		data.collect(new IExecutionDataVisitor() {
+			public void visitClassExecution(final ExecutionData ed) {
+				if (isFullyCovered(ed.getProbes())) {
+					final Long id = Long.valueOf(ed.getId());
+					synchronized (classIds) {
+						if (classIds.add(id)) {
+							ids.add(id);
+						}
+					}
+				}
+			}
+		}, new ISessionInfoVisitor() {
+			public void visitSessionInfo(final SessionInfo info) {
+				// not needed
+			}
+		}, false);
+		if (ids.isEmpty()) {
+			return 0;
+		}
+		int count = 0;
+		for (final Class<?> c : inst.getAllLoadedClasses()) {
+			final Long id = getClassId(c.getClassLoader(),
+					c.getName().replace('.', '/'));
+			if (id == null || !ids.contains(id)) {
+				continue;
+			}
+			try {
+				if (((Boolean) invoke("isModifiableClass",
+						new Class<?>[] { Class.class }, c)).booleanValue()) {
+					invoke("retransformClasses",
+							new Class<?>[] { Class[].class },
+							(Object) new Class<?>[] { c });
+					count++;
+				}
+			} catch (final Exception e) {
+				logger.logExeption(e);
+			}
+		}
+		return count;
+	}
+
+	private static boolean isFullyCovered(final boolean[] probes) {
+		if (probes.length == 0) {
+			return false;
+		}
+		for (final boolean p : probes) {
+			if (!p) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private Object invoke(final String name, final Class<?>[] types,
+			final Object... args) throws Exception {
+		final Method method = Instrumentation.class.getMethod(name, types);
+		try {
+			return method.invoke(inst, args);
+		} catch (final InvocationTargetException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			}
+			throw e;
+		}
+	}
+
+}
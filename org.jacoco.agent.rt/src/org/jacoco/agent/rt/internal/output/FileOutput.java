@@ -17,6 +17,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 
+import org.jacoco.core.data.ExecutionDataDeltaTracker;
 import org.jacoco.core.data.ExecutionDataWriter;
 import org.jacoco.core.runtime.AgentOptions;
 import org.jacoco.core.runtime.RuntimeData;
@@ -27,6 +28,7 @@ import org.jacoco.core.runtime.RuntimeData;
  * <ul>
  * <li>destfile</li>
  * <li>append</li>
+ * <li>incremental</li>
  * </ul>
  */
 public class FileOutput implements IAgentOutput {
@@ -37,11 +39,17 @@ public class FileOutput implements IAgentOutput {
 
 	private boolean append;
 
+	private ExecutionDataDeltaTracker deltaTracker;
+
 	public final void startup(final AgentOptions options,
 			final RuntimeData data) throws IOException {
 		this.data = data;
 		this.destFile = new File(options.getDestfile()).getAbsoluteFile();
 		this.append = options.getAppend();
+		// Deltas can only be applied to the previous content of the file:
+		if (append && options.getIncremental()) {
+			this.deltaTracker = new ExecutionDataDeltaTracker();
+		}
 		final File folder = destFile.getParentFile();
 		if (folder != null) {
 			folder.mkdirs();
@@ -50,11 +58,16 @@ public class FileOutput implements IAgentOutput {
 		openFile().close();
 	}
 
-	public void writeExecutionData(final boolean reset) throws IOException {
+	public synchronized void writeExecutionData(final boolean reset)
+			throws IOException {
 		final OutputStream output = openFile();
 		try {
 			final ExecutionDataWriter writer = new ExecutionDataWriter(output);
-			data.collect(writer, writer, reset);
+			if (deltaTracker == null) {
+				data.collect(writer, writer, reset);
+			} else {
+				data.collect(deltaTracker.createVisitor(writer), writer, reset);
+			}
 		} finally {
 			output.close();
 		}
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal.output;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.jacoco.agent.rt.internal.IExceptionLogger;
+import org.jacoco.core.data.MappedExecutionDataWriter;
+import org.jacoco.core.runtime.AgentOptions;
+import org.jacoco.core.runtime.RuntimeData;
+
+/**
+ * Local only agent output that continuously mirrors the probes of all classes
+ * into a memory mapped file. The file can be read at any time with
+ * {@link org.jacoco.core.data.MappedExecutionDataReader} without any
+ * interaction with the agent. This controller uses the following agent options:
+ * <ul>
+ * <li>destfile</li>
+ * </ul>
+ */
+public class MappedFileOutput implements IAgentOutput {
+
+	/** Interval in milliseconds the mapped file is updated. */
+	static final long SYNC_INTERVAL = 1000;
+
+	private final IExceptionLogger logger;
+
+	private RuntimeData data;
+
+	private MappedExecutionDataWriter writer;
+
+	private Thread worker;
+
+	/**
+	 * New controller instance.
+	 *
+	 * @param logger
+	 *            logger to use in case of exceptions is spawned threads
+	 */
+	public MappedFileOutput(final IExceptionLogger logger) {
+		this.logger = logger;
+	}
+
+	public void startup(final AgentOptions options, final RuntimeData data)
+			throws IOException {
+		this.data = data;
+		final File destFile = new File(options.getDestfile()).getAbsoluteFile();
+		final File folder = destFile.getParentFile();
+		if (folder != null) {
+			folder.mkdirs();
+		}
+		writer = new MappedExecutionDataWriter(destFile);
+		sync(false);
+		worker = new Thread(new Runnable() {
+			public void run() {
+				while (true) {
+					try {
+						Thread.sleep(SYNC_INTERVAL);
+					} catch (final InterruptedException e) {
+						return;
+					}
+					try {
+						sync(false);
+					} catch (final RuntimeException e) {
+						logger.logExeption(e);
+					}
+				}
+			}
+		});
+		worker.setName(getClass().getName());
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	public synchronized void writeExecutionData(final boolean reset) {
+		sync(reset);
+		writer.flush();
+	}
+
+	public void shutdown() throws Exception {
+		worker.interrupt();
+		worker.join();
+		synchronized (this) {
+			sync(false);
+			writer.close();
+		}
+	}
+
+	private synchronized void sync(final boolean reset) {
+		// The writer only copies probes, so no snapshot is required:
+		data.collectInPlace(writer, writer, reset);
+	}
+
+}
@@ -16,6 +16,7 @@ import java.io.IOException;
 import java.net.Socket;
 import java.net.SocketException;
 
+import org.jacoco.core.data.ExecutionDataDeltaTracker;
 import org.jacoco.core.runtime.IRemoteCommandVisitor;
 import org.jacoco.core.runtime.RemoteControlReader;
 import org.jacoco.core.runtime.RemoteControlWriter;
@@ -34,11 +35,20 @@ class TcpConnection implements IRemoteCommandVisitor {
 
 	private RemoteControlReader reader;
 
+	private final ExecutionDataDeltaTracker deltaTracker;
+
 	private boolean initialized;
 
 	public TcpConnection(final Socket socket, final RuntimeData data) {
+		this(socket, data, false);
+	}
+
+	public TcpConnection(final Socket socket, final RuntimeData data,
+			final boolean incremental) {
 		this.socket = socket;
 		this.data = data;
+		this.deltaTracker = incremental ? new ExecutionDataDeltaTracker()
+				: null;
 		this.initialized = false;
 	}
 
@@ -97,10 +107,20 @@ class TcpConnection implements IRemoteCommandVisitor {
 
 	// === IRemoteCommandVisitor ===
 
-	public void visitDumpCommand(final boolean dump, final boolean reset)
-			throws IOException {
+	/**
+	 * Dump commands of the remote peer and local dumps are issued from
+	 * different threads. Execution data is collected without holding a lock of
+	 * the runtime, so responses are serialized per connection to keep their
+	 * blocks from interleaving.
+	 */
+	public synchronized void visitDumpCommand(final boolean dump,
+			final boolean reset) throws IOException {
 		if (dump) {
-			data.collect(writer, writer, reset);
+			if (deltaTracker == null) {
+				data.collect(writer, writer, reset);
+			} else {
+				data.collect(deltaTracker.createVisitor(writer), writer, reset);
+			}
 		} else {
 			if (reset) {
 				data.reset();
@@ -0,0 +1,601 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal.output;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.jacoco.agent.rt.internal.IExceptionLogger;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataDeltaTracker;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.IExecutionDataVisitor;
+import org.jacoco.core.data.ISessionInfoVisitor;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.runtime.AgentOptions;
+import org.jacoco.core.runtime.IRemoteCommandVisitor;
+import org.jacoco.core.runtime.RemoteControlReader;
+import org.jacoco.core.runtime.RemoteControlWriter;
+import org.jacoco.core.runtime.RuntimeData;
+
+/**
+ * Output that opens a non-blocking TCP server socket and serves any number of
+ * connections from a single selector thread. The protocol is the same as for
+ * {@link TcpServerOutput}. Dump commands which arrive in the same selection
+ * round are answered with a single snapshot of the execution data, which is
+ * serialized once and shared by all connections. Responses are queued per
+ * connection and written as the peer accepts them, so a slow connection does
+ * not delay the others. New commands of a connection are only processed after
+ * its previous response has been written completely. Connections which do not
+ * accept a dump requested by the agent within {@link #WRITE_TIMEOUT} are
+ * closed. This controller uses the following agent options:
+ * <ul>
+ * <li>address</li>
+ * <li>port</li>
+ * <li>incremental</li>
+ * </ul>
+ */
+public class TcpNioServerOutput implements IAgentOutput {
+
+	private static final byte[] HEADER = ExecutionDataWriter.getFileHeader();
+
+	/**
+	 * Milliseconds {@link #writeExecutionData(boolean)} waits for connections
+	 * to accept the dump.
+	 */
+	static final long WRITE_TIMEOUT = 10000;
+
+	private final IExceptionLogger logger;
+
+	/** Guards the connections and the running state. */
+	private final Object lock = new Object();
+
+	private final List<Connection> connections = new ArrayList<Connection>();
+
+	private RuntimeData data;
+
+	private boolean incremental;
+
+	private boolean running;
+
+	private Selector selector;
+
+	private ServerSocketChannel serverChannel;
+
+	private Thread worker;
+
+	long writeTimeout = WRITE_TIMEOUT;
+
+	/**
+	 * New controller instance.
+	 *
+	 * @param logger
+	 *            logger to use in case of exceptions is spawned threads
+	 */
+	public TcpNioServerOutput(final IExceptionLogger logger) {
+		this.logger = logger;
+	}
+
+	public void startup(final AgentOptions options, final RuntimeData data)
+			throws IOException {
+		this.data = data;
+		this.incremental = options.getIncremental();
+		selector = Selector.open();
+		serverChannel = createServerChannel(options);
+		serverChannel.configureBlocking(false);
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+		running = true;
+		worker = new Thread(new Runnable() {
+			public void run() {
+				try {
+					serve();
+				} catch (final IOException e) {
+					logger.logExeption(e);
+				} finally {
+					closeAll();
+				}
+			}
+		});
+		worker.setName(getClass().getName());
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	public void shutdown() throws Exception {
+		synchronized (lock) {
+			running = false;
+			lock.notifyAll();
+		}
+		selector.wakeup();
+		worker.join();
+	}
+
+	/**
+	 * Dumps the current execution data to all open connections and waits until
+	 * it has been written completely or the connections are closed. Connections
+	 * which still have pending output after the write timeout are closed, so a
+	 * peer which does not read can't block the caller, e.g. the shutdown hook.
+	 */
+	public void writeExecutionData(final boolean reset) throws IOException {
+		final List<Connection> targets;
+		synchronized (lock) {
+			if (!running || connections.isEmpty()) {
+				return;
+			}
+			targets = new ArrayList<Connection>(connections);
+			final Snapshot snapshot = new Snapshot(reset);
+			for (final Connection c : targets) {
+				c.respond(snapshot);
+			}
+		}
+		selector.wakeup();
+		final long deadline = System.currentTimeMillis() + writeTimeout;
+		synchronized (lock) {
+			while (running && hasPendingOutput(targets)) {
+				final long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					closeStalled(targets);
+					break;
+				}
+				try {
+					lock.wait(remaining);
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+		selector.wakeup();
+	}
+
+	/**
+	 * Opens a server channel based on the given configuration.
+	 *
+	 * @param options
+	 *            address and port configuration
+	 * @return opened and bound server channel
+	 * @throws IOException
+	 */
+	protected ServerSocketChannel createServerChannel(
+			final AgentOptions options) throws IOException {
+		final ServerSocketChannel channel = ServerSocketChannel.open();
+		channel.socket().bind(new InetSocketAddress(
+				getInetAddress(options.getAddress()), options.getPort()));
+		return channel;
+	}
+
+	/**
+	 * Returns the {@link InetAddress} object to open the server channel on.
+	 *
+	 * @param address
+	 *            address specified as a string
+	 * @return address to open the server channel, <code>null</code> for any
+	 *         local address
+	 * @throws UnknownHostException
+	 */
+	protected InetAddress getInetAddress(final String address)
+			throws UnknownHostException {
+		if ("*".equals(address)) {
+			return null;
+		} else {
+			return InetAddress.getByName(address);
+		}
+	}
+
+	/**
+	 * @return the port the server channel is bound to
+	 */
+	int getLocalPort() {
+		return serverChannel.socket().getLocalPort();
+	}
+
+	private void serve() throws IOException {
+		boolean ready = false;
+		while (true) {
+			synchronized (lock) {
+				if (!running) {
+					return;
+				}
+				for (final Connection c : connections) {
+					c.updateInterest();
+				}
+			}
+			if (ready) {
+				selector.selectNow();
+			} else {
+				selector.select();
+			}
+			synchronized (lock) {
+				final Iterator<SelectionKey> i = selector.selectedKeys()
+						.iterator();
+				while (i.hasNext()) {
+					final SelectionKey key = i.next();
+					i.remove();
+					if (key.channel() == serverChannel) {
+						accept();
+					} else {
+						((Connection) key.attachment()).handle();
+					}
+				}
+				ready = processCommands();
+				lock.notifyAll();
+			}
+		}
+	}
+
+	private void accept() throws IOException {
+		final SocketChannel channel = serverChannel.accept();
+		if (channel != null) {
+			channel.configureBlocking(false);
+			final Connection c = new Connection(channel,
+					channel.register(selector, SelectionKey.OP_READ));
+			connections.add(c);
+			c.write();
+		}
+	}
+
+	/**
+	 * Answers the next command of every connection which has no pending output.
+	 * All dump requests of this round share one snapshot, which resets the
+	 * execution data if any of the requests asks for it.
+	 *
+	 * @return <code>true</code> if further commands can be processed
+	 *         immediately
+	 */
+	private boolean processCommands() {
+		final List<Connection> dumps = new ArrayList<Connection>();
+		final List<Connection> others = new ArrayList<Connection>();
+		boolean reset = false;
+		for (final Connection c : connections) {
+			final Command cmd = c.nextCommand();
+			if (cmd != null) {
+				(cmd.dump ? dumps : others).add(c);
+				reset |= cmd.reset;
+			}
+		}
+		if (dumps.isEmpty()) {
+			if (reset) {
+				data.reset();
+			}
+		} else {
+			final Snapshot snapshot = new Snapshot(reset);
+			for (final Connection c : dumps) {
+				c.respond(snapshot);
+			}
+		}
+		for (final Connection c : others) {
+			c.respond(null);
+		}
+		boolean ready = false;
+		for (final Connection c : dumps) {
+			ready |= c.write();
+		}
+		for (final Connection c : others) {
+			ready |= c.write();
+		}
+		return ready;
+	}
+
+	private static boolean hasPendingOutput(final List<Connection> targets) {
+		for (final Connection c : targets) {
+			if (c.channel.isOpen() && !c.output.isEmpty()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void closeStalled(final List<Connection> targets) {
+		for (final Connection c : targets) {
+			if (c.channel.isOpen() && !c.output.isEmpty()) {
+				c.close();
+			}
+		}
+	}
+
+	private void closeAll() {
+		synchronized (lock) {
+			running = false;
+			for (final Connection c : new ArrayList<Connection>(connections)) {
+				c.close();
+			}
+			lock.notifyAll();
+		}
+		try {
+			serverChannel.close();
+			selector.close();
+		} catch (final IOException e) {
+			logger.logExeption(e);
+		}
+	}
+
+	private static class Command {
+
+		final boolean dump;
+
+		final boolean reset;
+
+		Command(final boolean dump, final boolean reset) {
+			this.dump = dump;
+			this.reset = reset;
+		}
+
+	}
+
+	/**
+	 * Execution data collected once for multiple connections. The complete dump
+	 * is serialized on first use only.
+	 */
+	private class Snapshot
+			implements IExecutionDataVisitor, ISessionInfoVisitor {
+
+		private final List<ExecutionData> executionData = new ArrayList<ExecutionData>();
+
+		private SessionInfo info;
+
+		private byte[] bytes;
+
+		Snapshot(final boolean reset) {
+			data.collect(this, this, reset);
+		}
+
+		public void visitSessionInfo(final SessionInfo info) {
+			this.info = info;
+		}
+
+		public void visitClassExecution(final ExecutionData data) {
+			executionData.add(data);
+		}
+
+		void writeTo(final IExecutionDataVisitor executionDataVisitor,
+				final ISessionInfoVisitor sessionInfoVisitor) {
+			sessionInfoVisitor.visitSessionInfo(info);
+			for (final ExecutionData d : executionData) {
+				executionDataVisitor.visitClassExecution(d);
+			}
+		}
+
+		ByteBuffer getBytes() {
+			if (bytes == null) {
+				final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+				try {
+					final ExecutionDataWriter writer = new ExecutionDataWriter(
+							buffer);
+					writeTo(writer, writer);
+				} catch (final IOException e) {
+					// Must not happen with ByteArrayOutputStream
+					throw new AssertionError(e);
+				}
+				bytes = buffer.toByteArray();
+			}
+			return ByteBuffer.wrap(bytes, HEADER.length,
+					bytes.length - HEADER.length);
+		}
+
+	}
+
+	/**
+	 * State of a single connection. Incoming bytes are buffered until complete
+	 * blocks are available, which are then passed to a
+	 * {@link RemoteControlReader}. Outgoing data is queued.
+	 */
+	private class Connection implements IRemoteCommandVisitor {
+
+		final SocketChannel channel;
+
+		final LinkedList<ByteBuffer> output = new LinkedList<ByteBuffer>();
+
+		private final SelectionKey key;
+
+		private final ByteBuffer input = ByteBuffer.allocate(256);
+
+		private final LinkedList<Command> commands = new LinkedList<Command>();
+
+		private final RemoteControlReader reader;
+
+		private final ByteArrayOutputStream buffer;
+
+		private final RemoteControlWriter writer;
+
+		private final ExecutionDataDeltaTracker deltaTracker;
+
+		/** Number of bytes in the input buffer forming complete blocks. */
+		private int complete;
+
+		Connection(final SocketChannel channel, final SelectionKey key)
+				throws IOException {
+			this.channel = channel;
+			this.key = key;
+			key.attach(this);
+			reader = new RemoteControlReader(new InputStream() {
+				@Override
+				public int read() {
+					if (complete == 0) {
+						return -1;
+					}
+					complete--;
+					return input.get() & 0xff;
+				}
+			});
+			reader.setRemoteCommandVisitor(this);
+			buffer = new ByteArrayOutputStream();
+			writer = new RemoteControlWriter(buffer);
+			deltaTracker = incremental ? new ExecutionDataDeltaTracker() : null;
+			flushBuffer();
+		}
+
+		void updateInterest() {
+			if (key.isValid()) {
+				key.interestOps((commands.isEmpty() ? SelectionKey.OP_READ : 0)
+						| (output.isEmpty() ? 0 : SelectionKey.OP_WRITE));
+			}
+		}
+
+		void handle() {
+			if (!key.isValid()) {
+				return;
+			}
+			try {
+				if (key.isReadable()) {
+					read();
+				}
+				if (key.isValid() && key.isWritable()) {
+					writeOutput();
+				}
+			} catch (final IOException e) {
+				if (channel.isOpen()) {
+					logger.logExeption(e);
+				}
+				close();
+			}
+		}
+
+		private void read() throws IOException {
+			if (channel.read(input) == -1) {
+				close();
+				return;
+			}
+			input.flip();
+			complete = getCompleteLength();
+			while (complete > 0) {
+				reader.read();
+			}
+			input.compact();
+		}
+
+		private int getCompleteLength() {
+			int pos = input.position();
+			while (pos < input.limit()) {
+				final int length;
+				switch (input.get(pos)) {
+				case ExecutionDataWriter.BLOCK_HEADER:
+					length = 5;
+					break;
+				case RemoteControlWriter.BLOCK_CMDDUMP:
+					length = 3;
+					break;
+				default:
+					// Unexpected blocks are passed to the reader to report
+					length = 1;
+					break;
+				}
+				if (pos + length > input.limit()) {
+					break;
+				}
+				pos += length;
+			}
+			return pos - input.position();
+		}
+
+		/**
+		 * @return next command if the previous response is completely written
+		 */
+		Command nextCommand() {
+			if (!channel.isOpen() || !output.isEmpty()) {
+				return null;
+			}
+			return commands.poll();
+		}
+
+		/**
+		 * Queues the response to a command.
+		 *
+		 * @param snapshot
+		 *            execution data to dump or <code>null</code>
+		 */
+		void respond(final Snapshot snapshot) {
+			try {
+				if (snapshot != null) {
+					if (deltaTracker == null) {
+						output.add(snapshot.getBytes());
+					} else {
+						snapshot.writeTo(deltaTracker.createVisitor(writer),
+								writer);
+					}
+				}
+				writer.sendCmdOk();
+			} catch (final IOException e) {
+				// Must not happen with ByteArrayOutputStream
+				throw new AssertionError(e);
+			}
+			flushBuffer();
+		}
+
+		private void flushBuffer() {
+			if (buffer.size() > 0) {
+				output.add(ByteBuffer.wrap(buffer.toByteArray()));
+				buffer.reset();
+			}
+		}
+
+		/**
+		 * Writes as much of the queued output as possible without blocking.
+		 *
+		 * @return <code>true</code> if all output has been written and further
+		 *         commands are available
+		 */
+		boolean write() {
+			try {
+				writeOutput();
+			} catch (final IOException e) {
+				if (channel.isOpen()) {
+					logger.logExeption(e);
+				}
+				close();
+				return false;
+			}
+			return channel.isOpen() && output.isEmpty() && !commands.isEmpty();
+		}
+
+		private void writeOutput() throws IOException {
+			while (!output.isEmpty()) {
+				final ByteBuffer next = output.getFirst();
+				channel.write(next);
+				if (next.hasRemaining()) {
+					return;
+				}
+				output.removeFirst();
+			}
+		}
+
+		void close() {
+			connections.remove(this);
+			output.clear();
+			commands.clear();
+			key.cancel();
+			try {
+				channel.close();
+			} catch (final IOException e) {
+				logger.logExeption(e);
+			}
+		}
+
+		// === IRemoteCommandVisitor ===
+
+		public void visitDumpCommand(final boolean dump, final boolean reset) {
+			commands.add(new Command(dump, reset));
+		}
+
+	}
+
+}
@@ -58,7 +58,8 @@ public class TcpServerOutput implements IAgentOutput {
 					try {
 						synchronized (serverSocket) {
 							connection = new TcpConnection(
-									serverSocket.accept(), data);
+									serverSocket.accept(), data,
+									options.getIncremental());
 						}
 						connection.init();
 						connection.run();
@@ -201,6 +201,68 @@ public class AbstractCoverageTask extends Task {
 		agentOptions.setClassDumpDir(dir.getAbsolutePath());
 	}
 
+	/**
+	 * Sets the directory where instrumented classes are cached across runs.
+	 *
+	 * @param dir
+	 *            cache location
+	 */
+	public void setClasscachedir(final File dir) {
+		agentOptions.setClassCacheDir(dir.getAbsolutePath());
+	}
+
+	/**
+	 * Sets the maximum size of the class cache directory.
+	 *
+	 * @param size
+	 *            maximum size in megabytes
+	 */
+	public void setClasscachesize(final int size) {
+		agentOptions.setClassCacheSize(size);
+	}
+
+	/**
+	 * Sets the interval in which fully covered classes are uninstrumented.
+	 *
+	 * @param interval
+	 *            interval in seconds, 0 to disable
+	 */
+	public void setUninstrumentinterval(final int interval) {
+		agentOptions.setUninstrumentInterval(interval);
+	}
+
+	/**
+	 * Sets whether probes which can be inferred from other probes are omitted.
+	 *
+	 * @param minimizeProbes
+	 *            <code>true</code> to omit inferable probes
+	 */
+	public void setMinimizeprobes(final boolean minimizeProbes) {
+		agentOptions.setMinimizeProbes(minimizeProbes);
+	}
+
+	/**
+	 * Sets whether methods with at most one probe access the probe array
+	 * directly at the probe.
+	 *
+	 * @param compact
+	 *            <code>true</code> to keep small methods small
+	 */
+	public void setCompact(final boolean compact) {
+		agentOptions.setCompact(compact);
+	}
+
+	/**
+	 * Sets whether probes of Java 11+ class files are inserted as
+	 * self-disabling <code>invokedynamic</code> instructions.
+	 *
+	 * @param indyProbes
+	 *            <code>true</code> to use invokedynamic probes
+	 */
+	public void setIndyprobes(final boolean indyProbes) {
+		agentOptions.setIndyProbes(indyProbes);
+	}
+
 	/**
 	 * Sets whether the agent should expose functionality via JMX.
 	 *
@@ -211,6 +273,17 @@ public class AbstractCoverageTask extends Task {
 		agentOptions.setJmx(jmx);
 	}
 
+	/**
+	 * Sets whether dumps should only contain the changes since the previous
+	 * dump.
+	 *
+	 * @param incremental
+	 *            <code>true</code> if incremental dumps should be enabled
+	 */
+	public void setIncremental(final boolean incremental) {
+		agentOptions.setIncremental(incremental);
+	}
+
 	/**
 	 * Creates JVM argument to launch with the specified JaCoCo agent jar and
 	 * the current options
@@ -24,8 +24,7 @@ import org.apache.tools.ant.Task;
 import org.apache.tools.ant.types.Resource;
 import org.apache.tools.ant.types.ResourceCollection;
 import org.apache.tools.ant.types.resources.Union;
-import org.apache.tools.ant.util.FileUtils;
-import org.jacoco.core.tools.ExecFileLoader;
+import org.jacoco.core.tools.ExecFileMerger;
 
 /**
  * Task for merging a set of execution data files (*.exec) into a single file
@@ -63,13 +62,16 @@ public class MergeTask extends Task {
 					getLocation());
 		}
 
-		final ExecFileLoader loader = new ExecFileLoader();
-
-		load(loader);
-		save(loader);
+		final ExecFileMerger merger = new ExecFileMerger();
+		try {
+			load(merger);
+			save(merger);
+		} finally {
+			merger.dispose();
+		}
 	}
 
-	private void load(final ExecFileLoader loader) {
+	private void load(final ExecFileMerger merger) {
 		final Iterator<?> resourceIterator = files.iterator();
 		while (resourceIterator.hasNext()) {
 			final Resource resource = (Resource) resourceIterator.next();
@@ -80,24 +82,29 @@ public class MergeTask extends Task {
 
 			log(format("Loading execution data file %s", resource));
 
-			InputStream resourceStream = null;
-			try {
-				resourceStream = resource.getInputStream();
-				loader.load(resourceStream);
-			} catch (final IOException e) {
-				throw new BuildException(format("Unable to read %s", resource),
-						e, getLocation());
-			} finally {
-				FileUtils.close(resourceStream);
-			}
+			merger.add(new ExecFileMerger.Input() {
+				public InputStream open() throws IOException {
+					return resource.getInputStream();
+				}
+
+				@Override
+				public String toString() {
+					return resource.toString();
+				}
+			});
+		}
+		try {
+			merger.merge();
+		} catch (final IOException e) {
+			throw new BuildException(e.getMessage(), e, getLocation());
 		}
 	}
 
-	private void save(final ExecFileLoader loader) {
+	private void save(final ExecFileMerger merger) {
 		log(format("Writing merged execution data to %s",
 				destfile.getAbsolutePath()));
 		try {
-			loader.save(destfile, false);
+			merger.save(destfile, false);
 		} catch (final IOException e) {
 			throw new BuildException(format("Unable to write merged file %s",
 					destfile.getAbsolutePath()), e, getLocation());
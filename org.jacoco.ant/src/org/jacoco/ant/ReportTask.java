@@ -424,6 +424,20 @@ public class ReportTask extends Task {
 
 	private final List<FormatterElement> formatters = new ArrayList<FormatterElement>();
 
+	private boolean minimizeProbes;
+
+	/**
+	 * Sets whether the execution data has been recorded with probe
+	 * minimization, so the coverage of omitted probes is inferred.
+	 *
+	 * @param minimizeProbes
+	 *            <code>true</code> if classes have been instrumented with probe
+	 *            minimization
+	 */
+	public void setMinimizeprobes(final boolean minimizeProbes) {
+		this.minimizeProbes = minimizeProbes;
+	}
+
 	/**
 	 * Returns the nested resource collection for execution data files.
 	 *
@@ -564,6 +578,7 @@ public class ReportTask extends Task {
 			throws IOException {
 		final CoverageBuilder builder = new CoverageBuilder();
 		final Analyzer analyzer = new Analyzer(executionDataStore, builder);
+		analyzer.setMinimizeProbes(minimizeProbes);
 		for (final Iterator<?> i = group.classfiles.iterator(); i.hasNext();) {
 			final Resource resource = (Resource) i.next();
 			if (resource.isDirectory() && resource instanceof FileResource) {
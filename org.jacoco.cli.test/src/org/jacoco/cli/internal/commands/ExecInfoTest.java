@@ -66,6 +66,22 @@ public class ExecInfoTest extends CommandTestBase {
 		assertContains("0000000000001234    2 of   3   foo/MyClass", out);
 	}
 
+	@Test
+	public void should_print_encoded_sizes() throws Exception {
+		File execfile = createExecFile();
+
+		execute("execinfo", execfile.getAbsolutePath());
+
+		assertOk();
+		assertContains("[INFO] Exec file size " + execfile.length() + " bytes.",
+				out);
+		assertContains("ENCODING         BYTES   RATIO", out);
+		// header 5, session info 1 + 8 + 16, class 1 + 8 + 13 + 1 + 1:
+		assertContains("bit set             54    100%", out);
+		assertContains("adaptive            54    100%", out);
+		assertContains("indexed ", out);
+	}
+
 	private File createExecFile() throws IOException {
 		File f = new File(tmp.getRoot(), "test.exec");
 		final FileOutputStream out = new FileOutputStream(f);
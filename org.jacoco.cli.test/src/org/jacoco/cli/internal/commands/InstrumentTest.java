@@ -95,6 +95,60 @@ public class InstrumentTest extends CommandTestBase {
 		assertInstrumented(new File(destdir, "InstrumentTest.class"));
 	}
 
+	@Test
+	public void should_instrument_with_probe_minimization() throws Exception {
+		File destdir = tmp.getRoot();
+
+		File src = new File(getClassPath(),
+				"org/jacoco/cli/internal/commands/InstrumentTest.class");
+
+		execute("instrument", "--dest", destdir.getAbsolutePath(),
+				"--minimizeprobes", src.getAbsolutePath());
+
+		assertOk();
+		assertInstrumented(new File(destdir, "InstrumentTest.class"));
+	}
+
+	@Test
+	public void should_instrument_in_compact_mode() throws Exception {
+		File destdir = tmp.getRoot();
+		File src = new File(getClassPath(),
+				"org/jacoco/cli/internal/commands/InstrumentTest.class");
+
+		execute("instrument", "--dest", destdir.getAbsolutePath(), "--compact",
+				src.getAbsolutePath());
+
+		assertOk();
+		assertInstrumented(new File(destdir, "InstrumentTest.class"));
+	}
+
+	@Test
+	public void should_instrument_with_indy_probes() throws Exception {
+		File destdir = tmp.getRoot();
+		File src = new File(getClassPath(),
+				"org/jacoco/cli/internal/commands/InstrumentTest.class");
+
+		execute("instrument", "--dest", destdir.getAbsolutePath(),
+				"--indyprobes", src.getAbsolutePath());
+
+		assertOk();
+		assertInstrumented(new File(destdir, "InstrumentTest.class"));
+	}
+
+	@Test
+	public void should_print_method_sizes() throws Exception {
+		File destdir = tmp.getRoot();
+		File src = new File(getClassPath(),
+				"org/jacoco/cli/internal/commands/InstrumentTest.class");
+
+		execute("instrument", "--dest", destdir.getAbsolutePath(),
+				"--methodsizes", src.getAbsolutePath());
+
+		assertOk();
+		assertContains("[INFO] " + src.getAbsolutePath() + " <init>()V: ", out);
+		assertContains(" bytes (+", out);
+	}
+
 	@Test
 	public void should_not_instrument_anything_when_no_source_is_given()
 			throws Exception {
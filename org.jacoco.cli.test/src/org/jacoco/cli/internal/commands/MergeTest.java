@@ -13,8 +13,10 @@
 package org.jacoco.cli.internal.commands;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.Arrays;
@@ -25,6 +27,7 @@ import java.util.Set;
 import org.jacoco.cli.internal.CommandTestBase;
 import org.jacoco.core.data.ExecutionData;
 import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.IndexedExecutionDataReader;
 import org.jacoco.core.tools.ExecFileLoader;
 import org.junit.Rule;
 import org.junit.Test;
@@ -75,6 +78,40 @@ public class MergeTest extends CommandTestBase {
 		assertEquals(new HashSet<String>(Arrays.asList("a", "b", "c")), names);
 	}
 
+	@Test
+	public void should_merge_into_indexed_file() throws Exception {
+		File a = createExecFile("a");
+		File b = createExecFile("b");
+		File dest = createExecFile("dest");
+
+		execute("merge", "--indexed", "--destfile", dest.getAbsolutePath(),
+				a.getAbsolutePath(), b.getAbsolutePath());
+
+		assertOk();
+		assertTrue(IndexedExecutionDataReader.isIndexed(dest));
+		Set<String> names = loadExecFile(dest);
+		assertEquals(new HashSet<String>(Arrays.asList("a", "b", "dest")),
+				names);
+	}
+
+	@Test
+	public void should_merge_with_adaptive_encoding() throws Exception {
+		File a = createExecFile("a");
+		File dest = new File(tmp.getRoot(), "merged.exec");
+
+		execute("merge", "--adaptive", "--destfile", dest.getAbsolutePath(),
+				a.getAbsolutePath());
+
+		assertOk();
+		FileInputStream in = new FileInputStream(dest);
+		in.skip(ExecutionDataWriter.getFileHeader().length);
+		assertEquals(ExecutionDataWriter.BLOCK_EXECUTIONDATA_ADAPTIVE,
+				in.read());
+		in.close();
+		Set<String> names = loadExecFile(dest);
+		assertEquals(Collections.singleton("a"), names);
+	}
+
 	private File createExecFile(String name) throws IOException {
 		File file = new File(tmp.getRoot(), name + ".exec");
 		final FileOutputStream execout = new FileOutputStream(file);
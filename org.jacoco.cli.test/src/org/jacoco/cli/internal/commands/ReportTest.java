@@ -60,6 +60,28 @@ public class ReportTest extends CommandTestBase {
 		assertContains("[INFO] Analyzing 14 classes.", out);
 	}
 
+	@Test
+	public void should_use_cache_directory() throws Exception {
+		File cache = new File(tmp.getRoot(), "cache");
+
+		execute("report", "--classfiles", getClassPath(), "--structurecache",
+				cache.getAbsolutePath());
+		execute("report", "--classfiles", getClassPath(), "--structurecache",
+				cache.getAbsolutePath());
+
+		assertOk();
+		assertContains("[INFO] Analyzing 14 classes.", out);
+		assertTrue(cache.list().length > 0);
+	}
+
+	@Test
+	public void should_analyze_with_probe_minimization() throws Exception {
+		execute("report", "--classfiles", getClassPath(), "--minimizeprobes");
+
+		assertOk();
+		assertContains("[INFO] Analyzing 14 classes.", out);
+	}
+
 	@Test
 	public void should_print_warning_when_exec_data_does_not_match()
 			throws Exception {
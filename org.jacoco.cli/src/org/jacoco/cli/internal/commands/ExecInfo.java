@@ -15,6 +15,7 @@ package org.jacoco.cli.internal.commands;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Date;
@@ -23,8 +24,10 @@ import java.util.List;
 import org.jacoco.cli.internal.Command;
 import org.jacoco.core.data.ExecutionData;
 import org.jacoco.core.data.ExecutionDataReader;
+import org.jacoco.core.data.ExecutionDataWriter;
 import org.jacoco.core.data.IExecutionDataVisitor;
 import org.jacoco.core.data.ISessionInfoVisitor;
+import org.jacoco.core.data.IndexedExecutionDataWriter;
 import org.jacoco.core.data.SessionInfo;
 import org.kohsuke.args4j.Argument;
 
@@ -59,6 +62,18 @@ public class ExecInfo extends Command {
 		out.printf("[INFO] Loading exec file %s.%n", file);
 		out.println("CLASS ID         HITS/PROBES   CLASS NAME");
 
+		// Re-encode the content to compare the sizes of the encodings:
+		final ByteCounter bitset = new ByteCounter();
+		final ExecutionDataWriter bitsetWriter = new ExecutionDataWriter(
+				bitset);
+		final ByteCounter adaptive = new ByteCounter();
+		final ExecutionDataWriter adaptiveWriter = new ExecutionDataWriter(
+				adaptive);
+		adaptiveWriter.setAdaptiveEncoding(true);
+		final ByteCounter indexed = new ByteCounter();
+		final IndexedExecutionDataWriter indexedWriter = new IndexedExecutionDataWriter(
+				indexed);
+
 		final FileInputStream in = new FileInputStream(file);
 		final ExecutionDataReader reader = new ExecutionDataReader(in);
 		reader.setSessionInfoVisitor(new ISessionInfoVisitor() {
@@ -66,6 +81,9 @@ public class ExecInfo extends Command {
 				out.printf("Session \"%s\": %s - %s%n", info.getId(),
 						new Date(info.getStartTimeStamp()),
 						new Date(info.getDumpTimeStamp()));
+				bitsetWriter.visitSessionInfo(info);
+				adaptiveWriter.visitSessionInfo(info);
+				indexedWriter.visitSessionInfo(info);
 			}
 		});
 		reader.setExecutionDataVisitor(new IExecutionDataVisitor() {
@@ -75,13 +93,30 @@ public class ExecInfo extends Command {
 						Integer.valueOf(getHitCount(data.getProbes())),
 						Integer.valueOf(data.getProbes().length),
 						data.getName());
+				bitsetWriter.visitClassExecution(data);
+				adaptiveWriter.visitClassExecution(data);
+				indexedWriter.visitClassExecution(data);
 			}
 		});
 		reader.read();
 		in.close();
+		indexedWriter.finish();
+
+		out.printf("[INFO] Exec file size %d bytes.%n",
+				Long.valueOf(file.length()));
+		out.println("ENCODING         BYTES   RATIO");
+		printSize(out, "bit set", bitset.count, bitset.count);
+		printSize(out, "adaptive", adaptive.count, bitset.count);
+		printSize(out, "indexed", indexed.count, bitset.count);
 		out.println();
 	}
 
+	private void printSize(final PrintWriter out, final String encoding,
+			final long size, final long base) {
+		out.printf("%-10s %11d    %3d%%%n", encoding, Long.valueOf(size),
+				Long.valueOf((size * 100 + base / 2) / base));
+	}
+
 	private int getHitCount(final boolean[] data) {
 		int count = 0;
 		for (final boolean hit : data) {
@@ -92,4 +127,20 @@ public class ExecInfo extends Command {
 		return count;
 	}
 
+	private static class ByteCounter extends OutputStream {
+
+		long count;
+
+		@Override
+		public void write(final int b) {
+			count++;
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len) {
+			count += len;
+		}
+
+	}
+
 }
@@ -14,17 +14,17 @@
 package org.jacoco.cli.internal.commands;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import org.jacoco.cli.internal.Command;
 import org.jacoco.core.instr.Instrumenter;
+import org.jacoco.core.instr.MethodSizes;
 import org.jacoco.core.runtime.OfflineInstrumentationAccessGenerator;
 import org.kohsuke.args4j.Argument;
 import org.kohsuke.args4j.Option;
@@ -37,6 +37,18 @@ public class Instrument extends Command {
 	@Option(name = "--dest", usage = "path to write instrumented Java classes to", metaVar = "<dir>", required = true)
 	File dest;
 
+	@Option(name = "--minimizeprobes", usage = "omit probes which can be inferred from other probes")
+	boolean minimizeprobes;
+
+	@Option(name = "--compact", usage = "keep methods with a single probe small")
+	boolean compact;
+
+	@Option(name = "--indyprobes", usage = "insert self-disabling invokedynamic probes into Java 11+ class files (experimental)")
+	boolean indyprobes;
+
+	@Option(name = "--methodsizes", usage = "print the bytecode size of every method before and after instrumentation")
+	boolean methodsizes;
+
 	@Argument(usage = "list of folder or files to instrument recusively", metaVar = "<sourcefiles>")
 	List<File> source = new ArrayList<File>();
 
@@ -51,8 +63,10 @@ public class Instrument extends Command {
 	public int execute(final PrintWriter out, final PrintWriter err)
 			throws IOException {
 		final File absoluteDest = dest.getAbsoluteFile();
-		instrumenter = new Instrumenter(
-				new OfflineInstrumentationAccessGenerator());
+		instrumenter = createInstrumenter(out);
+		instrumenter.setMinimizeProbes(minimizeprobes);
+		instrumenter.setCompact(compact);
+		instrumenter.setIndyProbes(indyprobes);
 		int total = 0;
 		for (final File s : source) {
 			if (s.isFile()) {
@@ -66,6 +80,49 @@ public class Instrument extends Command {
 		return 0;
 	}
 
+	private Instrumenter createInstrumenter(final PrintWriter out) {
+		final OfflineInstrumentationAccessGenerator generator = new OfflineInstrumentationAccessGenerator();
+		if (!methodsizes) {
+			return new Instrumenter(generator);
+		}
+		return new Instrumenter(generator) {
+			@Override
+			public byte[] instrument(final byte[] buffer, final String name)
+					throws IOException {
+				final byte[] result = super.instrument(buffer, name);
+				printMethodSizes(out, name, buffer, result);
+				return result;
+			}
+		};
+	}
+
+	private static void printMethodSizes(final PrintWriter out,
+			final String location, final byte[] original,
+			final byte[] instrumented) {
+		final Map<String, Integer> sizes = MethodSizes.read(instrumented);
+		for (final Map.Entry<String, Integer> entry : MethodSizes.read(original)
+				.entrySet()) {
+			final int before = entry.getValue().intValue();
+			final int after = sizes.get(entry.getKey()).intValue();
+			out.printf("[INFO] %s %s: %s -> %s bytes (%+d)%s%n", location,
+					entry.getKey(), Integer.valueOf(before),
+					Integer.valueOf(after), Integer.valueOf(after - before),
+					getInlineWarning(before, after));
+		}
+	}
+
+	private static String getInlineWarning(final int before, final int after) {
+		if (before <= MethodSizes.MAX_INLINE_SIZE
+				&& after > MethodSizes.MAX_INLINE_SIZE) {
+			return ", exceeds MaxInlineSize";
+		}
+		if (before <= MethodSizes.FREQ_INLINE_SIZE
+				&& after > MethodSizes.FREQ_INLINE_SIZE) {
+			return ", exceeds FreqInlineSize";
+		}
+		return "";
+	}
+
 	private int instrumentRecursive(final File src, final File dest)
 			throws IOException {
 		int total = 0;
@@ -82,20 +139,17 @@ public class Instrument extends Command {
 
 	private int instrument(final File src, final File dest) throws IOException {
 		dest.getParentFile().mkdirs();
-		final InputStream input = new FileInputStream(src);
 		try {
 			final OutputStream output = new FileOutputStream(dest);
 			try {
-				return instrumenter.instrumentAll(input, output,
-						src.getAbsolutePath());
+				return instrumenter.instrumentAll(src.getAbsoluteFile(),
+						output);
 			} finally {
 				output.close();
 			}
 		} catch (final IOException e) {
 			dest.delete();
 			throw e;
-		} finally {
-			input.close();
 		}
 	}
 
@@ -19,7 +19,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.jacoco.cli.internal.Command;
-import org.jacoco.core.tools.ExecFileLoader;
+import org.jacoco.core.tools.ExecFileMerger;
 import org.kohsuke.args4j.Argument;
 import org.kohsuke.args4j.Option;
 
@@ -34,6 +34,12 @@ public class Merge extends Command {
 	@Option(name = "--destfile", usage = "file to write merged execution data to", metaVar = "<path>", required = true)
 	File destfile;
 
+	@Option(name = "--indexed", usage = "write an indexed and block compressed file")
+	boolean indexed;
+
+	@Option(name = "--adaptive", usage = "write probes with the adaptive encoding, which older versions can't read")
+	boolean adaptive;
+
 	@Override
 	public String description() {
 		return "Merges multiple exec files into a new one.";
@@ -42,26 +48,34 @@ public class Merge extends Command {
 	@Override
 	public int execute(final PrintWriter out, final PrintWriter err)
 			throws IOException {
-		final ExecFileLoader loader = loadExecutionData(out);
-		out.printf("[INFO] Writing execution data to %s.%n",
-				destfile.getAbsolutePath());
-		loader.save(destfile, true);
-		return 0;
-	}
-
-	private ExecFileLoader loadExecutionData(final PrintWriter out)
-			throws IOException {
-		final ExecFileLoader loader = new ExecFileLoader();
-		if (execfiles.isEmpty()) {
-			out.println("[WARN] No execution data files provided.");
-		} else {
-			for (final File file : execfiles) {
-				out.printf("[INFO] Loading execution data file %s.%n",
-						file.getAbsolutePath());
-				loader.load(file);
+		final ExecFileMerger merger = new ExecFileMerger();
+		merger.setAdaptiveEncoding(adaptive);
+		try {
+			if (execfiles.isEmpty()) {
+				out.println("[WARN] No execution data files provided.");
+			} else {
+				for (final File file : execfiles) {
+					out.printf("[INFO] Loading execution data file %s.%n",
+							file.getAbsolutePath());
+					merger.add(file);
+				}
+			}
+			// Indexed files can't be appended to, so keep existing content:
+			if (indexed && destfile.exists()) {
+				merger.add(destfile);
 			}
+			merger.merge();
+			out.printf("[INFO] Writing execution data to %s.%n",
+					destfile.getAbsolutePath());
+			if (indexed) {
+				merger.saveIndexed(destfile);
+			} else {
+				merger.save(destfile, true);
+			}
+		} finally {
+			merger.dispose();
 		}
-		return loader;
+		return 0;
 	}
 
 }
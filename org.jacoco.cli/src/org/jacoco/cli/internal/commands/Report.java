@@ -72,6 +72,12 @@ public class Report extends Command {
 	@Option(name = "--html", usage = "output directory for the HTML report", metaVar = "<dir>")
 	File html;
 
+	@Option(name = "--structurecache", usage = "directory to cache the structure of analyzed classes", metaVar = "<dir>")
+	File structurecache;
+
+	@Option(name = "--minimizeprobes", usage = "execution data has been recorded with probe minimization")
+	boolean minimizeprobes;
+
 	@Override
 	public String description() {
 		return "Generate reports in different formats by reading exec and Java class files.";
@@ -106,6 +112,8 @@ public class Report extends Command {
 			final PrintWriter out) throws IOException {
 		final CoverageBuilder builder = new CoverageBuilder();
 		final Analyzer analyzer = new Analyzer(data, builder);
+		analyzer.setMinimizeProbes(minimizeprobes);
+		analyzer.setCacheDirectory(structurecache);
 		for (final File f : classfiles) {
 			analyzer.analyzeAll(f);
 		}
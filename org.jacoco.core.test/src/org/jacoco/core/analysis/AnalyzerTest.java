@@ -31,6 +31,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -38,6 +39,8 @@ import java.util.zip.ZipOutputStream;
 import org.jacoco.core.data.ExecutionDataStore;
 import org.jacoco.core.internal.Pack200Streams;
 import org.jacoco.core.internal.data.CRC64;
+import org.jacoco.core.internal.diff.ClassInfo;
+import org.jacoco.core.internal.diff.DiffIndex;
 import org.jacoco.core.test.TargetLoader;
 import org.junit.AssumptionViolatedException;
 import org.junit.Before;
@@ -163,7 +166,7 @@ public class AnalyzerTest {
 		final byte[] bytes = TargetLoader
 				.getClassDataAsBytes(AnalyzerTest.class);
 		executionData.get(Long.valueOf(CRC64.classId(bytes)),
-				"org/jacoco/core/analysis/AnalyzerTest", 200);
+				"org/jacoco/core/analysis/AnalyzerTest", 400);
 		analyzer.analyzeClass(bytes, "Test");
 		assertFalse(classes.get("org/jacoco/core/analysis/AnalyzerTest")
 				.isNoMatch());
@@ -363,6 +366,187 @@ public class AnalyzerTest {
 				"org/jacoco/core/analysis/AnalyzerTest");
 	}
 
+	@Test
+	public void testAnalyzeAll_ClassNameFilter_Zip() throws IOException {
+		analyzer.setClassNameFilter(
+				new WildcardClassNameFilter("*.AnalyzerTest", ""));
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		final ZipOutputStream zip = new ZipOutputStream(buffer);
+		zip.putNextEntry(
+				new ZipEntry("org/jacoco/core/analysis/AnalyzerTest.class"));
+		zip.write(TargetLoader.getClassDataAsBytes(AnalyzerTest.class));
+		// Broken class files must not be read
+		zip.putNextEntry(new ZipEntry("org/example/Broken.class"));
+		zip.write(0x23);
+		zip.finish();
+		final int count = analyzer.analyzeAll(
+				new ByteArrayInputStream(buffer.toByteArray()), "Test");
+		assertEquals(1, count);
+		assertClasses("org/jacoco/core/analysis/AnalyzerTest");
+	}
+
+	@Test
+	public void testAnalyzeAll_ClassNameFilter_Folder() throws IOException {
+		analyzer.setClassNameFilter(new WildcardClassNameFilter("*", "bin1.*"));
+		createClassfile("bin1", Analyzer.class);
+		createClassfile("bin2", AnalyzerTest.class);
+		final int count = analyzer.analyzeAll(folder.getRoot());
+		assertEquals(1, count);
+		assertClasses("org/jacoco/core/analysis/AnalyzerTest");
+	}
+
+	@Test
+	public void testAnalyzeAll_DiffScope() throws IOException {
+		final ClassInfo classInfo = new ClassInfo();
+		classInfo.setPackages("org.jacoco.core.analysis");
+		classInfo.setClassName("AnalyzerTest");
+		analyzer = new Analyzer(executionData, new EmptyStructureVisitor(),
+				new DiffIndex(Collections.singletonList(classInfo)));
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		final ZipOutputStream zip = new ZipOutputStream(buffer);
+		zip.putNextEntry(new ZipEntry(
+				"META-INF/versions/9/org/jacoco/core/analysis/AnalyzerTest.class"));
+		zip.write(TargetLoader.getClassDataAsBytes(AnalyzerTest.class));
+		zip.putNextEntry(new ZipEntry("org/example/Broken.class"));
+		zip.write(0x23);
+		zip.finish();
+		final int count = analyzer.analyzeAll(
+				new ByteArrayInputStream(buffer.toByteArray()), "Test");
+		assertEquals(1, count);
+		assertClasses("org/jacoco/core/analysis/AnalyzerTest");
+	}
+
+	@Test
+	public void testAnalyzeClass_Cache() throws IOException {
+		final File cache = new File(folder.getRoot(), "cache");
+		analyzer.setCacheDirectory(cache);
+		final byte[] bytes = TargetLoader
+				.getClassDataAsBytes(AnalyzerTest.class);
+		analyzer.analyzeClass(bytes, "Test");
+		final IClassCoverage first = classes
+				.remove("org/jacoco/core/analysis/AnalyzerTest");
+
+		analyzer.analyzeClass(bytes, "Test");
+		final IClassCoverage second = classes
+				.get("org/jacoco/core/analysis/AnalyzerTest");
+
+		assertEquals(1, cache.list().length);
+		assertEquals(first.getInstructionCounter(),
+				second.getInstructionCounter());
+		assertEquals(first.getMethods().size(), second.getMethods().size());
+	}
+
+	@Test
+	public void testAnalyzeClass_CacheDirectoryChanged() throws IOException {
+		final File cache1 = new File(folder.getRoot(), "cache1");
+		final File cache2 = new File(folder.getRoot(), "cache2");
+		final byte[] bytes = TargetLoader
+				.getClassDataAsBytes(AnalyzerTest.class);
+		analyzer.setCacheDirectory(cache1);
+		analyzer.setCacheDirectory(cache2);
+		analyzer.analyzeClass(bytes, "Test");
+		classes.clear();
+		analyzer.setCacheDirectory(null);
+		analyzer.analyzeClass(bytes, "Test");
+
+		assertFalse(cache1.exists());
+		assertEquals(1, cache2.list().length);
+	}
+
+	@Test
+	public void testAnalyzeAll_ZipFile() throws IOException {
+		analyzer.setClassNameFilter(
+				new WildcardClassNameFilter("org.jacoco.*", ""));
+		final int count = analyzer.analyzeAll(createFatJar());
+		assertEquals(2, count);
+		assertClasses("org/jacoco/core/analysis/Analyzer",
+				"org/jacoco/core/analysis/AnalyzerTest");
+	}
+
+	@Test
+	public void testAnalyzeAll_ZipFile_NoClass() throws IOException {
+		final int count = analyzer.analyzeAll(createFatJar());
+		assertEquals(2, count);
+		assertClasses("org/jacoco/core/analysis/Analyzer",
+				"org/jacoco/core/analysis/AnalyzerTest");
+	}
+
+	@Test
+	public void testAnalyzeAll_ZipFile_Executor() throws IOException {
+		analyzer.setExecutor(new ThreadExecutor());
+		final int count = analyzer.analyzeAll(createFatJar());
+		assertEquals(2, count);
+		assertClasses("org/jacoco/core/analysis/Analyzer",
+				"org/jacoco/core/analysis/AnalyzerTest");
+	}
+
+	private File createFatJar() throws IOException {
+		final ByteArrayOutputStream lib = new ByteArrayOutputStream();
+		final ZipOutputStream libzip = new ZipOutputStream(lib);
+		libzip.putNextEntry(
+				new ZipEntry("org/jacoco/core/analysis/Analyzer.class"));
+		libzip.write(TargetLoader.getClassDataAsBytes(Analyzer.class));
+		libzip.finish();
+
+		final File file = new File(folder.getRoot(), "app.jar");
+		final ZipOutputStream zip = new ZipOutputStream(
+				new FileOutputStream(file));
+		zip.putNextEntry(new ZipEntry(
+				"BOOT-INF/classes/org/jacoco/core/analysis/AnalyzerTest.class"));
+		zip.write(TargetLoader.getClassDataAsBytes(AnalyzerTest.class));
+		zip.putNextEntry(
+				new ZipEntry("BOOT-INF/classes/org/example/NoClass.class"));
+		zip.write(0x23);
+		zip.putNextEntry(new ZipEntry("BOOT-INF/classes/application.txt"));
+		zip.write("application".getBytes("UTF-8"));
+		zip.putNextEntry(new ZipEntry("BOOT-INF/lib/lib.jar"));
+		zip.write(lib.toByteArray());
+		zip.close();
+		return file;
+	}
+
+	@Test
+	public void testAnalyzeAll_Executor() throws IOException {
+		analyzer.setExecutor(new ThreadExecutor());
+		createClassfile("bin1", Analyzer.class);
+		createClassfile("bin2", AnalyzerTest.class);
+		String path = "bin1" + File.pathSeparator + "bin2";
+		final int count = analyzer.analyzeAll(path, folder.getRoot());
+		assertEquals(2, count);
+		assertClasses("org/jacoco/core/analysis/Analyzer",
+				"org/jacoco/core/analysis/AnalyzerTest");
+	}
+
+	@Test
+	public void testAnalyzeAll_Executor_BrokenClassFile() throws IOException {
+		analyzer.setExecutor(new ThreadExecutor());
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		final ZipOutputStream zip = new ZipOutputStream(buffer);
+		zip.putNextEntry(
+				new ZipEntry("org/jacoco/core/analysis/AnalyzerTest.class"));
+		final byte[] brokenclass = TargetLoader
+				.getClassDataAsBytes(AnalyzerTest.class);
+		brokenclass[10] = 0x23;
+		zip.write(brokenclass);
+		zip.finish();
+
+		try {
+			analyzer.analyzeAll(new ByteArrayInputStream(buffer.toByteArray()),
+					"test.zip");
+			fail("expected exception");
+		} catch (IOException e) {
+			assertEquals(
+					"Error while analyzing test.zip@org/jacoco/core/analysis/AnalyzerTest.class.",
+					e.getMessage());
+		}
+	}
+
+	private static class ThreadExecutor implements Executor {
+		public void execute(Runnable command) {
+			new Thread(command).start();
+		}
+	}
+
 	/**
 	 * Triggers exception in
 	 * {@link Analyzer#nextEntry(java.util.zip.ZipInputStream, String)}.
@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.analysis;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link WildcardClassNameFilter}.
+ */
+public class WildcardClassNameFilterTest {
+
+	@Test
+	public void should_match_java_names() {
+		final WildcardClassNameFilter filter = new WildcardClassNameFilter(
+				"org.example.*:com.example.Foo", "*Test");
+
+		assertTrue(filter.accept("org/example/Foo"));
+		assertTrue(filter.accept("org/example/sub/Foo$Inner"));
+		assertTrue(filter.accept("com/example/Foo"));
+		assertFalse(filter.accept("com/example/Bar"));
+		assertFalse(filter.accept("org/example/FooTest"));
+	}
+
+	@Test
+	public void should_accept_all_without_exclusions() {
+		final WildcardClassNameFilter filter = new WildcardClassNameFilter("*",
+				"");
+
+		assertTrue(filter.accept("Foo"));
+		assertTrue(filter.accept("org/example/Foo"));
+	}
+
+}
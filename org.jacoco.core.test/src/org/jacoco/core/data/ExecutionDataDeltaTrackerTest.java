@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ExecutionDataDeltaTracker}.
+ */
+public class ExecutionDataDeltaTrackerTest {
+
+	private ExecutionDataDeltaTracker tracker;
+
+	private ExecutionDataStore source;
+
+	private ExecutionDataStore target;
+
+	private boolean[] probesA;
+
+	private boolean[] probesB;
+
+	@Before
+	public void setup() {
+		tracker = new ExecutionDataDeltaTracker();
+		source = new ExecutionDataStore();
+		target = new ExecutionDataStore();
+		probesA = source.get(Long.valueOf(1), "A", 4).getProbes();
+		probesB = source.get(Long.valueOf(2), "B", 2).getProbes();
+	}
+
+	@Test
+	public void should_omit_classes_without_hits() throws IOException {
+		assertEquals(0, dump().getContents().size());
+		probesA[0] = true;
+
+		final ExecutionDataStore dump = dump();
+
+		assertEquals(1, dump.getContents().size());
+		assertArrayEquals(new boolean[] { true, false, false, false },
+				dump.get(1).getProbes());
+	}
+
+	@Test
+	public void should_write_new_probes_only() throws IOException {
+		probesA[0] = true;
+		probesB[1] = true;
+		dump();
+
+		probesA[2] = true;
+		final ExecutionDataStore dump = dump();
+
+		assertEquals(1, dump.getContents().size());
+		assertArrayEquals(new boolean[] { false, false, true, false },
+				dump.get(1).getProbes());
+		assertNull(dump.get(2));
+	}
+
+	@Test
+	public void should_not_write_unchanged_classes() throws IOException {
+		probesA[0] = true;
+		dump();
+
+		assertEquals(0, dump().getContents().size());
+	}
+
+	@Test
+	public void should_not_write_probes_again_after_reset() throws IOException {
+		probesA[0] = true;
+		dump();
+		source.reset();
+
+		probesA[0] = true;
+		probesA[1] = true;
+		final ExecutionDataStore dump = dump();
+
+		assertArrayEquals(new boolean[] { false, true, false, false },
+				dump.get(1).getProbes());
+	}
+
+	@Test
+	public void merged_dumps_should_be_equal_to_complete_dump()
+			throws IOException {
+		probesA[1] = true;
+		dump();
+		probesB[0] = true;
+		dump();
+		probesA[3] = true;
+		dump();
+
+		assertArrayEquals(probesA, target.get(1).getProbes());
+		assertArrayEquals(probesB, target.get(2).getProbes());
+	}
+
+	/**
+	 * Writes the source with the tracker, reads the result into the target and
+	 * returns the content of the dump.
+	 */
+	private ExecutionDataStore dump() throws IOException {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		final ExecutionDataWriter writer = new ExecutionDataWriter(buffer);
+		source.accept(tracker.createVisitor(writer));
+
+		final ExecutionDataStore dump = new ExecutionDataStore();
+		final ExecutionDataReader reader = new ExecutionDataReader(
+				new ByteArrayInputStream(buffer.toByteArray()));
+		reader.setExecutionDataVisitor(new IExecutionDataVisitor() {
+			public void visitClassExecution(final ExecutionData data) {
+				dump.put(new ExecutionData(data.getId(), data.getName(),
+						data.getProbes().clone()));
+				target.put(data);
+			}
+		});
+		reader.read();
+		return dump;
+	}
+
+}
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ExecutionDataMap}.
+ */
+public class ExecutionDataMapTest {
+
+	private ExecutionDataMap map;
+
+	@Before
+	public void setup() {
+		map = new ExecutionDataMap();
+	}
+
+	@Test
+	public void should_be_empty_initially() {
+		assertEquals(0, map.size());
+		assertNull(map.get(0));
+		assertFalse(map.containsName("Foo"));
+		assertTrue(map.values().isEmpty());
+	}
+
+	@Test
+	public void should_find_added_entries() {
+		final ExecutionData a = new ExecutionData(1, "A", 1);
+		final ExecutionData b = new ExecutionData(-1, "B", 1);
+		final ExecutionData c = new ExecutionData(0, "C", 1);
+		map.add(a);
+		map.add(b);
+		map.add(c);
+
+		assertEquals(3, map.size());
+		assertSame(a, map.get(1));
+		assertSame(b, map.get(-1));
+		assertSame(c, map.get(0));
+		assertNull(map.get(2));
+		assertTrue(map.containsName("A"));
+		assertTrue(map.containsName("B"));
+		assertFalse(map.containsName("D"));
+	}
+
+	@Test
+	public void should_keep_insertion_order() {
+		for (int i = 0; i < 100; i++) {
+			map.add(new ExecutionData(100 - i, "Class" + i, 1));
+		}
+		final List<ExecutionData> values = map.values();
+		assertEquals(100, values.size());
+		for (int i = 0; i < 100; i++) {
+			assertEquals(100 - i, values.get(i).getId());
+			assertSame(values.get(i), map.valueAt(i));
+		}
+	}
+
+	@Test
+	public void should_grow_tables() {
+		for (int i = 0; i < 10000; i++) {
+			map.add(new ExecutionData(i * 0x9E3779B97F4A7C15L, "Class" + i, 1));
+		}
+		assertEquals(10000, map.size());
+		for (int i = 0; i < 10000; i++) {
+			assertEquals("Class" + i,
+					map.get(i * 0x9E3779B97F4A7C15L).getName());
+			assertTrue(map.containsName("Class" + i));
+		}
+		assertNull(map.get(1));
+		assertFalse(map.containsName("Class10000"));
+	}
+
+	@Test
+	public void should_collide_on_same_slot() {
+		// All ids have the same hash code:
+		for (int i = 0; i < 100; i++) {
+			final long id = ((long) i << 32) | i;
+			map.add(new ExecutionData(id, "Class" + i, 1));
+		}
+		for (int i = 0; i < 100; i++) {
+			final long id = ((long) i << 32) | i;
+			assertEquals("Class" + i, map.get(id).getName());
+		}
+	}
+
+	@Test
+	public void should_index_duplicate_names_once() {
+		for (int i = 0; i < 100; i++) {
+			map.add(new ExecutionData(i, "Same", 1));
+		}
+		map.add(new ExecutionData(100, "Other", 1));
+		assertEquals(101, map.size());
+		assertTrue(map.containsName("Same"));
+		assertTrue(map.containsName("Other"));
+	}
+
+}
@@ -283,6 +283,59 @@ public class ExecutionDataReaderWriterTest {
 		assertArrayEquals(data, store.get(123).getProbes());
 	}
 
+	@Test
+	public void testSparseClass() throws IOException {
+		final boolean[] data = new boolean[5000];
+		data[17] = true;
+		data[4711] = true;
+		writer.setAdaptiveEncoding(true);
+		writer.visitClassExecution(new ExecutionData(123, "Sample", data));
+		assertFalse(createReaderWithVisitors().read());
+		assertArrayEquals(data, store.get(123).getProbes());
+	}
+
+	@Test
+	public void testSaturatedClass() throws IOException {
+		final boolean[] data = new boolean[500];
+		Arrays.fill(data, true);
+		writer.setAdaptiveEncoding(true);
+		writer.visitClassExecution(new ExecutionData(123, "Sample", data));
+		assertFalse(createReaderWithVisitors().read());
+		assertArrayEquals(data, store.get(123).getProbes());
+	}
+
+	@Test
+	public void testDefaultEncodingShouldBeCompatible() throws IOException {
+		final int headerLength = buffer.size();
+		writer.visitClassExecution(
+				new ExecutionData(3, "Sample", createData(15)));
+		assertEquals(ExecutionDataWriter.BLOCK_EXECUTIONDATA,
+				buffer.toByteArray()[headerLength]);
+	}
+
+	@Test
+	public void testAdaptiveEncoding() throws IOException {
+		final boolean[] data = createData(15);
+		writer.setAdaptiveEncoding(true);
+		writer.visitClassExecution(new ExecutionData(3, "Sample", data));
+		assertFalse(createReaderWithVisitors().read());
+		assertArrayEquals(data, store.get(3).getProbes());
+	}
+
+	@Test
+	public void testAdaptiveEncodingShouldReduceSize() throws IOException {
+		final boolean[] data = new boolean[5000];
+		data[17] = true;
+		final ByteArrayOutputStream bitset = new ByteArrayOutputStream();
+		final ExecutionDataWriter bitsetWriter = createWriter(bitset);
+		bitsetWriter.visitClassExecution(new ExecutionData(3, "Sample", data));
+
+		writer.setAdaptiveEncoding(true);
+		writer.visitClassExecution(new ExecutionData(3, "Sample", data));
+
+		assertTrue(buffer.size() < bitset.size() - 600);
+	}
+
 	@Test(expected = RuntimeException.class)
 	public void testExecutionDataIOException() throws IOException {
 		final boolean[] broken = new boolean[1];
@@ -299,6 +352,112 @@ public class ExecutionDataReaderWriterTest {
 				new ExecutionData(3, "Sample", createData(1)));
 	}
 
+	// === Execution Data Delta ===
+
+	@Test(expected = IOException.class)
+	public void testDeltaNoExecutionDataVisitor() throws IOException {
+		writer.visitClassExecutionDelta(
+				new ExecutionData(3, "Sample", new boolean[] { true }),
+				new boolean[] { false });
+		createReader().read();
+	}
+
+	@Test
+	public void testDelta() throws IOException {
+		final boolean[] base = createData(300);
+		final boolean[] current = base.clone();
+		for (int i = 0; i < current.length; i += 7) {
+			current[i] = true;
+		}
+		writer.visitClassExecution(new ExecutionData(3, "Sample", base));
+		writer.visitClassExecutionDelta(new ExecutionData(3, "Sample", current),
+				base);
+		assertFalse(createReaderWithVisitors().read());
+		assertArrayEquals(current, store.get(3).getProbes());
+	}
+
+	@Test
+	public void testDeltaContainsNewProbesOnly() throws IOException {
+		writer.visitClassExecutionDelta(
+				new ExecutionData(3, "Sample",
+						new boolean[] { true, true, false, true }),
+				new boolean[] { true, false, false, false });
+		assertFalse(createReaderWithVisitors().read());
+		assertArrayEquals(new boolean[] { false, true, false, true },
+				store.get(3).getProbes());
+	}
+
+	@Test
+	public void testDeltaWithoutNewProbes() throws IOException {
+		final int size = buffer.size();
+		writer.visitClassExecutionDelta(
+				new ExecutionData(3, "Sample", new boolean[] { true, false }),
+				new boolean[] { true, false });
+		assertEquals(size, buffer.size());
+	}
+
+	@Test
+	public void testDeltaInvalidProbeIndex() throws IOException {
+		buffer.write(ExecutionDataWriter.BLOCK_EXECUTIONDATA_DELTA);
+		buffer.write(new byte[8]);
+		buffer.write(new byte[] { 0, 1, 'S' });
+		buffer.write(new byte[] { 2, 1, 2 });
+		try {
+			createReaderWithVisitors().read();
+			fail("IOException expected");
+		} catch (final IOException e) {
+			assertEquals("Invalid probe index 2.", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testDeltaNegativeProbeIndex() throws IOException {
+		buffer.write(ExecutionDataWriter.BLOCK_EXECUTIONDATA_DELTA);
+		buffer.write(new byte[8]);
+		buffer.write(new byte[] { 0, 1, 'S' });
+		buffer.write(new byte[] { 2, 2, 0 });
+		buffer.write(new byte[] { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+				(byte) 0xFF, 0x07 });
+		try {
+			createReaderWithVisitors().read();
+			fail("IOException expected");
+		} catch (final IOException e) {
+			assertEquals("Invalid probe index -2147483648.", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testDeltaNegativeProbeCount() throws IOException {
+		buffer.write(ExecutionDataWriter.BLOCK_EXECUTIONDATA_DELTA);
+		buffer.write(new byte[8]);
+		buffer.write(new byte[] { 0, 1, 'S' });
+		buffer.write(new byte[] { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+				(byte) 0xFF, 0x0F });
+		try {
+			createReaderWithVisitors().read();
+			fail("IOException expected");
+		} catch (final IOException e) {
+			assertEquals("Invalid probe count -1.", e.getMessage());
+		}
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testDeltaIOException() throws IOException {
+		final boolean[] broken = new boolean[1];
+		final ExecutionDataWriter writer = createWriter(new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				if (broken[0]) {
+					throw new IOException();
+				}
+			}
+		});
+		broken[0] = true;
+		writer.visitClassExecutionDelta(
+				new ExecutionData(3, "Sample", new boolean[] { true }),
+				new boolean[] { false });
+	}
+
 	private ExecutionDataReader createReaderWithVisitors() throws IOException {
 		final ExecutionDataReader reader = createReader();
 		reader.setExecutionDataVisitor(store);
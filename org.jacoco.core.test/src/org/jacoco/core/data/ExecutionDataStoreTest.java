@@ -19,6 +19,7 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -94,6 +95,18 @@ public class ExecutionDataStoreTest implements IExecutionDataVisitor {
 		assertEquals(expected, actual);
 	}
 
+	@Test
+	public void testGetContentsInsertionOrder() {
+		final ExecutionData b = new ExecutionData(1001, "B", 0);
+		store.put(b);
+		final ExecutionData a = new ExecutionData(1000, "A", 0);
+		store.put(a);
+		store.put(new ExecutionData(1001, "B", 0));
+		final ExecutionData c = store.get(Long.valueOf(999), "C", 0);
+		assertEquals(Arrays.asList(b, a, c),
+				new ArrayList<ExecutionData>(store.getContents()));
+	}
+
 	@Test
 	public void testGetWithoutCreate() {
 		final ExecutionData data = new ExecutionData(1000, "Sample",
@@ -0,0 +1,338 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link IndexedExecutionDataWriter} and
+ * {@link IndexedExecutionDataReader}.
+ */
+public class IndexedExecutionDataReaderWriterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File file;
+
+	private ExecutionDataStore store;
+
+	private SessionInfoStore infos;
+
+	@Before
+	public void setup() {
+		file = new File(folder.getRoot(), "jacoco.exec");
+		store = new ExecutionDataStore();
+		infos = new SessionInfoStore();
+	}
+
+	@Test
+	public void should_read_all_data() throws IOException {
+		write(10);
+
+		final IndexedExecutionDataReader reader = createReader();
+		reader.read();
+
+		assertEquals(1, infos.getInfos().size());
+		assertEquals("session", infos.getInfos().get(0).getId());
+		assertEquals(10, store.getContents().size());
+		assertProbes(store.get(7), 7);
+	}
+
+	@Test
+	public void should_read_empty_file() throws IOException {
+		final OutputStream out = new FileOutputStream(file);
+		new IndexedExecutionDataWriter(out).finish();
+		out.close();
+
+		createReader().read();
+
+		assertTrue(infos.getInfos().isEmpty());
+		assertTrue(store.getContents().isEmpty());
+	}
+
+	@Test
+	public void should_omit_classes_without_hits() throws IOException {
+		final OutputStream out = new FileOutputStream(file);
+		final IndexedExecutionDataWriter writer = new IndexedExecutionDataWriter(
+				out);
+		writer.visitClassExecution(
+				new ExecutionData(1, "Foo", new boolean[] { false }));
+		writer.finish();
+		out.close();
+
+		createReader().read();
+
+		assertTrue(store.getContents().isEmpty());
+	}
+
+	@Test
+	public void should_write_multiple_compressed_blocks() throws IOException {
+		write(5000);
+
+		assertTrue(countBlocks() > 1);
+		assertTrue(file.length() < 5000 * 100);
+	}
+
+	@Test
+	public void should_read_selected_ids_only() throws IOException {
+		write(5000);
+
+		createReader().readIds(42, 4711, 9999);
+
+		assertEquals(1, infos.getInfos().size());
+		assertEquals(2, store.getContents().size());
+		assertProbes(store.get(42), 42);
+		assertProbes(store.get(4711), 4711);
+	}
+
+	@Test
+	public void should_read_selected_name_prefixes_only() throws IOException {
+		write(5000);
+
+		createReader().readNamePrefixes("org/example/Class12",
+				"org/example/Class4999");
+
+		// Class12 and Class120-129 and Class1200-1299:
+		assertEquals(1 + 10 + 100 + 1, store.getContents().size());
+		assertProbes(store.get(1234), 1234);
+		assertNull(store.get(13));
+	}
+
+	@Test
+	public void should_inflate_selected_blocks_only() throws IOException {
+		write(5000);
+		final long firstBlock = 5;
+		final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.seek(firstBlock + 20);
+		raf.write(new byte[100]);
+		raf.close();
+
+		createReader().readIds(4711);
+		assertProbes(store.get(4711), 4711);
+
+		try {
+			createReader().readIds(0);
+			fail("IOException expected");
+		} catch (final IOException e) {
+			assertEquals("Corrupt compressed block.", e.getMessage());
+		}
+	}
+
+	@Test
+	public void should_reject_implausible_block_length() throws IOException {
+		write(5000);
+		final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		// uncompressed length of the first block
+		raf.seek(6);
+		raf.writeInt(Integer.MAX_VALUE);
+		raf.close();
+
+		try {
+			createReader().readIds(0);
+			fail("IOException expected");
+		} catch (final IOException e) {
+			assertEquals("Corrupt compressed block.", e.getMessage());
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void should_reject_implausible_index_length() throws IOException {
+		write(10);
+		final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.seek(raf.length() - IndexedExecutionDataWriter.TRAILER_SIZE);
+		final long indexPosition = raf.readLong();
+		raf.seek(indexPosition + 1);
+		raf.writeInt(-1);
+		raf.close();
+
+		createReader().read();
+	}
+
+	@Test(expected = IOException.class)
+	public void should_reject_negative_block_index() throws IOException {
+		write(1);
+		final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		final long trailer = raf.length()
+				- IndexedExecutionDataWriter.TRAILER_SIZE;
+		raf.seek(trailer);
+		final long indexPosition = raf.readLong();
+		raf.seek(indexPosition + 1);
+		final int length = raf.readInt();
+		// replace the block index of the only class with -1
+		raf.seek(trailer - 1);
+		raf.write(new byte[] { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+				(byte) 0xFF, 0x0F });
+		raf.writeLong(indexPosition);
+		raf.writeChar(ExecutionDataWriter.MAGIC_NUMBER);
+		raf.seek(indexPosition + 1);
+		raf.writeInt(length + 4);
+		raf.close();
+
+		createReader().read();
+	}
+
+	@Test
+	public void finish_should_report_error_of_block_write() throws IOException {
+		final IOException error = new IOException("disk full");
+		final IndexedExecutionDataWriter writer = new IndexedExecutionDataWriter(
+				new OutputStream() {
+					private int count;
+
+					@Override
+					public void write(int b) throws IOException {
+						if (++count > 5) {
+							throw error;
+						}
+					}
+				});
+		for (int i = 0; i < 5000; i++) {
+			writer.visitClassExecution(new ExecutionData(i,
+					"org/example/Class" + i, createProbes(i)));
+		}
+
+		try {
+			writer.finish();
+			fail("IOException expected");
+		} catch (final IOException e) {
+			assertSame(error, e);
+		}
+	}
+
+	@Test
+	public void should_be_readable_by_ExecutionDataReader() throws IOException {
+		write(5000);
+
+		final InputStream in = new FileInputStream(file);
+		final ExecutionDataReader reader = new ExecutionDataReader(in);
+		reader.setExecutionDataVisitor(store);
+		reader.setSessionInfoVisitor(infos);
+		assertFalse(reader.read());
+		in.close();
+
+		assertEquals(1, infos.getInfos().size());
+		assertEquals(5000, store.getContents().size());
+		assertProbes(store.get(4999), 4999);
+	}
+
+	@Test
+	public void isIndexed_should_detect_format() throws IOException {
+		write(1);
+		assertTrue(IndexedExecutionDataReader.isIndexed(file));
+
+		final File plain = folder.newFile("plain.exec");
+		final OutputStream out = new FileOutputStream(plain);
+		new ExecutionDataWriter(out);
+		out.close();
+		assertFalse(IndexedExecutionDataReader.isIndexed(plain));
+
+		assertFalse(IndexedExecutionDataReader
+				.isIndexed(folder.newFile("empty.exec")));
+	}
+
+	@Test(expected = IOException.class)
+	public void should_throw_IOException_for_plain_file() throws IOException {
+		final OutputStream out = new FileOutputStream(file);
+		new ExecutionDataWriter(out);
+		out.close();
+
+		createReader().read();
+	}
+
+	@Test(expected = IOException.class)
+	public void should_throw_IOException_for_truncated_file()
+			throws IOException {
+		write(10);
+		final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.setLength(raf.length() - 1);
+		raf.close();
+
+		createReader().read();
+	}
+
+	private void write(final int classCount) throws IOException {
+		final OutputStream out = new FileOutputStream(file);
+		final IndexedExecutionDataWriter writer = new IndexedExecutionDataWriter(
+				out);
+		writer.visitSessionInfo(new SessionInfo("session", 1, 2));
+		for (int i = 0; i < classCount; i++) {
+			writer.visitClassExecution(new ExecutionData(i,
+					"org/example/Class" + i, createProbes(i)));
+		}
+		writer.finish();
+		out.close();
+	}
+
+	private static boolean[] createProbes(final int seed) {
+		final Random random = new Random(seed);
+		final boolean[] probes = new boolean[50];
+		for (int i = 0; i < probes.length; i++) {
+			probes[i] = random.nextBoolean();
+		}
+		probes[0] = true;
+		return probes;
+	}
+
+	private static void assertProbes(final ExecutionData data, final int id) {
+		assertEquals(id, data.getId());
+		assertEquals("org/example/Class" + id, data.getName());
+		final boolean[] expected = createProbes(id);
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(Boolean.valueOf(expected[i]),
+					Boolean.valueOf(data.getProbes()[i]));
+		}
+	}
+
+	private IndexedExecutionDataReader createReader() {
+		final IndexedExecutionDataReader reader = new IndexedExecutionDataReader(
+				file);
+		reader.setExecutionDataVisitor(store);
+		reader.setSessionInfoVisitor(infos);
+		return reader;
+	}
+
+	private int countBlocks() throws IOException {
+		final RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			int count = 0;
+			long pos = 5;
+			raf.seek(pos);
+			while (raf.readByte() == ExecutionDataWriter.BLOCK_COMPRESSED) {
+				raf.readInt();
+				pos += 9 + raf.readInt();
+				raf.seek(pos);
+				count++;
+			}
+			return count;
+		} finally {
+			raf.close();
+		}
+	}
+
+}
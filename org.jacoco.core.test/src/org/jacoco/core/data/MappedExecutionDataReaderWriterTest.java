@@ -0,0 +1,247 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link MappedExecutionDataReader} and
+ * {@link MappedExecutionDataWriter}.
+ */
+public class MappedExecutionDataReaderWriterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File file;
+
+	private MappedExecutionDataWriter writer;
+
+	private SessionInfoStore sessions;
+
+	private ExecutionDataStore store;
+
+	@Before
+	public void setup() throws IOException {
+		file = new File(folder.getRoot(), "jacoco.mmap");
+		writer = new MappedExecutionDataWriter(file);
+		sessions = new SessionInfoStore();
+		store = new ExecutionDataStore();
+	}
+
+	@After
+	public void teardown() throws IOException {
+		writer.close();
+	}
+
+	@Test
+	public void should_read_empty_file() throws IOException {
+		read();
+
+		assertEquals(0, sessions.getInfos().size());
+		assertEquals(0, store.getContents().size());
+	}
+
+	@Test
+	public void should_read_session_info() throws IOException {
+		writer.visitSessionInfo(new SessionInfo("üid", 123, 456));
+
+		read();
+
+		assertEquals(1, sessions.getInfos().size());
+		final SessionInfo info = sessions.getInfos().get(0);
+		assertEquals("üid", info.getId());
+		assertEquals(123, info.getStartTimeStamp());
+		assertEquals(456, info.getDumpTimeStamp());
+	}
+
+	@Test
+	public void should_truncate_long_session_id() throws IOException {
+		final StringBuilder id = new StringBuilder();
+		for (int i = 0; i < 500; i++) {
+			id.append('x');
+		}
+		writer.visitSessionInfo(new SessionInfo(id.toString(), 1, 2));
+
+		read();
+
+		assertEquals(
+				MappedExecutionDataWriter.HEADER_SIZE
+						- MappedExecutionDataWriter.SESSIONID_OFFSET - 2,
+				sessions.getInfos().get(0).getId().length());
+	}
+
+	@Test
+	public void should_read_execution_data() throws IOException {
+		writer.visitClassExecution(new ExecutionData(0x1234, "Sample1",
+				new boolean[] { true, false, true }));
+		writer.visitClassExecution(
+				new ExecutionData(0x5678, "Sample2", new boolean[] { false }));
+
+		read();
+
+		assertEquals(2, store.getContents().size());
+		assertEquals("Sample1", store.get(0x1234).getName());
+		assertArrayEquals(new boolean[] { true, false, true },
+				store.get(0x1234).getProbes());
+		assertEquals("Sample2", store.get(0x5678).getName());
+		assertArrayEquals(new boolean[] { false },
+				store.get(0x5678).getProbes());
+	}
+
+	@Test
+	public void should_overwrite_probes_in_place() throws IOException {
+		writer.visitClassExecution(new ExecutionData(0x1234, "Sample",
+				new boolean[] { false, false }));
+		final long length = file.length();
+
+		writer.visitClassExecution(new ExecutionData(0x1234, "Sample",
+				new boolean[] { false, true }));
+		read();
+		assertArrayEquals(new boolean[] { false, true },
+				store.get(0x1234).getProbes());
+
+		// a reset is reflected as well:
+		writer.visitClassExecution(new ExecutionData(0x1234, "Sample",
+				new boolean[] { false, false }));
+		store = new ExecutionDataStore();
+		read();
+		assertArrayEquals(new boolean[] { false, false },
+				store.get(0x1234).getProbes());
+
+		assertEquals(1, store.getContents().size());
+		assertEquals(length, file.length());
+	}
+
+	@Test
+	public void should_grow_file() throws IOException {
+		final boolean[] probes = new boolean[1000];
+		probes[999] = true;
+		for (int i = 0; i < 200; i++) {
+			writer.visitClassExecution(
+					new ExecutionData(i, "Sample" + i, probes.clone()));
+		}
+
+		read();
+
+		assertEquals(200, store.getContents().size());
+		for (int i = 0; i < 200; i++) {
+			assertEquals("Sample" + i, store.get(i).getName());
+			assertArrayEquals(probes, store.get(i).getProbes());
+		}
+	}
+
+	@Test
+	public void should_overwrite_probes_of_many_classes() throws IOException {
+		for (int i = 0; i < 200; i++) {
+			writer.visitClassExecution(new ExecutionData(i * 0x100000000L,
+					"Sample" + i, new boolean[] { false, false }));
+		}
+		final long length = file.length();
+		for (int i = 0; i < 200; i++) {
+			writer.visitClassExecution(new ExecutionData(i * 0x100000000L,
+					"Sample" + i, new boolean[] { false, i % 2 == 0 }));
+		}
+
+		read();
+
+		assertEquals(200, store.getContents().size());
+		for (int i = 0; i < 200; i++) {
+			assertArrayEquals(new boolean[] { false, i % 2 == 0 },
+					store.get(i * 0x100000000L).getProbes());
+		}
+		assertEquals(length, file.length());
+	}
+
+	@Test
+	public void should_ignore_incomplete_records() throws IOException {
+		writer.visitClassExecution(
+				new ExecutionData(0x1234, "Sample", new boolean[] { true }));
+		writer.flush();
+		// The end marker still points to the header only:
+		final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.seek(MappedExecutionDataWriter.END_OFFSET);
+			raf.writeInt(MappedExecutionDataWriter.HEADER_SIZE);
+		} finally {
+			raf.close();
+		}
+
+		read();
+
+		assertNull(store.get(0x1234));
+	}
+
+	@Test
+	public void should_throw_exception_for_invalid_file() throws IOException {
+		final File invalid = folder.newFile("invalid.mmap");
+		final FileOutputStream out = new FileOutputStream(invalid);
+		out.write(new byte[MappedExecutionDataWriter.HEADER_SIZE]);
+		out.close();
+		try {
+			new MappedExecutionDataReader(invalid).read();
+			fail("IOException expected");
+		} catch (final IOException e) {
+			assertEquals("Invalid mapped execution data file.", e.getMessage());
+		}
+	}
+
+	@Test
+	public void should_throw_exception_for_short_file() throws IOException {
+		try {
+			new MappedExecutionDataReader(folder.newFile("empty.mmap")).read();
+			fail("IOException expected");
+		} catch (final IOException e) {
+			assertEquals("Invalid mapped execution data file.", e.getMessage());
+		}
+	}
+
+	@Test
+	public void should_throw_exception_for_incompatible_version()
+			throws IOException {
+		final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.seek(2);
+			raf.writeChar(0x0042);
+		} finally {
+			raf.close();
+		}
+		try {
+			read();
+			fail("IOException expected");
+		} catch (final IOException e) {
+			assertEquals("Incompatible mapped execution data version 0x42.",
+					e.getMessage());
+		}
+	}
+
+	private void read() throws IOException {
+		final MappedExecutionDataReader reader = new MappedExecutionDataReader(
+				file);
+		reader.setSessionInfoVisitor(sessions);
+		reader.setExecutionDataVisitor(store);
+		reader.read();
+	}
+
+}
@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link PackedExecutionDataStore}.
+ */
+public class PackedExecutionDataStoreTest {
+
+	private PackedExecutionDataStore store;
+
+	@Before
+	public void setup() {
+		store = new PackedExecutionDataStore();
+	}
+
+	@Test
+	public void testEmpty() {
+		assertNull(store.get(123));
+		assertEquals(0, store.size());
+		assertEquals(0, store.getContents().size());
+	}
+
+	@Test
+	public void testPut() {
+		final boolean[] probes = new boolean[] { false, false, true };
+		store.put(new ExecutionData(1000, "Sample", probes));
+		final PackedExecutionData data = store.get(1000);
+		assertEquals("Sample", data.getName());
+		assertEquals(1, data.getHitCount());
+
+		// A copy is stored:
+		probes[0] = true;
+		assertEquals(1, data.getHitCount());
+	}
+
+	@Test
+	public void testPutPacked() {
+		final PackedExecutionData data = new PackedExecutionData(1000, "Sample",
+				new ProbeBitSet(3));
+		store.put(data);
+		assertSame(data, store.get(1000));
+	}
+
+	@Test
+	public void testMerge() {
+		store.put(new ExecutionData(1000, "Sample",
+				new boolean[] { false, true, false, false }));
+		store.put(new ExecutionData(1000, "Sample",
+				new boolean[] { true, false, false, false }));
+		store.put(new PackedExecutionData(1000, "Sample", ProbeBitSet
+				.valueOf(new boolean[] { false, false, false, true })));
+		assertEquals(1, store.size());
+		assertArrayEquals(new boolean[] { true, true, false, true },
+				store.get(1000).toExecutionData().getProbes());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testMergeIncompatible() {
+		store.put(new ExecutionData(1000, "Sample", new boolean[] { true }));
+		store.put(new ExecutionData(1000, "Sample", new boolean[2]));
+	}
+
+	@Test
+	public void testGetContentsInsertionOrder() {
+		for (int i = 0; i < 100; i++) {
+			store.put(new ExecutionData(1000 - i, "C" + i, 1));
+		}
+		store.put(new ExecutionData(1000, "C0", 1));
+		final List<PackedExecutionData> contents = store.getContents();
+		assertEquals(100, contents.size());
+		for (int i = 0; i < 100; i++) {
+			assertEquals("C" + i, contents.get(i).getName());
+			assertSame(contents.get(i), store.get(1000 - i));
+		}
+	}
+
+	@Test
+	public void testAccept() {
+		store.put(new ExecutionData(2, "B", new boolean[] { true, false }));
+		store.put(new ExecutionData(1, "A", new boolean[] { false, true }));
+		final List<ExecutionData> visited = new ArrayList<ExecutionData>();
+		store.accept(new IExecutionDataVisitor() {
+			public void visitClassExecution(final ExecutionData data) {
+				visited.add(data);
+			}
+		});
+		assertEquals(2, visited.size());
+		assertEquals("B", visited.get(0).getName());
+		assertArrayEquals(new boolean[] { true, false },
+				visited.get(0).getProbes());
+		assertEquals("A", visited.get(1).getName());
+		assertArrayEquals(new boolean[] { false, true },
+				visited.get(1).getProbes());
+	}
+
+	@Test
+	public void testVisitClassExecution() {
+		store.visitClassExecution(
+				new ExecutionData(1000, "Sample", new boolean[] { true }));
+		assertEquals(1, store.get(1000).getHitCount());
+	}
+
+}
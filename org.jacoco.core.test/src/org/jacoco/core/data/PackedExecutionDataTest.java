@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link PackedExecutionData}.
+ */
+public class PackedExecutionDataTest {
+
+	@Test
+	public void testCreate() {
+		final ProbeBitSet probes = ProbeBitSet
+				.valueOf(new boolean[] { false, true, true });
+		final PackedExecutionData e = new PackedExecutionData(5, "Example",
+				probes);
+		assertEquals(5, e.getId());
+		assertEquals("Example", e.getName());
+		assertSame(probes, e.getProbes());
+		assertEquals(2, e.getHitCount());
+		assertTrue(e.hasHits());
+	}
+
+	@Test
+	public void testCreateFromExecutionData() {
+		final boolean[] probes = new boolean[] { false, true };
+		final PackedExecutionData e = new PackedExecutionData(
+				new ExecutionData(5, "Example", probes));
+		assertEquals(5, e.getId());
+		assertEquals("Example", e.getName());
+		assertEquals(2, e.getProbes().size());
+
+		// The original array is copied:
+		probes[0] = true;
+		assertEquals(1, e.getHitCount());
+	}
+
+	@Test
+	public void testHasHits() {
+		final PackedExecutionData e = new PackedExecutionData(5, "Example",
+				new ProbeBitSet(3));
+		assertFalse(e.hasHits());
+	}
+
+	@Test
+	public void testMerge() {
+		final PackedExecutionData a = new PackedExecutionData(new ExecutionData(
+				5, "Example", new boolean[] { false, true, false, true }));
+		final PackedExecutionData b = new PackedExecutionData(new ExecutionData(
+				5, "Example", new boolean[] { false, false, true, true }));
+		a.merge(b);
+		assertArrayEquals(new boolean[] { false, true, true, true },
+				a.toExecutionData().getProbes());
+
+		// b must not be modified:
+		assertArrayEquals(new boolean[] { false, false, true, true },
+				b.toExecutionData().getProbes());
+	}
+
+	@Test
+	public void testMergeExecutionData() {
+		final PackedExecutionData a = new PackedExecutionData(new ExecutionData(
+				5, "Example", new boolean[] { false, true, false, true }));
+		a.merge(new ExecutionData(5, "Example",
+				new boolean[] { false, false, true, false }));
+		assertArrayEquals(new boolean[] { false, true, true, true },
+				a.toExecutionData().getProbes());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testMergeIncompatible() {
+		final PackedExecutionData a = new PackedExecutionData(5, "Example",
+				new ProbeBitSet(3));
+		a.merge(new PackedExecutionData(5, "Example", new ProbeBitSet(4)));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testMergeExecutionDataIncompatible() {
+		final PackedExecutionData a = new PackedExecutionData(5, "Example",
+				new ProbeBitSet(3));
+		a.merge(new ExecutionData(5, "Other", 3));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testAssertCompatibilityNoMatchingId() {
+		new PackedExecutionData(5, "Example", new ProbeBitSet(1))
+				.assertCompatibility(55, "Example", 1);
+	}
+
+	@Test
+	public void testToExecutionData() {
+		final PackedExecutionData e = new PackedExecutionData(5, "Example",
+				ProbeBitSet.valueOf(new boolean[] { true, false }));
+		final ExecutionData data = e.toExecutionData();
+		assertEquals(5, data.getId());
+		assertEquals("Example", data.getName());
+		assertArrayEquals(new boolean[] { true, false }, data.getProbes());
+		assertNotSame(data.getProbes(), e.toExecutionData().getProbes());
+	}
+
+	@Test
+	public void testToString() {
+		final PackedExecutionData e = new PackedExecutionData(Long.MAX_VALUE,
+				"Example", new ProbeBitSet(0));
+		assertEquals("PackedExecutionData[name=Example, id=7fffffffffffffff]",
+				e.toString());
+	}
+
+}
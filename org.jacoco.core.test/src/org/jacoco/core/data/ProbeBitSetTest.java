@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ProbeBitSet}.
+ */
+public class ProbeBitSetTest {
+
+	@Test
+	public void should_create_empty_set() {
+		final ProbeBitSet set = new ProbeBitSet(130);
+		assertEquals(130, set.size());
+		assertEquals(0, set.cardinality());
+		assertFalse(set.any());
+		assertEquals(-1, set.nextSetBit(0));
+		assertArrayEquals(new boolean[130], set.toBooleanArray());
+	}
+
+	@Test
+	public void should_set_and_clear_probes() {
+		final ProbeBitSet set = new ProbeBitSet(130);
+		set.set(0);
+		set.set(63);
+		set.set(64);
+		set.set(129);
+		assertTrue(set.get(0));
+		assertFalse(set.get(1));
+		assertTrue(set.get(63));
+		assertTrue(set.get(64));
+		assertTrue(set.get(129));
+		assertEquals(4, set.cardinality());
+		assertTrue(set.any());
+
+		set.clear(63);
+		assertFalse(set.get(63));
+		assertEquals(3, set.cardinality());
+
+		set.clear();
+		assertFalse(set.any());
+	}
+
+	@Test
+	public void should_iterate_set_probes() {
+		final ProbeBitSet set = new ProbeBitSet(200);
+		set.set(3);
+		set.set(64);
+		set.set(199);
+		assertEquals(3, set.nextSetBit(0));
+		assertEquals(3, set.nextSetBit(3));
+		assertEquals(64, set.nextSetBit(4));
+		assertEquals(199, set.nextSetBit(65));
+		assertEquals(-1, set.nextSetBit(200));
+	}
+
+	@Test
+	public void should_handle_size_multiple_of_word_size() {
+		final ProbeBitSet set = new ProbeBitSet(128);
+		set.set(127);
+		assertEquals(127, set.nextSetBit(0));
+		assertEquals(-1, set.nextSetBit(128));
+		assertEquals(0, new ProbeBitSet(0).toBooleanArray().length);
+	}
+
+	@Test
+	public void should_convert_from_and_to_boolean_array() {
+		final Random random = new Random(5);
+		for (int size = 0; size < 300; size += 7) {
+			final boolean[] probes = new boolean[size];
+			for (int i = 0; i < size; i++) {
+				probes[i] = random.nextBoolean();
+			}
+			final ProbeBitSet set = ProbeBitSet.valueOf(probes);
+			assertEquals(size, set.size());
+			assertArrayEquals(probes, set.toBooleanArray());
+		}
+	}
+
+	@Test
+	public void should_or_word_wise() {
+		final ProbeBitSet a = ProbeBitSet
+				.valueOf(new boolean[] { false, true, false, true });
+		final ProbeBitSet b = ProbeBitSet
+				.valueOf(new boolean[] { false, false, true, true });
+		a.or(b);
+		assertArrayEquals(new boolean[] { false, true, true, true },
+				a.toBooleanArray());
+		assertArrayEquals(new boolean[] { false, false, true, true },
+				b.toBooleanArray());
+	}
+
+	@Test
+	public void should_and_not_word_wise() {
+		final ProbeBitSet a = ProbeBitSet
+				.valueOf(new boolean[] { false, true, false, true });
+		final ProbeBitSet b = ProbeBitSet
+				.valueOf(new boolean[] { false, false, true, true });
+		a.andNot(b);
+		assertArrayEquals(new boolean[] { false, true, false, false },
+				a.toBooleanArray());
+	}
+
+	@Test
+	public void should_reject_different_sizes() {
+		try {
+			new ProbeBitSet(3).or(new ProbeBitSet(4));
+			fail("IllegalArgumentException expected");
+		} catch (final IllegalArgumentException e) {
+			assertEquals("Different probe counts 3 and 4.", e.getMessage());
+		}
+	}
+
+	@Test
+	public void should_reject_invalid_index() {
+		try {
+			new ProbeBitSet(3).set(3);
+			fail("IndexOutOfBoundsException expected");
+		} catch (final IndexOutOfBoundsException e) {
+			assertEquals("Invalid probe index 3.", e.getMessage());
+		}
+	}
+
+}
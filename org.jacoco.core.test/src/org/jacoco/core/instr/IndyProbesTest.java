@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.instr;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.Arrays;
+
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.SessionInfoStore;
+import org.jacoco.core.internal.instr.InstrSupport;
+import org.jacoco.core.runtime.IRuntime;
+import org.jacoco.core.runtime.RuntimeData;
+import org.jacoco.core.runtime.SystemPropertiesRuntime;
+import org.jacoco.core.test.TargetLoader;
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Compares the execution data of classes instrumented with regular and with
+ * self-disabling <code>invokedynamic</code> probes.
+ */
+public class IndyProbesTest {
+
+	public static class Target {
+
+		public static void main(String[] args) {
+			for (int i = 0; i < 1000; i++) {
+				branch(i % 2 == 0);
+			}
+			tryCatch(false);
+		}
+
+		static int branch(boolean b) {
+			if (b) {
+				return 1;
+			} else {
+				return 2;
+			}
+		}
+
+		static int tryCatch(boolean fail) {
+			try {
+				if (fail) {
+					throw new IllegalStateException();
+				}
+				return 1;
+			} catch (IllegalStateException e) {
+				return 2;
+			}
+		}
+
+		static void notExecuted() {
+			branch(true);
+		}
+
+	}
+
+	@Test
+	public void should_insert_probes_as_invokedynamic_instructions()
+			throws Exception {
+		final Instrumenter instrumenter = new Instrumenter(
+				new SystemPropertiesRuntime());
+		final int[] regular = countProbes(
+				instrumenter.instrument(getSource(), "Target"));
+		instrumenter.setIndyProbes(true);
+		final int[] indy = countProbes(
+				instrumenter.instrument(getSource(), "Target"));
+
+		assertEquals(0, regular[1]);
+		// only $jacocoHit stores into the probe array
+		assertEquals(1, indy[0]);
+		assertEquals(regular[0], indy[1]);
+	}
+
+	@Test
+	public void should_not_use_invokedynamic_probes_before_java_11()
+			throws Exception {
+		final Instrumenter instrumenter = new Instrumenter(
+				new SystemPropertiesRuntime());
+		instrumenter.setIndyProbes(true);
+		final int[] count = countProbes(instrumenter.instrument(
+				TargetLoader.getClassDataAsBytes(Target.class), "Target"));
+
+		assertTrue(count[0] > 0);
+		assertEquals(0, count[1]);
+	}
+
+	@Test
+	public void should_record_same_probes_as_regular_probes() throws Exception {
+		assumeJava11();
+
+		final boolean[] expected = run(false, false);
+		final boolean[] actual = run(true, false);
+
+		assertArrayEquals(expected, actual);
+		assertFalse(Arrays.equals(new boolean[actual.length], actual));
+	}
+
+	@Test
+	public void should_not_record_probes_again_after_reset() throws Exception {
+		assumeJava11();
+
+		assertArrayEquals(run(false, false), run(false, true));
+		final boolean[] actual = run(true, true);
+		assertArrayEquals(new boolean[actual.length], actual);
+	}
+
+	private static void assumeJava11() {
+		final String version = System.getProperty("java.specification.version");
+		assumeTrue(
+				!version.startsWith("1.") && Integer.parseInt(version) >= 11);
+	}
+
+	/**
+	 * @return target class converted to a Java 11 class file
+	 */
+	private static byte[] getSource() throws Exception {
+		final ClassReader reader = new ClassReader(
+				TargetLoader.getClassDataAsBytes(Target.class));
+		final ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+		reader.accept(new ClassVisitor(InstrSupport.ASM_API_VERSION, writer) {
+			@Override
+			public void visit(int version, int access, String name,
+					String signature, String superName, String[] interfaces) {
+				super.visit(Opcodes.V11, access, name, signature, superName,
+						interfaces);
+			}
+		}, 0);
+		return writer.toByteArray();
+	}
+
+	private static boolean[] run(final boolean indyProbes, final boolean reset)
+			throws Exception {
+		final RuntimeData data = new RuntimeData();
+		final IRuntime runtime = new SystemPropertiesRuntime();
+		runtime.startup(data);
+		try {
+			final Instrumenter instrumenter = new Instrumenter(runtime);
+			instrumenter.setIndyProbes(indyProbes);
+			final Class<?> target = new TargetLoader().add(Target.class,
+					instrumenter.instrument(getSource(), "Target"));
+			target.getMethod("main", String[].class).invoke(null,
+					(Object) new String[0]);
+			if (reset) {
+				data.reset();
+				target.getMethod("main", String[].class).invoke(null,
+						(Object) new String[0]);
+			}
+			final ExecutionDataStore store = new ExecutionDataStore();
+			data.collect(store, new SessionInfoStore(), false);
+			return store.getContents().iterator().next().getProbes();
+		} finally {
+			runtime.shutdown();
+		}
+	}
+
+	/**
+	 * @return number of array stores and number of probe call sites
+	 */
+	private static int[] countProbes(final byte[] bytes) {
+		final int[] count = new int[2];
+		new ClassReader(bytes)
+				.accept(new ClassVisitor(InstrSupport.ASM_API_VERSION) {
+					@Override
+					public MethodVisitor visitMethod(int access, String name,
+							String desc, String signature,
+							String[] exceptions) {
+						return new MethodVisitor(InstrSupport.ASM_API_VERSION) {
+							@Override
+							public void visitInsn(int opcode) {
+								if (opcode == Opcodes.BASTORE) {
+									count[0]++;
+								}
+							}
+
+							@Override
+							public void visitInvokeDynamicInsn(String name,
+									String desc, Handle bsm,
+									Object... bsmArgs) {
+								if (InstrSupport.PROBEMETHOD_NAME
+										.equals(bsm.getName())) {
+									count[1]++;
+								}
+							}
+						};
+					}
+				}, 0);
+		return count;
+	}
+
+}
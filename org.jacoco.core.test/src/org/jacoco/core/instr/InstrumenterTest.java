@@ -15,17 +15,25 @@ package org.jacoco.core.instr;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.zip.CRC32;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
@@ -34,6 +42,7 @@ import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
 import org.jacoco.core.analysis.AnalyzerTest;
+import org.jacoco.core.internal.InputStreams;
 import org.jacoco.core.internal.Pack200Streams;
 import org.jacoco.core.internal.data.CRC64;
 import org.jacoco.core.internal.instr.InstrSupport;
@@ -41,8 +50,13 @@ import org.jacoco.core.runtime.IExecutionDataAccessorGenerator;
 import org.jacoco.core.test.TargetLoader;
 import org.junit.AssumptionViolatedException;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 
@@ -87,6 +101,9 @@ public class InstrumenterTest {
 
 	}
 
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	private AccessorGenerator accessorGenerator;
 	private Instrumenter instrumenter;
 
@@ -144,6 +161,73 @@ public class InstrumenterTest {
 		assertEquals("org.jacoco.core.instr.InstrumenterTest", clazz.getName());
 	}
 
+	@Test
+	public void instrumentWithoutProbes_should_keep_members_but_remove_probes()
+			throws Exception {
+		final byte[] source = TargetLoader
+				.getClassDataAsBytes(InstrumenterTest.class);
+
+		final byte[] instrumented = instrumenter.instrument(source, "Test");
+		final byte[] withoutProbes = instrumenter
+				.instrumentWithoutProbes(source, "Test");
+
+		final List<String> members = new ArrayList<String>();
+		final int[] probes = new int[1];
+		final ClassVisitor recorder = new ClassVisitor(
+				InstrSupport.ASM_API_VERSION) {
+			@Override
+			public FieldVisitor visitField(int access, String name, String desc,
+					String signature, Object value) {
+				members.add(name + desc);
+				return null;
+			}
+
+			@Override
+			public MethodVisitor visitMethod(int access, String name,
+					String desc, String signature, String[] exceptions) {
+				members.add(name + desc);
+				return new MethodVisitor(InstrSupport.ASM_API_VERSION) {
+					@Override
+					public void visitInsn(int opcode) {
+						if (opcode == Opcodes.BASTORE) {
+							probes[0]++;
+						}
+					}
+				};
+			}
+		};
+		new ClassReader(source).accept(recorder, 0);
+		final int originalStores = probes[0];
+
+		members.clear();
+		probes[0] = 0;
+		new ClassReader(instrumented).accept(recorder, 0);
+		final List<String> instrumentedMembers = new ArrayList<String>(members);
+		assertTrue(probes[0] > originalStores);
+
+		members.clear();
+		probes[0] = 0;
+		new ClassReader(withoutProbes).accept(recorder, 0);
+		assertEquals(instrumentedMembers, members);
+		assertEquals(originalStores, probes[0]);
+
+		final Class<?> clazz = new TargetLoader().add(InstrumenterTest.class,
+				withoutProbes);
+		assertEquals("org.jacoco.core.instr.InstrumenterTest", clazz.getName());
+	}
+
+	@Test
+	public void instrumentWithoutProbes_should_throw_exception_for_broken_class() {
+		final byte[] bytes = createClass(Opcodes.V15 + 2);
+		try {
+			instrumenter.instrumentWithoutProbes(bytes, "UnsupportedVersion");
+			fail("exception expected");
+		} catch (final IOException e) {
+			assertEquals("Error while instrumenting UnsupportedVersion.",
+					e.getMessage());
+		}
+	}
+
 	/**
 	 * Triggers exception in {@link Instrumenter#instrument(byte[], String)}.
 	 */
@@ -219,6 +303,33 @@ public class InstrumenterTest {
 		assertEquals("Hello42", obj2.toString());
 	}
 
+	@Test
+	public void instrument_should_create_smaller_methods_in_compact_mode()
+			throws Exception {
+		final byte[] original = TargetLoader
+				.getClassDataAsBytes(SerializationTarget.class);
+		final Map<String, Integer> sizes = MethodSizes
+				.read(instrumenter.instrument(original, "Test"));
+		instrumenter.setCompact(true);
+		final byte[] bytes = instrumenter.instrument(original, "Test");
+		final Map<String, Integer> compactSizes = MethodSizes.read(bytes);
+
+		assertEquals(sizes.keySet(), compactSizes.keySet());
+		for (final Map.Entry<String, Integer> e : sizes.entrySet()) {
+			assertTrue(e.getKey(), compactSizes.get(e.getKey()).intValue() <= e
+					.getValue().intValue());
+		}
+		assertTrue(compactSizes.get("toString()Ljava/lang/String;")
+				.intValue() < sizes.get("toString()Ljava/lang/String;")
+						.intValue());
+
+		final Object obj = new TargetLoader()
+				.add(SerializationTarget.class, bytes)
+				.getConstructor(String.class, Integer.TYPE)
+				.newInstance("Hello", Integer.valueOf(42));
+		assertEquals("Hello42", obj.toString());
+	}
+
 	/**
 	 * @see #instrument_should_throw_exception_for_unsupported_class_file_version()
 	 */
@@ -286,6 +397,94 @@ public class InstrumenterTest {
 		assertNull(zipin.getNextEntry());
 	}
 
+	@Test
+	public void testInstrumentAll_ZipFile() throws IOException {
+		final File file = createZipFile();
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		final int count = instrumenter.instrumentAll(file, out);
+
+		assertEquals(2, count);
+		assertZipFileEntries(out.toByteArray());
+	}
+
+	@Test
+	public void testInstrumentAll_ZipFile_Executor() throws IOException {
+		final File file = createZipFile();
+		final ExecutorService executor = Executors.newFixedThreadPool(2);
+		instrumenter.setExecutor(executor);
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		final int count;
+		try {
+			count = instrumenter.instrumentAll(file, out);
+		} finally {
+			executor.shutdown();
+		}
+
+		assertEquals(2, count);
+		assertZipFileEntries(out.toByteArray());
+	}
+
+	@Test
+	public void testInstrumentAll_ClassFile() throws IOException {
+		final File file = folder.newFile("Test.class");
+		final OutputStream out = new FileOutputStream(file);
+		out.write(TargetLoader.getClassDataAsBytes(getClass()));
+		out.close();
+
+		final int count = instrumenter.instrumentAll(file,
+				new ByteArrayOutputStream());
+
+		assertEquals(1, count);
+	}
+
+	private File createZipFile() throws IOException {
+		final File file = folder.newFile("test.jar");
+		final ZipOutputStream zipout = new ZipOutputStream(
+				new FileOutputStream(file));
+		zipout.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+		zipout.write("Manifest-Version: 1.0\r\n".getBytes("UTF-8"));
+		zipout.putNextEntry(new ZipEntry("META-INF/TEST.SF"));
+		zipout.putNextEntry(new ZipEntry("TestCompressed.class"));
+		zipout.write(TargetLoader.getClassDataAsBytes(getClass()));
+		zipout.putNextEntry(new ZipEntry("resource.txt"));
+		zipout.write("resource".getBytes("UTF-8"));
+		final byte[] bytes = TargetLoader.getClassDataAsBytes(getClass());
+		final ZipEntry entry = new ZipEntry("TestUncompressed.class");
+		entry.setMethod(ZipEntry.STORED);
+		entry.setSize(bytes.length);
+		final CRC32 crc = new CRC32();
+		crc.update(bytes);
+		entry.setCrc(crc.getValue());
+		zipout.putNextEntry(entry);
+		zipout.write(bytes);
+		zipout.putNextEntry(new ZipEntry("NoClass.class"));
+		zipout.write("no class".getBytes("UTF-8"));
+		zipout.close();
+		return file;
+	}
+
+	private void assertZipFileEntries(final byte[] archive) throws IOException {
+		final ZipInputStream zipin = new ZipInputStream(
+				new ByteArrayInputStream(archive));
+		assertEquals("META-INF/MANIFEST.MF", zipin.getNextEntry().getName());
+		ZipEntry entry = zipin.getNextEntry();
+		assertEquals("TestCompressed.class", entry.getName());
+		assertEquals(ZipEntry.DEFLATED, entry.getMethod());
+		assertEquals("resource.txt", zipin.getNextEntry().getName());
+		assertEquals("resource",
+				new String(InputStreams.readFully(zipin), "UTF-8"));
+		entry = zipin.getNextEntry();
+		assertEquals("TestUncompressed.class", entry.getName());
+		assertEquals(ZipEntry.STORED, entry.getMethod());
+		entry = zipin.getNextEntry();
+		assertEquals("NoClass.class", entry.getName());
+		assertEquals("no class",
+				new String(InputStreams.readFully(zipin), "UTF-8"));
+		assertNull(zipin.getNextEntry());
+	}
+
 	/**
 	 * Triggers exception in
 	 * {@link org.jacoco.core.internal.ContentTypeDetector#ContentTypeDetector(InputStream)}.
@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.instr;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Unit tests for {@link MethodSizes}.
+ */
+public class MethodSizesTest {
+
+	@Test
+	public void read_should_return_code_size_of_methods_with_code() {
+		final ClassWriter cw = new ClassWriter(0);
+		cw.visit(Opcodes.V1_8, Opcodes.ACC_ABSTRACT, "Foo", null,
+				"java/lang/Object", new String[] { "java/lang/Runnable" });
+		cw.visitSource("Foo.java", null);
+		final FieldVisitor fv = cw.visitField(Opcodes.ACC_STATIC, "x", "I",
+				null, Integer.valueOf(1));
+		fv.visitAnnotation("LBar;", true).visitEnd();
+		fv.visitEnd();
+
+		MethodVisitor mv = cw.visitMethod(0, "a", "()V", null, null);
+		mv.visitCode();
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(0, 1);
+		mv.visitEnd();
+
+		mv = cw.visitMethod(Opcodes.ACC_ABSTRACT, "b", "()V", null, null);
+		mv.visitEnd();
+
+		mv = cw.visitMethod(0, "c", "(I)I", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(Opcodes.ILOAD, 1);
+		mv.visitIntInsn(Opcodes.SIPUSH, 1000);
+		mv.visitInsn(Opcodes.IADD);
+		mv.visitInsn(Opcodes.IRETURN);
+		mv.visitMaxs(2, 2);
+		mv.visitEnd();
+
+		cw.visitEnd();
+
+		final Map<String, Integer> sizes = MethodSizes.read(cw.toByteArray());
+
+		assertEquals(Arrays.asList("a()V", "c(I)I"),
+				Arrays.asList(sizes.keySet().toArray()));
+		assertEquals(Integer.valueOf(1), sizes.get("a()V"));
+		assertEquals(Integer.valueOf(6), sizes.get("c(I)I"));
+	}
+
+}
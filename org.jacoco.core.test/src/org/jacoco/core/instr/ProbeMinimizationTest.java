@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.instr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.jacoco.core.analysis.Analyzer;
+import org.jacoco.core.analysis.CoverageBuilder;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.ICounter;
+import org.jacoco.core.analysis.IMethodCoverage;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.internal.instr.InstrSupport;
+import org.jacoco.core.runtime.SystemPropertiesRuntime;
+import org.jacoco.core.test.InstrumentingLoader;
+import org.jacoco.core.test.TargetLoader;
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Compares the coverage of classes instrumented with and without probe
+ * minimization, each analyzed with the same setting.
+ */
+public class ProbeMinimizationTest {
+
+	public static class Target {
+
+		public static void main(String[] args) {
+			loop(3);
+			nestedLoops(3);
+			branch(true);
+			switchStatement(1);
+			switchStatement(5);
+			tryCatch(false);
+			forEach(new int[] { 1, 2 });
+			forEach(new int[0]);
+			try {
+				throwInCondition(new int[0]);
+			} catch (ArrayIndexOutOfBoundsException e) {
+				// expected
+			}
+		}
+
+		static int loop(int i) {
+			int sum = 0;
+			while (i > 0) {
+				sum += i--;
+			}
+			return sum;
+		}
+
+		static int nestedLoops(int n) {
+			int sum = 0;
+			for (int i = 0; i < n; i++) {
+				for (int j = 0; j < i; j++) {
+					sum += j;
+				}
+			}
+			return sum;
+		}
+
+		static int branch(boolean b) {
+			if (b) {
+				return 1;
+			} else {
+				return 2;
+			}
+		}
+
+		static int switchStatement(int i) {
+			switch (i) {
+			case 1:
+				return 10;
+			case 2:
+				return 20;
+			default:
+				return 0;
+			}
+		}
+
+		static int tryCatch(boolean fail) {
+			try {
+				if (fail) {
+					throw new IllegalStateException();
+				}
+				return 1;
+			} catch (IllegalStateException e) {
+				return 2;
+			}
+		}
+
+		static int forEach(int[] values) {
+			int sum = 0;
+			for (int v : values) {
+				sum += v;
+			}
+			return sum;
+		}
+
+		static int throwInCondition(int[] values) {
+			int i = 0;
+			while (values[i] > 0) {
+				i++;
+			}
+			return i;
+		}
+
+		static void notExecuted() {
+			for (int i = 0; i < 3; i++) {
+				branch(i > 1);
+			}
+		}
+
+	}
+
+	@Test
+	public void should_report_same_coverage_with_probe_minimization()
+			throws Exception {
+		final IClassCoverage expected = run(false);
+		final IClassCoverage actual = run(true);
+
+		assertEquals(expected.getInstructionCounter(),
+				actual.getInstructionCounter());
+		assertEquals(expected.getBranchCounter(), actual.getBranchCounter());
+		for (int line = expected.getFirstLine(); line <= expected
+				.getLastLine(); line++) {
+			assertEquals("line " + line,
+					expected.getLine(line).getInstructionCounter(),
+					actual.getLine(line).getInstructionCounter());
+			assertEquals("line " + line,
+					expected.getLine(line).getBranchCounter(),
+					actual.getLine(line).getBranchCounter());
+		}
+		for (final IMethodCoverage m : actual.getMethods()) {
+			if (m.getName().equals("notExecuted")) {
+				assertEquals(ICounter.NOT_COVERED,
+						m.getInstructionCounter().getStatus());
+			}
+		}
+	}
+
+	@Test
+	public void should_insert_less_probes_with_probe_minimization()
+			throws Exception {
+		final byte[] source = TargetLoader.getClassDataAsBytes(Target.class);
+		final Instrumenter instrumenter = new Instrumenter(
+				new SystemPropertiesRuntime());
+		final int regular = countProbes(
+				instrumenter.instrument(source, "Target"));
+		instrumenter.setMinimizeProbes(true);
+		final int minimized = countProbes(
+				instrumenter.instrument(source, "Target"));
+
+		assertTrue(minimized + " < " + regular, minimized < regular);
+	}
+
+	private IClassCoverage run(final boolean minimizeProbes) throws Exception {
+		final InstrumentingLoader loader = new InstrumentingLoader(
+				new SystemPropertiesRuntime(), Target.class.getName(),
+				Target.class.getClassLoader());
+		loader.setMinimizeProbes(minimizeProbes);
+		loader.loadClass(Target.class.getName())
+				.getMethod("main", String[].class)
+				.invoke(null, (Object) new String[0]);
+		final ExecutionDataStore store = loader.collect();
+
+		final CoverageBuilder builder = new CoverageBuilder();
+		final Analyzer analyzer = new Analyzer(store, builder);
+		analyzer.setMinimizeProbes(minimizeProbes);
+		analyzer.analyzeClass(TargetLoader.getClassDataAsBytes(Target.class),
+				"Target");
+		return builder.getClasses().iterator().next();
+	}
+
+	private static int countProbes(final byte[] bytes) throws IOException {
+		final int[] count = new int[1];
+		new ClassReader(bytes)
+				.accept(new ClassVisitor(InstrSupport.ASM_API_VERSION) {
+					@Override
+					public MethodVisitor visitMethod(int access, String name,
+							String desc, String signature,
+							String[] exceptions) {
+						return new MethodVisitor(InstrSupport.ASM_API_VERSION) {
+							@Override
+							public void visitInsn(int opcode) {
+								if (opcode == Opcodes.BASTORE) {
+									count[0]++;
+								}
+							}
+						};
+					}
+				}, 0);
+		return count[0];
+	}
+
+}
@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.analysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link AnalysisCache}.
+ */
+public class AnalysisCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final byte[] SOURCE = new byte[] { 1, 2, 3 };
+
+	private AnalysisCache cache;
+
+	@Before
+	public void setup() {
+		cache = new AnalysisCache(new File(folder.getRoot(), "cache"));
+	}
+
+	@Test
+	public void get_should_return_null_for_missing_entry() {
+		assertNull(cache.get(0x1234567890abcdefL, "Foo", SOURCE));
+	}
+
+	@Test
+	public void get_should_return_stored_entry() throws IOException {
+		final ClassStructure structure = new ClassStructure("Foo");
+		structure.addMethod(new MethodStructure("foo", "()V", null));
+
+		cache.put(0x1234567890abcdefL, SOURCE, structure);
+		final ClassStructure actual = cache.get(0x1234567890abcdefL, "Foo",
+				SOURCE);
+
+		assertEquals("Foo", actual.getName());
+		assertEquals(1, actual.getMethods().size());
+		assertEquals("foo", actual.getMethods().get(0).getName());
+		assertEquals(1, new File(folder.getRoot(), "cache/12").list().length);
+	}
+
+	@Test
+	public void get_should_not_return_entries_of_other_probe_mode()
+			throws IOException {
+		final AnalysisCache minimized = new AnalysisCache(
+				new File(folder.getRoot(), "cache"), true);
+		cache.put(0x1234567890abcdefL, SOURCE, new ClassStructure("Foo"));
+
+		assertNull(minimized.get(0x1234567890abcdefL, "Foo", SOURCE));
+
+		final ClassStructure structure = new ClassStructure("Foo");
+		structure.addMethod(new MethodStructure("foo", "()V", null));
+		minimized.put(0x1234567890abcdefL, SOURCE, structure);
+		assertEquals(0, cache.get(0x1234567890abcdefL, "Foo", SOURCE)
+				.getMethods().size());
+		assertEquals(1, minimized.get(0x1234567890abcdefL, "Foo", SOURCE)
+				.getMethods().size());
+	}
+
+	@Test
+	public void get_should_ignore_broken_entry() throws IOException {
+		final File file = new File(folder.getRoot(), "cache/12/34567890abcdef");
+		file.getParentFile().mkdirs();
+		final OutputStream out = new FileOutputStream(file);
+		out.write(0xC0);
+		out.close();
+
+		assertNull(cache.get(0x1234567890abcdefL, "Foo", SOURCE));
+	}
+
+	@Test
+	public void get_should_ignore_entry_of_other_class_name()
+			throws IOException {
+		cache.put(0x1234567890abcdefL, SOURCE, new ClassStructure("Foo"));
+
+		assertNull(cache.get(0x1234567890abcdefL, "Bar", SOURCE));
+	}
+
+	@Test
+	public void get_should_ignore_entry_of_other_class_file()
+			throws IOException {
+		cache.put(0x1234567890abcdefL, SOURCE, new ClassStructure("Foo"));
+
+		assertNull(
+				cache.get(0x1234567890abcdefL, "Foo", new byte[] { 1, 2, 4 }));
+	}
+
+}
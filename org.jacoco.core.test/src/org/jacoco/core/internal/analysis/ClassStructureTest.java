@@ -0,0 +1,203 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.analysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Random;
+
+import org.jacoco.core.analysis.Analyzer;
+import org.jacoco.core.analysis.ICounter;
+import org.jacoco.core.analysis.ICoverageNode;
+import org.jacoco.core.analysis.IMethodCoverage;
+import org.jacoco.core.internal.data.CompactDataInput;
+import org.jacoco.core.internal.data.CompactDataOutput;
+import org.jacoco.core.internal.diff.ClassInfo;
+import org.jacoco.core.internal.diff.DiffIndex;
+import org.jacoco.core.internal.diff.MethodInfo;
+import org.jacoco.core.internal.flow.ClassProbesAdapter;
+import org.jacoco.core.internal.instr.InstrSupport;
+import org.jacoco.core.test.TargetLoader;
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+
+/**
+ * Unit tests for {@link ClassStructure} and {@link MethodStructure}.
+ */
+public class ClassStructureTest {
+
+	private final StringPool stringPool = new StringPool();
+
+	@Test
+	public void should_calculate_same_coverage_as_analysis()
+			throws IOException {
+		final Random random = new Random(42);
+		final Class<?>[] classes = { Analyzer.class, MethodStructure.class,
+				AnalysisCache.class, ICoverageNode.ElementType.class,
+				ClassStructureTest.class };
+		for (final Class<?> c : classes) {
+			final ClassStructure structure = roundtrip(record(c));
+			for (int run = 0; run < 10; run++) {
+				final boolean[] probes = new boolean[1000];
+				for (int i = 0; i < probes.length; i++) {
+					probes[i] = random.nextInt(run + 1) == 0;
+				}
+				assertCoverage(analyze(c, probes), structure.createCoverage(
+						0x42, false, probes, stringPool, DiffIndex.EMPTY));
+			}
+			assertCoverage(analyze(c, null), structure.createCoverage(0x42,
+					false, null, stringPool, DiffIndex.EMPTY));
+		}
+	}
+
+	@Test
+	public void should_calculate_same_coverage_as_analysis_with_probe_minimization()
+			throws IOException {
+		final Random random = new Random(42);
+		final Class<?>[] classes = { Analyzer.class, MethodStructure.class,
+				ClassStructureTest.class };
+		for (final Class<?> c : classes) {
+			final ClassStructure structure = roundtrip(record(c, true));
+			for (int run = 0; run < 10; run++) {
+				final boolean[] probes = new boolean[1000];
+				for (int i = 0; i < probes.length; i++) {
+					probes[i] = random.nextInt(run + 1) == 0;
+				}
+				assertCoverage(analyze(c, probes, true),
+						structure.createCoverage(0x42, false, probes,
+								stringPool, DiffIndex.EMPTY));
+			}
+		}
+	}
+
+	@Test
+	public void should_copy_class_properties() throws IOException {
+		final ClassStructure structure = roundtrip(record(Analyzer.class));
+
+		final ClassCoverageImpl coverage = structure.createCoverage(0x42, true,
+				null, stringPool, DiffIndex.EMPTY);
+
+		assertEquals("org/jacoco/core/analysis/Analyzer", coverage.getName());
+		assertEquals(0x42, coverage.getId());
+		assertTrue(coverage.isNoMatch());
+		assertEquals("java/lang/Object", coverage.getSuperName());
+		assertEquals("Analyzer.java", coverage.getSourceFileName());
+	}
+
+	@Test
+	public void should_omit_methods_outside_of_diff_scope() throws IOException {
+		final ClassInfo classInfo = new ClassInfo();
+		classInfo.setPackages("org.jacoco.core.analysis");
+		classInfo.setClassName("Analyzer");
+		final MethodInfo methodInfo = new MethodInfo();
+		methodInfo.setMethodName("setExecutor");
+		classInfo.setMethodInfos(Collections.singletonList(methodInfo));
+		final ClassStructure structure = record(Analyzer.class);
+
+		final ClassCoverageImpl coverage = structure.createCoverage(0x42, false,
+				null, stringPool,
+				new DiffIndex(Collections.singletonList(classInfo)));
+
+		assertEquals(1, coverage.getMethods().size());
+		assertEquals("setExecutor",
+				coverage.getMethods().iterator().next().getName());
+	}
+
+	private ClassStructure record(final Class<?> c) throws IOException {
+		return record(c, false);
+	}
+
+	private ClassStructure record(final Class<?> c,
+			final boolean minimizeProbes) throws IOException {
+		final ClassReader reader = InstrSupport
+				.classReaderFor(TargetLoader.getClassDataAsBytes(c));
+		final ClassStructure structure = new ClassStructure(
+				reader.getClassName());
+		final ClassCoverageImpl coverage = new ClassCoverageImpl(
+				reader.getClassName(), 0x42, false);
+		reader.accept(new ClassProbesAdapter(
+				new ClassAnalyzer(coverage, null, stringPool, structure), false,
+				DiffIndex.EMPTY, minimizeProbes), 0);
+		return structure;
+	}
+
+	private ClassCoverageImpl analyze(final Class<?> c, final boolean[] probes)
+			throws IOException {
+		return analyze(c, probes, false);
+	}
+
+	private ClassCoverageImpl analyze(final Class<?> c, final boolean[] probes,
+			final boolean minimizeProbes) throws IOException {
+		final ClassReader reader = InstrSupport
+				.classReaderFor(TargetLoader.getClassDataAsBytes(c));
+		final ClassCoverageImpl coverage = new ClassCoverageImpl(
+				reader.getClassName(), 0x42, false);
+		reader.accept(new ClassProbesAdapter(
+				new ClassAnalyzer(coverage, probes, stringPool), false,
+				DiffIndex.EMPTY, minimizeProbes), 0);
+		return coverage;
+	}
+
+	private static ClassStructure roundtrip(final ClassStructure structure)
+			throws IOException {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		final CompactDataOutput out = new CompactDataOutput(buffer);
+		structure.write(out);
+		out.close();
+		return ClassStructure.read(new CompactDataInput(
+				new ByteArrayInputStream(buffer.toByteArray())));
+	}
+
+	private static void assertCoverage(final ClassCoverageImpl expected,
+			final ClassCoverageImpl actual) {
+		assertEquals(expected.getName(), actual.getName());
+		assertNode(expected, actual);
+		assertEquals(expected.getMethods().size(), actual.getMethods().size());
+		final Iterator<IMethodCoverage> e = expected.getMethods().iterator();
+		final Iterator<IMethodCoverage> a = actual.getMethods().iterator();
+		while (e.hasNext()) {
+			final IMethodCoverage em = e.next();
+			final IMethodCoverage am = a.next();
+			assertEquals(em.getName() + em.getDesc(),
+					am.getName() + am.getDesc());
+			assertNode(em, am);
+			assertEquals(em.getFirstLine(), am.getFirstLine());
+			assertEquals(em.getLastLine(), am.getLastLine());
+			for (int l = em.getFirstLine(); l <= em.getLastLine(); l++) {
+				assertCounter(em.getLine(l).getInstructionCounter(),
+						am.getLine(l).getInstructionCounter());
+				assertCounter(em.getLine(l).getBranchCounter(),
+						am.getLine(l).getBranchCounter());
+			}
+		}
+	}
+
+	private static void assertNode(final ICoverageNode expected,
+			final ICoverageNode actual) {
+		for (final ICoverageNode.CounterEntity entity : ICoverageNode.CounterEntity
+				.values()) {
+			assertCounter(expected.getCounter(entity),
+					actual.getCounter(entity));
+		}
+	}
+
+	private static void assertCounter(final ICounter expected,
+			final ICounter actual) {
+		assertEquals(expected.getMissedCount(), actual.getMissedCount());
+		assertEquals(expected.getCoveredCount(), actual.getCoveredCount());
+	}
+
+}
@@ -94,6 +94,31 @@ public class InstructionsBuilderTest {
 				map.get(i1).getInstructionCounter());
 	}
 
+	@Test
+	public void inferred_probe_should_mark_instruction_as_covered_when_successor_was_executed() {
+		builder.addInferredProbe(0, new int[] { 1 });
+		InsnNode i1 = new InsnNode(Opcodes.NOP);
+		builder.addInstruction(i1);
+		builder.addProbe(0, 0);
+
+		Map<AbstractInsnNode, Instruction> map = builder.getInstructions();
+		assertEquals(CounterImpl.COUNTER_0_1,
+				map.get(i1).getInstructionCounter());
+	}
+
+	@Test
+	public void inferred_probe_should_not_mark_instruction_as_covered_when_no_successor_was_executed() {
+		builder = new InstructionsBuilder(new boolean[] { false, false, true });
+		builder.addInferredProbe(0, new int[] { 1 });
+		InsnNode i1 = new InsnNode(Opcodes.NOP);
+		builder.addInstruction(i1);
+		builder.addProbe(0, 0);
+
+		Map<AbstractInsnNode, Instruction> map = builder.getInstructions();
+		assertEquals(CounterImpl.COUNTER_1_0,
+				map.get(i1).getInstructionCounter());
+	}
+
 	@Test
 	public void subsequent_instructions_should_be_linked_by_default() {
 		InsnNode i1 = new InsnNode(Opcodes.NOP);
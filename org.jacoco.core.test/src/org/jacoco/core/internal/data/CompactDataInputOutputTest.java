@@ -13,10 +13,14 @@
 package org.jacoco.core.internal.data;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.IOException;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
+import java.util.Arrays;
+import java.util.Random;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -106,6 +110,111 @@ public class CompactDataInputOutputTest {
 				true);
 	}
 
+	@Test
+	public void testAdaptiveBooleanEmpty() throws IOException {
+		testAdaptiveBoolean(new boolean[0], 1);
+	}
+
+	@Test
+	public void testAdaptiveBooleanAllFalse() throws IOException {
+		testAdaptiveBoolean(new boolean[1000], 2);
+	}
+
+	@Test
+	public void testAdaptiveBooleanAllTrue() throws IOException {
+		final boolean[] values = new boolean[1000];
+		Arrays.fill(values, true);
+		testAdaptiveBoolean(values, 2);
+	}
+
+	@Test
+	public void testAdaptiveBooleanBits() throws IOException {
+		final boolean[] values = new boolean[1000];
+		for (int i = 0; i < values.length; i += 2) {
+			values[i] = true;
+		}
+		testAdaptiveBoolean(values, 2 + 125);
+	}
+
+	@Test
+	public void testAdaptiveBooleanSparse() throws IOException {
+		final boolean[] values = new boolean[1000];
+		values[3] = true;
+		values[500] = true;
+		values[999] = true;
+		// length and encoding, count, gaps 3, 496 and 498
+		testAdaptiveBoolean(values, 2 + 1 + 1 + 2 + 2);
+	}
+
+	@Test
+	public void testAdaptiveBooleanRuns() throws IOException {
+		final boolean[] values = new boolean[1000];
+		Arrays.fill(values, 0, 300, true);
+		Arrays.fill(values, 700, 800, true);
+		// length and encoding, runs 0, 300, 400, 100 and 200
+		testAdaptiveBoolean(values, 2 + 1 + 2 + 2 + 1 + 2);
+	}
+
+	@Test
+	public void testAdaptiveBooleanRandom() throws IOException {
+		final Random random = new Random(7);
+		final boolean[] values = new boolean[777];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = random.nextInt(10) == 0;
+		}
+		out.writeAdaptiveBooleanArray(values);
+		out.close();
+		assertTrue(Arrays.equals(values, in.readAdaptiveBooleanArray()));
+	}
+
+	@Test
+	public void testAdaptiveBooleanInvalidEncoding() throws IOException {
+		out.writeVarInt(10 << 3 | 0x07);
+		out.close();
+		try {
+			in.readAdaptiveBooleanArray();
+			fail("IOException expected");
+		} catch (IOException e) {
+			assertEquals("Unknown boolean array encoding 7.", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testAdaptiveBooleanInvalidIndex() throws IOException {
+		out.writeVarInt(10 << 3 | CompactDataOutput.ARRAY_SPARSE);
+		out.writeVarInt(1);
+		out.writeVarInt(10);
+		out.close();
+		try {
+			in.readAdaptiveBooleanArray();
+			fail("IOException expected");
+		} catch (IOException e) {
+			assertEquals("Invalid probe index 10.", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testAdaptiveBooleanInvalidRunLength() throws IOException {
+		out.writeVarInt(10 << 3 | CompactDataOutput.ARRAY_RUNS);
+		out.writeVarInt(5);
+		out.writeVarInt(6);
+		out.close();
+		try {
+			in.readAdaptiveBooleanArray();
+			fail("IOException expected");
+		} catch (IOException e) {
+			assertEquals("Invalid run length 6.", e.getMessage());
+		}
+	}
+
+	private void testAdaptiveBoolean(boolean[] values, int expectedSize)
+			throws IOException {
+		out.writeAdaptiveBooleanArray(values);
+		out.close();
+		assertEquals(expectedSize, out.size());
+		assertTrue(Arrays.equals(values, in.readAdaptiveBooleanArray()));
+	}
+
 	private void testPackedBoolean(boolean... values) throws IOException {
 		out.writeBooleanArray(values);
 		out.close();
@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link LongHash}.
+ */
+public class LongHashTest {
+
+	@Test
+	public void hash_should_combine_both_halves() {
+		assertEquals(LongHash.mix(0x12345678 ^ 0x0abcdef0),
+				LongHash.hash(0x0abcdef012345678L));
+	}
+
+	@Test
+	public void mix_should_keep_zero() {
+		assertEquals(0, LongHash.mix(0));
+	}
+
+	@Test
+	public void mix_should_spread_consecutive_values_over_low_bits() {
+		final Set<Integer> slots = new HashSet<Integer>();
+		for (int i = 0; i < 64; i++) {
+			slots.add(Integer.valueOf(LongHash.hash((long) i << 32) & 0xff));
+		}
+		assertTrue(slots.size() > 48);
+	}
+
+}
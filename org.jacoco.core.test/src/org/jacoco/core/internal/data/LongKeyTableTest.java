@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link LongKeyTable}.
+ */
+public class LongKeyTableTest {
+
+	private static final class Entry {
+		final long key;
+
+		Entry(final long key) {
+			this.key = key;
+		}
+	}
+
+	private static class Table extends LongKeyTable<Entry> {
+		@Override
+		protected long getKey(final Entry entry) {
+			return entry.key;
+		}
+	}
+
+	private Table table;
+
+	@Before
+	public void setup() {
+		table = new Table();
+	}
+
+	@Test
+	public void should_be_empty_initially() {
+		assertEquals(0, table.size());
+		assertNull(table.get(0));
+		assertTrue(table.values().isEmpty());
+	}
+
+	@Test
+	public void should_find_entries_in_insertion_order() {
+		for (int i = 0; i < 1000; i++) {
+			table.add(new Entry(Long.MIN_VALUE + 1000 - i));
+		}
+
+		assertEquals(1000, table.size());
+		final List<Entry> values = table.values();
+		for (int i = 0; i < 1000; i++) {
+			final long key = Long.MIN_VALUE + 1000 - i;
+			assertSame(values.get(i), table.valueAt(i));
+			assertSame(values.get(i), table.get(key));
+			assertEquals(key, values.get(i).key);
+		}
+		assertNull(table.get(Long.MIN_VALUE));
+	}
+
+	@Test
+	public void should_find_entries_when_hash_codes_collide() {
+		table = new Table() {
+			@Override
+			protected int hash(final long key) {
+				return 0;
+			}
+		};
+		for (int i = 0; i < 100; i++) {
+			table.add(new Entry(i));
+		}
+
+		for (int i = 0; i < 100; i++) {
+			assertEquals(i, table.get(i).key);
+		}
+		assertNull(table.get(100));
+	}
+
+	@Test
+	public void should_allow_concurrent_readers() throws Exception {
+		final int count = 100000;
+		final Throwable[] failure = new Throwable[1];
+		final Thread reader = new Thread() {
+			@Override
+			public void run() {
+				try {
+					int size;
+					do {
+						size = table.size();
+						for (int i = Math.max(0, size - 100); i < size; i++) {
+							assertEquals(i, table.valueAt(i).key);
+							assertEquals(i, table.get(i).key);
+						}
+					} while (size < count);
+				} catch (Throwable t) {
+					failure[0] = t;
+				}
+			}
+		};
+		reader.start();
+		for (int i = 0; i < count; i++) {
+			table.add(new Entry(i));
+		}
+		reader.join();
+
+		assertNull(failure[0]);
+	}
+
+}
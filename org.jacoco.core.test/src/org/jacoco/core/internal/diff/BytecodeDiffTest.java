@@ -0,0 +1,279 @@
+package org.jacoco.core.internal.diff;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Unit tests for {@link BytecodeDiff}.
+ */
+public class BytecodeDiffTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private File oldClasses;
+
+	private File newClasses;
+
+	@Before
+	public void setup() throws IOException {
+		oldClasses = folder.newFolder("old");
+		newClasses = folder.newFolder("new");
+	}
+
+	@Test
+	public void should_ignore_line_numbers_and_method_order()
+			throws IOException {
+		write(oldClasses, "org/example/Foo", new Method("a", "A", 10),
+				new Method("b", "B", 20));
+		write(newClasses, "org/example/Foo", new Method("b", "B", 200),
+				new Method("a", "A", 100));
+
+		assertTrue(BytecodeDiff.diff(newClasses, oldClasses).isEmpty());
+	}
+
+	@Test
+	public void should_report_new_and_modified_methods() throws IOException {
+		write(oldClasses, "org/example/Foo", new Method("a", "A", 1),
+				new Method("b", "B", 2), new Method("c", "C", 3));
+		write(newClasses, "org/example/Foo", new Method("a", "A", 1),
+				new Method("b", "modified", 2), new Method("d", "D", 3));
+
+		final List<ClassInfo> result = BytecodeDiff.diff(newClasses,
+				oldClasses);
+
+		assertEquals(1, result.size());
+		final ClassInfo classInfo = result.get(0);
+		assertEquals("org.example", classInfo.getPackages());
+		assertEquals("Foo", classInfo.getClassName());
+		assertEquals("org/example/Foo.class", classInfo.getClassFile());
+		assertEquals("REPLACE", classInfo.getType());
+		assertEquals("[b, d]", methodNames(classInfo));
+	}
+
+	@Test
+	public void should_report_modified_control_flow() throws IOException {
+		write(oldClasses, "Foo", new Method("a", "A", 1, Opcodes.IFEQ));
+		write(newClasses, "Foo", new Method("a", "A", 1, Opcodes.IFNE));
+
+		final List<ClassInfo> result = BytecodeDiff.diff(newClasses,
+				oldClasses);
+
+		assertEquals(1, result.size());
+		assertEquals("", result.get(0).getPackages());
+		assertEquals("[a]", methodNames(result.get(0)));
+	}
+
+	@Test
+	public void should_report_all_methods_of_new_classes() throws IOException {
+		write(oldClasses, "org/example/Foo", new Method("a", "A", 1));
+		write(newClasses, "org/example/Foo", new Method("a", "A", 1));
+		write(newClasses, "org/example/Bar", new Method("a", "A", 1),
+				new Method("b", "B", 1));
+
+		final List<ClassInfo> result = BytecodeDiff.diff(newClasses,
+				oldClasses);
+
+		assertEquals(1, result.size());
+		assertEquals("Bar", result.get(0).getClassName());
+		assertEquals("ADD", result.get(0).getType());
+		assertEquals("[<init>, a, b]", methodNames(result.get(0)));
+	}
+
+	@Test
+	public void should_read_jar_files() throws IOException {
+		write(oldClasses, "org/example/Foo", new Method("a", "A", 1));
+		final File jar = new File(folder.getRoot(), "new.jar");
+		final ZipOutputStream zip = new ZipOutputStream(
+				new FileOutputStream(jar));
+		zip.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+		zip.putNextEntry(new ZipEntry("org/example/Foo.class"));
+		zip.write(createClass("org/example/Foo", new Method("a", "B", 1)));
+		zip.close();
+
+		final List<ClassInfo> result = BytecodeDiff.diff(jar, oldClasses);
+
+		assertEquals(1, result.size());
+		assertEquals("[a]", methodNames(result.get(0)));
+	}
+
+	@Test
+	public void should_read_nested_jar_files() throws IOException {
+		write(oldClasses, "org/example/Foo", new Method("a", "A", 1));
+		final ByteArrayOutputStream inner = new ByteArrayOutputStream();
+		ZipOutputStream zip = new ZipOutputStream(inner);
+		zip.putNextEntry(new ZipEntry("org/example/Foo.class"));
+		zip.write(createClass("org/example/Foo", new Method("a", "B", 1)));
+		zip.close();
+		final File war = new File(folder.getRoot(), "new.war");
+		zip = new ZipOutputStream(new FileOutputStream(war));
+		zip.putNextEntry(new ZipEntry("WEB-INF/lib/inner.jar"));
+		zip.write(inner.toByteArray());
+		zip.putNextEntry(new ZipEntry("WEB-INF/web.xml"));
+		zip.close();
+
+		final List<ClassInfo> result = BytecodeDiff.diff(war, oldClasses);
+
+		assertEquals(1, result.size());
+		assertEquals("[a]", methodNames(result.get(0)));
+	}
+
+	@Test
+	public void should_ignore_versioned_classes_of_multi_release_jars()
+			throws IOException {
+		write(oldClasses, "org/example/Foo", new Method("a", "A", 1));
+		final File versioned = new File(oldClasses,
+				"META-INF/versions/9/org/example/Foo.class");
+		versioned.getParentFile().mkdirs();
+		final FileOutputStream out = new FileOutputStream(versioned);
+		out.write(createClass("org/example/Foo", new Method("a", "B", 1)));
+		out.close();
+		final File jar = new File(folder.getRoot(), "new.jar");
+		final ZipOutputStream zip = new ZipOutputStream(
+				new FileOutputStream(jar));
+		zip.putNextEntry(new ZipEntry("org/example/Foo.class"));
+		zip.write(createClass("org/example/Foo", new Method("a", "A", 1)));
+		zip.putNextEntry(
+				new ZipEntry("META-INF/versions/9/org/example/Foo.class"));
+		zip.write(createClass("org/example/Foo", new Method("a", "C", 1)));
+		zip.close();
+
+		assertTrue(BytecodeDiff.diff(jar, oldClasses).isEmpty());
+	}
+
+	@Test
+	public void should_ignore_labels_of_line_numbers() throws IOException {
+		write(oldClasses, "Foo", new Method("a", "A", 1));
+		write(newClasses, "Foo", new Method("a", "A", 1, Opcodes.IFEQ, true));
+
+		assertTrue(BytecodeDiff.diff(newClasses, oldClasses).isEmpty());
+	}
+
+	@Test
+	public void should_report_lines_of_changed_methods() throws IOException {
+		write(oldClasses, "Foo", new Method("a", "A", 1),
+				new Method("b", "B", 5));
+		write(newClasses, "Foo", new Method("a", "A", 1),
+				new Method("b", "modified", 5, Opcodes.IFEQ, true));
+
+		final List<ClassInfo> result = BytecodeDiff.diff(newClasses,
+				oldClasses);
+
+		assertEquals(1, result.size());
+		final List<int[]> lines = result.get(0).getAddLines();
+		assertEquals(1, lines.size());
+		assertArrayEquals(new int[] { 5, 7 }, lines.get(0));
+		final DiffIndex index = new DiffIndex(result);
+		assertFalse(index.isLineAdded("", "Foo.java", 2));
+		assertTrue(index.isLineAdded("", "Foo.java", 6));
+	}
+
+	private static String methodNames(final ClassInfo classInfo) {
+		final List<String> names = new ArrayList<String>();
+		for (final MethodInfo m : classInfo.getMethodInfos()) {
+			names.add(m.getMethodName());
+		}
+		return names.toString();
+	}
+
+	private static class Method {
+
+		final String name;
+		final String constant;
+		final int line;
+		final int jump;
+		final boolean constantLine;
+
+		Method(final String name, final String constant, final int line) {
+			this(name, constant, line, Opcodes.IFEQ);
+		}
+
+		Method(final String name, final String constant, final int line,
+				final int jump) {
+			this(name, constant, line, jump, false);
+		}
+
+		/**
+		 * @param constantLine
+		 *            whether the constant is loaded in a separate line
+		 */
+		Method(final String name, final String constant, final int line,
+				final int jump, final boolean constantLine) {
+			this.name = name;
+			this.constant = constant;
+			this.line = line;
+			this.jump = jump;
+			this.constantLine = constantLine;
+		}
+
+	}
+
+	private static void write(final File dir, final String name,
+			final Method... methods) throws IOException {
+		final File file = new File(dir, name + ".class");
+		file.getParentFile().mkdirs();
+		final FileOutputStream out = new FileOutputStream(file);
+		out.write(createClass(name, methods));
+		out.close();
+	}
+
+	private static byte[] createClass(final String name,
+			final Method... methods) {
+		final ClassWriter cw = new ClassWriter(0);
+		cw.visit(Opcodes.V1_5, 0, name, null, "java/lang/Object", null);
+		MethodVisitor mv = cw.visitMethod(0, "<init>", "()V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>",
+				"()V", false);
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(1, 1);
+		mv.visitEnd();
+		for (final Method m : methods) {
+			mv = cw.visitMethod(0, m.name, "(I)Ljava/lang/String;", null, null);
+			mv.visitCode();
+			final Label start = new Label();
+			mv.visitLabel(start);
+			mv.visitLineNumber(m.line, start);
+			mv.visitVarInsn(Opcodes.ILOAD, 1);
+			final Label target = new Label();
+			mv.visitJumpInsn(m.jump, target);
+			if (m.constantLine) {
+				final Label constant = new Label();
+				mv.visitLabel(constant);
+				mv.visitLineNumber(m.line + 2, constant);
+			}
+			mv.visitLdcInsn(m.constant);
+			mv.visitInsn(Opcodes.ARETURN);
+			mv.visitLabel(target);
+			mv.visitLineNumber(m.line + 1, target);
+			mv.visitInsn(Opcodes.ACONST_NULL);
+			mv.visitInsn(Opcodes.ARETURN);
+			mv.visitMaxs(1, 2);
+			mv.visitEnd();
+		}
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+}
@@ -0,0 +1,276 @@
+package org.jacoco.core.internal.diff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link CodeDiff}.
+ */
+public class CodeDiffTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private Git git;
+
+	private String oldCommit;
+
+	private String newCommit;
+
+	@Before
+	public void setup() throws Exception {
+		git = Git.init().setDirectory(folder.newFolder("repo")).call();
+		write("src/main/java/org/example/Changed.java", "package org.example;\n" //
+				+ "public class Changed {\n" //
+				+ "  void same() {}\n" //
+				+ "  void modified() {}\n" //
+				+ "}\n");
+		write("src/main/java/org/example/Deleted.java",
+				"package org.example;\npublic class Deleted {}\n");
+		oldCommit = commit();
+
+		write("src/main/java/org/example/Changed.java", "package org.example;\n" //
+				+ "public class Changed {\n" //
+				+ "  void same() {}\n" //
+				+ "  void modified() { same(); }\n" //
+				+ "  void added() {}\n" //
+				+ "}\n");
+		write("src/main/java/org/example/Added.java", "package org.example;\n" //
+				+ "public class Added {\n" //
+				+ "  void a() {}\n" //
+				+ "  void b() {}\n" //
+				+ "}\n");
+		write("src/main/java/org/example/AddedInterface.java",
+				"package org.example;\n" //
+						+ "public interface AddedInterface {\n" //
+						+ "  void a();\n" //
+						+ "}\n");
+		write("module/src/test/java/org/example/AddedTest.java",
+				"package org.example;\npublic class AddedTest { void t() {} }\n");
+		write("README.md", "readme");
+		git.rm().addFilepattern("src/main/java/org/example/Deleted.java")
+				.call();
+		newCommit = commit();
+	}
+
+	@After
+	public void teardown() {
+		git.close();
+	}
+
+	@Test
+	public void diffCommitToCommit_should_return_changed_methods() {
+		final List<ClassInfo> classInfos = diff();
+
+		assertEquals(2, classInfos.size());
+		final ClassInfo added = classInfos.get(0);
+		assertEquals("org.example", added.getPackages());
+		assertEquals("Added", added.getClassName());
+		assertEquals("ADD", added.getType());
+		assertEquals("[a, b]", methodNames(added));
+		final ClassInfo changed = classInfos.get(1);
+		assertEquals("Changed", changed.getClassName());
+		assertEquals("REPLACE", changed.getType());
+		assertEquals("[modified, added]", methodNames(changed));
+		assertEquals(1, changed.getAddLines().size());
+		assertEquals(3, changed.getAddLines().get(0)[0]);
+		assertEquals(5, changed.getAddLines().get(0)[1]);
+	}
+
+	@Test
+	public void diffCommitToCommit_should_return_same_order_for_any_parallelism() {
+		final DiffOptions options = new DiffOptions();
+		options.setParallelism(1);
+		final List<ClassInfo> sequential = diff(options);
+		options.setParallelism(4);
+		final List<ClassInfo> parallel = diff(options);
+
+		assertEquals(sequential.size(), parallel.size());
+		for (int i = 0; i < sequential.size(); i++) {
+			assertEquals(sequential.get(i).getClassName(),
+					parallel.get(i).getClassName());
+			assertEquals(methodNames(sequential.get(i)),
+					methodNames(parallel.get(i)));
+		}
+	}
+
+	@Test
+	public void diffCommitToCommit_should_use_fingerprint_cache()
+			throws IOException {
+		final File cache = folder.newFolder("cache");
+		final DiffOptions options = new DiffOptions();
+		options.setFingerprintCacheDirectory(cache);
+
+		assertEquals(2, diff(options).size());
+		// Added, AddedInterface, new and old version of Changed
+		assertEquals(4, countFiles(cache));
+		assertEquals(2, diff().size());
+		assertEquals(4, countFiles(cache));
+		final List<ClassInfo> cached = diff(options);
+
+		assertEquals(2, cached.size());
+		assertEquals("[modified, added]", methodNames(cached.get(1)));
+	}
+
+	@Test
+	public void diffRevisionToRevision_should_not_touch_working_tree()
+			throws Exception {
+		git.tag().setName("v1")
+				.setObjectId(git.getRepository()
+						.parseCommit(git.getRepository().resolve(oldCommit)))
+				.call();
+		final File changed = new File(git.getRepository().getWorkTree(),
+				"src/main/java/org/example/Changed.java");
+		final FileWriter writer = new FileWriter(changed, true);
+		writer.write("// local modification\n");
+		writer.close();
+		final long modified = changed.lastModified();
+
+		final List<ClassInfo> classInfos = CodeDiff.diffRevisionToRevision(
+				git.getRepository().getWorkTree().getPath(), "master", "v1");
+
+		assertEquals(2, classInfos.size());
+		assertEquals("Added", classInfos.get(0).getClassName());
+		assertEquals("[modified, added]", methodNames(classInfos.get(1)));
+		assertEquals(modified, changed.lastModified());
+		assertFalse(git.status().call().isClean());
+		assertEquals(newCommit, git.getRepository().resolve("HEAD").getName());
+	}
+
+	@Test
+	public void diffRevisionToRevision_should_accept_commit_ids()
+			throws IOException {
+		final DiffOptions options = new DiffOptions();
+		options.setParallelism(4);
+		final List<ClassInfo> classInfos = CodeDiff.diffRevisionToRevision(
+				git.getRepository().getWorkTree().getPath(), newCommit,
+				oldCommit.substring(0, 10), options);
+
+		assertEquals(2, classInfos.size());
+		assertEquals("[a, b]", methodNames(classInfos.get(0)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void diffRevisionToRevision_should_reject_unknown_revision()
+			throws IOException {
+		CodeDiff.diffRevisionToRevision(
+				git.getRepository().getWorkTree().getPath(), "master",
+				"unknown");
+	}
+
+	@Test(expected = IOException.class)
+	public void diffRevisionToRevision_should_throw_IOException_for_missing_repository()
+			throws IOException {
+		CodeDiff.diffRevisionToRevision(folder.newFolder().getPath(), "master",
+				"v1");
+	}
+
+	@Test
+	public void diffRevisionToRevision_should_decode_sources_as_utf8()
+			throws Exception {
+		write("src/main/java/org/example/Encoded.java", "package org.example;\n" //
+				+ "public class Encoded {\n" //
+				+ "  void gr\u00fc\u00dfe() {}\n" //
+				+ "}\n", "UTF-8");
+		final String encodedCommit = commit();
+
+		final List<ClassInfo> classInfos = CodeDiff.diffRevisionToRevision(
+				git.getRepository().getWorkTree().getPath(), encodedCommit,
+				newCommit);
+
+		assertEquals(1, classInfos.size());
+		assertEquals("[gr\u00fc\u00dfe]", methodNames(classInfos.get(0)));
+	}
+
+	@Test
+	public void diffRevisionToRevision_should_decode_sources_with_given_encoding()
+			throws Exception {
+		write("src/main/java/org/example/Encoded.java", "package org.example;\n" //
+				+ "public class Encoded {\n" //
+				+ "  void gr\u00fc\u00dfe() {}\n" //
+				+ "}\n", "ISO-8859-1");
+		final String encodedCommit = commit();
+		final DiffOptions options = new DiffOptions();
+		options.setEncoding(Charset.forName("ISO-8859-1"));
+
+		final List<ClassInfo> classInfos = CodeDiff.diffRevisionToRevision(
+				git.getRepository().getWorkTree().getPath(), encodedCommit,
+				newCommit, options);
+
+		assertEquals(1, classInfos.size());
+		assertEquals("[gr\u00fc\u00dfe]", methodNames(classInfos.get(0)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void setParallelism_should_reject_zero() {
+		new DiffOptions().setParallelism(0);
+	}
+
+	private List<ClassInfo> diff() {
+		return diff(new DiffOptions());
+	}
+
+	private List<ClassInfo> diff(final DiffOptions options) {
+		return CodeDiff.diffCommitToCommit(
+				git.getRepository().getWorkTree().getPath(), "master",
+				newCommit, oldCommit, options);
+	}
+
+	private void write(final String path, final String content)
+			throws Exception {
+		write(path, content, "UTF-8");
+	}
+
+	private void write(final String path, final String content,
+			final String encoding) throws Exception {
+		final File file = new File(git.getRepository().getWorkTree(), path);
+		file.getParentFile().mkdirs();
+		final Writer writer = new OutputStreamWriter(new FileOutputStream(file),
+				encoding);
+		writer.write(content);
+		writer.close();
+		git.add().addFilepattern(path).call();
+	}
+
+	private String commit() throws Exception {
+		final RevCommit commit = git.commit().setMessage("commit").call();
+		return commit.getName();
+	}
+
+	private static int countFiles(final File dir) {
+		int count = 0;
+		for (final File f : dir.listFiles()) {
+			count += f.isDirectory() ? countFiles(f) : 1;
+		}
+		return count;
+	}
+
+	private static String methodNames(final ClassInfo classInfo) {
+		final List<String> names = new ArrayList<String>();
+		for (final MethodInfo m : classInfo.getMethodInfos()) {
+			names.add(m.getMethodName());
+		}
+		assertTrue(names.size() > 0);
+		return names.toString();
+	}
+
+}
@@ -0,0 +1,138 @@
+package org.jacoco.core.internal.diff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link DiffIndex}.
+ */
+public class DiffIndexTest {
+
+	@Test
+	public void should_be_empty_without_changes() {
+		assertTrue(DiffIndex.EMPTY.isEmpty());
+		assertTrue(new DiffIndex(null).isEmpty());
+		assertFalse(DiffIndex.EMPTY.containsMethod("Foo", "foo"));
+		assertFalse(DiffIndex.EMPTY.isLineAdded("", "Foo.java", 1));
+	}
+
+	@Test
+	public void containsMethod_should_match_vm_class_name() {
+		final DiffIndex index = new DiffIndex(Arrays.asList(
+				classInfo("org.example", "Foo", "REPLACE", "a", "b"),
+				classInfo("", "Bar", "ADD", "c")));
+
+		assertFalse(index.isEmpty());
+		assertTrue(index.containsMethod("org/example/Foo", "a"));
+		assertTrue(index.containsMethod("org/example/Foo", "b"));
+		assertFalse(index.containsMethod("org/example/Foo", "c"));
+		assertFalse(index.containsMethod("org/example/Other", "a"));
+		assertTrue(index.containsMethod("Bar", "c"));
+	}
+
+	@Test
+	public void containsClassFile_should_match_simple_name() {
+		final DiffIndex index = new DiffIndex(
+				Arrays.asList(classInfo("org.example", "Foo", "REPLACE", "a")));
+
+		assertTrue(index.containsClassFile("org/example/Foo"));
+		assertTrue(index.containsClassFile("classes/org/example/Foo"));
+		assertTrue(index.containsClassFile("Foo"));
+		assertFalse(index.containsClassFile("org/example/Foo$Inner"));
+		assertFalse(index.containsClassFile("org/example/Bar"));
+	}
+
+	@Test
+	public void should_not_be_affected_by_later_modifications() {
+		final List<ClassInfo> classInfos = new ArrayList<ClassInfo>();
+		classInfos.add(classInfo("org.example", "Foo", "ADD", "a"));
+		final DiffIndex index = new DiffIndex(classInfos);
+		classInfos.clear();
+
+		assertEquals(1, index.getClassInfos().size());
+		assertTrue(index.containsMethod("org/example/Foo", "a"));
+	}
+
+	@Test
+	public void isLineAdded_should_return_true_for_all_lines_of_new_files() {
+		final DiffIndex index = new DiffIndex(
+				Arrays.asList(classInfo("org.example", "Foo", "ADD", "a")));
+
+		assertTrue(index.containsSource("org/example", "Foo.java"));
+		assertTrue(index.isLineAdded("org/example", "Foo.java", 1));
+		assertTrue(index.isLineAdded("org/example", "Foo.java", 1000));
+		assertFalse(index.containsSource("org/example", "Bar.java"));
+		assertFalse(index.isLineAdded("org/example", "Bar.java", 1));
+	}
+
+	@Test
+	public void isLineAdded_should_check_unsorted_and_overlapping_ranges() {
+		final ClassInfo classInfo = classInfo("org.example", "Foo", "REPLACE",
+				"a");
+		classInfo.setAddLines(Arrays.asList(new int[] { 20, 22 },
+				new int[] { 3, 5 }, new int[] { 4, 8 }, new int[] { 30, 30 }));
+		final DiffIndex index = new DiffIndex(Arrays.asList(classInfo));
+
+		final boolean[] expected = new boolean[32];
+		for (int line = 3; line <= 8; line++) {
+			expected[line] = true;
+		}
+		expected[20] = expected[21] = expected[22] = expected[30] = true;
+		for (int line = 0; line < expected.length; line++) {
+			assertEquals("line " + line, Boolean.valueOf(expected[line]),
+					Boolean.valueOf(index.isLineAdded("org/example", "Foo.java",
+							line)));
+		}
+	}
+
+	@Test
+	public void isLineAdded_should_return_false_for_modified_files_without_added_lines() {
+		final DiffIndex index = new DiffIndex(
+				Arrays.asList(classInfo("org.example", "Foo", "REPLACE", "a")));
+
+		assertTrue(index.containsSource("org/example", "Foo.java"));
+		assertFalse(index.isLineAdded("org/example", "Foo.java", 1));
+	}
+
+	@Test
+	public void getAddedLines_should_return_ranges_of_changed_files_only() {
+		final ClassInfo classInfo = classInfo("org.example", "Foo", "REPLACE",
+				"a");
+		classInfo.setAddLines(Arrays.asList(new int[] { 3, 5 }));
+		final DiffIndex index = new DiffIndex(Arrays.asList(classInfo));
+
+		final DiffIndex.LineRanges ranges = index.getAddedLines("org/example",
+				"Foo.java");
+		assertFalse(ranges.contains(2));
+		assertTrue(ranges.contains(3));
+		assertTrue(ranges.contains(5));
+		assertFalse(ranges.contains(6));
+		assertNull(index.getAddedLines("org/example", "Bar.java"));
+	}
+
+	private static ClassInfo classInfo(final String packages,
+			final String className, final String type,
+			final String... methods) {
+		final ClassInfo classInfo = new ClassInfo();
+		classInfo.setPackages(packages);
+		classInfo.setClassName(className);
+		classInfo.setType(type);
+		final List<MethodInfo> methodInfos = new ArrayList<MethodInfo>();
+		for (final String name : methods) {
+			final MethodInfo methodInfo = new MethodInfo();
+			methodInfo.setMethodName(name);
+			methodInfos.add(methodInfo);
+		}
+		classInfo.setMethodInfos(methodInfos);
+		return classInfo;
+	}
+
+}
@@ -0,0 +1,103 @@
+package org.jacoco.core.internal.diff;
+
+import static org.jacoco.core.internal.diff.FingerprintCacheTest.method;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link FileFingerprint}.
+ */
+public class FileFingerprintTest {
+
+	@Test
+	public void ASTGenerator_should_create_fingerprint_with_line_ranges() {
+		final FileFingerprint f = new ASTGenerator("package org.example;\n" //
+				+ "public class Foo {\n" //
+				+ "  void a(int i) {\n" //
+				+ "    i++;\n" //
+				+ "  }\n" //
+				+ "  void b() {}\n" //
+				+ "}\n").getFingerprint();
+
+		assertTrue(f.hasType());
+		assertEquals("org.example", f.getPackages());
+		assertEquals("Foo", f.getClassName());
+		assertFalse(f.isInterface());
+		final List<MethodInfo> methods = f.getMethodInfos();
+		assertEquals(2, methods.size());
+		assertEquals("a", methods.get(0).getMethodName());
+		assertEquals("[int i]", methods.get(0).getParameters());
+		assertEquals(3, methods.get(0).getStartLine());
+		assertEquals(5, methods.get(0).getEndLine());
+		assertEquals(6, methods.get(1).getStartLine());
+		assertEquals(6, methods.get(1).getEndLine());
+	}
+
+	@Test
+	public void ASTGenerator_should_create_fingerprint_without_type() {
+		assertFalse(new ASTGenerator("package org.example;").getFingerprint()
+				.hasType());
+	}
+
+	@Test
+	public void ASTGenerator_VERSION_should_name_jdt_bundle_and_jls_level() {
+		assertTrue(ASTGenerator.VERSION, ASTGenerator.VERSION
+				.matches("jdt-\\d+\\.\\d+\\.\\d+\\S*-jls8"));
+	}
+
+	@Test
+	public void toClassInfo_should_return_all_methods_for_added_file() {
+		final FileFingerprint f = new FileFingerprint("org.example", "Foo",
+				false, Arrays.asList(method("a", "[]", "1", 1, 2),
+						method("b", "[]", "2", 3, 4)));
+
+		final ClassInfo c = f.toClassInfo();
+
+		assertEquals("ADD", c.getType());
+		assertEquals("org.example", c.getPackages());
+		assertEquals("Foo", c.getClassName());
+		assertEquals(2, c.getMethodInfos().size());
+	}
+
+	@Test
+	public void toClassInfo_should_return_null_for_interfaces() {
+		final FileFingerprint f = new FileFingerprint("org.example", "Foo",
+				true, new ArrayList<MethodInfo>());
+
+		assertNull(f.toClassInfo());
+		assertNull(f.toClassInfo(f, null, null));
+		assertNull(new FileFingerprint().toClassInfo());
+	}
+
+	@Test
+	public void toClassInfo_should_return_new_and_changed_methods() {
+		final FileFingerprint old = new FileFingerprint("org.example", "Foo",
+				false,
+				Arrays.asList(method("a", "[]", "1", 1, 2),
+						method("b", "[]", "2", 3, 4),
+						method("c", "[]", "3", 5, 6)));
+		final MethodInfo b = method("b", "[]", "changed", 3, 4);
+		final MethodInfo c = method("c", "[int i]", "3", 5, 6);
+		final FileFingerprint f = new FileFingerprint("org.example", "Foo",
+				false, Arrays.asList(method("a", "[]", "1", 1, 2), b, c));
+		final List<int[]> addLines = new ArrayList<int[]>();
+		final List<int[]> delLines = new ArrayList<int[]>();
+
+		final ClassInfo classInfo = f.toClassInfo(old, addLines, delLines);
+
+		assertEquals("REPLACE", classInfo.getType());
+		assertEquals(Arrays.asList(b, c), classInfo.getMethodInfos());
+		assertSame(addLines, classInfo.getAddLines());
+		assertSame(delLines, classInfo.getDelLines());
+	}
+
+}
@@ -0,0 +1,134 @@
+package org.jacoco.core.internal.diff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link FingerprintCache}.
+ */
+public class FingerprintCacheTest {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final ObjectId BLOB = ObjectId
+			.fromString("0123456789abcdef0123456789abcdef01234567");
+
+	/** Folder of the entry for {@link #BLOB} relative to the temp folder */
+	private static final String FOLDER = "cache/" + ASTGenerator.VERSION
+			+ "/UTF-8/01";
+
+	private static final String ENTRY = FOLDER
+			+ "/23456789abcdef0123456789abcdef01234567";
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private FingerprintCache cache;
+
+	@Before
+	public void setup() {
+		cache = new FingerprintCache(new File(folder.getRoot(), "cache"),
+				UTF_8);
+	}
+
+	@Test
+	public void get_should_return_null_when_entry_does_not_exist() {
+		assertNull(cache.get(BLOB));
+	}
+
+	@Test
+	public void get_should_return_stored_fingerprint() throws IOException {
+		cache.put(BLOB,
+				new FileFingerprint("org.example", "Foo", false,
+						Arrays.asList(method("a", "[int i]", "md5a", 3, 5),
+								method("b", "[]", "md5b", 7, 9))));
+
+		final FileFingerprint f = cache.get(BLOB);
+
+		assertTrue(f.hasType());
+		assertEquals("org.example", f.getPackages());
+		assertEquals("Foo", f.getClassName());
+		assertFalse(f.isInterface());
+		assertEquals(2, f.getMethodInfos().size());
+		final MethodInfo m = f.getMethodInfos().get(0);
+		assertEquals("a", m.getMethodName());
+		assertEquals("[int i]", m.getParameters());
+		assertEquals("md5a", m.getMd5());
+		assertEquals(3, m.getStartLine());
+		assertEquals(5, m.getEndLine());
+	}
+
+	@Test
+	public void get_should_return_stored_fingerprint_without_type()
+			throws IOException {
+		cache.put(BLOB, new FileFingerprint());
+
+		assertFalse(cache.get(BLOB).hasType());
+	}
+
+	@Test
+	public void put_should_store_entries_like_git_object_database()
+			throws IOException {
+		cache.put(BLOB, new FileFingerprint());
+
+		assertTrue(new File(folder.getRoot(), ENTRY).isFile());
+		assertEquals(1, new File(folder.getRoot(), FOLDER).list().length);
+	}
+
+	@Test
+	public void put_should_overwrite_existing_entry() throws IOException {
+		cache.put(BLOB, new FileFingerprint());
+		cache.put(BLOB, new FileFingerprint("", "Foo", true,
+				Arrays.<MethodInfo> asList()));
+
+		assertTrue(cache.get(BLOB).isInterface());
+	}
+
+	@Test
+	public void get_should_return_null_for_invalid_entry() throws IOException {
+		cache.put(BLOB, new FileFingerprint());
+		final FileWriter writer = new FileWriter(
+				new File(folder.getRoot(), ENTRY));
+		writer.write("invalid");
+		writer.close();
+
+		assertNull(cache.get(BLOB));
+	}
+
+	@Test
+	public void get_should_return_null_for_other_encoding() throws IOException {
+		cache.put(BLOB, new FileFingerprint());
+
+		final FingerprintCache other = new FingerprintCache(
+				new File(folder.getRoot(), "cache"),
+				Charset.forName("ISO-8859-1"));
+		assertNull(other.get(BLOB));
+		assertFalse(cache.get(BLOB).hasType());
+	}
+
+	static MethodInfo method(final String name, final String parameters,
+			final String md5, final int startLine, final int endLine) {
+		final MethodInfo m = new MethodInfo();
+		m.setMethodName(name);
+		m.setParameters(parameters);
+		m.setMd5(md5);
+		m.setStartLine(startLine);
+		m.setEndLine(endLine);
+		return m;
+	}
+
+}
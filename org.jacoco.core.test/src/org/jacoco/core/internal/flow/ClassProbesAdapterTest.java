@@ -16,6 +16,14 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.jacoco.core.internal.diff.ClassInfo;
+import org.jacoco.core.internal.diff.DiffIndex;
+import org.jacoco.core.internal.diff.MethodInfo;
 import org.junit.Test;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.Label;
@@ -147,8 +155,74 @@ public class ClassProbesAdapterTest {
 		assertFalse(mv.frame);
 	}
 
+	@Test
+	public void testVisitProbeCount() {
+		final List<Integer> counts = new ArrayList<Integer>();
+		final MockClassVisitor cv = new MockClassVisitor() {
+			@Override
+			public MethodProbesVisitor visitMethod(int access, String name,
+					String desc, String signature, String[] exceptions) {
+				return new MockMethodVisitor() {
+					@Override
+					public void visitProbeCount(int count) {
+						counts.add(Integer.valueOf(count));
+					}
+				};
+			}
+		};
+		final ClassProbesAdapter adapter = new ClassProbesAdapter(cv, false,
+				DiffIndex.EMPTY, false, true);
+		writeMethod(adapter);
+		writeMethodWithBranch(adapter);
+		adapter.visitEnd();
+
+		assertEquals(Arrays.asList(Integer.valueOf(1), Integer.valueOf(3)),
+				counts);
+		assertEquals(4, cv.count);
+	}
+
+	@Test
+	public void testVisitOnlyMethodsOfDiffScope() {
+		final ClassInfo classInfo = new ClassInfo();
+		classInfo.setPackages("org.example");
+		classInfo.setClassName("Foo");
+		classInfo.setType("REPLACE");
+		final MethodInfo methodInfo = new MethodInfo();
+		methodInfo.setMethodName("a");
+		classInfo.setMethodInfos(Collections.singletonList(methodInfo));
+		final List<String> visited = new ArrayList<String>();
+		final MockClassVisitor cv = new MockClassVisitor() {
+			@Override
+			public MethodProbesVisitor visitMethod(int access,
+					final String name, String desc, String signature,
+					String[] exceptions) {
+				return new MockMethodVisitor() {
+					@Override
+					public void visitCode() {
+						visited.add(name);
+					}
+				};
+			}
+		};
+		final ClassProbesAdapter adapter = new ClassProbesAdapter(cv, false,
+				new DiffIndex(Collections.singletonList(classInfo)));
+		adapter.visit(Opcodes.V1_5, 0, "org/example/Foo", null,
+				"java/lang/Object", null);
+		writeMethod(adapter, "a");
+		writeMethod(adapter, "b");
+		adapter.visitEnd();
+
+		assertEquals(Collections.singletonList("a"), visited);
+		// probe ids must not depend on the diff scope
+		assertEquals(2, cv.count);
+	}
+
 	private void writeMethod(final ClassVisitor cv) {
-		MethodVisitor mv = cv.visitMethod(0, "foo", "()V", null, null);
+		writeMethod(cv, "foo");
+	}
+
+	private void writeMethod(final ClassVisitor cv, final String name) {
+		MethodVisitor mv = cv.visitMethod(0, name, "()V", null, null);
 		mv.visitCode();
 		mv.visitInsn(Opcodes.RETURN);
 		mv.visitMaxs(0, 1);
@@ -44,6 +44,7 @@ public class LabelInfoTest {
 		assertEquals(LabelInfo.NO_PROBE, LabelInfo.getProbeId(label));
 		assertNull(LabelInfo.getIntermediateLabel(label));
 		assertNull(LabelInfo.getInstruction(label));
+		assertEquals(-1, LabelInfo.getNode(label));
 	}
 
 	@Test
@@ -166,4 +167,10 @@ public class LabelInfoTest {
 		assertSame(instruction, LabelInfo.getInstruction(label));
 	}
 
+	@Test
+	public void testSetNode() {
+		LabelInfo.setNode(label, 42);
+		assertEquals(42, LabelInfo.getNode(label));
+	}
+
 }
@@ -0,0 +1,240 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.flow;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+
+/**
+ * Unit tests for {@link ProbeMinimizer}.
+ */
+public class ProbeMinimizerTest implements IProbeIdGenerator {
+
+	private MethodNode method;
+
+	private int nextProbeId;
+
+	@Before
+	public void setup() {
+		method = new MethodNode(0, "test", "(I)V", null, null);
+		nextProbeId = 0;
+	}
+
+	public int nextId() {
+		return nextProbeId++;
+	}
+
+	@Test
+	public void should_not_omit_probes_of_linear_method() {
+		method.visitInsn(Opcodes.NOP);
+		method.visitInsn(Opcodes.RETURN);
+
+		assertOmitted("");
+		assertEquals(1, nextProbeId);
+	}
+
+	@Test
+	public void should_not_omit_probes_of_if_else() {
+		final Label l1 = new Label();
+		final Label l2 = new Label();
+		method.visitVarInsn(Opcodes.ILOAD, 1);
+		method.visitJumpInsn(Opcodes.IFEQ, l1);
+		method.visitInsn(Opcodes.NOP);
+		method.visitJumpInsn(Opcodes.GOTO, l2);
+		method.visitLabel(l1);
+		method.visitInsn(Opcodes.NOP);
+		method.visitLabel(l2);
+		method.visitInsn(Opcodes.RETURN);
+
+		assertOmitted("");
+		assertEquals(3, nextProbeId);
+	}
+
+	@Test
+	public void should_omit_loop_entry_probe() {
+		// while (i > 0) { i--; }
+		final Label body = new Label();
+		final Label condition = new Label();
+		method.visitJumpInsn(Opcodes.GOTO, condition);
+		method.visitLabel(body);
+		method.visitIincInsn(1, -1);
+		method.visitLabel(condition);
+		method.visitVarInsn(Opcodes.ILOAD, 1);
+		method.visitJumpInsn(Opcodes.IFGT, body);
+		method.visitInsn(Opcodes.RETURN);
+
+		assertOmitted("0->[1,2]");
+		assertEquals(3, nextProbeId);
+	}
+
+	@Test
+	public void should_not_omit_loop_entry_probe_when_condition_might_throw() {
+		// while (check(i)) { i--; }
+		final Label body = new Label();
+		final Label condition = new Label();
+		method.visitJumpInsn(Opcodes.GOTO, condition);
+		method.visitLabel(body);
+		method.visitIincInsn(1, -1);
+		method.visitLabel(condition);
+		method.visitVarInsn(Opcodes.ILOAD, 1);
+		method.visitMethodInsn(Opcodes.INVOKESTATIC, "Foo", "check", "(I)Z",
+				false);
+		method.visitJumpInsn(Opcodes.IFNE, body);
+		method.visitInsn(Opcodes.RETURN);
+
+		assertOmitted("");
+	}
+
+	@Test
+	public void should_not_omit_loop_entry_probe_when_array_access_might_throw() {
+		// while (a[i] > 0) { i++; }
+		final Label body = new Label();
+		final Label condition = new Label();
+		method.visitJumpInsn(Opcodes.GOTO, condition);
+		method.visitLabel(body);
+		method.visitIincInsn(2, 1);
+		method.visitLabel(condition);
+		method.visitVarInsn(Opcodes.ALOAD, 1);
+		method.visitVarInsn(Opcodes.ILOAD, 2);
+		method.visitInsn(Opcodes.IALOAD);
+		method.visitJumpInsn(Opcodes.IFGT, body);
+		method.visitInsn(Opcodes.RETURN);
+
+		assertOmitted("");
+	}
+
+	@Test
+	public void should_omit_loop_entry_probe_when_constants_are_loaded() {
+		// while (i > 100000) { i--; }
+		final Label body = new Label();
+		final Label condition = new Label();
+		method.visitJumpInsn(Opcodes.GOTO, condition);
+		method.visitLabel(body);
+		method.visitIincInsn(1, -1);
+		method.visitLabel(condition);
+		method.visitVarInsn(Opcodes.ILOAD, 1);
+		method.visitLdcInsn(Integer.valueOf(100000));
+		method.visitJumpInsn(Opcodes.IF_ICMPGT, body);
+		method.visitInsn(Opcodes.RETURN);
+
+		assertOmitted("0->[1,2]");
+	}
+
+	@Test
+	public void should_not_omit_probe_when_method_can_be_left_without_probe() {
+		final Label l1 = new Label();
+		method.visitVarInsn(Opcodes.ILOAD, 1);
+		method.visitJumpInsn(Opcodes.IFEQ, l1);
+		method.visitInsn(Opcodes.NOP);
+		method.visitLabel(l1);
+		method.visitInsn(Opcodes.RETURN);
+		// unreachable code is never inferred
+		method.visitInsn(Opcodes.NOP);
+		method.visitInsn(Opcodes.RETURN);
+
+		assertOmitted("");
+	}
+
+	@Test
+	public void should_consider_exception_handlers() {
+		// try { i--; } catch (Exception e) { }
+		final Label start = new Label();
+		final Label end = new Label();
+		final Label handler = new Label();
+		final Label after = new Label();
+		method.visitLabel(start);
+		method.visitIincInsn(1, -1);
+		method.visitLabel(end);
+		method.visitJumpInsn(Opcodes.GOTO, after);
+		method.visitLabel(handler);
+		method.visitVarInsn(Opcodes.ASTORE, 2);
+		method.visitLabel(after);
+		method.visitInsn(Opcodes.RETURN);
+		method.visitTryCatchBlock(start, end, handler, "java/lang/Exception");
+
+		// The return probe is also reached through the handler
+		assertOmitted("");
+	}
+
+	@Test
+	public void should_keep_successors_of_omitted_probes() {
+		// while (i > 0) { while (i > 1) { i--; } i--; }
+		final Label outerBody = new Label();
+		final Label outerCondition = new Label();
+		final Label innerBody = new Label();
+		final Label innerCondition = new Label();
+		method.visitJumpInsn(Opcodes.GOTO, outerCondition);
+		method.visitLabel(outerBody);
+		method.visitJumpInsn(Opcodes.GOTO, innerCondition);
+		method.visitLabel(innerBody);
+		method.visitIincInsn(1, -1);
+		method.visitLabel(innerCondition);
+		method.visitVarInsn(Opcodes.ILOAD, 1);
+		method.visitInsn(Opcodes.ICONST_1);
+		method.visitJumpInsn(Opcodes.IF_ICMPGT, innerBody);
+		method.visitIincInsn(1, -1);
+		method.visitLabel(outerCondition);
+		method.visitVarInsn(Opcodes.ILOAD, 1);
+		method.visitJumpInsn(Opcodes.IFGT, outerBody);
+		method.visitInsn(Opcodes.RETURN);
+
+		assertOmitted("0->[1,4]");
+	}
+
+	@Test
+	public void should_handle_switch_with_probes() {
+		final Label l1 = new Label();
+		final Label l2 = new Label();
+		final Label l3 = new Label();
+		method.visitVarInsn(Opcodes.ILOAD, 1);
+		method.visitTableSwitchInsn(0, 1, l3, new Label[] { l1, l2 });
+		method.visitLabel(l1);
+		method.visitInsn(Opcodes.NOP);
+		method.visitLabel(l2);
+		method.visitInsn(Opcodes.NOP);
+		method.visitLabel(l3);
+		method.visitInsn(Opcodes.RETURN);
+
+		assertOmitted("");
+	}
+
+	private void assertOmitted(final String expected) {
+		LabelFlowAnalyzer.markLabels(method);
+		final ProbeMinimizer minimizer = new ProbeMinimizer();
+		final MethodProbesAdapter adapter = new MethodProbesAdapter(minimizer,
+				this);
+		for (final TryCatchBlockNode block : method.tryCatchBlocks) {
+			block.accept(adapter);
+		}
+		method.instructions.accept(adapter);
+		minimizer.visitEnd();
+
+		final StringBuilder actual = new StringBuilder();
+		for (final Map.Entry<Integer, int[]> entry : minimizer
+				.getOmittedProbes().entrySet()) {
+			if (actual.length() > 0) {
+				actual.append(' ');
+			}
+			actual.append(entry.getKey()).append("->")
+					.append(Arrays.toString(entry.getValue()).replace(" ", ""));
+		}
+		assertEquals(expected, actual.toString());
+	}
+
+}
@@ -67,6 +67,14 @@ public class ClassInstrumenterTest implements IProbeArrayStrategy {
 		return 0;
 	}
 
+	public boolean canLoadInstance(boolean clinit) {
+		return false;
+	}
+
+	public int loadInstance(MethodVisitor mv, boolean clinit) {
+		return 0;
+	}
+
 	public void addMembers(ClassVisitor cv, int probeCount) {
 	}
 
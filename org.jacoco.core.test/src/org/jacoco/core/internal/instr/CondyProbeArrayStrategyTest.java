@@ -71,6 +71,20 @@ public class CondyProbeArrayStrategyTest {
 		assertEquals(3, m.instructions.size());
 	}
 
+	@Test
+	public void should_load_instance_using_condy_and_checkcast() {
+		final MethodNode m = new MethodNode();
+		assertTrue(strategy.canLoadInstance(false));
+		assertTrue(strategy.canLoadInstance(true));
+		final int maxStack = strategy.loadInstance(m, false);
+
+		assertEquals(1, maxStack);
+		assertTrue(((LdcInsnNode) m.instructions
+				.get(0)).cst instanceof ConstantDynamic);
+		assertEquals(Opcodes.CHECKCAST, m.instructions.get(1).getOpcode());
+		assertEquals(2, m.instructions.size());
+	}
+
 	@Test
 	public void should_not_add_fields() {
 		final ClassNode c = new ClassNode();
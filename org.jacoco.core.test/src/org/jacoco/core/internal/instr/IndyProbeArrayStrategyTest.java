@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.instr;
+
+import static org.junit.Assert.assertEquals;
+
+import org.jacoco.core.runtime.OfflineInstrumentationAccessGenerator;
+import org.junit.Before;
+import org.junit.Test;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.InvokeDynamicInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * Unit tests for {@link IndyProbeArrayStrategy}.
+ */
+public class IndyProbeArrayStrategyTest {
+
+	private IndyProbeArrayStrategy strategy;
+
+	@Before
+	public void setup() {
+		strategy = new IndyProbeArrayStrategy("ClassName", true, 1L,
+				new OfflineInstrumentationAccessGenerator());
+	}
+
+	@Test
+	public void insertProbe_should_emit_invokedynamic_with_probe_id() {
+		final MethodNode m = new MethodNode();
+		strategy.insertProbe(m, 42);
+
+		assertEquals(1, m.instructions.size());
+		final InvokeDynamicInsnNode insn = (InvokeDynamicInsnNode) m.instructions
+				.get(0);
+		assertEquals("()V", insn.desc);
+		final Handle bsm = insn.bsm;
+		assertEquals(Opcodes.H_INVOKESTATIC, bsm.getTag());
+		assertEquals("ClassName", bsm.getOwner());
+		assertEquals(InstrSupport.PROBEMETHOD_NAME, bsm.getName());
+		assertEquals(IndyProbeArrayStrategy.PROBE_DESC, bsm.getDesc());
+		assertEquals(Boolean.TRUE, Boolean.valueOf(bsm.isInterface()));
+		assertEquals(1, insn.bsmArgs.length);
+		assertEquals(Integer.valueOf(42), insn.bsmArgs[0]);
+	}
+
+	@Test
+	public void addMembers_should_add_bootstrap_methods() {
+		final ClassNode c = new ClassNode();
+		strategy.addMembers(c, 1);
+
+		assertEquals(0, c.fields.size());
+		assertEquals(3, c.methods.size());
+		assertEquals(InstrSupport.INITMETHOD_NAME, c.methods.get(0).name);
+		assertEquals(InstrSupport.PROBEMETHOD_NAME, c.methods.get(1).name);
+		assertEquals(InstrSupport.HITMETHOD_NAME, c.methods.get(2).name);
+	}
+
+}
@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.instr;
+
+import static org.junit.Assert.assertEquals;
+
+import org.jacoco.core.instr.MethodRecorder;
+import org.jacoco.core.runtime.OfflineInstrumentationAccessGenerator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Unit tests for {@link IndyProbeInserter}.
+ */
+public class IndyProbeInserterTest {
+
+	private MethodRecorder actual, expected;
+
+	private MethodVisitor expectedVisitor;
+
+	private IndyProbeInserter inserter;
+
+	@Before
+	public void setup() {
+		actual = new MethodRecorder();
+		expected = new MethodRecorder();
+		expectedVisitor = expected.getVisitor();
+		inserter = new IndyProbeInserter(actual.getVisitor(),
+				new IndyProbeArrayStrategy("Foo", false, 1L,
+						new OfflineInstrumentationAccessGenerator()));
+	}
+
+	@After
+	public void verify() {
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void should_insert_probe_as_invokedynamic() {
+		inserter.insertProbe(3);
+
+		expectedVisitor.visitInvokeDynamicInsn("probe", "()V",
+				new Handle(Opcodes.H_INVOKESTATIC, "Foo",
+						InstrSupport.PROBEMETHOD_NAME,
+						IndyProbeArrayStrategy.PROBE_DESC, false),
+				Integer.valueOf(3));
+	}
+
+	@Test
+	public void should_not_change_code_and_frames() {
+		inserter.setProbeCount(1);
+		inserter.visitCode();
+		inserter.visitVarInsn(Opcodes.ALOAD, 1);
+		inserter.visitIincInsn(2, 1);
+		inserter.visitFrame(Opcodes.F_NEW, 1, new Object[] { "Foo" }, 0,
+				new Object[0]);
+		inserter.visitMaxs(1, 3);
+
+		expectedVisitor.visitCode();
+		expectedVisitor.visitVarInsn(Opcodes.ALOAD, 1);
+		expectedVisitor.visitIincInsn(2, 1);
+		expectedVisitor.visitFrame(Opcodes.F_NEW, 1, new Object[] { "Foo" }, 0,
+				new Object[0]);
+		expectedVisitor.visitMaxs(1, 3);
+	}
+
+}
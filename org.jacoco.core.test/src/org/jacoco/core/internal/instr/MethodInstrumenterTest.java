@@ -46,6 +46,10 @@ public class MethodInstrumenterTest {
 			public void insertProbe(int id) {
 				actual.getVisitor().visitLdcInsn("Probe " + id);
 			}
+
+			public void setProbeCount(int count) {
+				actual.getVisitor().visitLdcInsn("Count " + count);
+			}
 		};
 		instrumenter = new MethodInstrumenter(actual.getVisitor(),
 				probeInserter);
@@ -69,6 +73,16 @@ public class MethodInstrumenterTest {
 		assertEquals(expected, actual);
 	}
 
+	@Test
+	public void testVisitProbeCount() {
+		instrumenter.visitInferredProbe(1, new int[] { 2 });
+		instrumenter.visitProbeCount(3);
+
+		expectedVisitor.visitLdcInsn("Count 2");
+
+		assertEquals(expected, actual);
+	}
+
 	@Test
 	public void testVisitInsnWithProbe() {
 		instrumenter.visitInsnWithProbe(Opcodes.RETURN, 3);
@@ -13,6 +13,7 @@
 package org.jacoco.core.internal.instr;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -35,6 +36,16 @@ public class NoneProbeArrayStrategyTest {
 		strategy.storeInstance(null, false, 0);
 	}
 
+	@Test
+	public void canLoadInstance_should_return_false() {
+		assertFalse(strategy.canLoadInstance(false));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void loadInstance_should_throw_UnsupportedOperationException() {
+		strategy.loadInstance(null, false);
+	}
+
 	@Test
 	public void addMembers_should_not_add_members() {
 		final ClassNode c = new ClassNode();
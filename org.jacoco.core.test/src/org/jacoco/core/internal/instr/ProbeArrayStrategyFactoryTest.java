@@ -15,6 +15,7 @@ package org.jacoco.core.internal.instr;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
@@ -120,6 +121,9 @@ public class ProbeArrayStrategyFactoryTest {
 
 		strategy.storeInstance(cv.visitMethod(0, null, null, null, null), false,
 				0);
+		assertTrue(strategy.canLoadInstance(false));
+		assertTrue(strategy.canLoadInstance(true));
+		strategy.loadInstance(cv.visitMethod(0, null, null, null, null), false);
 	}
 
 	@Test
@@ -159,6 +163,9 @@ public class ProbeArrayStrategyFactoryTest {
 
 		strategy.storeInstance(cv.visitMethod(0, null, null, null, null), false,
 				0);
+		assertTrue(strategy.canLoadInstance(false));
+		assertFalse(strategy.canLoadInstance(true));
+		strategy.loadInstance(cv.visitMethod(0, null, null, null, null), false);
 	}
 
 	@Test
@@ -187,6 +194,7 @@ public class ProbeArrayStrategyFactoryTest {
 
 		strategy.storeInstance(cv.visitMethod(0, null, null, null, null), false,
 				0);
+		assertFalse(strategy.canLoadInstance(false));
 	}
 
 	@Test
@@ -258,6 +266,42 @@ public class ProbeArrayStrategyFactoryTest {
 		assertNoInitMethod();
 	}
 
+	@Test
+	public void test_java8_class_with_indy_probes() {
+		final IProbeArrayStrategy strategy = test(Opcodes.V1_8, 0, true, true,
+				true, true);
+
+		assertEquals(ClassFieldProbeArrayStrategy.class, strategy.getClass());
+	}
+
+	@Test
+	public void test_java11_class_with_indy_probes() {
+		final IProbeArrayStrategy strategy = test(Opcodes.V11, 0, true, true,
+				true, true);
+
+		assertEquals(IndyProbeArrayStrategy.class, strategy.getClass());
+		assertNoDataField();
+		assertIndyBootstrapMethods();
+	}
+
+	@Test
+	public void test_java11_interface_with_indy_probes() {
+		final IProbeArrayStrategy strategy = test(Opcodes.V11,
+				Opcodes.ACC_INTERFACE, true, true, true, true);
+
+		assertEquals(IndyProbeArrayStrategy.class, strategy.getClass());
+		assertNoDataField();
+		assertIndyBootstrapMethods();
+	}
+
+	@Test
+	public void test_java11_interface_with_clinit_and_indy_probes() {
+		final IProbeArrayStrategy strategy = test(Opcodes.V11,
+				Opcodes.ACC_INTERFACE, true, false, true, true);
+
+		assertEquals(LocalProbeArrayStrategy.class, strategy.getClass());
+	}
+
 	@Test
 	public void test_java11_module() {
 		final IProbeArrayStrategy strategy = createForModule(Opcodes.V11);
@@ -276,6 +320,11 @@ public class ProbeArrayStrategyFactoryTest {
 
 	private IProbeArrayStrategy test(int version, int access, boolean clinit,
 			boolean method, boolean abstractMethod) {
+		return test(version, access, clinit, method, abstractMethod, false);
+	}
+
+	private IProbeArrayStrategy test(int version, int access, boolean clinit,
+			boolean method, boolean abstractMethod, boolean indyProbes) {
 		final ClassWriter writer = new ClassWriter(0);
 		writer.visit(version, access, "Foo", "java/lang/Object", null, null);
 		if (clinit) {
@@ -304,7 +353,8 @@ public class ProbeArrayStrategyFactoryTest {
 		writer.visitEnd();
 
 		final IProbeArrayStrategy strategy = ProbeArrayStrategyFactory
-				.createFor(0, new ClassReader(writer.toByteArray()), generator);
+				.createFor(0, new ClassReader(writer.toByteArray()), generator,
+						indyProbes);
 
 		strategy.addMembers(cv, 123);
 		return strategy;
@@ -400,6 +450,10 @@ public class ProbeArrayStrategyFactoryTest {
 						assertFalse(itf);
 						return;
 					}
+					if (owner.startsWith("java/lang/")) {
+						// bootstrap methods of invokedynamic probes
+						return;
+					}
 					assertEquals(Boolean.valueOf(itf),
 							Boolean.valueOf(isInterface));
 
@@ -433,6 +487,18 @@ public class ProbeArrayStrategyFactoryTest {
 				false);
 	}
 
+	void assertIndyBootstrapMethods() {
+		assertEquals(3, cv.methods.size());
+		cv.methods.get(0).assertInitMethod(CondyProbeArrayStrategy.B_DESC,
+				false);
+		assertEquals(InstrSupport.PROBEMETHOD_NAME, cv.methods.get(1).name);
+		assertEquals(IndyProbeArrayStrategy.PROBE_DESC, cv.methods.get(1).desc);
+		assertEquals(InstrSupport.HITMETHOD_NAME, cv.methods.get(2).name);
+		assertEquals(IndyProbeArrayStrategy.HIT_DESC, cv.methods.get(2).desc);
+		assertEquals(InstrSupport.INITMETHOD_ACC, cv.methods.get(1).access);
+		assertEquals(InstrSupport.INITMETHOD_ACC, cv.methods.get(2).access);
+	}
+
 	void assertInitAndClinitMethods() {
 		assertEquals(2, cv.methods.size());
 		cv.methods.get(0).assertInitMethod(InstrSupport.INITMETHOD_DESC, true);
@@ -48,6 +48,15 @@ public class ProbeInserterTest {
 				return 5;
 			}
 
+			public boolean canLoadInstance(boolean clinit) {
+				return !clinit;
+			}
+
+			public int loadInstance(MethodVisitor mv, boolean clinit) {
+				mv.visitLdcInsn("load");
+				return 1;
+			}
+
 			public void addMembers(ClassVisitor delegate, int probeCount) {
 			}
 		};
@@ -124,6 +133,75 @@ public class ProbeInserterTest {
 		expectedVisitor.visitLdcInsn("clinit");
 	}
 
+	@Test
+	public void testInline() {
+		ProbeInserter pi = new ProbeInserter(0, "m", "(I)V", actualVisitor,
+				arrayStrategy);
+		pi.setProbeCount(1);
+		pi.visitCode();
+		pi.visitVarInsn(Opcodes.ILOAD, 1);
+		pi.insertProbe(0);
+		pi.visitMaxs(1, 2);
+
+		expectedVisitor.visitCode();
+		expectedVisitor.visitVarInsn(Opcodes.ILOAD, 1);
+		expectedVisitor.visitLdcInsn("load");
+		expectedVisitor.visitInsn(Opcodes.ICONST_0);
+		expectedVisitor.visitInsn(Opcodes.ICONST_1);
+		expectedVisitor.visitInsn(Opcodes.BASTORE);
+		expectedVisitor.visitMaxs(4, 2);
+	}
+
+	@Test
+	public void testInlineNoProbes() {
+		ProbeInserter pi = new ProbeInserter(0, "m", "()V", actualVisitor,
+				arrayStrategy);
+		pi.setProbeCount(0);
+		pi.visitCode();
+
+		expectedVisitor.visitCode();
+	}
+
+	@Test
+	public void testInlineVisitFrame() {
+		ProbeInserter pi = new ProbeInserter(0, "m", "(J)V", actualVisitor,
+				arrayStrategy);
+		pi.setProbeCount(1);
+		pi.visitFrame(Opcodes.F_NEW, 2, new Object[] { "Foo", Opcodes.LONG }, 1,
+				new Object[] { "Bar" });
+
+		expectedVisitor.visitFrame(Opcodes.F_NEW, 2,
+				new Object[] { "Foo", Opcodes.LONG }, 1,
+				new Object[] { "Bar" });
+	}
+
+	@Test
+	public void testNoInlineForMultipleProbes() {
+		ProbeInserter pi = new ProbeInserter(0, "m", "()V", actualVisitor,
+				arrayStrategy);
+		pi.setProbeCount(2);
+		pi.visitCode();
+		pi.insertProbe(1);
+
+		expectedVisitor.visitLdcInsn("init");
+		expectedVisitor.visitCode();
+		expectedVisitor.visitVarInsn(Opcodes.ALOAD, 1);
+		expectedVisitor.visitInsn(Opcodes.ICONST_1);
+		expectedVisitor.visitInsn(Opcodes.ICONST_1);
+		expectedVisitor.visitInsn(Opcodes.BASTORE);
+	}
+
+	@Test
+	public void testNoInlineIfNotSupportedByStrategy() {
+		ProbeInserter pi = new ProbeInserter(0, "<clinit>", "()V",
+				actualVisitor, arrayStrategy);
+		pi.setProbeCount(1);
+		pi.visitCode();
+
+		expectedVisitor.visitLdcInsn("clinit");
+		expectedVisitor.visitCode();
+	}
+
 	@Test
 	public void testVisitVarIns() {
 		ProbeInserter pi = new ProbeInserter(0, "m", "(II)V", actualVisitor,
@@ -52,7 +52,14 @@ public class AgentOptionsTest {
 		assertEquals(AgentOptions.DEFAULT_ADDRESS, options.getAddress());
 		assertEquals(AgentOptions.DEFAULT_PORT, options.getPort());
 		assertNull(options.getClassDumpDir());
+		assertNull(options.getClassCacheDir());
+		assertEquals(256, options.getClassCacheSize());
+		assertEquals(0, options.getUninstrumentInterval());
 		assertFalse(options.getJmx());
+		assertFalse(options.getIncremental());
+		assertFalse(options.getMinimizeProbes());
+		assertFalse(options.getCompact());
+		assertFalse(options.getIndyProbes());
 
 		assertEquals("", options.toString());
 	}
@@ -303,6 +310,18 @@ public class AgentOptionsTest {
 		assertEquals(AgentOptions.OutputMode.tcpclient, options.getOutput());
 	}
 
+	@Test
+	public void testSetOutput3() {
+		AgentOptions options = new AgentOptions("output=mmap");
+		assertEquals(AgentOptions.OutputMode.mmap, options.getOutput());
+	}
+
+	@Test
+	public void testSetOutput4() {
+		AgentOptions options = new AgentOptions("output=tcpnioserver");
+		assertEquals(AgentOptions.OutputMode.tcpnioserver, options.getOutput());
+	}
+
 	@Test(expected = IllegalArgumentException.class)
 	public void testInvalidOutput1() {
 		new AgentOptions("output=foo");
@@ -388,12 +407,122 @@ public class AgentOptionsTest {
 		assertEquals("classdumpdir=target/dump", options.toString());
 	}
 
+	@Test
+	public void testGetClassCacheDir() {
+		AgentOptions options = new AgentOptions("classcachedir=target/cache");
+		assertEquals("target/cache", options.getClassCacheDir());
+	}
+
+	@Test
+	public void testSetClassCacheDir() {
+		AgentOptions options = new AgentOptions();
+		options.setClassCacheDir("target/cache");
+		assertEquals("target/cache", options.getClassCacheDir());
+		assertEquals("classcachedir=target/cache", options.toString());
+	}
+
+	@Test
+	public void testGetClassCacheSize() {
+		AgentOptions options = new AgentOptions("classcachesize=64");
+		assertEquals(64, options.getClassCacheSize());
+	}
+
+	@Test
+	public void testSetClassCacheSize() {
+		AgentOptions options = new AgentOptions();
+		options.setClassCacheSize(64);
+		assertEquals(64, options.getClassCacheSize());
+		assertEquals("classcachesize=64", options.toString());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidClassCacheSizeOptionValue() {
+		new AgentOptions("classcachesize=0");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetInvalidClassCacheSize() {
+		AgentOptions options = new AgentOptions();
+		options.setClassCacheSize(-1);
+	}
+
+	@Test
+	public void testGetUninstrumentInterval() {
+		AgentOptions options = new AgentOptions("uninstrumentinterval=60");
+		assertEquals(60, options.getUninstrumentInterval());
+	}
+
+	@Test
+	public void testSetUninstrumentInterval() {
+		AgentOptions options = new AgentOptions();
+		options.setUninstrumentInterval(60);
+		assertEquals(60, options.getUninstrumentInterval());
+		assertEquals("uninstrumentinterval=60", options.toString());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidUninstrumentIntervalOptionValue() {
+		new AgentOptions("uninstrumentinterval=-1");
+	}
+
 	@Test
 	public void testGetJmx() {
 		AgentOptions options = new AgentOptions("jmx=true");
 		assertTrue(options.getJmx());
 	}
 
+	@Test
+	public void testGetIncremental() {
+		AgentOptions options = new AgentOptions("incremental=true");
+		assertTrue(options.getIncremental());
+	}
+
+	@Test
+	public void testSetIncremental() {
+		AgentOptions options = new AgentOptions();
+		options.setIncremental(true);
+		assertTrue(options.getIncremental());
+	}
+
+	@Test
+	public void testGetMinimizeProbes() {
+		AgentOptions options = new AgentOptions("minimizeprobes=true");
+		assertTrue(options.getMinimizeProbes());
+	}
+
+	@Test
+	public void testSetMinimizeProbes() {
+		AgentOptions options = new AgentOptions();
+		options.setMinimizeProbes(true);
+		assertTrue(options.getMinimizeProbes());
+	}
+
+	@Test
+	public void testGetCompact() {
+		AgentOptions options = new AgentOptions("compact=true");
+		assertTrue(options.getCompact());
+	}
+
+	@Test
+	public void testSetCompact() {
+		AgentOptions options = new AgentOptions();
+		options.setCompact(true);
+		assertTrue(options.getCompact());
+	}
+
+	@Test
+	public void testGetIndyProbes() {
+		AgentOptions options = new AgentOptions("indyprobes=true");
+		assertTrue(options.getIndyProbes());
+	}
+
+	@Test
+	public void testSetIndyProbes() {
+		AgentOptions options = new AgentOptions();
+		options.setIndyProbes(true);
+		assertTrue(options.getIndyProbes());
+	}
+
 	@Test
 	public void testSetJmx() {
 		AgentOptions options = new AgentOptions();
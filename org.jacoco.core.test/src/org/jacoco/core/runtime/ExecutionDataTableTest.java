@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.IExecutionDataVisitor;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ExecutionDataTable}.
+ */
+public class ExecutionDataTableTest {
+
+	private ExecutionDataTable table;
+
+	@Before
+	public void setup() {
+		table = new ExecutionDataTable();
+	}
+
+	@Test
+	public void get_should_create_new_entry() {
+		final ExecutionData data = table.get(1000, "Sample", 3);
+
+		assertEquals(1000, data.getId());
+		assertEquals("Sample", data.getName());
+		assertEquals(3, data.getProbes().length);
+	}
+
+	@Test
+	public void get_should_return_existing_entry() {
+		final ExecutionData data = table.get(1000, "Sample", 3);
+
+		assertSame(data, table.get(1000, "Sample", 3));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void get_should_throw_exception_for_incompatible_entry() {
+		table.get(1000, "Sample", 3);
+		table.get(1000, "Sample", 4);
+	}
+
+	@Test
+	public void get_should_support_any_id() {
+		final long[] ids = new long[] { 0, -1, Long.MIN_VALUE, Long.MAX_VALUE,
+				1L << 32, 1L << 38 };
+		for (final long id : ids) {
+			table.get(id, "Sample", 1);
+		}
+		for (final long id : ids) {
+			assertEquals(id, table.get(id, "Sample", 1).getId());
+		}
+		assertEquals(ids.length, getContents().size());
+	}
+
+	@Test
+	public void getContents_should_return_all_entries() {
+		final Set<ExecutionData> expected = new HashSet<ExecutionData>();
+		for (int i = 0; i < 5000; i++) {
+			expected.add(table.get(i * 31L, "Sample" + i, 1));
+		}
+
+		assertEquals(expected, new HashSet<ExecutionData>(getContents()));
+		for (int i = 0; i < 5000; i++) {
+			assertEquals("Sample" + i,
+					table.get(i * 31L, "Sample" + i, 1).getName());
+		}
+	}
+
+	@Test
+	public void accept_should_visit_all_entries() {
+		final Set<ExecutionData> expected = new HashSet<ExecutionData>();
+		for (int i = 0; i < 500; i++) {
+			expected.add(table.get(i * 31L, "Sample" + i, 1));
+		}
+
+		final Set<ExecutionData> actual = new HashSet<ExecutionData>();
+		table.accept(new IExecutionDataVisitor() {
+			public void visitClassExecution(final ExecutionData data) {
+				actual.add(data);
+			}
+		});
+
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void reset_should_reset_all_probes() {
+		final boolean[] probes1 = table.get(1, "Sample1", 1).getProbes();
+		final boolean[] probes2 = table.get(2, "Sample2", 2).getProbes();
+		probes1[0] = true;
+		probes2[1] = true;
+
+		table.reset();
+
+		assertFalse(probes1[0]);
+		assertFalse(probes2[1]);
+		assertEquals(2, getContents().size());
+	}
+
+	@Test
+	public void get_should_return_same_entry_for_concurrent_threads()
+			throws Exception {
+		final int threads = 8;
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			final List<Future<ExecutionData[]>> results = new ArrayList<Future<ExecutionData[]>>();
+			for (int t = 0; t < threads; t++) {
+				results.add(executor.submit(new Callable<ExecutionData[]>() {
+					public ExecutionData[] call() {
+						final ExecutionData[] entries = new ExecutionData[2000];
+						for (int i = 0; i < entries.length; i++) {
+							entries[i] = table.get(i, "Sample", 1);
+						}
+						return entries;
+					}
+				}));
+			}
+			final ExecutionData[] expected = results.get(0).get();
+			for (final Future<ExecutionData[]> result : results) {
+				final ExecutionData[] actual = result.get();
+				for (int i = 0; i < expected.length; i++) {
+					assertSame(expected[i], actual[i]);
+				}
+			}
+			assertEquals(expected.length, getContents().size());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private List<ExecutionData> getContents() {
+		final List<ExecutionData> contents = new ArrayList<ExecutionData>();
+		table.getContents(contents);
+		return contents;
+	}
+
+}
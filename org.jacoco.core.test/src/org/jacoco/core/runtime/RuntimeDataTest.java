@@ -12,14 +12,18 @@
  *******************************************************************************/
 package org.jacoco.core.runtime;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.concurrent.Callable;
 
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.IExecutionDataVisitor;
 import org.jacoco.core.test.TargetLoader;
 import org.junit.Before;
 import org.junit.Test;
@@ -58,16 +62,25 @@ public class RuntimeDataTest {
 
 		assertEquals(3, ((boolean[]) args[0]).length);
 
-		data.collect(storage, storage, false);
 		boolean[] data = (boolean[]) args[0];
+		data[1] = true;
+		this.data.collect(storage, storage, false);
 		assertEquals(3, data.length, 0.0);
-		assertFalse(data[0]);
-		assertFalse(data[1]);
-		assertFalse(data[2]);
-		assertSame(storage.getData(123).getProbes(), data);
+		assertArrayEquals(new boolean[] { false, true, false },
+				storage.getData(123).getProbes());
 		assertEquals("Foo", storage.getData(123).getName());
 	}
 
+	@Test
+	public void testGetProbesPrimitive() {
+		boolean[] probes = data.getProbes(123, "Foo", 3);
+
+		assertEquals(3, probes.length);
+		assertSame(probes, data.getProbes(123, "Foo", 3));
+		assertSame(probes,
+				data.getExecutionData(Long.valueOf(123), "Foo", 3).getProbes());
+	}
+
 	@Test
 	public void testCollectEmpty() {
 		data.collect(storage, storage, false);
@@ -87,6 +100,46 @@ public class RuntimeDataTest {
 		assertEquals("testsession", storage.getSessionInfo().getId());
 	}
 
+	@Test
+	public void testCollectSnapshot() {
+		boolean[] probes = data.getExecutionData(Long.valueOf(123), "Foo", 2)
+				.getProbes();
+		probes[0] = true;
+
+		data.collect(storage, storage, true);
+		probes[1] = true;
+
+		assertNotSame(probes, storage.getData(123).getProbes());
+		assertArrayEquals(new boolean[] { true, false },
+				storage.getData(123).getProbes());
+	}
+
+	@Test
+	public void testCollectShouldNotBlockRegistration() throws Exception {
+		data.getExecutionData(Long.valueOf(123), "Foo", 1);
+		final Thread[] registration = new Thread[1];
+		data.collect(new IExecutionDataVisitor() {
+			public void visitClassExecution(ExecutionData d) {
+				registration[0] = new Thread() {
+					@Override
+					public void run() {
+						data.getExecutionData(Long.valueOf(456), "Bar", 1);
+					}
+				};
+				registration[0].start();
+				try {
+					registration[0].join(10000);
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		}, storage, false);
+
+		assertFalse(registration[0].isAlive());
+		data.collect(storage, storage, false);
+		storage.assertSize(2);
+	}
+
 	@Test
 	public void testCollectWithoutReset() {
 		data.setSessionId("testsession");
@@ -100,6 +153,32 @@ public class RuntimeDataTest {
 		assertEquals("testsession", storage.getSessionInfo().getId());
 	}
 
+	@Test
+	public void testCollectInPlace() {
+		data.setSessionId("testsession");
+		final ExecutionData execution = data.getExecutionData(Long.valueOf(123),
+				"Foo", 1);
+		execution.getProbes()[0] = true;
+
+		data.collectInPlace(storage, storage, false);
+
+		assertSame(execution, storage.getData(123));
+		assertTrue(execution.getProbes()[0]);
+		assertEquals("testsession", storage.getSessionInfo().getId());
+	}
+
+	@Test
+	public void testCollectInPlaceWithReset() {
+		final boolean[] probes = data
+				.getExecutionData(Long.valueOf(123), "Foo", 1).getProbes();
+		probes[0] = true;
+
+		data.collectInPlace(storage, storage, true);
+
+		assertFalse(probes[0]);
+		storage.assertSize(1);
+	}
+
 	@Test
 	public void testEquals() {
 		assertTrue(data.equals(data));
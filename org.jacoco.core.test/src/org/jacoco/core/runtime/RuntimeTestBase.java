@@ -58,6 +58,7 @@ public abstract class RuntimeTestBase {
 	public void testDataAccessor()
 			throws InstantiationException, IllegalAccessException {
 		ITarget t = generateAndInstantiateClass(1234);
+		t.get()[1] = true;
 		data.collect(storage, storage, false);
 		storage.assertData(1234, t.get());
 	}
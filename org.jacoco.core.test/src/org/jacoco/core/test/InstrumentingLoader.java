@@ -49,6 +49,10 @@ public final class InstrumentingLoader extends ClassLoader {
 				target.getClassLoader());
 	}
 
+	public void setMinimizeProbes(final boolean flag) {
+		instrumenter.setMinimizeProbes(flag);
+	}
+
 	@Override
 	protected synchronized Class<?> loadClass(String name, boolean resolve)
 			throws ClassNotFoundException {
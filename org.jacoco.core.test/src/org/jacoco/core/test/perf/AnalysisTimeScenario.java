@@ -12,7 +12,14 @@
  *******************************************************************************/
 package org.jacoco.core.test.perf;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import org.jacoco.core.analysis.Analyzer;
 import org.jacoco.core.analysis.IClassCoverage;
@@ -22,6 +29,8 @@ import org.jacoco.core.test.TargetLoader;
 
 /**
  * Scenario to measure the time taken by the instrumentation process itself.
+ * With a given number of threads the classes are analyzed from an archive in
+ * parallel, compared to the sequential analysis of the same archive.
  */
 public class AnalysisTimeScenario extends TimedScenario {
 
@@ -29,21 +38,46 @@ public class AnalysisTimeScenario extends TimedScenario {
 
 	private final int count;
 
+	private final int threads;
+
+	private ExecutorService executor;
+
 	protected AnalysisTimeScenario(Class<?> target, int count) {
 		super(String.format("analysing %s classes", Integer.valueOf(count)));
 		this.target = target;
 		this.count = count;
+		this.threads = 0;
+	}
+
+	protected AnalysisTimeScenario(Class<?> target, int count, int threads) {
+		super(String.format("analysing %s classes with %s threads",
+				Integer.valueOf(count), Integer.valueOf(threads)));
+		this.target = target;
+		this.count = count;
+		this.threads = threads;
+	}
+
+	@Override
+	public void run(IPerfOutput output) throws Exception {
+		if (threads == 0) {
+			super.run(output);
+			return;
+		}
+		executor = Executors.newFixedThreadPool(threads);
+		try {
+			super.run(output);
+		} finally {
+			executor.shutdown();
+		}
 	}
 
 	@Override
 	protected Callable<Void> getInstrumentedCallable() throws Exception {
 		final byte[] bytes = TargetLoader.getClassDataAsBytes(target);
-		final ExecutionDataStore executionData = new ExecutionDataStore();
-		ICoverageVisitor visitor = new ICoverageVisitor() {
-			public void visitCoverage(IClassCoverage coverage) {
-			}
-		};
-		final Analyzer analyzer = new Analyzer(executionData, visitor);
+		if (threads > 0) {
+			return analyzeArchive(createArchive(bytes), true);
+		}
+		final Analyzer analyzer = createAnalyzer();
 		return new Callable<Void>() {
 			public Void call() throws Exception {
 				for (int i = 0; i < count; i++) {
@@ -53,4 +87,48 @@ public class AnalysisTimeScenario extends TimedScenario {
 			}
 		};
 	}
+
+	@Override
+	protected Callable<Void> getReferenceCallable() throws Exception {
+		if (threads == 0) {
+			return null;
+		}
+		final byte[] bytes = TargetLoader.getClassDataAsBytes(target);
+		return analyzeArchive(createArchive(bytes), false);
+	}
+
+	private Callable<Void> analyzeArchive(final byte[] archive,
+			final boolean parallel) {
+		final Analyzer analyzer = createAnalyzer();
+		if (parallel) {
+			analyzer.setExecutor(executor);
+		}
+		return new Callable<Void>() {
+			public Void call() throws Exception {
+				analyzer.analyzeAll(new ByteArrayInputStream(archive),
+						"archive");
+				return null;
+			}
+		};
+	}
+
+	private byte[] createArchive(final byte[] bytes) throws IOException {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		final ZipOutputStream zip = new ZipOutputStream(buffer);
+		for (int i = 0; i < count; i++) {
+			zip.putNextEntry(new ZipEntry("Target" + i + ".class"));
+			zip.write(bytes);
+		}
+		zip.close();
+		return buffer.toByteArray();
+	}
+
+	private Analyzer createAnalyzer() {
+		final ExecutionDataStore executionData = new ExecutionDataStore();
+		ICoverageVisitor visitor = new ICoverageVisitor() {
+			public void visitCoverage(IClassCoverage coverage) {
+			}
+		};
+		return new Analyzer(executionData, visitor);
+	}
 }
@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.test.perf;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+
+import org.eclipse.jgit.api.Git;
+import org.jacoco.core.internal.diff.CodeDiff;
+import org.jacoco.core.internal.diff.DiffOptions;
+
+/**
+ * Scenario to measure the time taken to diff two commits of a synthetic
+ * repository with the given number of threads. The reference is the same diff
+ * with a single thread.
+ */
+public class CodeDiffScenario extends TimedScenario {
+
+	private static final int METHODS = 40;
+
+	private final int files;
+
+	private final int threads;
+
+	private File repository;
+
+	private String oldCommit;
+
+	private String newCommit;
+
+	protected CodeDiffScenario(int files, int threads) {
+		super(String.format("diff synthetic repo %s files, %s threads",
+				Integer.valueOf(files), Integer.valueOf(threads)));
+		this.files = files;
+		this.threads = threads;
+	}
+
+	@Override
+	public void run(IPerfOutput output) throws Exception {
+		repository = File.createTempFile("jacoco-diff", "");
+		repository.delete();
+		final Git git = Git.init().setDirectory(repository).call();
+		try {
+			oldCommit = commit(git, 0);
+			newCommit = commit(git, 1);
+			super.run(output);
+		} finally {
+			git.close();
+			delete(repository);
+		}
+	}
+
+	@Override
+	protected Callable<Void> getInstrumentedCallable() throws Exception {
+		return diff(threads);
+	}
+
+	@Override
+	protected Callable<Void> getReferenceCallable() throws Exception {
+		return diff(1);
+	}
+
+	private Callable<Void> diff(final int parallelism) {
+		final DiffOptions options = new DiffOptions();
+		options.setParallelism(parallelism);
+		return new Callable<Void>() {
+			public Void call() throws Exception {
+				if (CodeDiff
+						.diffCommitToCommit(repository.getPath(), "master",
+								newCommit, oldCommit, options)
+						.size() != files) {
+					throw new AssertionError("Unexpected diff result");
+				}
+				return null;
+			}
+		};
+	}
+
+	/**
+	 * Creates a commit where every second method of every file has changed
+	 * compared to the previous version.
+	 */
+	private String commit(Git git, int version) throws Exception {
+		for (int i = 0; i < files; i++) {
+			final String path = "src/main/java/org/example/Target" + i
+					+ ".java";
+			final StringBuilder source = new StringBuilder();
+			source.append("package org.example;\n");
+			source.append("public class Target").append(i).append(" {\n");
+			for (int m = 0; m < METHODS; m++) {
+				source.append("  int method").append(m).append("(int a) {\n");
+				source.append("    for (int i = 0; i < a; i++) {\n");
+				source.append("      a += i * ")
+						.append(m % 2 == 0 ? version : 0).append(";\n");
+				source.append("    }\n");
+				source.append("    return a;\n");
+				source.append("  }\n");
+			}
+			source.append("}\n");
+			write(new File(repository, path), source.toString());
+			git.add().addFilepattern(path).call();
+		}
+		return git.commit().setMessage("version " + version).call().getName();
+	}
+
+	private static void write(File file, String content) throws IOException {
+		file.getParentFile().mkdirs();
+		final FileWriter writer = new FileWriter(file);
+		writer.write(content);
+		writer.close();
+	}
+
+	private static void delete(File file) {
+		final File[] children = file.listFiles();
+		if (children != null) {
+			for (final File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+}
@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.test.perf;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+
+/**
+ * Scenario to measure the throughput of {@link ExecutionDataStore} for the
+ * given number of classes: loading execution data, merging the same classes a
+ * second time and looking up every class by id and name like analysis does. As
+ * a reference the same is done with a store based on a boxed
+ * <code>HashMap&lt;Long, ExecutionData&gt;</code> and a
+ * <code>HashSet&lt;String&gt;</code> of names.
+ */
+public class ExecutionDataStoreScenario extends TimedScenario {
+
+	/** Measured operation */
+	enum Operation {
+		LOAD, MERGE, LOOKUP
+	}
+
+	private static final int PROBES = 10;
+
+	private final int classes;
+
+	private final Operation operation;
+
+	private long[] ids;
+
+	private String[] names;
+
+	protected ExecutionDataStoreScenario(int classes, Operation operation) {
+		super(String.format("execution data store %s %s classes",
+				operation.name().toLowerCase(), Integer.valueOf(classes)));
+		this.classes = classes;
+		this.operation = operation;
+	}
+
+	@Override
+	public void run(IPerfOutput output) throws Exception {
+		ids = new long[classes];
+		names = new String[classes];
+		for (int i = 0; i < classes; i++) {
+			ids[i] = i * 0x9E3779B97F4A7C15L;
+			names[i] = "org/example/Target" + i;
+		}
+		super.run(output);
+	}
+
+	@Override
+	protected Callable<Void> getInstrumentedCallable() throws Exception {
+		final ExecutionDataStore filled = new ExecutionDataStore();
+		load(filled);
+		return new Callable<Void>() {
+			public Void call() throws Exception {
+				switch (operation) {
+				case LOAD:
+					load(new ExecutionDataStore());
+					break;
+				case MERGE:
+					final ExecutionDataStore store = new ExecutionDataStore();
+					load(store);
+					load(store);
+					break;
+				case LOOKUP:
+					for (int i = 0; i < classes; i++) {
+						if (filled.get(ids[i]) == null
+								|| !filled.contains(names[i])) {
+							throw new AssertionError("Missing class");
+						}
+					}
+					break;
+				}
+				return null;
+			}
+		};
+	}
+
+	@Override
+	protected Callable<Void> getReferenceCallable() throws Exception {
+		final BoxedStore filled = new BoxedStore();
+		load(filled);
+		return new Callable<Void>() {
+			public Void call() throws Exception {
+				switch (operation) {
+				case LOAD:
+					load(new BoxedStore());
+					break;
+				case MERGE:
+					final BoxedStore store = new BoxedStore();
+					load(store);
+					load(store);
+					break;
+				case LOOKUP:
+					for (int i = 0; i < classes; i++) {
+						if (filled.get(ids[i]) == null
+								|| !filled.contains(names[i])) {
+							throw new AssertionError("Missing class");
+						}
+					}
+					break;
+				}
+				return null;
+			}
+		};
+	}
+
+	private void load(final ExecutionDataStore store) {
+		for (int i = 0; i < classes; i++) {
+			store.put(newData(i));
+		}
+	}
+
+	private void load(final BoxedStore store) {
+		for (int i = 0; i < classes; i++) {
+			store.put(newData(i));
+		}
+	}
+
+	private ExecutionData newData(int i) {
+		final boolean[] probes = new boolean[PROBES];
+		probes[i % PROBES] = true;
+		return new ExecutionData(ids[i], names[i], probes);
+	}
+
+	/**
+	 * Store implementation with boxed keys for reference.
+	 */
+	private static class BoxedStore {
+
+		private final Map<Long, ExecutionData> entries = new HashMap<Long, ExecutionData>();
+
+		private final Set<String> names = new HashSet<String>();
+
+		void put(final ExecutionData data) {
+			final Long id = Long.valueOf(data.getId());
+			final ExecutionData entry = entries.get(id);
+			if (entry == null) {
+				entries.put(id, data);
+				names.add(data.getName());
+			} else {
+				entry.merge(data);
+			}
+		}
+
+		ExecutionData get(final long id) {
+			return entries.get(Long.valueOf(id));
+		}
+
+		boolean contains(final String name) {
+			return names.contains(name);
+		}
+
+	}
+
+}
@@ -25,17 +25,43 @@ public class InstrumentationSizeSzenario implements IPerfScenario {
 
 	private final Class<?> target;
 
+	private final boolean minimizeProbes;
+
+	private final boolean compact;
+
 	public InstrumentationSizeSzenario(Class<?> target) {
+		this(target, false);
+	}
+
+	public InstrumentationSizeSzenario(Class<?> target,
+			boolean minimizeProbes) {
+		this(target, minimizeProbes, false);
+	}
+
+	public InstrumentationSizeSzenario(Class<?> target, boolean minimizeProbes,
+			boolean compact) {
 		this.target = target;
+		this.minimizeProbes = minimizeProbes;
+		this.compact = compact;
 	}
 
 	public void run(IPerfOutput output) throws Exception {
 		final IRuntime runtime = new LoggerRuntime();
 		final Instrumenter instr = new Instrumenter(runtime);
+		instr.setMinimizeProbes(minimizeProbes);
+		instr.setCompact(compact);
 		final byte[] original = TargetLoader.getClassDataAsBytes(target);
 		final byte[] instrumented = instr.instrument(original, "");
-		output.writeByteResult("instrumented class", instrumented.length,
+		output.writeByteResult(getDescription(), instrumented.length,
 				original.length);
 	}
 
+	private String getDescription() {
+		if (minimizeProbes) {
+			return compact ? "instrumented class (minimized probes, compact)"
+					: "instrumented class (minimized probes)";
+		}
+		return compact ? "instrumented class (compact)" : "instrumented class";
+	}
+
 }
@@ -14,6 +14,7 @@ package org.jacoco.core.test.perf;
 
 import java.io.PrintWriter;
 
+import org.jacoco.core.test.perf.ExecutionDataStoreScenario.Operation;
 import org.jacoco.core.test.perf.targets.Target01;
 import org.jacoco.core.test.perf.targets.Target02;
 import org.jacoco.core.test.perf.targets.Target03;
@@ -30,9 +31,28 @@ public class PerformanceSuite implements IPerfScenario {
 				.run(output);
 		new ExecuteInstrumentedCodeScenario("game of life", Target03.class)
 				.run(output);
+		new ExecuteInstrumentedCodeScenario("loop only (minimized probes)",
+				Target02.class, true).run(output);
+		new ExecuteInstrumentedCodeScenario("game of life (minimized probes)",
+				Target03.class, true).run(output);
 		new InstrumentationSizeSzenario(Target03.class).run(output);
+		new InstrumentationSizeSzenario(Target03.class, true).run(output);
+		new InstrumentationSizeSzenario(Target03.class, false, true)
+				.run(output);
+		new InstrumentationSizeSzenario(Target03.class, true, true).run(output);
 		new InstrumentationTimeScenario(Target03.class, 1000).run(output);
 		new AnalysisTimeScenario(Target03.class, 1000).run(output);
+		final int cores = Runtime.getRuntime().availableProcessors();
+		new AnalysisTimeScenario(Target03.class, 1000, cores).run(output);
+		// Scaling of the diff with the number of threads:
+		for (int threads = 2; threads < cores; threads *= 2) {
+			new CodeDiffScenario(200, threads).run(output);
+		}
+		new CodeDiffScenario(200, Math.max(2, cores)).run(output);
+		new RuntimeRegistrationScenario(20000, cores).run(output);
+		new ExecutionDataStoreScenario(300000, Operation.LOAD).run(output);
+		new ExecutionDataStoreScenario(300000, Operation.MERGE).run(output);
+		new ExecutionDataStoreScenario(300000, Operation.LOOKUP).run(output);
 	}
 
 	public static void main(String[] args) throws Exception {
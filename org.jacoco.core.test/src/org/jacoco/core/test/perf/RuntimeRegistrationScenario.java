@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.test.perf;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.runtime.RuntimeData;
+
+/**
+ * Scenario to measure the registration of classes in the runtime during
+ * application startup: the given number of threads concurrently initializes the
+ * same set of classes, each of them retrieves its probe array through the
+ * {@link RuntimeData#equals(Object)} protocol like instrumented code does. As a
+ * reference the same is done with a single lock around a
+ * {@link ExecutionDataStore}.
+ */
+public class RuntimeRegistrationScenario extends TimedScenario {
+
+	private final int classes;
+
+	private final int threads;
+
+	private ExecutorService executor;
+
+	protected RuntimeRegistrationScenario(int classes, int threads) {
+		super(String.format("registering %s classes with %s threads",
+				Integer.valueOf(classes), Integer.valueOf(threads)));
+		this.classes = classes;
+		this.threads = threads;
+	}
+
+	@Override
+	public void run(IPerfOutput output) throws Exception {
+		executor = Executors.newFixedThreadPool(threads);
+		try {
+			super.run(output);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Override
+	protected Callable<Void> getInstrumentedCallable() throws Exception {
+		return new Callable<Void>() {
+			public Void call() throws Exception {
+				final RuntimeData data = new RuntimeData();
+				startup(data);
+				return null;
+			}
+		};
+	}
+
+	@Override
+	protected Callable<Void> getReferenceCallable() throws Exception {
+		return new Callable<Void>() {
+			public Void call() throws Exception {
+				final ExecutionDataStore store = new ExecutionDataStore();
+				startup(new Object() {
+					@Override
+					public boolean equals(Object obj) {
+						final Object[] args = (Object[]) obj;
+						synchronized (store) {
+							args[0] = store
+									.get((Long) args[0], (String) args[1],
+											((Integer) args[2]).intValue())
+									.getProbes();
+						}
+						return false;
+					}
+
+					@Override
+					public int hashCode() {
+						return 0;
+					}
+				});
+				return null;
+			}
+		};
+	}
+
+	private void startup(final Object access) throws Exception {
+		final List<Future<Void>> results = new ArrayList<Future<Void>>();
+		for (int t = 0; t < threads; t++) {
+			final int offset = t * classes / threads;
+			results.add(executor.submit(new Callable<Void>() {
+				public Void call() {
+					for (int i = 0; i < classes; i++) {
+						final int c = (offset + i) % classes;
+						final Object[] args = new Object[] {
+								Long.valueOf(c * 0x9E3779B97F4A7C15L),
+								"Target" + c, Integer.valueOf(10) };
+						access.equals(args);
+					}
+					return null;
+				}
+			}));
+		}
+		for (final Future<Void> result : results) {
+			result.get();
+		}
+	}
+
+}
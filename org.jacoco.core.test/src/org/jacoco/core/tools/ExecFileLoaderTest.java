@@ -13,6 +13,7 @@
 package org.jacoco.core.tools;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -21,12 +22,14 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.List;
 
 import org.jacoco.core.data.ExecutionData;
 import org.jacoco.core.data.ExecutionDataReader;
 import org.jacoco.core.data.ExecutionDataStore;
 import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.IndexedExecutionDataReader;
 import org.jacoco.core.data.SessionInfo;
 import org.jacoco.core.data.SessionInfoStore;
 import org.junit.Before;
@@ -114,6 +117,46 @@ public class ExecFileLoaderTest {
 		assertFileContents(file, "a");
 	}
 
+	@Test
+	public void testSaveIndexedFile() throws IOException {
+		final File file = createFile("a");
+
+		loader.load(createFile("bb"));
+		loader.saveIndexed(file);
+
+		assertTrue(IndexedExecutionDataReader.isIndexed(file));
+		assertFileContents(file, "bb");
+		final ExecFileLoader indexed = new ExecFileLoader();
+		indexed.load(file);
+		assertContents(indexed.getExecutionDataStore(),
+				indexed.getSessionInfoStore(), "bb");
+	}
+
+	@Test
+	public void testLoadFileWithPrefixes() throws IOException {
+		loader.load(createFile("a"), Arrays.asList("b", "c"));
+		loader.load(createFile("bb"), Arrays.asList("b", "c"));
+
+		assertEquals(1, loader.getExecutionDataStore().getContents().size());
+		assertEquals("bb", loader.getExecutionDataStore().get(2).getName());
+		assertEquals(2, loader.getSessionInfoStore().getInfos().size());
+	}
+
+	@Test
+	public void testLoadIndexedFileWithPrefixes() throws IOException {
+		loader.load(createFile("a"));
+		loader.load(createFile("bb"));
+		final File file = new File(sourceFolder.getRoot(), "indexed.exec");
+		loader.saveIndexed(file);
+
+		final ExecFileLoader selective = new ExecFileLoader();
+		selective.load(file, Arrays.asList("b"));
+
+		assertEquals(1, selective.getExecutionDataStore().getContents().size());
+		assertEquals("bb", selective.getExecutionDataStore().get(2).getName());
+		assertEquals(2, selective.getSessionInfoStore().getInfos().size());
+	}
+
 	private File createFile(String id) throws IOException {
 		final File file = new File(sourceFolder.getRoot(), id + ".exec");
 		final FileOutputStream out = new FileOutputStream(file);
@@ -0,0 +1,289 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.tools;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.IndexedExecutionDataReader;
+import org.jacoco.core.data.SessionInfo;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link ExecFileMerger}.
+ */
+public class ExecFileMergerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File tempDirectory;
+
+	private ExecFileMerger merger;
+
+	@Before
+	public void setup() throws IOException {
+		tempDirectory = folder.newFolder("temp");
+		merger = new ExecFileMerger();
+		merger.setTempDirectory(tempDirectory);
+	}
+
+	@Test
+	public void should_write_header_only_without_inputs() throws IOException {
+		merger.merge();
+
+		assertEquals(0, merger.getClassCount());
+		assertMergedLikeLoader(new ArrayList<File>());
+	}
+
+	@Test
+	public void should_merge_like_loader_with_single_thread()
+			throws IOException {
+		merger.setThreads(1);
+		final List<File> files = createRandomFiles(20);
+		addAll(files);
+		merger.merge();
+
+		assertMergedLikeLoader(files);
+	}
+
+	@Test
+	public void should_merge_like_loader_with_multiple_threads()
+			throws IOException {
+		merger.setThreads(4);
+		final List<File> files = createRandomFiles(50);
+		addAll(files);
+		merger.merge();
+
+		assertMergedLikeLoader(files);
+	}
+
+	@Test
+	public void should_merge_like_loader_when_memory_limit_is_exceeded()
+			throws IOException {
+		merger.setThreads(3);
+		merger.setMemoryLimit(2000);
+		final List<File> files = createRandomFiles(50);
+		addAll(files);
+		merger.merge();
+
+		assertTrue(tempDirectory.list().length > 0);
+		assertMergedLikeLoader(files);
+
+		merger.dispose();
+		assertEquals(0, tempDirectory.list().length);
+	}
+
+	@Test
+	public void should_count_distinct_classes() throws IOException {
+		merger.setMemoryLimit(1);
+		merger.add(createFile("a", hit(1, "A", 2), hit(2, "B", 2)));
+		merger.add(createFile("b", hit(2, "B", 2), hit(3, "C", 2)));
+		merger.merge();
+
+		assertEquals(3, merger.getClassCount());
+	}
+
+	@Test
+	public void should_save_indexed_file() throws IOException {
+		final List<File> files = createRandomFiles(5);
+		addAll(files);
+		merger.merge();
+		final File file = new File(folder.getRoot(), "indexed.exec");
+		merger.saveIndexed(file);
+
+		assertTrue(IndexedExecutionDataReader.isIndexed(file));
+		final ExecFileLoader expected = new ExecFileLoader();
+		for (final File f : files) {
+			expected.load(f);
+		}
+		final ExecFileLoader actual = new ExecFileLoader();
+		actual.load(file);
+		assertEquals(toBytes(expected), toBytes(actual));
+	}
+
+	@Test
+	public void should_read_custom_inputs() throws IOException {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		final ExecutionDataWriter writer = new ExecutionDataWriter(buffer);
+		writer.visitClassExecution(
+				new ExecutionData(1, "A", new boolean[] { true }));
+		merger.add(new ExecFileMerger.Input() {
+			public InputStream open() {
+				return new ByteArrayInputStream(buffer.toByteArray());
+			}
+		});
+		merger.merge();
+
+		assertEquals(1, merger.getClassCount());
+	}
+
+	@Test
+	public void should_report_input_which_cannot_be_read() throws IOException {
+		final File file = folder.newFile("broken.exec");
+		final FileWriter writer = new FileWriter(file);
+		writer.write("Invalid Content");
+		writer.close();
+		merger.add(file);
+		try {
+			merger.merge();
+			fail("IOException expected");
+		} catch (final IOException e) {
+			assertEquals("Unable to read " + file.getAbsolutePath(),
+					e.getMessage());
+			assertEquals("Invalid execution data file.",
+					e.getCause().getMessage());
+		}
+	}
+
+	@Test
+	public void should_propagate_IOException_of_spill() throws IOException {
+		merger.setTempDirectory(new File(folder.getRoot(), "missing"));
+		merger.setThreads(1);
+		merger.setMemoryLimit(1);
+		merger.add(createFile("a", hit(1, "A", 2), hit(2, "B", 2)));
+		try {
+			merger.merge();
+			fail("IOException expected");
+		} catch (final IOException e) {
+			// Not an error of the input
+			assertFalse(String.valueOf(e.getMessage())
+					.startsWith("Unable to read"));
+		}
+	}
+
+	@Test
+	public void should_report_missing_input() throws IOException {
+		final File file = new File(folder.getRoot(), "missing.exec");
+		merger.add(file);
+		try {
+			merger.merge();
+			fail("IOException expected");
+		} catch (final IOException e) {
+			assertEquals("Unable to read " + file.getAbsolutePath(),
+					e.getMessage());
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void should_reject_incompatible_inputs() throws IOException {
+		merger.add(createFile("a", hit(1, "A", 2)));
+		merger.add(createFile("b", hit(1, "A", 3)));
+		merger.merge();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void should_reject_incompatible_inputs_when_memory_limit_is_exceeded()
+			throws IOException {
+		merger.setMemoryLimit(1);
+		merger.add(createFile("a", hit(1, "A", 2)));
+		merger.add(createFile("b", hit(1, "A", 3)));
+		merger.merge();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void should_not_accept_before_merge() throws IOException {
+		merger.save(new ByteArrayOutputStream());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void should_reject_invalid_thread_count() {
+		merger.setThreads(0);
+	}
+
+	private void addAll(final List<File> files) {
+		for (final File file : files) {
+			merger.add(file);
+		}
+	}
+
+	/**
+	 * Creates files with overlapping random subsets of classes in random order,
+	 * random probes and a session each.
+	 */
+	private List<File> createRandomFiles(final int count) throws IOException {
+		final Random random = new Random(count);
+		final List<File> files = new ArrayList<File>();
+		for (int i = 0; i < count; i++) {
+			final List<ExecutionData> data = new ArrayList<ExecutionData>();
+			for (int c = 0; c < 40; c++) {
+				final int id = random.nextInt(200);
+				final boolean[] probes = new boolean[id % 70 + 1];
+				for (int p = 0; p < probes.length; p++) {
+					probes[p] = random.nextInt(4) == 0;
+				}
+				data.add(new ExecutionData(id, "Class" + id, probes));
+			}
+			files.add(createFile("f" + i,
+					data.toArray(new ExecutionData[data.size()])));
+		}
+		return files;
+	}
+
+	private static ExecutionData hit(final long id, final String name,
+			final int probeCount) {
+		final boolean[] probes = new boolean[probeCount];
+		probes[0] = true;
+		return new ExecutionData(id, name, probes);
+	}
+
+	private File createFile(final String name, final ExecutionData... data)
+			throws IOException {
+		final File file = new File(folder.getRoot(), name + ".exec");
+		final FileOutputStream out = new FileOutputStream(file);
+		final ExecutionDataWriter writer = new ExecutionDataWriter(out);
+		writer.visitSessionInfo(
+				new SessionInfo(name, name.length(), name.length() + 1));
+		for (final ExecutionData d : data) {
+			writer.visitClassExecution(d);
+		}
+		out.close();
+		return file;
+	}
+
+	private void assertMergedLikeLoader(final List<File> files)
+			throws IOException {
+		final ExecFileLoader loader = new ExecFileLoader();
+		for (final File file : files) {
+			loader.load(file);
+		}
+		final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+		merger.save(actual);
+		assertArrayEquals(toBytes(loader).getBytes("ISO-8859-1"),
+				actual.toByteArray());
+	}
+
+	private static String toBytes(final ExecFileLoader loader)
+			throws IOException {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		loader.save(buffer);
+		return buffer.toString("ISO-8859-1");
+	}
+
+}
@@ -12,13 +12,19 @@
  *******************************************************************************/
 package org.jacoco.core.analysis;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Enumeration;
 import java.util.StringTokenizer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 import org.jacoco.core.data.ExecutionData;
@@ -26,10 +32,13 @@ import org.jacoco.core.data.ExecutionDataStore;
 import org.jacoco.core.internal.ContentTypeDetector;
 import org.jacoco.core.internal.InputStreams;
 import org.jacoco.core.internal.Pack200Streams;
+import org.jacoco.core.internal.analysis.AnalysisCache;
 import org.jacoco.core.internal.analysis.ClassAnalyzer;
 import org.jacoco.core.internal.analysis.ClassCoverageImpl;
+import org.jacoco.core.internal.analysis.ClassStructure;
 import org.jacoco.core.internal.analysis.StringPool;
 import org.jacoco.core.internal.data.CRC64;
+import org.jacoco.core.internal.diff.DiffIndex;
 import org.jacoco.core.internal.flow.ClassProbesAdapter;
 import org.jacoco.core.internal.instr.InstrSupport;
 import org.objectweb.asm.ClassReader;
@@ -46,12 +55,37 @@ import org.objectweb.asm.Opcodes;
  */
 public class Analyzer {
 
+	private static final String VERSIONS_PREFIX = "META-INF/versions/";
+
+	/**
+	 * Folders of class files in web applications and executable Spring Boot
+	 * archives.
+	 */
+	private static final String[] CLASSES_PREFIXES = { "WEB-INF/classes/",
+			"BOOT-INF/classes/" };
+
 	private final ExecutionDataStore executionData;
 
 	private final ICoverageVisitor coverageVisitor;
 
+	private final DiffIndex diffIndex;
+
 	private final StringPool stringPool;
 
+	private IClassNameFilter classNameFilter;
+
+	private final Object visitorLock = new Object();
+
+	private Executor executor;
+
+	private ParallelJob job;
+
+	private File cacheDirectory;
+
+	private AnalysisCache cache;
+
+	private boolean minimizeProbes;
+
 	/**
 	 * Creates a new analyzer reporting to the given output.
 	 *
@@ -63,11 +97,138 @@ public class Analyzer {
 	 */
 	public Analyzer(final ExecutionDataStore executionData,
 			final ICoverageVisitor coverageVisitor) {
+		this(executionData, coverageVisitor, DiffIndex.EMPTY);
+	}
+
+	/**
+	 * Creates a new analyzer reporting to the given output. Only the methods
+	 * contained in the given diff scope are analyzed, unless the scope is
+	 * empty. Class files in archives and directories which can't contain
+	 * changed methods according to their name are skipped without reading them.
+	 *
+	 * @param executionData
+	 *            execution data
+	 * @param coverageVisitor
+	 *            the output instance that will coverage data for every analyzed
+	 *            class
+	 * @param diffIndex
+	 *            changed classes, empty for full coverage
+	 */
+	public Analyzer(final ExecutionDataStore executionData,
+			final ICoverageVisitor coverageVisitor, final DiffIndex diffIndex) {
 		this.executionData = executionData;
 		this.coverageVisitor = coverageVisitor;
+		this.diffIndex = diffIndex;
 		this.stringPool = new StringPool();
 	}
 
+	/**
+	 * Sets a filter to skip classes by name when analyzing archives and
+	 * directories. Skipped class files are not read at all. Classes passed
+	 * directly as byte array or stream are always analyzed. Skipped classes are
+	 * not counted by the <code>analyzeAll()</code> methods.
+	 *
+	 * @param classNameFilter
+	 *            filter for the classes to analyze, <code>null</code> for all
+	 *            classes
+	 */
+	public void setClassNameFilter(final IClassNameFilter classNameFilter) {
+		this.classNameFilter = classNameFilter;
+	}
+
+	/**
+	 * Sets an executor to analyze the classes found by the
+	 * <code>analyzeAll()</code> methods in parallel. Class files are still read
+	 * by the calling thread, parsing and analysis is done by the executor.
+	 * Every <code>analyzeAll()</code> call returns after all its classes have
+	 * been analyzed. The coverage visitor is called by one thread at a time, so
+	 * it does not need to be thread-safe.
+	 *
+	 * @param executor
+	 *            executor for the analysis of single classes, <code>null</code>
+	 *            to analyze all classes in the calling thread
+	 */
+	public void setExecutor(final Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Sets a directory to cache the structure of analyzed classes. Classes are
+	 * identified by their class id, i.e. by their content. For cached classes
+	 * only the execution data is applied to the cached structure, the class
+	 * file is not parsed again. The cache can be shared by concurrent
+	 * processes. The cache is opened with the settings of this analyzer when
+	 * the next class is analyzed, so this method can be called in any order
+	 * with the other setters.
+	 *
+	 * @param directory
+	 *            cache directory, created on demand, or <code>null</code> to
+	 *            disable caching
+	 */
+	public void setCacheDirectory(final File directory) {
+		this.cacheDirectory = directory;
+		this.cache = null;
+	}
+
+	/**
+	 * Determines whether the execution data has been recorded by classes
+	 * instrumented with probe minimization. In this case the execution of the
+	 * omitted probes is inferred from the probes which have been inserted.
+	 * Execution data recorded without probe minimization is reported correctly
+	 * in both modes, but the analysis takes longer with this setting. Default
+	 * is <code>false</code>.
+	 *
+	 * @param flag
+	 *            <code>true</code> if classes have been instrumented with probe
+	 *            minimization
+	 * @see org.jacoco.core.instr.Instrumenter#setMinimizeProbes(boolean)
+	 */
+	public void setMinimizeProbes(final boolean flag) {
+		this.minimizeProbes = flag;
+		this.cache = null;
+	}
+
+	/**
+	 * Returns the cache for the current settings. Must be called by the thread
+	 * which started the analysis.
+	 *
+	 * @return cache or <code>null</code> if caching is disabled
+	 */
+	private AnalysisCache getCache() {
+		if (cache == null && cacheDirectory != null) {
+			cache = new AnalysisCache(cacheDirectory, minimizeProbes);
+		}
+		return cache;
+	}
+
+	/**
+	 * Checks the name of a class file against the diff scope and the class name
+	 * filter.
+	 *
+	 * @param resource
+	 *            name of a class file, including the <code>.class</code>
+	 *            extension
+	 * @return <code>true</code> if the class file should be analyzed
+	 */
+	private boolean isIncluded(final String resource) {
+		String name = resource.substring(0, resource.length() - 6);
+		if (name.startsWith(VERSIONS_PREFIX)) {
+			// Multi-release jar: META-INF/versions/<version>/<class name>
+			final int pos = name.indexOf('/', VERSIONS_PREFIX.length());
+			name = name.substring(pos + 1);
+		}
+		for (final String prefix : CLASSES_PREFIXES) {
+			if (name.startsWith(prefix)) {
+				name = name.substring(prefix.length());
+				break;
+			}
+		}
+		if (!diffIndex.isEmpty() && !diffIndex.containsClassFile(name)) {
+			return false;
+		}
+		return classNameFilter == null || classNameFilter.accept(name);
+	}
+
 	/**
 	 * Creates an ASM class visitor for analysis.
 	 *
@@ -96,13 +257,22 @@ public class Analyzer {
 			@Override
 			public void visitEnd() {
 				super.visitEnd();
-				coverageVisitor.visitCoverage(coverage);
+				visitCoverage(coverage);
 			}
 		};
-		return new ClassProbesAdapter(analyzer, false);
+		// Without execution data there is nothing to infer from
+		return new ClassProbesAdapter(analyzer, false, diffIndex,
+				minimizeProbes && probes != null);
+	}
+
+	private void visitCoverage(final IClassCoverage coverage) {
+		synchronized (visitorLock) {
+			coverageVisitor.visitCoverage(coverage);
+		}
 	}
 
-	private void analyzeClass(final byte[] source) {
+	private void analyzeClass(final byte[] source, final AnalysisCache cache)
+			throws IOException {
 		final long classId = CRC64.classId(source);
 		final ClassReader reader = InstrSupport.classReaderFor(source);
 		if ((reader.getAccess() & Opcodes.ACC_MODULE) != 0) {
@@ -111,9 +281,37 @@ public class Analyzer {
 		if ((reader.getAccess() & Opcodes.ACC_SYNTHETIC) != 0) {
 			return;
 		}
-		final ClassVisitor visitor = createAnalyzingVisitor(classId,
-				reader.getClassName());
-		reader.accept(visitor, 0);
+		ClassStructure structure = cache == null ? null
+				: cache.get(classId, reader.getClassName(), source);
+		if (structure == null) {
+			if (cache == null) {
+				final ClassVisitor visitor = createAnalyzingVisitor(classId,
+						reader.getClassName());
+				reader.accept(visitor, 0);
+				return;
+			}
+			structure = new ClassStructure(reader.getClassName());
+			final ClassCoverageImpl coverage = new ClassCoverageImpl(
+					reader.getClassName(), classId, false);
+			// The structure is recorded for all methods regardless of the
+			// diff scope, so it can be reused with any scope
+			reader.accept(new ClassProbesAdapter(
+					new ClassAnalyzer(coverage, null, stringPool, structure),
+					false, DiffIndex.EMPTY, minimizeProbes), 0);
+			cache.put(classId, source, structure);
+		}
+		final ExecutionData data = executionData.get(classId);
+		final boolean[] probes;
+		final boolean noMatch;
+		if (data == null) {
+			probes = null;
+			noMatch = executionData.contains(structure.getName());
+		} else {
+			probes = data.getProbes();
+			noMatch = false;
+		}
+		visitCoverage(structure.createCoverage(classId, noMatch, probes,
+				stringPool, diffIndex));
 	}
 
 	/**
@@ -128,10 +326,27 @@ public class Analyzer {
 	 */
 	public void analyzeClass(final byte[] buffer, final String location)
 			throws IOException {
+		final AnalysisCache jobCache = getCache();
+		if (job != null) {
+			job.submit(location, new ClassTask() {
+				public void run() throws IOException {
+					analyzeClassInCurrentThread(buffer, location, jobCache);
+				}
+			});
+			return;
+		}
+		analyzeClassInCurrentThread(buffer, location, jobCache);
+	}
+
+	private void analyzeClassInCurrentThread(final byte[] buffer,
+			final String location, final AnalysisCache cache)
+			throws IOException {
 		try {
-			analyzeClass(buffer);
+			analyzeClass(buffer, cache);
 		} catch (final RuntimeException cause) {
 			throw analyzerError(location, cause);
+		} catch (final IOException cause) {
+			throw analyzerError(location, cause);
 		}
 	}
 
@@ -158,7 +373,7 @@ public class Analyzer {
 	}
 
 	private IOException analyzerError(final String location,
-			final Exception cause) {
+			final Throwable cause) {
 		final IOException ex = new IOException(
 				String.format("Error while analyzing %s.", location));
 		ex.initCause(cause);
@@ -182,6 +397,20 @@ public class Analyzer {
 	 */
 	public int analyzeAll(final InputStream input, final String location)
 			throws IOException {
+		final ParallelJob started = startJob();
+		try {
+			final int count = analyzeContent(input, location);
+			if (started != null) {
+				started.await();
+			}
+			return count;
+		} finally {
+			endJob(started);
+		}
+	}
+
+	private int analyzeContent(final InputStream input, final String location)
+			throws IOException {
 		final ContentTypeDetector detector;
 		try {
 			detector = new ContentTypeDetector(input);
@@ -206,7 +435,8 @@ public class Analyzer {
 	/**
 	 * Analyzes all class files contained in the given file or folder. Class
 	 * files as well as ZIP files are considered. Folders are searched
-	 * recursively.
+	 * recursively. ZIP files are read through their central directory, so class
+	 * entries can be analyzed concurrently if an executor is set.
 	 *
 	 * @param file
 	 *            file or folder to look for class files
@@ -215,22 +445,161 @@ public class Analyzer {
 	 *             if the file can't be read or a class can't be analyzed
 	 */
 	public int analyzeAll(final File file) throws IOException {
+		final ParallelJob started = startJob();
+		try {
+			final int count = analyzeAll(file, file.isDirectory() ? "" : null);
+			if (started != null) {
+				started.await();
+			}
+			return count;
+		} finally {
+			endJob(started);
+		}
+	}
+
+	/**
+	 * @param path
+	 *            path of the file relative to the folder initially passed to
+	 *            {@link #analyzeAll(File)} or <code>null</code> if not within a
+	 *            folder
+	 */
+	private int analyzeAll(final File file, final String path)
+			throws IOException {
 		int count = 0;
 		if (file.isDirectory()) {
 			for (final File f : file.listFiles()) {
-				count += analyzeAll(f);
+				count += analyzeAll(f, path
+						+ (f.isDirectory() ? f.getName() + "/" : f.getName()));
 			}
+		} else if (path != null && path.endsWith(".class")
+				&& !isIncluded(path)) {
+			return 0;
 		} else {
 			final InputStream in = new FileInputStream(file);
 			try {
-				count += analyzeAll(in, file.getPath());
+				final ContentTypeDetector detector;
+				try {
+					detector = new ContentTypeDetector(in);
+				} catch (final IOException e) {
+					throw analyzerError(file.getPath(), e);
+				}
+				if (detector.getType() != ContentTypeDetector.ZIPFILE) {
+					return analyzeAll(detector.getInputStream(),
+							file.getPath());
+				}
 			} finally {
 				in.close();
 			}
+			count += analyzeZipFile(file);
 		}
 		return count;
 	}
 
+	/**
+	 * Analyzes a ZIP file through its central directory. Excluded class files
+	 * are skipped without inflating them, of all other entries only the header
+	 * is inflated to detect their content type. Nested archives are streamed
+	 * from their entries. If an executor is set the class entries are read and
+	 * analyzed concurrently.
+	 */
+	private int analyzeZipFile(final File file) throws IOException {
+		final String location = file.getPath();
+		final ZipFile zip;
+		try {
+			zip = new ZipFile(file);
+		} catch (final IOException e) {
+			throw analyzerError(location, e);
+		}
+		try {
+			int count = 0;
+			// Class entries are counted by the tasks once their content has
+			// been detected
+			final AtomicInteger classes = new AtomicInteger();
+			final Enumeration<? extends ZipEntry> entries = zip.entries();
+			while (entries.hasMoreElements()) {
+				final ZipEntry entry = entries.nextElement();
+				final String name = entry.getName();
+				if (name.endsWith(".class")) {
+					if (isIncluded(name)) {
+						analyzeZipEntry(zip, entry, location + "@" + name,
+								classes);
+					}
+				} else if (!entry.isDirectory()) {
+					final InputStream in = getInputStream(zip, entry, location);
+					try {
+						count += analyzeAll(in, location + "@" + name);
+					} finally {
+						in.close();
+					}
+				}
+			}
+			if (job != null) {
+				// Failures are reported when the job is awaited
+				job.awaitQuietly();
+			}
+			return count + classes.get();
+		} finally {
+			if (job != null) {
+				// Pending classes might still read from the file
+				job.awaitQuietly();
+			}
+			zip.close();
+		}
+	}
+
+	private void analyzeZipEntry(final ZipFile zip, final ZipEntry entry,
+			final String location, final AtomicInteger classes)
+			throws IOException {
+		final AnalysisCache jobCache = getCache();
+		if (job != null) {
+			job.submit(location, new ClassTask() {
+				public void run() throws IOException {
+					if (analyzeZipEntryInCurrentThread(zip, entry, location,
+							jobCache)) {
+						classes.incrementAndGet();
+					}
+				}
+			});
+			return;
+		}
+		if (analyzeZipEntryInCurrentThread(zip, entry, location, jobCache)) {
+			classes.incrementAndGet();
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the entry contains a class file
+	 */
+	private boolean analyzeZipEntryInCurrentThread(final ZipFile zip,
+			final ZipEntry entry, final String location,
+			final AnalysisCache cache) throws IOException {
+		final byte[] buffer;
+		final InputStream in = getInputStream(zip, entry, location);
+		try {
+			buffer = InputStreams.readFully(in);
+		} catch (final IOException e) {
+			throw analyzerError(location, e);
+		} finally {
+			in.close();
+		}
+		final ContentTypeDetector detector = new ContentTypeDetector(
+				new ByteArrayInputStream(buffer));
+		if (detector.getType() != ContentTypeDetector.CLASSFILE) {
+			return false;
+		}
+		analyzeClassInCurrentThread(buffer, location, cache);
+		return true;
+	}
+
+	private InputStream getInputStream(final ZipFile zip, final ZipEntry entry,
+			final String location) throws IOException {
+		try {
+			return zip.getInputStream(entry);
+		} catch (final IOException e) {
+			throw analyzerError(location, e);
+		}
+	}
+
 	/**
 	 * Analyzes all classes from the given class path. Directories containing
 	 * class files as well as archive files are considered.
@@ -247,13 +616,21 @@ public class Analyzer {
 	 */
 	public int analyzeAll(final String path, final File basedir)
 			throws IOException {
-		int count = 0;
-		final StringTokenizer st = new StringTokenizer(path,
-				File.pathSeparator);
-		while (st.hasMoreTokens()) {
-			count += analyzeAll(new File(basedir, st.nextToken()));
+		final ParallelJob started = startJob();
+		try {
+			int count = 0;
+			final StringTokenizer st = new StringTokenizer(path,
+					File.pathSeparator);
+			while (st.hasMoreTokens()) {
+				count += analyzeAll(new File(basedir, st.nextToken()));
+			}
+			if (started != null) {
+				started.await();
+			}
+			return count;
+		} finally {
+			endJob(started);
 		}
-		return count;
 	}
 
 	private int analyzeZip(final InputStream input, final String location)
@@ -262,7 +639,11 @@ public class Analyzer {
 		ZipEntry entry;
 		int count = 0;
 		while ((entry = nextEntry(zip, location)) != null) {
-			count += analyzeAll(zip, location + "@" + entry.getName());
+			final String name = entry.getName();
+			if (name.endsWith(".class") && !isIncluded(name)) {
+				continue;
+			}
+			count += analyzeAll(zip, location + "@" + name);
 		}
 		return count;
 	}
@@ -298,4 +679,123 @@ public class Analyzer {
 		return analyzeAll(unpackedInput, location);
 	}
 
+	/**
+	 * Starts a new parallel job if an executor is set and no job is running.
+	 *
+	 * @return the new job or <code>null</code>
+	 */
+	private ParallelJob startJob() {
+		if (executor == null || job != null) {
+			return null;
+		}
+		job = new ParallelJob(executor);
+		return job;
+	}
+
+	private void endJob(final ParallelJob started) {
+		if (started != null) {
+			started.awaitQuietly();
+			job = null;
+		}
+	}
+
+	/**
+	 * Classes of a single top level <code>analyzeAll()</code> call which are
+	 * analyzed by the executor. The number of classes read but not yet analyzed
+	 * is limited to bound the memory consumption.
+	 */
+	private class ParallelJob {
+
+		private final Executor jobExecutor;
+
+		private final Semaphore permits = new Semaphore(
+				Math.max(64, 4 * Runtime.getRuntime().availableProcessors()));
+
+		private int pending;
+
+		private IOException error;
+
+		ParallelJob(final Executor jobExecutor) {
+			this.jobExecutor = jobExecutor;
+		}
+
+		void submit(final String location, final ClassTask task)
+				throws IOException {
+			permits.acquireUninterruptibly();
+			synchronized (this) {
+				if (error != null) {
+					permits.release();
+					throw error;
+				}
+				pending++;
+			}
+			try {
+				jobExecutor.execute(new Runnable() {
+					public void run() {
+						IOException failure = null;
+						try {
+							task.run();
+						} catch (final IOException e) {
+							failure = e;
+						} catch (final Error e) {
+							failure = analyzerError(location, e);
+							throw e;
+						} finally {
+							done(failure);
+						}
+					}
+				});
+			} catch (final RuntimeException e) {
+				done(null);
+				throw e;
+			}
+		}
+
+		private synchronized void done(final IOException failure) {
+			if (error == null) {
+				error = failure;
+			}
+			pending--;
+			permits.release();
+			notifyAll();
+		}
+
+		/**
+		 * Waits until all submitted classes have been analyzed.
+		 *
+		 * @throws IOException
+		 *             the first error of an analyzed class
+		 */
+		synchronized void await() throws IOException {
+			awaitQuietly();
+			if (error != null) {
+				throw error;
+			}
+		}
+
+		synchronized void awaitQuietly() {
+			boolean interrupted = false;
+			while (pending > 0) {
+				try {
+					wait();
+				} catch (final InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+	}
+
+	/**
+	 * Analysis of a single class executed by a {@link ParallelJob}.
+	 */
+	private interface ClassTask {
+
+		void run() throws IOException;
+
+	}
+
 }
@@ -12,17 +12,19 @@
  *******************************************************************************/
 package org.jacoco.core.analysis;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 import org.jacoco.core.internal.analysis.BundleCoverageImpl;
 import org.jacoco.core.internal.analysis.SourceFileCoverageImpl;
-import org.jacoco.core.internal.diff.ClassInfo;
+import org.jacoco.core.internal.diff.BytecodeDiff;
 import org.jacoco.core.internal.diff.CodeDiff;
+import org.jacoco.core.internal.diff.DiffIndex;
 
 /**
  * Builder for hierarchical {@link ICoverageNode} structures from single
@@ -44,15 +46,27 @@ public class CoverageBuilder implements ICoverageVisitor {
 
 	private final Map<String, ISourceFileCoverage> sourcefiles;
 
-	public static List<ClassInfo> classInfos;
+	private final DiffIndex diffIndex;
 
 	/**
 	 * Create a new builder.
 	 *
 	 */
 	public CoverageBuilder() {
+		this(DiffIndex.EMPTY);
+	}
+
+	/**
+	 * Create a new builder for the given diff scope. The scope has to be
+	 * passed to the {@link Analyzer} and report formatters as well.
+	 *
+	 * @param diffIndex
+	 *            changed classes, empty for full coverage
+	 */
+	public CoverageBuilder(final DiffIndex diffIndex) {
 		this.classes = new HashMap<String, IClassCoverage>();
 		this.sourcefiles = new HashMap<String, ISourceFileCoverage>();
+		this.diffIndex = diffIndex;
 	}
 
 	/**
@@ -101,6 +115,15 @@ public class CoverageBuilder implements ICoverageVisitor {
 		return result;
 	}
 
+	/**
+	 * Returns the diff scope this builder has been created for.
+	 *
+	 * @return changed classes, empty for full coverage
+	 */
+	public DiffIndex getDiffIndex() {
+		return diffIndex;
+	}
+
 	// === ICoverageVisitor ===
 
 	public void visitCoverage(final IClassCoverage coverage) {
@@ -138,9 +161,7 @@ public class CoverageBuilder implements ICoverageVisitor {
 	 * @param branchName new test branch name
 	 */
 	public CoverageBuilder(String gitPath, String branchName) {
-		this.classes = new HashMap<String, IClassCoverage>();
-		this.sourcefiles = new HashMap<String, ISourceFileCoverage>();
-		classInfos = CodeDiff.diffBranchToBranch(gitPath, branchName,CodeDiff.MASTER);
+		this(new DiffIndex(CodeDiff.diffBranchToBranch(gitPath, branchName,CodeDiff.MASTER)));
 	}
 
 	/**
@@ -150,9 +171,7 @@ public class CoverageBuilder implements ICoverageVisitor {
 	 * @param oldBranchName oldBranchName
 	 */
 	public static CoverageBuilder buildDiffBranchToBranch(String gitPath, String newBranchName, String oldBranchName) {
-		CoverageBuilder coverageBuilder = new CoverageBuilder();
-		coverageBuilder.classInfos = CodeDiff.diffBranchToBranch(gitPath, newBranchName, oldBranchName);
-		return coverageBuilder;
+		return new CoverageBuilder(new DiffIndex(CodeDiff.diffBranchToBranch(gitPath, newBranchName, oldBranchName)));
 	}
 
 	/**
@@ -163,9 +182,29 @@ public class CoverageBuilder implements ICoverageVisitor {
 	 * @param oldCommitId
 	 */
 	public static CoverageBuilder buildDiffCommitToCommit(String gitPath, String branchName, String newCommitId, String oldCommitId) {
-		CoverageBuilder coverageBuilder = new CoverageBuilder();
-		coverageBuilder.classInfos = CodeDiff.diffCommitToCommit(gitPath, branchName, newCommitId, oldCommitId);
-		return coverageBuilder;
+		return new CoverageBuilder(new DiffIndex(CodeDiff.diffCommitToCommit(gitPath, branchName, newCommitId, oldCommitId)));
+	}
+
+	/**
+	 * read-only compare of two revisions, without checkout or pull
+	 * @param gitPath local gitPath
+	 * @param newRevision new branch, tag or commit id
+	 * @param oldRevision old branch, tag or commit id
+	 * @throws IOException if the repository can't be read
+	 */
+	public static CoverageBuilder buildDiffRevisionToRevision(String gitPath, String newRevision, String oldRevision) throws IOException {
+		return new CoverageBuilder(new DiffIndex(CodeDiff.diffRevisionToRevision(gitPath, newRevision, oldRevision)));
+	}
+
+	/**
+	 * compiled classes compare with each other, independent of the source
+	 * language
+	 * @param newClasses class directory or jar of the new version
+	 * @param oldClasses class directory or jar of the old version
+	 * @throws IOException if the classes can't be read
+	 */
+	public static CoverageBuilder buildDiffClassesToClasses(File newClasses, File oldClasses) throws IOException {
+		return new CoverageBuilder(new DiffIndex(BytecodeDiff.diff(newClasses, oldClasses)));
 	}
 
 	/**
@@ -176,8 +215,6 @@ public class CoverageBuilder implements ICoverageVisitor {
 	 * @param oldTag old Tag
 	 */
 	public static CoverageBuilder buildDiffTagToTag(String gitPath, String branchName, String newTag, String oldTag) {
-		CoverageBuilder coverageBuilder = new CoverageBuilder();
-		coverageBuilder.classInfos = CodeDiff.diffTagToTag(gitPath,branchName, newTag, oldTag);
-		return coverageBuilder;
+		return new CoverageBuilder(new DiffIndex(CodeDiff.diffTagToTag(gitPath,branchName, newTag, oldTag)));
 	}
 }
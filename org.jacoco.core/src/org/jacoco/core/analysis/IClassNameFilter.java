@@ -0,0 +1,34 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.analysis;
+
+/**
+ * Predicate on class names which is checked by the {@link Analyzer} before the
+ * content of a class file is read. Classes which are not accepted are skipped
+ * and cost only the name check.
+ */
+public interface IClassNameFilter {
+
+	/**
+	 * Checks whether the class with the given name should be analyzed. The name
+	 * is derived from the location of the class file: for entries of archives
+	 * it is the entry name, for files in directories the path relative to the
+	 * directory passed to {@link Analyzer#analyzeAll(java.io.File)}. In both
+	 * cases the <code>.class</code> extension is removed and <code>/</code> is
+	 * used as separator, so for class files in their class path location the
+	 * name is the VM name of the class.
+	 *
+	 * @param name
+	 *            name of the class derived from its location
+	 * @return <code>true</code> if the class should be analyzed
+	 */
+	boolean accept(String name);
+
+}
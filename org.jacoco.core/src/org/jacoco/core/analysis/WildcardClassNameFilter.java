@@ -0,0 +1,46 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.analysis;
+
+import org.jacoco.core.runtime.WildcardMatcher;
+
+/**
+ * {@link IClassNameFilter} based on include and exclude wildcard expressions
+ * for Java class names, as used for the agent options.
+ *
+ * @see WildcardMatcher
+ */
+public class WildcardClassNameFilter implements IClassNameFilter {
+
+	private final WildcardMatcher includes;
+
+	private final WildcardMatcher excludes;
+
+	/**
+	 * Creates a new filter with the given expressions.
+	 *
+	 * @param includes
+	 *            expression for classes to analyze, e.g.
+	 *            <code>org.example.*</code>
+	 * @param excludes
+	 *            expression for classes to skip, empty string for no exclusions
+	 */
+	public WildcardClassNameFilter(final String includes,
+			final String excludes) {
+		this.includes = new WildcardMatcher(includes);
+		this.excludes = new WildcardMatcher(excludes);
+	}
+
+	public boolean accept(final String name) {
+		final String javaName = name.replace('/', '.');
+		return includes.matches(javaName) && !excludes.matches(javaName);
+	}
+
+}
@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps track of the probes which have already been written for a consumer of
+ * execution data, e.g. a file or a remote connection, to reduce subsequent
+ * dumps to the changes since the last dump. Classes written the first time are
+ * written as regular execution data blocks, for all other classes only the
+ * newly executed probes are written as delta blocks. Classes without new probes
+ * are omitted. A consumer which merges all data it receives therefore always
+ * has the same state as with complete dumps.
+ *
+ * All access to an instance of this class is thread safe. If visitors of
+ * concurrent dumps are used at the same time every changed probe is written by
+ * exactly one of them.
+ *
+ * @see ExecutionDataWriter#visitClassExecutionDelta(ExecutionData, boolean[])
+ */
+public class ExecutionDataDeltaTracker {
+
+	private final Map<Long, boolean[]> written = new HashMap<Long, boolean[]>();
+
+	/**
+	 * Creates a visitor which writes the changes of all visited execution data
+	 * since the last dump to the given writer and considers them as written.
+	 *
+	 * @param writer
+	 *            writer for the current dump
+	 * @return visitor to pass the current execution data to
+	 */
+	public IExecutionDataVisitor createVisitor(
+			final ExecutionDataWriter writer) {
+		return new IExecutionDataVisitor() {
+			public void visitClassExecution(final ExecutionData data) {
+				write(data, writer);
+			}
+		};
+	}
+
+	private synchronized void write(final ExecutionData data,
+			final ExecutionDataWriter writer) {
+		final boolean[] probes = data.getProbes();
+		final Long id = Long.valueOf(data.getId());
+		final boolean[] previous = written.get(id);
+		if (previous == null || previous.length != probes.length) {
+			if (data.hasHits()) {
+				writer.visitClassExecution(data);
+				final boolean[] copy = new boolean[probes.length];
+				System.arraycopy(probes, 0, copy, 0, probes.length);
+				written.put(id, copy);
+			}
+			return;
+		}
+		writer.visitClassExecutionDelta(data, previous);
+		for (int i = 0; i < probes.length; i++) {
+			if (probes[i]) {
+				previous[i] = true;
+			}
+		}
+	}
+
+}
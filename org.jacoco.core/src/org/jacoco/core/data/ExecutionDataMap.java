@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+import org.jacoco.core.internal.data.LongHash;
+import org.jacoco.core.internal.data.LongKeyTable;
+
+/**
+ * Insertion ordered map of {@link ExecutionData} objects keyed by their
+ * primitive class id. In addition to the entries an open addressing table holds
+ * every distinct VM name together with its hash code. Entries can't be removed.
+ * An instance of this class is not thread safe.
+ */
+final class ExecutionDataMap extends LongKeyTable<ExecutionData> {
+
+	/**
+	 * Table with a length of a power of two which is at most half full.
+	 */
+	private String[] nameTable = new String[16];
+
+	/** Hash codes of the names in {@link #nameTable} at the same position */
+	private int[] nameHashes = new int[16];
+
+	private int nameCount;
+
+	@Override
+	protected long getKey(final ExecutionData entry) {
+		return entry.getId();
+	}
+
+	/**
+	 * Checks whether an entry with the given VM name exists.
+	 *
+	 * @param name
+	 *            VM name
+	 * @return <code>true</code> if at least one entry has this name
+	 */
+	boolean containsName(final String name) {
+		final int hash = name.hashCode();
+		return nameTable[findName(nameTable, nameHashes, name, hash)] != null;
+	}
+
+	@Override
+	public void add(final ExecutionData data) {
+		super.add(data);
+
+		final String name = data.getName();
+		final int hash = name.hashCode();
+		final int i = findName(nameTable, nameHashes, name, hash);
+		if (nameTable[i] == null) {
+			nameTable[i] = name;
+			nameHashes[i] = hash;
+			if (2 * ++nameCount > nameTable.length) {
+				rehashNames();
+			}
+		}
+	}
+
+	private static int findName(final String[] names, final int[] hashes,
+			final String name, final int hash) {
+		final int mask = names.length - 1;
+		for (int i = LongHash.mix(hash) & mask;; i = (i + 1) & mask) {
+			final String n = names[i];
+			if (n == null || (hashes[i] == hash && n.equals(name))) {
+				return i;
+			}
+		}
+	}
+
+	private void rehashNames() {
+		final String[] newNames = new String[nameTable.length * 2];
+		final int[] newHashes = new int[newNames.length];
+		for (int j = 0; j < nameTable.length; j++) {
+			final String name = nameTable[j];
+			if (name != null) {
+				final int i = findName(newNames, newHashes, name,
+						nameHashes[j]);
+				newNames[i] = name;
+				newHashes[i] = nameHashes[j];
+			}
+		}
+		nameTable = newNames;
+		nameHashes = newHashes;
+	}
+
+}
@@ -14,8 +14,12 @@ package org.jacoco.core.data;
 
 import static java.lang.String.format;
 
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 import org.jacoco.core.internal.data.CompactDataInput;
 
@@ -45,6 +49,20 @@ public class ExecutionDataReader {
 		this.in = new CompactDataInput(input);
 	}
 
+	/**
+	 * Creates a new reader for the content of a compressed block which does not
+	 * start with a header.
+	 *
+	 * @param input
+	 *            inflated content of a compressed block
+	 * @param header
+	 *            <code>true</code> if the input starts with a header
+	 */
+	ExecutionDataReader(final InputStream input, final boolean header) {
+		this(input);
+		this.firstBlock = header;
+	}
+
 	/**
 	 * Sets an listener for session information.
 	 *
@@ -113,7 +131,19 @@ public class ExecutionDataReader {
 			readSessionInfo();
 			return true;
 		case ExecutionDataWriter.BLOCK_EXECUTIONDATA:
-			readExecutionData();
+			readExecutionData(false);
+			return true;
+		case ExecutionDataWriter.BLOCK_EXECUTIONDATA_ADAPTIVE:
+			readExecutionData(true);
+			return true;
+		case ExecutionDataWriter.BLOCK_EXECUTIONDATA_DELTA:
+			readExecutionDataDelta();
+			return true;
+		case ExecutionDataWriter.BLOCK_COMPRESSED:
+			readCompressed();
+			return true;
+		case ExecutionDataWriter.BLOCK_INDEX:
+			skipIndex();
 			return true;
 		default:
 			throw new IOException(
@@ -126,11 +156,79 @@ public class ExecutionDataReader {
 			throw new IOException("Invalid execution data file.");
 		}
 		final char version = in.readChar();
-		if (version != ExecutionDataWriter.FORMAT_VERSION) {
+		if (version != ExecutionDataWriter.FORMAT_VERSION
+				&& version != IndexedExecutionDataWriter.FORMAT_VERSION) {
 			throw new IncompatibleExecDataVersionException(version);
 		}
 	}
 
+	private void readCompressed() throws IOException {
+		final ExecutionDataReader content = new ExecutionDataReader(
+				new ByteArrayInputStream(readCompressedBlock(in)), false);
+		content.setSessionInfoVisitor(sessionInfoVisitor);
+		content.setExecutionDataVisitor(executionDataVisitor);
+		content.read();
+	}
+
+	/**
+	 * Reads and inflates the content of a compressed block after its block
+	 * identifier.
+	 *
+	 * @param in
+	 *            input positioned after the block identifier
+	 * @return inflated content
+	 * @throws IOException
+	 *             if the block can't be read or is corrupt
+	 */
+	static byte[] readCompressedBlock(final DataInput in) throws IOException {
+		final int contentLength = in.readInt();
+		final int compressedLength = in.readInt();
+		// Deflate neither expands data by more than a few bytes per stored
+		// block nor compresses it by more than about 1:1032
+		if (contentLength < 0
+				|| contentLength > IndexedExecutionDataWriter.MAX_BLOCK_SIZE
+				|| compressedLength < 0
+				|| compressedLength > contentLength + contentLength / 8 + 64
+				|| contentLength > 1032L * compressedLength + 64) {
+			throw new IOException("Corrupt compressed block.");
+		}
+		final byte[] content = new byte[contentLength];
+		final byte[] compressed = new byte[compressedLength];
+		in.readFully(compressed);
+		final Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(compressed);
+			final int length = inflater.inflate(content);
+			if (length != content.length || !inflater.finished()) {
+				throw new IOException("Corrupt compressed block.");
+			}
+		} catch (final DataFormatException e) {
+			final IOException io = new IOException("Corrupt compressed block.");
+			io.initCause(e);
+			throw io;
+		} finally {
+			inflater.end();
+		}
+		return content;
+	}
+
+	private void skipIndex() throws IOException {
+		final int length = in.readInt();
+		if (length < 0) {
+			throw new IOException("Invalid execution data file.");
+		}
+		final byte[] buffer = new byte[4096];
+		for (int remaining = length; remaining > 0;) {
+			final int chunk = Math.min(remaining, buffer.length);
+			in.readFully(buffer, 0, chunk);
+			remaining -= chunk;
+		}
+		in.readLong();
+		if (in.readChar() != ExecutionDataWriter.MAGIC_NUMBER) {
+			throw new IOException("Invalid execution data file.");
+		}
+	}
+
 	private void readSessionInfo() throws IOException {
 		if (sessionInfoVisitor == null) {
 			throw new IOException("No session info visitor.");
@@ -141,13 +239,40 @@ public class ExecutionDataReader {
 		sessionInfoVisitor.visitSessionInfo(new SessionInfo(id, start, dump));
 	}
 
-	private void readExecutionData() throws IOException {
+	private void readExecutionData(final boolean adaptive) throws IOException {
 		if (executionDataVisitor == null) {
 			throw new IOException("No execution data visitor.");
 		}
 		final long id = in.readLong();
 		final String name = in.readUTF();
-		final boolean[] probes = in.readBooleanArray();
+		final boolean[] probes = adaptive ? in.readAdaptiveBooleanArray()
+				: in.readBooleanArray();
+		executionDataVisitor
+				.visitClassExecution(new ExecutionData(id, name, probes));
+	}
+
+	private void readExecutionDataDelta() throws IOException {
+		if (executionDataVisitor == null) {
+			throw new IOException("No execution data visitor.");
+		}
+		final long id = in.readLong();
+		final String name = in.readUTF();
+		final int length = in.readVarInt();
+		if (length < 0) {
+			throw new IOException(
+					format("Invalid probe count %s.", Integer.valueOf(length)));
+		}
+		final boolean[] probes = new boolean[length];
+		final int count = in.readVarInt();
+		int index = -1;
+		for (int i = 0; i < count; i++) {
+			index += in.readVarInt() + 1;
+			if (index < 0 || index >= probes.length) {
+				throw new IOException(format("Invalid probe index %s.",
+						Integer.valueOf(index)));
+			}
+			probes[index] = true;
+		}
 		executionDataVisitor
 				.visitClassExecution(new ExecutionData(id, name, probes));
 	}
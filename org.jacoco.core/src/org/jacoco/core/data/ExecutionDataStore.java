@@ -12,26 +12,22 @@
  *******************************************************************************/
 package org.jacoco.core.data;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
 
 /**
  * In-memory data store for execution data. The data can be added through its
  * {@link IExecutionDataVisitor} interface. If execution data is provided
  * multiple times for the same class the data is merged, i.e. a probe is marked
  * as executed if it is reported as executed at least once. This allows to merge
- * coverage date from multiple runs. A instance of this class is not thread
- * safe.
+ * coverage date from multiple runs. Entries are kept in the order they have
+ * been added, keyed by their primitive class id. A instance of this class is
+ * not thread safe.
+ *
+ * @see PackedExecutionDataStore
  */
 public final class ExecutionDataStore implements IExecutionDataVisitor {
 
-	private final Map<Long, ExecutionData> entries = new HashMap<Long, ExecutionData>();
-
-	private final Set<String> names = new HashSet<String>();
+	private final ExecutionDataMap entries = new ExecutionDataMap();
 
 	/**
 	 * Adds the given {@link ExecutionData} object into the store. If there is
@@ -46,11 +42,9 @@ public final class ExecutionDataStore implements IExecutionDataVisitor {
 	 * @see ExecutionData#assertCompatibility(long, String, int)
 	 */
 	public void put(final ExecutionData data) throws IllegalStateException {
-		final Long id = Long.valueOf(data.getId());
-		final ExecutionData entry = entries.get(id);
+		final ExecutionData entry = entries.get(data.getId());
 		if (entry == null) {
-			entries.put(id, data);
-			names.add(data.getName());
+			entries.add(data);
 		} else {
 			entry.merge(data);
 		}
@@ -71,8 +65,7 @@ public final class ExecutionDataStore implements IExecutionDataVisitor {
 	 */
 	public void subtract(final ExecutionData data)
 			throws IllegalStateException {
-		final Long id = Long.valueOf(data.getId());
-		final ExecutionData entry = entries.get(id);
+		final ExecutionData entry = entries.get(data.getId());
 		if (entry != null) {
 			entry.merge(data, false);
 		}
@@ -100,7 +93,7 @@ public final class ExecutionDataStore implements IExecutionDataVisitor {
 	 * @return execution data or <code>null</code>
 	 */
 	public ExecutionData get(final long id) {
-		return entries.get(Long.valueOf(id));
+		return entries.get(id);
 	}
 
 	/**
@@ -113,7 +106,7 @@ public final class ExecutionDataStore implements IExecutionDataVisitor {
 	 *         contained.
 	 */
 	public boolean contains(final String name) {
-		return names.contains(name);
+		return entries.containsName(name);
 	}
 
 	/**
@@ -130,11 +123,10 @@ public final class ExecutionDataStore implements IExecutionDataVisitor {
 	 */
 	public ExecutionData get(final Long id, final String name,
 			final int probecount) {
-		ExecutionData entry = entries.get(id);
+		ExecutionData entry = entries.get(id.longValue());
 		if (entry == null) {
 			entry = new ExecutionData(id.longValue(), name, probecount);
-			entries.put(id, entry);
-			names.add(name);
+			entries.add(entry);
 		} else {
 			entry.assertCompatibility(id.longValue(), name, probecount);
 		}
@@ -146,18 +138,19 @@ public final class ExecutionDataStore implements IExecutionDataVisitor {
 	 * execution data objects itself are not removed.
 	 */
 	public void reset() {
-		for (final ExecutionData executionData : this.entries.values()) {
-			executionData.reset();
+		for (int i = 0; i < entries.size(); i++) {
+			entries.valueAt(i).reset();
 		}
 	}
 
 	/**
-	 * Returns a collection that represents current contents of the store.
+	 * Returns a collection that represents current contents of the store. The
+	 * entries are returned in the order they have been added.
 	 *
 	 * @return current contents
 	 */
 	public Collection<ExecutionData> getContents() {
-		return new ArrayList<ExecutionData>(entries.values());
+		return entries.values();
 	}
 
 	/**
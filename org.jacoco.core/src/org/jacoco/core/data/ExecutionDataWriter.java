@@ -46,9 +46,40 @@ public class ExecutionDataWriter
 	/** Block identifier for execution data of a single class. */
 	public static final byte BLOCK_EXECUTIONDATA = 0x11;
 
+	/**
+	 * Block identifier for the probes of a single class which have been
+	 * executed since the class has been written before.
+	 */
+	public static final byte BLOCK_EXECUTIONDATA_DELTA = 0x12;
+
+	/**
+	 * Block identifier for a deflate compressed sequence of blocks.
+	 *
+	 * @see IndexedExecutionDataWriter
+	 */
+	public static final byte BLOCK_COMPRESSED = 0x13;
+
+	/**
+	 * Block identifier for the index at the end of an indexed execution data
+	 * file.
+	 *
+	 * @see IndexedExecutionDataWriter
+	 */
+	public static final byte BLOCK_INDEX = 0x14;
+
+	/**
+	 * Block identifier for execution data of a single class where the probes
+	 * are written with an adaptive encoding.
+	 *
+	 * @see #setAdaptiveEncoding(boolean)
+	 */
+	public static final byte BLOCK_EXECUTIONDATA_ADAPTIVE = 0x15;
+
 	/** Underlying data output */
 	protected final CompactDataOutput out;
 
+	private boolean adaptiveEncoding = false;
+
 	/**
 	 * Creates a new writer based on the given output stream. Depending on the
 	 * nature of the underlying stream output should be buffered as most data is
@@ -76,6 +107,24 @@ public class ExecutionDataWriter
 		out.writeChar(FORMAT_VERSION);
 	}
 
+	/**
+	 * Sets whether the probes of classes are written with an adaptive encoding
+	 * in {@link #BLOCK_EXECUTIONDATA_ADAPTIVE} blocks. Depending on the probes
+	 * of a class they are written as all missed, all executed, bit set, list of
+	 * executed probes or run lengths, whichever is smallest. Otherwise the
+	 * probes are always written as bit set in {@link #BLOCK_EXECUTIONDATA}
+	 * blocks. As older versions can't read adaptive blocks although the file
+	 * format version is the same, the default is <code>false</code>. The
+	 * adaptive encoding should only be enabled when all consumers of the
+	 * written data are known to support it.
+	 *
+	 * @param adaptiveEncoding
+	 *            <code>true</code> to use the adaptive encoding
+	 */
+	public void setAdaptiveEncoding(final boolean adaptiveEncoding) {
+		this.adaptiveEncoding = adaptiveEncoding;
+	}
+
 	/**
 	 * Flushes the underlying stream.
 	 *
@@ -100,16 +149,66 @@ public class ExecutionDataWriter
 	public void visitClassExecution(final ExecutionData data) {
 		if (data.hasHits()) {
 			try {
-				out.writeByte(BLOCK_EXECUTIONDATA);
-				out.writeLong(data.getId());
-				out.writeUTF(data.getName());
-				out.writeBooleanArray(data.getProbes());
+				if (adaptiveEncoding) {
+					out.writeByte(BLOCK_EXECUTIONDATA_ADAPTIVE);
+					out.writeLong(data.getId());
+					out.writeUTF(data.getName());
+					out.writeAdaptiveBooleanArray(data.getProbes());
+				} else {
+					out.writeByte(BLOCK_EXECUTIONDATA);
+					out.writeLong(data.getId());
+					out.writeUTF(data.getName());
+					out.writeBooleanArray(data.getProbes());
+				}
 			} catch (final IOException e) {
 				throw new RuntimeException(e);
 			}
 		}
 	}
 
+	/**
+	 * Writes the probes of the given class which are set but not contained in
+	 * the given previous state as a delta block. Readers report a delta block
+	 * as execution data where only these probes are set. As execution data of
+	 * the same class is merged by all consumers a sequence of delta blocks can
+	 * be applied in order. Nothing is written if there are no new probes.
+	 *
+	 * @param data
+	 *            current execution data of a class
+	 * @param previous
+	 *            probes of the same class that have been written before
+	 * @see ExecutionDataDeltaTracker
+	 */
+	public void visitClassExecutionDelta(final ExecutionData data,
+			final boolean[] previous) {
+		final boolean[] probes = data.getProbes();
+		int count = 0;
+		for (int i = 0; i < probes.length; i++) {
+			if (probes[i] && !previous[i]) {
+				count++;
+			}
+		}
+		if (count == 0) {
+			return;
+		}
+		try {
+			out.writeByte(BLOCK_EXECUTIONDATA_DELTA);
+			out.writeLong(data.getId());
+			out.writeUTF(data.getName());
+			out.writeVarInt(probes.length);
+			out.writeVarInt(count);
+			int last = -1;
+			for (int i = 0; i < probes.length; i++) {
+				if (probes[i] && !previous[i]) {
+					out.writeVarInt(i - last - 1);
+					last = i;
+				}
+			}
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 	/**
 	 * Returns the first bytes of a file that represents a valid execution data
 	 * file. In any case every execution data file starts with the three bytes
@@ -0,0 +1,293 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.jacoco.core.internal.data.CompactDataInput;
+
+/**
+ * Reads execution data from files written by
+ * {@link IndexedExecutionDataWriter}. The index at the end of the file is read
+ * once, afterwards only the compressed blocks which contain the requested
+ * classes are inflated.
+ */
+public class IndexedExecutionDataReader {
+
+	private final File file;
+
+	private ISessionInfoVisitor sessionInfoVisitor = null;
+
+	private IExecutionDataVisitor executionDataVisitor = null;
+
+	private List<SessionInfo> sessionInfos;
+
+	private long[] blockPositions;
+
+	private long[] ids;
+
+	private String[] names;
+
+	private int[] blocks;
+
+	/**
+	 * Creates a new reader for the given file.
+	 *
+	 * @param file
+	 *            indexed execution data file
+	 */
+	public IndexedExecutionDataReader(final File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Checks whether the given file has been written by
+	 * {@link IndexedExecutionDataWriter}.
+	 *
+	 * @param file
+	 *            file to check
+	 * @return <code>true</code> if the file starts with the header of an
+	 *         indexed execution data file
+	 * @throws IOException
+	 *             if the file can't be read
+	 */
+	public static boolean isIndexed(final File file) throws IOException {
+		final RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			return hasHeader(raf);
+		} finally {
+			raf.close();
+		}
+	}
+
+	private static boolean hasHeader(final RandomAccessFile raf)
+			throws IOException {
+		raf.seek(0);
+		return raf.length() >= 5
+				&& raf.readByte() == ExecutionDataWriter.BLOCK_HEADER
+				&& raf.readChar() == ExecutionDataWriter.MAGIC_NUMBER
+				&& raf.readChar() == IndexedExecutionDataWriter.FORMAT_VERSION;
+	}
+
+	/**
+	 * Sets an listener for session information.
+	 *
+	 * @param visitor
+	 *            visitor to retrieve session info events
+	 */
+	public void setSessionInfoVisitor(final ISessionInfoVisitor visitor) {
+		this.sessionInfoVisitor = visitor;
+	}
+
+	/**
+	 * Sets an listener for execution data.
+	 *
+	 * @param visitor
+	 *            visitor to retrieve execution data events
+	 */
+	public void setExecutionDataVisitor(final IExecutionDataVisitor visitor) {
+		this.executionDataVisitor = visitor;
+	}
+
+	/**
+	 * Reads all session infos and the execution data of all classes.
+	 *
+	 * @throws IOException
+	 *             if the file can't be read or has an invalid format
+	 */
+	public void read() throws IOException {
+		read(new Selector() {
+			public boolean select(final long id, final String name) {
+				return true;
+			}
+		});
+	}
+
+	/**
+	 * Reads all session infos and the execution data of the classes with the
+	 * given ids.
+	 *
+	 * @param classIds
+	 *            ids of the classes to read
+	 * @throws IOException
+	 *             if the file can't be read or has an invalid format
+	 */
+	public void readIds(final long... classIds) throws IOException {
+		final Set<Long> set = new HashSet<Long>();
+		for (final long id : classIds) {
+			set.add(Long.valueOf(id));
+		}
+		read(new Selector() {
+			public boolean select(final long id, final String name) {
+				return set.contains(Long.valueOf(id));
+			}
+		});
+	}
+
+	/**
+	 * Reads all session infos and the execution data of the classes whose VM
+	 * names start with one of the given prefixes, e.g.
+	 * <code>org/example/</code> for all classes of a package and its sub
+	 * packages.
+	 *
+	 * @param namePrefixes
+	 *            prefixes of the VM names of the classes to read
+	 * @throws IOException
+	 *             if the file can't be read or has an invalid format
+	 */
+	public void readNamePrefixes(final String... namePrefixes)
+			throws IOException {
+		read(new Selector() {
+			public boolean select(final long id, final String name) {
+				for (final String prefix : namePrefixes) {
+					if (name.startsWith(prefix)) {
+						return true;
+					}
+				}
+				return false;
+			}
+		});
+	}
+
+	private void read(final Selector selector) throws IOException {
+		final RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			if (sessionInfos == null) {
+				readIndex(raf);
+			}
+			if (sessionInfoVisitor != null) {
+				for (final SessionInfo info : sessionInfos) {
+					sessionInfoVisitor.visitSessionInfo(info);
+				}
+			}
+			if (executionDataVisitor == null) {
+				return;
+			}
+			final Set<Long> selectedIds = new HashSet<Long>();
+			final Set<Integer> selectedBlocks = new TreeSet<Integer>();
+			for (int i = 0; i < ids.length; i++) {
+				if (selector.select(ids[i], names[i])) {
+					selectedIds.add(Long.valueOf(ids[i]));
+					selectedBlocks.add(Integer.valueOf(blocks[i]));
+				}
+			}
+			for (final Integer block : selectedBlocks) {
+				readBlock(raf, blockPositions[block.intValue()], selectedIds);
+			}
+		} finally {
+			raf.close();
+		}
+	}
+
+	private void readBlock(final RandomAccessFile raf, final long position,
+			final Set<Long> selectedIds) throws IOException {
+		raf.seek(position);
+		if (raf.readByte() != ExecutionDataWriter.BLOCK_COMPRESSED) {
+			throw new IOException("Invalid indexed execution data file.");
+		}
+		final ExecutionDataReader reader = new ExecutionDataReader(
+				new ByteArrayInputStream(
+						ExecutionDataReader.readCompressedBlock(raf)),
+				false);
+		reader.setSessionInfoVisitor(new ISessionInfoVisitor() {
+			public void visitSessionInfo(final SessionInfo info) {
+				// Session infos are reported from the index
+			}
+		});
+		reader.setExecutionDataVisitor(new IExecutionDataVisitor() {
+			public void visitClassExecution(final ExecutionData data) {
+				if (selectedIds.contains(Long.valueOf(data.getId()))) {
+					executionDataVisitor.visitClassExecution(data);
+				}
+			}
+		});
+		reader.read();
+	}
+
+	private void readIndex(final RandomAccessFile raf) throws IOException {
+		if (!hasHeader(raf)
+				|| raf.length() < 5 + IndexedExecutionDataWriter.TRAILER_SIZE) {
+			throw new IOException("Invalid indexed execution data file.");
+		}
+		raf.seek(raf.length() - IndexedExecutionDataWriter.TRAILER_SIZE);
+		final long indexPosition = raf.readLong();
+		if (raf.readChar() != ExecutionDataWriter.MAGIC_NUMBER) {
+			throw new IOException("Invalid indexed execution data file.");
+		}
+		raf.seek(indexPosition);
+		if (raf.readByte() != ExecutionDataWriter.BLOCK_INDEX) {
+			throw new IOException("Invalid indexed execution data file.");
+		}
+		final int length = raf.readInt();
+		if (length < 0 || length > raf.length() - raf.getFilePointer()) {
+			throw new IOException("Invalid indexed execution data file.");
+		}
+		final byte[] buffer = new byte[length];
+		raf.readFully(buffer);
+		final CompactDataInput in = new CompactDataInput(
+				new ByteArrayInputStream(buffer));
+		// Every session info takes at least 18 bytes
+		final int sessionCount = readCount(in, length, 18);
+		final List<SessionInfo> infos = new ArrayList<SessionInfo>(
+				sessionCount);
+		for (int i = 0; i < sessionCount; i++) {
+			final String id = in.readUTF();
+			final long start = in.readLong();
+			final long dump = in.readLong();
+			infos.add(new SessionInfo(id, start, dump));
+		}
+		blockPositions = new long[readCount(in, length, 8)];
+		for (int i = 0; i < blockPositions.length; i++) {
+			blockPositions[i] = in.readLong();
+		}
+		// Every class takes at least 11 bytes
+		final int classCount = readCount(in, length, 11);
+		ids = new long[classCount];
+		names = new String[classCount];
+		blocks = new int[classCount];
+		for (int i = 0; i < classCount; i++) {
+			ids[i] = in.readLong();
+			names[i] = in.readUTF();
+			blocks[i] = in.readVarInt();
+			if (blocks[i] < 0 || blocks[i] >= blockPositions.length) {
+				throw new IOException("Invalid indexed execution data file.");
+			}
+		}
+		sessionInfos = infos;
+	}
+
+	/**
+	 * Reads the number of entries of a list in the index and checks it against
+	 * the length of the index, so corrupt files can't cause huge allocations.
+	 */
+	private static int readCount(final CompactDataInput in,
+			final int indexLength, final int minEntrySize) throws IOException {
+		final int count = in.readVarInt();
+		if (count < 0 || count > indexLength / minEntrySize) {
+			throw new IOException("Invalid indexed execution data file.");
+		}
+		return count;
+	}
+
+	private interface Selector {
+
+		boolean select(long id, String name);
+
+	}
+
+}
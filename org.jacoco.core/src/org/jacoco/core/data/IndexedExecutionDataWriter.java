@@ -0,0 +1,242 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import org.jacoco.core.internal.data.CompactDataOutput;
+
+/**
+ * Serialization of execution data into indexed and block compressed files.
+ * Session infos and execution data are encoded like with
+ * {@link ExecutionDataWriter}, but collected in blocks of about
+ * {@value #BLOCK_SIZE} bytes which are written deflate compressed. At the end
+ * of the file an index lists the session infos and for every class its id, its
+ * name and the block which contains its execution data. The index allows
+ * {@link IndexedExecutionDataReader} to inflate only the blocks of selected
+ * classes. As the blocks are self-contained such files can also be read front
+ * to back with {@link ExecutionDataReader}.
+ *
+ * The file layout is as follows:
+ *
+ * <ul>
+ * <li>header with format version {@link #FORMAT_VERSION}</li>
+ * <li>{@link ExecutionDataWriter#BLOCK_COMPRESSED} blocks: uncompressed length
+ * (int), compressed length (int) and deflate compressed data</li>
+ * <li>{@link ExecutionDataWriter#BLOCK_INDEX} block: index length (int), index
+ * data, position of the index block in the file (long) and the magic number
+ * (char)</li>
+ * </ul>
+ *
+ * The index data contains the number of session infos (var int) followed by the
+ * session infos, the number of blocks (var int) followed by the position of
+ * each block (long) and the number of classes (var int) followed by id (long),
+ * name (UTF) and block number (var int) of each class.
+ */
+public class IndexedExecutionDataWriter
+		implements ISessionInfoVisitor, IExecutionDataVisitor {
+
+	/**
+	 * File format version, will be incremented for each incompatible change.
+	 */
+	public static final char FORMAT_VERSION;
+
+	static {
+		// Runtime initialize to ensure javac does not inline the value.
+		FORMAT_VERSION = 0x1008;
+	}
+
+	/** Size of uncompressed data after which a block is written. */
+	public static final int BLOCK_SIZE = 64 * 1024;
+
+	/** Size of the index trailer at the end of the file. */
+	static final int TRAILER_SIZE = 10;
+
+	/**
+	 * Upper bound for the uncompressed length of a block. A block exceeds
+	 * {@link #BLOCK_SIZE} by at most a single class.
+	 */
+	static final int MAX_BLOCK_SIZE = 64 * 1024 * 1024;
+
+	private final CompactDataOutput out;
+
+	private long position;
+
+	private final ByteArrayOutputStream block;
+
+	private final ExecutionDataWriter blockWriter;
+
+	private final List<SessionInfo> sessionInfos = new ArrayList<SessionInfo>();
+
+	private final List<Long> blockPositions = new ArrayList<Long>();
+
+	private final List<IndexEntry> entries = new ArrayList<IndexEntry>();
+
+	/** First error while writing a block from a visitor method */
+	private IOException failure;
+
+	/**
+	 * Creates a new writer based on the given output stream. Depending on the
+	 * nature of the underlying stream output should be buffered. The file is
+	 * only complete after {@link #finish()} has been called. As the visitor
+	 * methods can't throw checked exceptions, errors while writing full blocks
+	 * are reported by {@link #finish()}. Data visited after such an error is
+	 * ignored.
+	 *
+	 * @param output
+	 *            binary stream to write execution data to
+	 * @throws IOException
+	 *             if the header can't be written
+	 */
+	public IndexedExecutionDataWriter(final OutputStream output)
+			throws IOException {
+		this.out = new CompactDataOutput(output);
+		out.writeByte(ExecutionDataWriter.BLOCK_HEADER);
+		out.writeChar(ExecutionDataWriter.MAGIC_NUMBER);
+		out.writeChar(FORMAT_VERSION);
+		position = 5;
+		block = new ByteArrayOutputStream();
+		blockWriter = new ExecutionDataWriter(block);
+		// The blocks contain no header:
+		block.reset();
+	}
+
+	/**
+	 * Sets whether the probes of classes are written with an adaptive encoding
+	 * within the compressed blocks. Default is <code>false</code>.
+	 *
+	 * @param adaptiveEncoding
+	 *            <code>true</code> to use the adaptive encoding
+	 * @see ExecutionDataWriter#setAdaptiveEncoding(boolean)
+	 */
+	public void setAdaptiveEncoding(final boolean adaptiveEncoding) {
+		blockWriter.setAdaptiveEncoding(adaptiveEncoding);
+	}
+
+	public void visitSessionInfo(final SessionInfo info) {
+		if (failure != null) {
+			return;
+		}
+		sessionInfos.add(info);
+		blockWriter.visitSessionInfo(info);
+		writeBlockIfFull();
+	}
+
+	public void visitClassExecution(final ExecutionData data) {
+		if (failure == null && data.hasHits()) {
+			entries.add(new IndexEntry(data.getId(), data.getName(),
+					blockPositions.size()));
+			blockWriter.visitClassExecution(data);
+			writeBlockIfFull();
+		}
+	}
+
+	private void writeBlockIfFull() {
+		if (block.size() >= BLOCK_SIZE) {
+			try {
+				writeBlock();
+			} catch (final IOException e) {
+				failure = e;
+			}
+		}
+	}
+
+	private void writeBlock() throws IOException {
+		final byte[] content = block.toByteArray();
+		block.reset();
+		final byte[] compressed = deflate(content);
+		blockPositions.add(Long.valueOf(position));
+		out.writeByte(ExecutionDataWriter.BLOCK_COMPRESSED);
+		out.writeInt(content.length);
+		out.writeInt(compressed.length);
+		out.write(compressed);
+		position += 9 + compressed.length;
+	}
+
+	private static byte[] deflate(final byte[] content) {
+		final Deflater deflater = new Deflater();
+		try {
+			deflater.setInput(content);
+			deflater.finish();
+			final ByteArrayOutputStream buffer = new ByteArrayOutputStream(
+					content.length / 4 + 64);
+			final byte[] chunk = new byte[8 * 1024];
+			while (!deflater.finished()) {
+				buffer.write(chunk, 0, deflater.deflate(chunk));
+			}
+			return buffer.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Writes the last block and the index and flushes the underlying stream. No
+	 * more data must be visited afterwards.
+	 *
+	 * @throws IOException
+	 *             if the data can't be written, including errors while writing
+	 *             blocks for previously visited data
+	 */
+	public void finish() throws IOException {
+		if (failure != null) {
+			throw failure;
+		}
+		if (block.size() > 0) {
+			writeBlock();
+		}
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		final CompactDataOutput index = new CompactDataOutput(buffer);
+		index.writeVarInt(sessionInfos.size());
+		for (final SessionInfo info : sessionInfos) {
+			index.writeUTF(info.getId());
+			index.writeLong(info.getStartTimeStamp());
+			index.writeLong(info.getDumpTimeStamp());
+		}
+		index.writeVarInt(blockPositions.size());
+		for (final Long pos : blockPositions) {
+			index.writeLong(pos.longValue());
+		}
+		index.writeVarInt(entries.size());
+		for (final IndexEntry entry : entries) {
+			index.writeLong(entry.id);
+			index.writeUTF(entry.name);
+			index.writeVarInt(entry.block);
+		}
+		out.writeByte(ExecutionDataWriter.BLOCK_INDEX);
+		out.writeInt(buffer.size());
+		buffer.writeTo(out);
+		out.writeLong(position);
+		out.writeChar(ExecutionDataWriter.MAGIC_NUMBER);
+		out.flush();
+	}
+
+	private static class IndexEntry {
+
+		final long id;
+
+		final String name;
+
+		final int block;
+
+		IndexEntry(final long id, final String name, final int block) {
+			this.id = id;
+			this.name = name;
+			this.block = block;
+		}
+
+	}
+
+}
@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads execution data from files written by {@link MappedExecutionDataWriter}.
+ * The file may be read at any time, also while it is still written by another
+ * process.
+ */
+public class MappedExecutionDataReader {
+
+	private final File file;
+
+	private ISessionInfoVisitor sessionInfoVisitor = null;
+
+	private IExecutionDataVisitor executionDataVisitor = null;
+
+	/**
+	 * Creates a new reader for the given file.
+	 *
+	 * @param file
+	 *            mapped execution data file
+	 */
+	public MappedExecutionDataReader(final File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Sets an listener for session information.
+	 *
+	 * @param visitor
+	 *            visitor to retrieve session info events
+	 */
+	public void setSessionInfoVisitor(final ISessionInfoVisitor visitor) {
+		this.sessionInfoVisitor = visitor;
+	}
+
+	/**
+	 * Sets an listener for execution data.
+	 *
+	 * @param visitor
+	 *            visitor to retrieve execution data events
+	 */
+	public void setExecutionDataVisitor(final IExecutionDataVisitor visitor) {
+		this.executionDataVisitor = visitor;
+	}
+
+	/**
+	 * Reads a snapshot of the current content of the file.
+	 *
+	 * @throws IOException
+	 *             if the file can't be read or has an invalid format
+	 */
+	public void read() throws IOException {
+		final RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			final FileChannel channel = raf.getChannel();
+			final long size = channel.size();
+			if (size < MappedExecutionDataWriter.HEADER_SIZE) {
+				throw new IOException("Invalid mapped execution data file.");
+			}
+			read(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+		} finally {
+			raf.close();
+		}
+	}
+
+	private void read(final ByteBuffer buffer) throws IOException {
+		if (buffer.getChar(0) != MappedExecutionDataWriter.MAGIC_NUMBER) {
+			throw new IOException("Invalid mapped execution data file.");
+		}
+		final char version = buffer.getChar(2);
+		if (version != MappedExecutionDataWriter.FORMAT_VERSION) {
+			throw new IOException(String.format(
+					"Incompatible mapped execution data version 0x%x.",
+					Integer.valueOf(version)));
+		}
+		final int end = Math.min(
+				buffer.getInt(MappedExecutionDataWriter.END_OFFSET),
+				buffer.capacity());
+		if (sessionInfoVisitor != null) {
+			final int length = buffer
+					.getChar(MappedExecutionDataWriter.SESSIONID_OFFSET);
+			if (length > 0) {
+				final String id = utf8(buffer,
+						MappedExecutionDataWriter.SESSIONID_OFFSET + 2, length);
+				sessionInfoVisitor.visitSessionInfo(new SessionInfo(id,
+						buffer.getLong(MappedExecutionDataWriter.START_OFFSET),
+						buffer.getLong(MappedExecutionDataWriter.DUMP_OFFSET)));
+			}
+		}
+		int pos = MappedExecutionDataWriter.HEADER_SIZE;
+		while (pos < end) {
+			final long id = buffer.getLong(pos);
+			final int probeCount = buffer.getInt(pos + 8);
+			final int nameLength = buffer.getChar(pos + 12);
+			final String name = utf8(buffer, pos + 14, nameLength);
+			pos += 14 + nameLength;
+			final boolean[] probes = new boolean[probeCount];
+			for (int i = 0; i < probeCount; i++) {
+				probes[i] = buffer.get(pos++) != 0;
+			}
+			if (executionDataVisitor != null) {
+				executionDataVisitor.visitClassExecution(
+						new ExecutionData(id, name, probes));
+			}
+		}
+	}
+
+	private static String utf8(final ByteBuffer buffer, final int pos,
+			final int length) throws IOException {
+		final byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = buffer.get(pos + i);
+		}
+		return new String(bytes, "UTF-8");
+	}
+
+}
@@ -0,0 +1,244 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.jacoco.core.internal.data.LongHash;
+
+/**
+ * Mirrors execution data into a memory mapped file. Other than with
+ * {@link ExecutionDataWriter} the data of a class is written only once and
+ * later visits of the same class overwrite its probes in place. Therefore other
+ * processes can read the current state of the file at any time with
+ * {@link MappedExecutionDataReader} and the content written so far survives a
+ * crash of the writing process.
+ *
+ * The file starts with a header of {@value #HEADER_SIZE} bytes:
+ *
+ * <ul>
+ * <li>magic number (char)</li>
+ * <li>format version (char)</li>
+ * <li>end of the last complete class record (int)</li>
+ * <li>session start time stamp (long)</li>
+ * <li>session dump time stamp (long)</li>
+ * <li>UTF-8 encoded session id (char length followed by bytes)</li>
+ * </ul>
+ *
+ * The header is followed by one record per class: class id (long), probe count
+ * (int), UTF-8 encoded class name (char length followed by bytes) and one byte
+ * per probe.
+ */
+public class MappedExecutionDataWriter
+		implements ISessionInfoVisitor, IExecutionDataVisitor {
+
+	/**
+	 * File format version, will be incremented for each incompatible change.
+	 */
+	public static final char FORMAT_VERSION;
+
+	static {
+		// Runtime initialize to ensure javac does not inline the value.
+		FORMAT_VERSION = 0x0001;
+	}
+
+	/** Magic number in header for file format identification. */
+	public static final char MAGIC_NUMBER = 0xC0C1;
+
+	/** Size of the file header in bytes. */
+	public static final int HEADER_SIZE = 256;
+
+	static final int END_OFFSET = 4;
+
+	static final int START_OFFSET = 8;
+
+	static final int DUMP_OFFSET = 16;
+
+	static final int SESSIONID_OFFSET = 24;
+
+	private static final int INITIAL_CAPACITY = 64 * 1024;
+
+	private final RandomAccessFile file;
+
+	private final FileChannel channel;
+
+	private MappedByteBuffer buffer;
+
+	private int end;
+
+	/**
+	 * Class ids of the written records in an open addressing hash table with a
+	 * length of a power of two which is at most half full.
+	 */
+	private long[] ids = new long[64];
+
+	/**
+	 * Position of the probes of the record with the class id at the same index
+	 * in {@link #ids}, <code>0</code> for free slots.
+	 */
+	private int[] probeOffsets = new int[64];
+
+	private int records;
+
+	/**
+	 * Creates a new writer for the given file. Existing content of the file is
+	 * discarded.
+	 *
+	 * @param file
+	 *            file to map
+	 * @throws IOException
+	 *             if the file can't be created or mapped
+	 */
+	public MappedExecutionDataWriter(final File file) throws IOException {
+		this.file = new RandomAccessFile(file, "rw");
+		this.file.setLength(0);
+		this.channel = this.file.getChannel();
+		map(INITIAL_CAPACITY);
+		buffer.putChar(0, MAGIC_NUMBER);
+		buffer.putChar(2, FORMAT_VERSION);
+		end = HEADER_SIZE;
+		buffer.putInt(END_OFFSET, end);
+	}
+
+	private void map(final int capacity) throws IOException {
+		buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+	}
+
+	public void visitSessionInfo(final SessionInfo info) {
+		buffer.putLong(START_OFFSET, info.getStartTimeStamp());
+		buffer.putLong(DUMP_OFFSET, info.getDumpTimeStamp());
+		byte[] id = utf8(info.getId());
+		final int max = HEADER_SIZE - SESSIONID_OFFSET - 2;
+		if (id.length > max) {
+			final byte[] truncated = new byte[max];
+			System.arraycopy(id, 0, truncated, 0, max);
+			id = truncated;
+		}
+		buffer.putChar(SESSIONID_OFFSET, (char) id.length);
+		for (int i = 0; i < id.length; i++) {
+			buffer.put(SESSIONID_OFFSET + 2 + i, id[i]);
+		}
+	}
+
+	public void visitClassExecution(final ExecutionData data) {
+		final long id = data.getId();
+		final int slot = find(ids, probeOffsets, id);
+		int pos = probeOffsets[slot];
+		if (pos == 0) {
+			pos = append(data);
+			ids[slot] = id;
+			probeOffsets[slot] = pos;
+			if (2 * ++records > ids.length) {
+				rehash();
+			}
+		}
+		for (final boolean p : data.getProbes()) {
+			final byte value = p ? (byte) 1 : (byte) 0;
+			// Unchanged probes are not written to keep their pages clean
+			if (buffer.get(pos) != value) {
+				buffer.put(pos, value);
+			}
+			pos++;
+		}
+	}
+
+	private static int find(final long[] ids, final int[] offsets,
+			final long id) {
+		final int mask = ids.length - 1;
+		int i = LongHash.hash(id) & mask;
+		while (offsets[i] != 0 && ids[i] != id) {
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	private void rehash() {
+		final long[] newIds = new long[ids.length * 2];
+		final int[] newOffsets = new int[newIds.length];
+		for (int j = 0; j < ids.length; j++) {
+			if (probeOffsets[j] != 0) {
+				final int i = find(newIds, newOffsets, ids[j]);
+				newIds[i] = ids[j];
+				newOffsets[i] = probeOffsets[j];
+			}
+		}
+		ids = newIds;
+		probeOffsets = newOffsets;
+	}
+
+	/**
+	 * Appends a new record for the given class.
+	 *
+	 * @return position of the probes of the record
+	 */
+	private int append(final ExecutionData data) {
+		final byte[] name = utf8(data.getName());
+		final int probeCount = data.getProbes().length;
+		final int size = 8 + 4 + 2 + name.length + probeCount;
+		ensureCapacity(end + size);
+		int pos = end;
+		buffer.putLong(pos, data.getId());
+		pos += 8;
+		buffer.putInt(pos, probeCount);
+		pos += 4;
+		buffer.putChar(pos, (char) name.length);
+		pos += 2;
+		for (final byte b : name) {
+			buffer.put(pos++, b);
+		}
+		end += size;
+		// Publish the record only after it has been completely written
+		buffer.putInt(END_OFFSET, end);
+		return pos;
+	}
+
+	private void ensureCapacity(final int capacity) {
+		if (capacity <= buffer.capacity()) {
+			return;
+		}
+		try {
+			map(Math.max(capacity, buffer.capacity() * 2));
+		} catch (final IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static byte[] utf8(final String s) {
+		try {
+			return s.getBytes("UTF-8");
+		} catch (final UnsupportedEncodingException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	/**
+	 * Forces all changes to be written to the storage device.
+	 */
+	public void flush() {
+		buffer.force();
+	}
+
+	/**
+	 * Flushes and closes the file. The writer must not be used afterwards.
+	 *
+	 * @throws IOException
+	 *             if the file can't be closed
+	 */
+	public void close() throws IOException {
+		flush();
+		file.close();
+	}
+
+}
@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+import static java.lang.String.format;
+
+/**
+ * Execution data for a single Java class where the probes are packed into a
+ * {@link ProbeBitSet}. This representation is used for offline processing of
+ * large amounts of execution data, e.g. merging many execution data files,
+ * where probes are only combined and written again. Other than
+ * {@link ExecutionData} the probes can't be handed to instrumented classes or
+ * analyzers directly, {@link #toExecutionData()} creates a copy for this. An
+ * instance of this class is not thread safe.
+ *
+ * @see PackedExecutionDataStore
+ */
+public final class PackedExecutionData {
+
+	private final long id;
+
+	private final String name;
+
+	private final ProbeBitSet probes;
+
+	/**
+	 * Creates a new {@link PackedExecutionData} object with the given probe
+	 * data.
+	 *
+	 * @param id
+	 *            class identifier
+	 * @param name
+	 *            VM name
+	 * @param probes
+	 *            packed probe data
+	 */
+	public PackedExecutionData(final long id, final String name,
+			final ProbeBitSet probes) {
+		this.id = id;
+		this.name = name;
+		this.probes = probes;
+	}
+
+	/**
+	 * Creates a new {@link PackedExecutionData} object with a packed copy of
+	 * the probes of the given execution data.
+	 *
+	 * @param data
+	 *            execution data to copy
+	 */
+	public PackedExecutionData(final ExecutionData data) {
+		this(data.getId(), data.getName(),
+				ProbeBitSet.valueOf(data.getProbes()));
+	}
+
+	/**
+	 * Return the unique identifier for this class. The identifier is the CRC64
+	 * checksum of the raw class file definition.
+	 *
+	 * @return class identifier
+	 */
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * The VM name of the class.
+	 *
+	 * @return VM name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the packed probes of this class.
+	 *
+	 * @return packed probe data
+	 */
+	public ProbeBitSet getProbes() {
+		return probes;
+	}
+
+	/**
+	 * Returns the number of probes which have been hit.
+	 *
+	 * @return number of executed probes
+	 */
+	public int getHitCount() {
+		return probes.cardinality();
+	}
+
+	/**
+	 * Checks whether any probe has been hit.
+	 *
+	 * @return <code>true</code>, if at least one probe has been hit
+	 */
+	public boolean hasHits() {
+		return probes.any();
+	}
+
+	/**
+	 * Merges the given execution data into the probe data of this object. I.e.
+	 * a probe entry in this object is marked as executed if this probe or the
+	 * corresponding other probe was executed.
+	 *
+	 * @param other
+	 *            execution data to merge
+	 * @throws IllegalStateException
+	 *             if the given object is not compatible to this object
+	 */
+	public void merge(final ExecutionData other) {
+		final boolean[] otherData = other.getProbes();
+		assertCompatibility(other.getId(), other.getName(), otherData.length);
+		for (int i = 0; i < otherData.length; i++) {
+			if (otherData[i]) {
+				probes.set(i);
+			}
+		}
+	}
+
+	/**
+	 * Merges the given packed execution data into the probe data of this object
+	 * word by word.
+	 *
+	 * @param other
+	 *            execution data to merge
+	 * @throws IllegalStateException
+	 *             if the given object is not compatible to this object
+	 */
+	public void merge(final PackedExecutionData other) {
+		assertCompatibility(other.id, other.name, other.probes.size());
+		probes.or(other.probes);
+	}
+
+	/**
+	 * Asserts that this execution data object is compatible with the given
+	 * parameters.
+	 *
+	 * @param id
+	 *            other class id, must be the same
+	 * @param name
+	 *            other name, must be equal to this name
+	 * @param probecount
+	 *            probe data length, must be the same as for this data
+	 * @throws IllegalStateException
+	 *             if the given parameters do not match this instance
+	 * @see ExecutionData#assertCompatibility(long, String, int)
+	 */
+	public void assertCompatibility(final long id, final String name,
+			final int probecount) throws IllegalStateException {
+		if (this.id != id) {
+			throw new IllegalStateException(
+					format("Different ids (%016x and %016x).",
+							Long.valueOf(this.id), Long.valueOf(id)));
+		}
+		if (!this.name.equals(name)) {
+			throw new IllegalStateException(
+					format("Different class names %s and %s for id %016x.",
+							this.name, name, Long.valueOf(id)));
+		}
+		if (this.probes.size() != probecount) {
+			throw new IllegalStateException(format(
+					"Incompatible execution data for class %s with id %016x.",
+					name, Long.valueOf(id)));
+		}
+	}
+
+	/**
+	 * Creates a new {@link ExecutionData} object with an unpacked copy of the
+	 * probes of this object.
+	 *
+	 * @return new execution data
+	 */
+	public ExecutionData toExecutionData() {
+		return new ExecutionData(id, name, probes.toBooleanArray());
+	}
+
+	@Override
+	public String toString() {
+		return String.format("PackedExecutionData[name=%s, id=%016x]", name,
+				Long.valueOf(id));
+	}
+
+}
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+import java.util.List;
+
+import org.jacoco.core.internal.data.LongKeyTable;
+
+/**
+ * In-memory data store for execution data where the probes of all classes are
+ * kept packed into {@link ProbeBitSet}s. Like {@link ExecutionDataStore} data
+ * can be added through its {@link IExecutionDataVisitor} interface and
+ * execution data provided multiple times for the same class is merged. As the
+ * probes need about an eighth of the memory and are merged word by word this
+ * store is intended for offline tools which only combine and write execution
+ * data again. Entries are kept in the order they have been added. An instance
+ * of this class is not thread safe.
+ */
+public final class PackedExecutionDataStore implements IExecutionDataVisitor {
+
+	private final LongKeyTable<PackedExecutionData> entries = new LongKeyTable<PackedExecutionData>() {
+		@Override
+		protected long getKey(final PackedExecutionData entry) {
+			return entry.getId();
+		}
+	};
+
+	/**
+	 * Adds a packed copy of the given {@link ExecutionData} object into the
+	 * store. If there is already execution data with this same class id, this
+	 * structure is merged with the given one.
+	 *
+	 * @param data
+	 *            execution data to add or merge
+	 * @throws IllegalStateException
+	 *             if the given {@link ExecutionData} object is not compatible
+	 *             to a corresponding one, that is already contained
+	 */
+	public void put(final ExecutionData data) throws IllegalStateException {
+		final PackedExecutionData entry = get(data.getId());
+		if (entry == null) {
+			entries.add(new PackedExecutionData(data));
+		} else {
+			entry.merge(data);
+		}
+	}
+
+	/**
+	 * Adds the given {@link PackedExecutionData} object into the store. If
+	 * there is already execution data with this same class id, this structure
+	 * is merged with the given one. Otherwise the given object becomes the
+	 * entry of the store.
+	 *
+	 * @param data
+	 *            execution data to add or merge
+	 * @throws IllegalStateException
+	 *             if the given object is not compatible to a corresponding one,
+	 *             that is already contained
+	 */
+	public void put(final PackedExecutionData data)
+			throws IllegalStateException {
+		final PackedExecutionData entry = get(data.getId());
+		if (entry == null) {
+			entries.add(data);
+		} else {
+			entry.merge(data);
+		}
+	}
+
+	/**
+	 * Returns the {@link PackedExecutionData} entry with the given id if it
+	 * exists in this store.
+	 *
+	 * @param id
+	 *            class id
+	 * @return execution data or <code>null</code>
+	 */
+	public PackedExecutionData get(final long id) {
+		return entries.get(id);
+	}
+
+	/**
+	 * Returns the number of classes in this store.
+	 *
+	 * @return number of entries
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns a new list with the current contents of the store. The entries
+	 * are returned in the order they have been added.
+	 *
+	 * @return current contents
+	 */
+	public List<PackedExecutionData> getContents() {
+		return entries.values();
+	}
+
+	/**
+	 * Writes the content of the store to the given visitor interface. For every
+	 * entry a new {@link ExecutionData} object with unpacked probes is created.
+	 *
+	 * @param visitor
+	 *            interface to write content to
+	 */
+	public void accept(final IExecutionDataVisitor visitor) {
+		final int size = entries.size();
+		for (int i = 0; i < size; i++) {
+			visitor.visitClassExecution(entries.valueAt(i).toExecutionData());
+		}
+	}
+
+	// === IExecutionDataVisitor ===
+
+	public void visitClassExecution(final ExecutionData data) {
+		put(data);
+	}
+
+}
@@ -0,0 +1,216 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+/**
+ * Probe data packed into the bits of <code>long</code> words. Compared to a
+ * <code>boolean[]</code> array this representation requires an eighth of the
+ * memory and allows to combine and query probes word by word. It is intended
+ * for offline processing of large amounts of execution data, e.g. merging many
+ * execution data files. An instance of this class is not thread safe.
+ */
+public final class ProbeBitSet {
+
+	private final int size;
+
+	private final long[] words;
+
+	/**
+	 * Creates a new set for the given number of probes. All probes are unset.
+	 *
+	 * @param size
+	 *            number of probes
+	 */
+	public ProbeBitSet(final int size) {
+		this.size = size;
+		this.words = new long[(size + 63) >>> 6];
+	}
+
+	/**
+	 * Creates a new set with the values of the given probe array.
+	 *
+	 * @param probes
+	 *            probe data
+	 * @return new set containing the given probes
+	 */
+	public static ProbeBitSet valueOf(final boolean[] probes) {
+		final ProbeBitSet set = new ProbeBitSet(probes.length);
+		for (int i = 0; i < probes.length; i++) {
+			if (probes[i]) {
+				set.words[i >>> 6] |= 1L << i;
+			}
+		}
+		return set;
+	}
+
+	/**
+	 * Returns the number of probes in this set.
+	 *
+	 * @return number of probes
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the value of the given probe.
+	 *
+	 * @param index
+	 *            probe index
+	 * @return <code>true</code> if the probe is set
+	 */
+	public boolean get(final int index) {
+		checkIndex(index);
+		return (words[index >>> 6] & (1L << index)) != 0;
+	}
+
+	/**
+	 * Sets the given probe.
+	 *
+	 * @param index
+	 *            probe index
+	 */
+	public void set(final int index) {
+		checkIndex(index);
+		words[index >>> 6] |= 1L << index;
+	}
+
+	/**
+	 * Unsets the given probe.
+	 *
+	 * @param index
+	 *            probe index
+	 */
+	public void clear(final int index) {
+		checkIndex(index);
+		words[index >>> 6] &= ~(1L << index);
+	}
+
+	/**
+	 * Unsets all probes.
+	 */
+	public void clear() {
+		for (int i = 0; i < words.length; i++) {
+			words[i] = 0;
+		}
+	}
+
+	/**
+	 * Sets all probes which are set in the given set, i.e. this set becomes
+	 * <code>A or B</code>.
+	 *
+	 * @param other
+	 *            set of the same size
+	 * @throws IllegalArgumentException
+	 *             if the other set has a different size
+	 */
+	public void or(final ProbeBitSet other) {
+		checkSize(other);
+		for (int i = 0; i < words.length; i++) {
+			words[i] |= other.words[i];
+		}
+	}
+
+	/**
+	 * Unsets all probes which are set in the given set, i.e. this set becomes
+	 * <code>A and not B</code>.
+	 *
+	 * @param other
+	 *            set of the same size
+	 * @throws IllegalArgumentException
+	 *             if the other set has a different size
+	 */
+	public void andNot(final ProbeBitSet other) {
+		checkSize(other);
+		for (int i = 0; i < words.length; i++) {
+			words[i] &= ~other.words[i];
+		}
+	}
+
+	/**
+	 * Returns the number of set probes.
+	 *
+	 * @return number of set probes
+	 */
+	public int cardinality() {
+		int count = 0;
+		for (final long w : words) {
+			count += Long.bitCount(w);
+		}
+		return count;
+	}
+
+	/**
+	 * Checks whether any probe is set.
+	 *
+	 * @return <code>true</code> if at least one probe is set
+	 */
+	public boolean any() {
+		for (final long w : words) {
+			if (w != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the index of the first set probe at or after the given index.
+	 *
+	 * @param fromIndex
+	 *            index to start from
+	 * @return index of the next set probe or <code>-1</code> if there is none
+	 */
+	public int nextSetBit(final int fromIndex) {
+		int i = fromIndex >>> 6;
+		if (fromIndex >= size) {
+			return -1;
+		}
+		long w = words[i] & (-1L << fromIndex);
+		while (true) {
+			if (w != 0) {
+				return (i << 6) + Long.numberOfTrailingZeros(w);
+			}
+			if (++i == words.length) {
+				return -1;
+			}
+			w = words[i];
+		}
+	}
+
+	/**
+	 * Creates a new probe array with the values of this set.
+	 *
+	 * @return new probe array
+	 */
+	public boolean[] toBooleanArray() {
+		final boolean[] probes = new boolean[size];
+		for (int i = nextSetBit(0); i != -1; i = nextSetBit(i + 1)) {
+			probes[i] = true;
+		}
+		return probes;
+	}
+
+	private void checkIndex(final int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException(String
+					.format("Invalid probe index %s.", Integer.valueOf(index)));
+		}
+	}
+
+	private void checkSize(final ProbeBitSet other) {
+		if (other.size != size) {
+			throw new IllegalArgumentException(String.format(
+					"Different probe counts %s and %s.", Integer.valueOf(size),
+					Integer.valueOf(other.size)));
+		}
+	}
+
+}
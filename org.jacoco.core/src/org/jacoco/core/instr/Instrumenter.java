@@ -12,14 +12,24 @@
  *******************************************************************************/
 package org.jacoco.core.instr;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Enumeration;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 import java.util.zip.CRC32;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
@@ -27,6 +37,7 @@ import org.jacoco.core.internal.ContentTypeDetector;
 import org.jacoco.core.internal.InputStreams;
 import org.jacoco.core.internal.Pack200Streams;
 import org.jacoco.core.internal.data.CRC64;
+import org.jacoco.core.internal.diff.DiffIndex;
 import org.jacoco.core.internal.flow.ClassProbesAdapter;
 import org.jacoco.core.internal.instr.ClassInstrumenter;
 import org.jacoco.core.internal.instr.IProbeArrayStrategy;
@@ -45,8 +56,22 @@ public class Instrumenter {
 
 	private final IExecutionDataAccessorGenerator accessorGenerator;
 
+	/**
+	 * Maximum number of class entries of a ZIP file which are instrumented
+	 * ahead of writing them.
+	 */
+	private static final int MAX_PENDING_ENTRIES = 64;
+
 	private final SignatureRemover signatureRemover;
 
+	private Executor executor;
+
+	private boolean minimizeProbes;
+
+	private boolean compact;
+
+	private boolean indyProbes;
+
 	/**
 	 * Creates a new instance based on the given runtime.
 	 *
@@ -71,7 +96,71 @@ public class Instrumenter {
 		signatureRemover.setActive(flag);
 	}
 
-	private byte[] instrument(final byte[] source) {
+	/**
+	 * Sets an executor to instrument the class entries of ZIP files passed to
+	 * {@link #instrumentAll(File, OutputStream)} in parallel. The entries of
+	 * the resulting archive keep their original order.
+	 *
+	 * @param executor
+	 *            executor for the instrumentation of single classes,
+	 *            <code>null</code> to instrument all classes in the calling
+	 *            thread
+	 */
+	public void setExecutor(final Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Determines whether probes which can be inferred from other probes should
+	 * be omitted. This reduces the size of the instrumented classes and the
+	 * runtime overhead. Probe ids and the size of the probe arrays do not
+	 * change, the omitted probes are just never set, so execution data of both
+	 * modes can be merged. The execution data must be analyzed with the same
+	 * setting, see
+	 * {@link org.jacoco.core.analysis.Analyzer#setMinimizeProbes(boolean)}.
+	 * Default is <code>false</code>.
+	 *
+	 * @param flag
+	 *            <code>true</code> if inferable probes should be omitted
+	 */
+	public void setMinimizeProbes(final boolean flag) {
+		this.minimizeProbes = flag;
+	}
+
+	/**
+	 * Determines whether methods with at most one probe should access the probe
+	 * array without a local variable. This keeps the bytecode growth of small
+	 * methods like getters and setters minimal, so they are more likely to stay
+	 * below the inlining thresholds of the JIT compiler. The recorded execution
+	 * data does not depend on this setting. Default is <code>false</code>.
+	 *
+	 * @param flag
+	 *            <code>true</code> if small methods should be instrumented in a
+	 *            compact way
+	 * @see MethodSizes
+	 */
+	public void setCompact(final boolean flag) {
+		this.compact = flag;
+	}
+
+	/**
+	 * Determines whether probes of Java 11+ class files should be inserted as
+	 * <code>invokedynamic</code> instructions. Such a probe records its first
+	 * execution and then replaces itself with a no-op, which the JIT compiler
+	 * can remove completely. As a consequence probes do not record executions
+	 * again after the execution data has been reset. The recorded execution
+	 * data has the same format as for regular probes. Class files of older
+	 * versions are instrumented as usual. This mode is experimental. Default is
+	 * <code>false</code>.
+	 *
+	 * @param flag
+	 *            <code>true</code> if self-disabling probes should be used
+	 */
+	public void setIndyProbes(final boolean flag) {
+		this.indyProbes = flag;
+	}
+
+	private byte[] instrument(final byte[] source, final boolean probes) {
 		final long classId = CRC64.classId(source);
 		final ClassReader reader = InstrSupport.classReaderFor(source);
 		final ClassWriter writer = new ClassWriter(reader, 0) {
@@ -82,11 +171,12 @@ public class Instrumenter {
 			}
 		};
 		final IProbeArrayStrategy strategy = ProbeArrayStrategyFactory
-				.createFor(classId, reader, accessorGenerator);
+				.createFor(classId, reader, accessorGenerator, indyProbes);
 		final int version = InstrSupport.getMajorVersion(reader);
 		final ClassVisitor visitor = new ClassProbesAdapter(
-				new ClassInstrumenter(strategy, writer),
-				InstrSupport.needsFrames(version));
+				new ClassInstrumenter(strategy, probes, writer),
+				InstrSupport.needsFrames(version), DiffIndex.EMPTY,
+				minimizeProbes, compact);
 		reader.accept(visitor, ClassReader.EXPAND_FRAMES);
 		return writer.toByteArray();
 	}
@@ -105,7 +195,31 @@ public class Instrumenter {
 	public byte[] instrument(final byte[] buffer, final String name)
 			throws IOException {
 		try {
-			return instrument(buffer);
+			return instrument(buffer, true);
+		} catch (final RuntimeException e) {
+			throw instrumentError(name, e);
+		}
+	}
+
+	/**
+	 * Creates a version of the given class which has the same members as its
+	 * instrumented version but does not record execution data any more. As
+	 * class retransformation must not add or remove members this version can
+	 * replace an instrumented class in a running VM, e.g. once all of its
+	 * probes have been executed.
+	 *
+	 * @param buffer
+	 *            definition of the class
+	 * @param name
+	 *            a name used for exception messages
+	 * @return definition without probes
+	 * @throws IOException
+	 *             if the class can't be instrumented
+	 */
+	public byte[] instrumentWithoutProbes(final byte[] buffer,
+			final String name) throws IOException {
+		try {
+			return instrument(buffer, false);
 		} catch (final RuntimeException e) {
 			throw instrumentError(name, e);
 		}
@@ -156,7 +270,7 @@ public class Instrumenter {
 	}
 
 	private IOException instrumentError(final String name,
-			final Exception cause) {
+			final Throwable cause) {
 		final IOException ex = new IOException(
 				String.format("Error while instrumenting %s.", name));
 		ex.initCause(cause);
@@ -216,35 +330,144 @@ public class Instrumenter {
 			if (signatureRemover.removeEntry(entryName)) {
 				continue;
 			}
+			count += instrumentEntry(zipin, entry, zipout, name);
+		}
+		zipout.finish();
+		return count;
+	}
 
-			final ZipEntry newEntry = new ZipEntry(entryName);
-			newEntry.setMethod(entry.getMethod());
-			switch (entry.getMethod()) {
-			case ZipEntry.DEFLATED:
-				zipout.putNextEntry(newEntry);
-				count += filterOrInstrument(zipin, zipout, name, entryName);
-				break;
-			case ZipEntry.STORED:
-				// Uncompressed entries must be processed in-memory to calculate
-				// mandatory entry size and CRC
-				final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-				count += filterOrInstrument(zipin, buffer, name, entryName);
-				final byte[] bytes = buffer.toByteArray();
-				newEntry.setSize(bytes.length);
-				newEntry.setCompressedSize(bytes.length);
-				newEntry.setCrc(crc(bytes));
-				zipout.putNextEntry(newEntry);
-				zipout.write(bytes);
-				break;
-			default:
-				throw new AssertionError(entry.getMethod());
+	/**
+	 * Creates a instrumented version of the given file depending on its type.
+	 * Class files and the content of archive files are instrumented. All other
+	 * files are copied without modification. Other than with
+	 * {@link #instrumentAll(InputStream, OutputStream, String)} ZIP files are
+	 * read through their central directory, so their class entries can be
+	 * instrumented concurrently if an executor is set. The provided
+	 * {@link OutputStream} is not closed by this method.
+	 *
+	 * @param input
+	 *            file to read the contents from
+	 * @param output
+	 *            stream to write the instrumented version of the contents
+	 * @return number of instrumented classes
+	 * @throws IOException
+	 *             if reading data from the file fails or a class can't be
+	 *             instrumented
+	 */
+	public int instrumentAll(final File input, final OutputStream output)
+			throws IOException {
+		final String name = input.getPath();
+		final InputStream in = new FileInputStream(input);
+		try {
+			final ContentTypeDetector detector;
+			try {
+				detector = new ContentTypeDetector(in);
+			} catch (final IOException e) {
+				throw instrumentError(name, e);
 			}
-			zipout.closeEntry();
+			if (detector.getType() != ContentTypeDetector.ZIPFILE) {
+				return instrumentAll(detector.getInputStream(), output, name);
+			}
+		} finally {
+			in.close();
 		}
-		zipout.finish();
+		return instrumentZipFile(input, output, name);
+	}
+
+	private int instrumentZipFile(final File file, final OutputStream output,
+			final String name) throws IOException {
+		final ZipFile zipin;
+		try {
+			zipin = new ZipFile(file);
+		} catch (final IOException e) {
+			throw instrumentError(name, e);
+		}
+		final LinkedList<ClassEntry> pending = new LinkedList<ClassEntry>();
+		try {
+			final ZipOutputStream zipout = new ZipOutputStream(output);
+			int count = 0;
+			final Enumeration<? extends ZipEntry> entries = zipin.entries();
+			while (entries.hasMoreElements()) {
+				final ZipEntry entry = entries.nextElement();
+				final String entryName = entry.getName();
+				if (signatureRemover.removeEntry(entryName)) {
+					continue;
+				}
+				if (executor != null && entryName.endsWith(".class")) {
+					final ClassEntry classEntry = new ClassEntry(zipin, entry,
+							name + "@" + entryName);
+					executor.execute(classEntry.future);
+					pending.add(classEntry);
+					if (pending.size() > MAX_PENDING_ENTRIES) {
+						count += pending.removeFirst().write(zipout);
+					}
+					continue;
+				}
+				while (!pending.isEmpty()) {
+					count += pending.removeFirst().write(zipout);
+				}
+				final InputStream in;
+				try {
+					in = zipin.getInputStream(entry);
+				} catch (final IOException e) {
+					throw instrumentError(name + "@" + entryName, e);
+				}
+				try {
+					count += instrumentEntry(in, entry, zipout, name);
+				} finally {
+					in.close();
+				}
+			}
+			while (!pending.isEmpty()) {
+				count += pending.removeFirst().write(zipout);
+			}
+			zipout.finish();
+			return count;
+		} finally {
+			for (final ClassEntry classEntry : pending) {
+				classEntry.future.cancel(false);
+			}
+			zipin.close();
+		}
+	}
+
+	private int instrumentEntry(final InputStream in, final ZipEntry entry,
+			final ZipOutputStream zipout, final String name)
+			throws IOException {
+		final String entryName = entry.getName();
+		final ZipEntry newEntry = new ZipEntry(entryName);
+		newEntry.setMethod(entry.getMethod());
+		final int count;
+		switch (entry.getMethod()) {
+		case ZipEntry.DEFLATED:
+			zipout.putNextEntry(newEntry);
+			count = filterOrInstrument(in, zipout, name, entryName);
+			break;
+		case ZipEntry.STORED:
+			// Uncompressed entries must be processed in-memory to calculate
+			// mandatory entry size and CRC
+			final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			count = filterOrInstrument(in, buffer, name, entryName);
+			putEntry(zipout, newEntry, buffer.toByteArray());
+			break;
+		default:
+			throw new AssertionError(entry.getMethod());
+		}
+		zipout.closeEntry();
 		return count;
 	}
 
+	private static void putEntry(final ZipOutputStream zipout,
+			final ZipEntry newEntry, final byte[] bytes) throws IOException {
+		if (newEntry.getMethod() == ZipEntry.STORED) {
+			newEntry.setSize(bytes.length);
+			newEntry.setCompressedSize(bytes.length);
+			newEntry.setCrc(crc(bytes));
+		}
+		zipout.putNextEntry(newEntry);
+		zipout.write(bytes);
+	}
+
 	private int filterOrInstrument(final InputStream in, final OutputStream out,
 			final String name, final String entryName) throws IOException {
 		if (signatureRemover.filterEntry(entryName, in, out)) {
@@ -315,4 +538,80 @@ public class Instrumenter {
 		}
 	}
 
+	/**
+	 * Class entry of a ZIP file which is read and instrumented by the executor.
+	 */
+	private class ClassEntry implements Callable<byte[]> {
+
+		private final ZipFile zip;
+
+		private final ZipEntry entry;
+
+		private final String location;
+
+		private final FutureTask<byte[]> future;
+
+		private boolean instrumented;
+
+		ClassEntry(final ZipFile zip, final ZipEntry entry,
+				final String location) {
+			this.zip = zip;
+			this.entry = entry;
+			this.location = location;
+			this.future = new FutureTask<byte[]>(this);
+		}
+
+		public byte[] call() throws IOException {
+			final byte[] source;
+			final InputStream in;
+			try {
+				in = zip.getInputStream(entry);
+				try {
+					source = InputStreams.readFully(in);
+				} finally {
+					in.close();
+				}
+			} catch (final IOException e) {
+				throw instrumentError(location, e);
+			}
+			final ContentTypeDetector detector = new ContentTypeDetector(
+					new ByteArrayInputStream(source));
+			if (detector.getType() != ContentTypeDetector.CLASSFILE) {
+				return source;
+			}
+			instrumented = true;
+			return instrument(source, location);
+		}
+
+		/**
+		 * Waits for the result and writes it as a new entry.
+		 *
+		 * @return number of instrumented classes
+		 */
+		int write(final ZipOutputStream zipout) throws IOException {
+			final byte[] bytes;
+			try {
+				bytes = future.get();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw instrumentError(location, e);
+			} catch (final ExecutionException e) {
+				final Throwable cause = e.getCause();
+				if (cause instanceof IOException) {
+					throw (IOException) cause;
+				}
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw instrumentError(location, cause);
+			}
+			final ZipEntry newEntry = new ZipEntry(entry.getName());
+			newEntry.setMethod(entry.getMethod());
+			putEntry(zipout, newEntry, bytes);
+			zipout.closeEntry();
+			return instrumented ? 1 : 0;
+		}
+
+	}
+
 }
@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.instr;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.jacoco.core.internal.instr.InstrSupport;
+import org.objectweb.asm.ClassReader;
+
+/**
+ * Utility to read the bytecode size of methods. The size of a method decides
+ * whether the HotSpot JIT compiler inlines it, so comparing the sizes before
+ * and after instrumentation shows whether instrumentation prevents inlining.
+ */
+public final class MethodSizes {
+
+	/**
+	 * Default bytecode size up to which HotSpot always inlines methods
+	 * (<code>-XX:MaxInlineSize</code>).
+	 */
+	public static final int MAX_INLINE_SIZE = 35;
+
+	/**
+	 * Default bytecode size up to which HotSpot inlines frequently executed
+	 * methods on 64 bit platforms (<code>-XX:FreqInlineSize</code>).
+	 */
+	public static final int FREQ_INLINE_SIZE = 325;
+
+	private static final String CODE_ATTRIBUTE = "Code";
+
+	private MethodSizes() {
+	}
+
+	/**
+	 * Reads the bytecode size of all methods of the given class which have
+	 * code, i.e. are neither abstract nor native.
+	 *
+	 * @param classfile
+	 *            definition of the class
+	 * @return size of the code in bytes keyed by method name and descriptor in
+	 *         declaration order
+	 */
+	public static Map<String, Integer> read(final byte[] classfile) {
+		final ClassReader reader = InstrSupport.classReaderFor(classfile);
+		final char[] buffer = new char[reader.getMaxStringLength()];
+		final Map<String, Integer> sizes = new LinkedHashMap<String, Integer>();
+		// access flags, this class and super class
+		int offset = reader.header + 6;
+		offset += 2 + 2 * reader.readUnsignedShort(offset);
+		// fields
+		int count = reader.readUnsignedShort(offset);
+		offset += 2;
+		for (int i = 0; i < count; i++) {
+			offset = skipAttributes(reader, offset + 6);
+		}
+		// methods
+		count = reader.readUnsignedShort(offset);
+		offset += 2;
+		for (int i = 0; i < count; i++) {
+			final String name = reader.readUTF8(offset + 2, buffer)
+					+ reader.readUTF8(offset + 4, buffer);
+			int attributes = reader.readUnsignedShort(offset + 6);
+			offset += 8;
+			while (attributes-- > 0) {
+				if (CODE_ATTRIBUTE.equals(reader.readUTF8(offset, buffer))) {
+					// max stack and max locals precede the code length
+					sizes.put(name,
+							Integer.valueOf(reader.readInt(offset + 10)));
+				}
+				offset += 6 + reader.readInt(offset + 2);
+			}
+		}
+		return sizes;
+	}
+
+	private static int skipAttributes(final ClassReader reader, int offset) {
+		int attributes = reader.readUnsignedShort(offset);
+		offset += 2;
+		while (attributes-- > 0) {
+			offset += 6 + reader.readInt(offset + 2);
+		}
+		return offset;
+	}
+
+}
@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.analysis;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.jacoco.core.JaCoCo;
+import org.jacoco.core.internal.data.CompactDataInput;
+import org.jacoco.core.internal.data.CompactDataOutput;
+
+/**
+ * On-disk cache of {@link ClassStructure}s keyed by class id. As the class id
+ * is calculated from the class file content, cached entries never become stale.
+ * As the id is only a 64 bit hash, every entry also records the class name and
+ * the SHA-1 digest of the class file, which are verified before an entry is
+ * used. Entries written by a different JaCoCo version are ignored as the
+ * analysis and the filters might have changed. Entries are written to a
+ * temporary file first and then renamed, so the cache can be shared by
+ * concurrent threads and processes.
+ */
+public class AnalysisCache {
+
+	/** Marker at the beginning of every cache entry. */
+	private static final int MAGIC = 0xC0C0A7A1;
+
+	/**
+	 * Version of the entry format. Must be incremented whenever the format
+	 * changes.
+	 */
+	private static final int VERSION = 3;
+
+	private static final int DIGEST_LENGTH = 20;
+
+	private final File directory;
+
+	private final boolean minimizeProbes;
+
+	/**
+	 * Creates a cache that stores its entries in the given directory.
+	 *
+	 * @param directory
+	 *            cache directory, created on demand
+	 */
+	public AnalysisCache(final File directory) {
+		this(directory, false);
+	}
+
+	/**
+	 * Creates a cache that stores its entries in the given directory.
+	 * Structures recorded with probe minimization are stored separately as they
+	 * contain the probes to infer.
+	 *
+	 * @param directory
+	 *            cache directory, created on demand
+	 * @param minimizeProbes
+	 *            whether the structures are recorded with probe minimization
+	 */
+	public AnalysisCache(final File directory, final boolean minimizeProbes) {
+		this.directory = directory;
+		this.minimizeProbes = minimizeProbes;
+	}
+
+	/**
+	 * Returns the cached structure of the given class.
+	 *
+	 * @param classId
+	 *            id of the class
+	 * @param name
+	 *            VM name of the class
+	 * @param source
+	 *            class file
+	 * @return structure or <code>null</code> if no valid entry exists
+	 */
+	public ClassStructure get(final long classId, final String name,
+			final byte[] source) {
+		final File file = getFile(classId);
+		if (!file.isFile()) {
+			return null;
+		}
+		try {
+			final CompactDataInput in = new CompactDataInput(
+					new BufferedInputStream(new FileInputStream(file)));
+			try {
+				if (in.readInt() != MAGIC || in.readInt() != VERSION
+						|| !JaCoCo.VERSION.equals(in.readUTF())
+						|| !in.readUTF().equals(name)) {
+					return null;
+				}
+				final byte[] digest = new byte[DIGEST_LENGTH];
+				in.readFully(digest);
+				if (!MessageDigest.isEqual(digest, digest(source))) {
+					// Different class with the same id
+					return null;
+				}
+				return ClassStructure.read(in);
+			} finally {
+				in.close();
+			}
+		} catch (final IOException e) {
+			// Incomplete or foreign entries are treated as cache misses
+			return null;
+		}
+	}
+
+	/**
+	 * Stores the structure of the given class.
+	 *
+	 * @param classId
+	 *            id of the class
+	 * @param source
+	 *            class file
+	 * @param structure
+	 *            structure recorded from the class
+	 * @throws IOException
+	 *             if the entry can't be written
+	 */
+	public void put(final long classId, final byte[] source,
+			final ClassStructure structure) throws IOException {
+		final File file = getFile(classId);
+		final File folder = file.getParentFile();
+		folder.mkdirs();
+		final File tmp = File.createTempFile(file.getName(), ".tmp", folder);
+		try {
+			final CompactDataOutput out = new CompactDataOutput(
+					new BufferedOutputStream(new FileOutputStream(tmp)));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeUTF(JaCoCo.VERSION);
+				out.writeUTF(structure.getName());
+				out.write(digest(source));
+				structure.write(out);
+			} finally {
+				out.close();
+			}
+			// Some other thread or process might have won the race. As the
+			// content is the same we don't care which entry survives.
+			if (!tmp.renameTo(file) && !file.isFile()) {
+				throw new IOException(
+						String.format("Can't write cache entry %s.", file));
+			}
+		} finally {
+			tmp.delete();
+		}
+	}
+
+	private static byte[] digest(final byte[] bytes) {
+		try {
+			return MessageDigest.getInstance("SHA-1").digest(bytes);
+		} catch (final NoSuchAlgorithmException e) {
+			// Every Java platform is required to support SHA-1
+			throw new AssertionError(e);
+		}
+	}
+
+	private File getFile(final long classId) {
+		final String name = String.format("%016x", Long.valueOf(classId));
+		return new File(new File(directory, name.substring(0, 2)),
+				minimizeProbes ? name.substring(2) + "-min"
+						: name.substring(2));
+	}
+
+}
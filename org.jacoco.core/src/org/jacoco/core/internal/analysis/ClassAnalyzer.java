@@ -13,6 +13,7 @@
 package org.jacoco.core.internal.analysis;
 
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import org.jacoco.core.internal.analysis.filter.Filters;
@@ -25,6 +26,7 @@ import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.Attribute;
 import org.objectweb.asm.FieldVisitor;
 import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.MethodNode;
 
 /**
@@ -45,6 +47,8 @@ public class ClassAnalyzer extends ClassProbesVisitor
 
 	private final IFilter filter;
 
+	private final ClassStructure structure;
+
 	/**
 	 * Creates a new analyzer that builds coverage data for a class.
 	 *
@@ -57,10 +61,30 @@ public class ClassAnalyzer extends ClassProbesVisitor
 	 */
 	public ClassAnalyzer(final ClassCoverageImpl coverage,
 			final boolean[] probes, final StringPool stringPool) {
+		this(coverage, probes, stringPool, null);
+	}
+
+	/**
+	 * Creates a new analyzer that builds coverage data for a class and
+	 * additionally records the probe independent structure of the class.
+	 *
+	 * @param coverage
+	 *            coverage node for the analyzed class data
+	 * @param probes
+	 *            execution data for this class or <code>null</code>
+	 * @param stringPool
+	 *            shared pool to minimize the number of {@link String} instances
+	 * @param structure
+	 *            recorder for the class structure or <code>null</code>
+	 */
+	public ClassAnalyzer(final ClassCoverageImpl coverage,
+			final boolean[] probes, final StringPool stringPool,
+			final ClassStructure structure) {
 		this.coverage = coverage;
 		this.probes = probes;
 		this.stringPool = stringPool;
 		this.filter = Filters.all();
+		this.structure = structure;
 	}
 
 	@Override
@@ -97,7 +121,11 @@ public class ClassAnalyzer extends ClassProbesVisitor
 
 		InstrSupport.assertNotInstrumented(name, coverage.getName());
 
-		final InstructionsBuilder builder = new InstructionsBuilder(probes);
+		final MethodStructure methodStructure = structure == null ? null
+				: new MethodStructure(stringPool.get(name),
+						stringPool.get(desc), stringPool.get(signature));
+		final InstructionsBuilder builder = new InstructionsBuilder(probes,
+				methodStructure);
 
 		return new MethodAnalyzer(builder) {
 
@@ -106,17 +134,28 @@ public class ClassAnalyzer extends ClassProbesVisitor
 					final MethodVisitor methodVisitor) {
 				super.accept(methodNode, methodVisitor);
 				addMethodCoverage(stringPool.get(name), stringPool.get(desc),
-						stringPool.get(signature), builder, methodNode);
+						stringPool.get(signature), builder, methodNode,
+						methodStructure);
 			}
 		};
 	}
 
 	private void addMethodCoverage(final String name, final String desc,
 			final String signature, final InstructionsBuilder icc,
-			final MethodNode methodNode) {
+			final MethodNode methodNode,
+			final MethodStructure methodStructure) {
+		final Map<AbstractInsnNode, Instruction> instructions = icc
+				.getInstructions();
 		final MethodCoverageCalculator mcc = new MethodCoverageCalculator(
-				icc.getInstructions());
-		filter.filter(methodNode, this, mcc);
+				instructions);
+		if (methodStructure == null) {
+			filter.filter(methodNode, this, mcc);
+		} else {
+			filter.filter(methodNode, this,
+					methodStructure.record(mcc, instructions));
+			methodStructure.endRecording();
+			structure.addMethod(methodStructure);
+		}
 
 		final MethodCoverageImpl mc = new MethodCoverageImpl(name, desc,
 				signature);
@@ -141,6 +180,14 @@ public class ClassAnalyzer extends ClassProbesVisitor
 		// nothing to do
 	}
 
+	@Override
+	public void visitEnd() {
+		super.visitEnd();
+		if (structure != null) {
+			structure.setClass(coverage);
+		}
+	}
+
 	// IFilterContext implementation
 
 	public String getClassName() {
@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.analysis;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jacoco.core.internal.data.CompactDataInput;
+import org.jacoco.core.internal.data.CompactDataOutput;
+import org.jacoco.core.internal.diff.DiffIndex;
+
+/**
+ * Probe independent structure of a class as recorded by {@link ClassAnalyzer}.
+ * The structure contains all methods of the class regardless of a diff scope
+ * and can be used to calculate the coverage for any execution data of the
+ * class.
+ */
+public class ClassStructure {
+
+	private final String name;
+
+	private String signature;
+
+	private String superName;
+
+	private String[] interfaces;
+
+	private String sourceFileName;
+
+	private final List<MethodStructure> methods;
+
+	/**
+	 * Creates a new empty structure to record the given class.
+	 *
+	 * @param name
+	 *            VM name of the class
+	 */
+	public ClassStructure(final String name) {
+		this.name = name;
+		this.methods = new ArrayList<MethodStructure>();
+	}
+
+	/**
+	 * @return VM name of the class
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return recorded methods of the class
+	 */
+	public List<MethodStructure> getMethods() {
+		return methods;
+	}
+
+	void setClass(final ClassCoverageImpl coverage) {
+		signature = coverage.getSignature();
+		superName = coverage.getSuperName();
+		interfaces = coverage.getInterfaceNames();
+		sourceFileName = coverage.getSourceFileName();
+	}
+
+	void addMethod(final MethodStructure method) {
+		methods.add(method);
+	}
+
+	/**
+	 * Calculates the coverage of the class for the given probes. Methods
+	 * outside of the diff scope are omitted.
+	 *
+	 * @param id
+	 *            class identifier
+	 * @param noMatch
+	 *            <code>true</code>, if class id does not match with execution
+	 *            data
+	 * @param probes
+	 *            execution data for this class or <code>null</code>
+	 * @param stringPool
+	 *            shared pool to minimize the number of {@link String} instances
+	 * @param diffIndex
+	 *            changed classes, empty for full coverage
+	 * @return coverage of the class
+	 */
+	public ClassCoverageImpl createCoverage(final long id,
+			final boolean noMatch, final boolean[] probes,
+			final StringPool stringPool, final DiffIndex diffIndex) {
+		final ClassCoverageImpl coverage = new ClassCoverageImpl(
+				stringPool.get(name), id, noMatch);
+		coverage.setSignature(stringPool.get(signature));
+		coverage.setSuperName(stringPool.get(superName));
+		coverage.setInterfaces(stringPool.get(interfaces));
+		coverage.setSourceFileName(stringPool.get(sourceFileName));
+		for (final MethodStructure method : methods) {
+			if (!diffIndex.isEmpty()
+					&& !diffIndex.containsMethod(name, method.getName())) {
+				continue;
+			}
+			final MethodCoverageImpl mc = method.createCoverage(probes,
+					stringPool);
+			if (mc.containsCode()) {
+				// Only consider methods that actually contain code
+				coverage.addMethod(mc);
+			}
+		}
+		return coverage;
+	}
+
+	/**
+	 * Writes this structure to the given output.
+	 *
+	 * @param out
+	 *            output to write to
+	 * @throws IOException
+	 *             if the output can't be written
+	 */
+	public void write(final CompactDataOutput out) throws IOException {
+		out.writeUTF(name);
+		writeString(out, signature);
+		writeString(out, superName);
+		writeString(out, sourceFileName);
+		out.writeBoolean(interfaces != null);
+		if (interfaces != null) {
+			out.writeVarInt(interfaces.length);
+			for (final String i : interfaces) {
+				out.writeUTF(i);
+			}
+		}
+		out.writeVarInt(methods.size());
+		for (final MethodStructure method : methods) {
+			method.write(out);
+		}
+	}
+
+	/**
+	 * Reads a structure written by {@link #write(CompactDataOutput)}.
+	 *
+	 * @param in
+	 *            input to read from
+	 * @return structure read
+	 * @throws IOException
+	 *             if the input can't be read
+	 */
+	public static ClassStructure read(final CompactDataInput in)
+			throws IOException {
+		final ClassStructure structure = new ClassStructure(in.readUTF());
+		structure.signature = readString(in);
+		structure.superName = readString(in);
+		structure.sourceFileName = readString(in);
+		if (in.readBoolean()) {
+			structure.interfaces = new String[in.readVarInt()];
+			for (int i = 0; i < structure.interfaces.length; i++) {
+				structure.interfaces[i] = in.readUTF();
+			}
+		}
+		final int count = in.readVarInt();
+		for (int i = 0; i < count; i++) {
+			structure.methods.add(MethodStructure.read(in));
+		}
+		return structure;
+	}
+
+	private static void writeString(final CompactDataOutput out,
+			final String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+
+	private static String readString(final CompactDataInput in)
+			throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+}
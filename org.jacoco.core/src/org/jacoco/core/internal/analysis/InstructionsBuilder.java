@@ -58,6 +58,15 @@ class InstructionsBuilder {
 	 */
 	private final List<Jump> jumps;
 
+	/** Optional recorder for the structure of the method. */
+	private final MethodStructure structure;
+
+	/**
+	 * Probes which have not been inserted and the probes their execution is
+	 * inferred from, <code>null</code> without probe minimization.
+	 */
+	private Map<Integer, int[]> inferredProbes;
+
 	/**
 	 * Creates a new builder instance which can be used to analyze a single
 	 * method.
@@ -67,7 +76,23 @@ class InstructionsBuilder {
 	 *            coverage status of every instruction.
 	 */
 	InstructionsBuilder(final boolean[] probes) {
+		this(probes, null);
+	}
+
+	/**
+	 * Creates a new builder instance which can be used to analyze a single
+	 * method and records all operations on its instructions.
+	 *
+	 * @param probes
+	 *            probe array of the corresponding class used to determine the
+	 *            coverage status of every instruction.
+	 * @param structure
+	 *            recorder for the structure of the method or <code>null</code>
+	 */
+	InstructionsBuilder(final boolean[] probes,
+			final MethodStructure structure) {
 		this.probes = probes;
+		this.structure = structure;
 		this.currentLine = ISourceNode.UNKNOWN_LINE;
 		this.currentInsn = null;
 		this.instructions = new HashMap<AbstractInsnNode, Instruction>();
@@ -109,8 +134,14 @@ class InstructionsBuilder {
 			}
 			currentLabel.clear();
 		}
+		if (structure != null) {
+			structure.addInstruction(insn);
+		}
 		if (currentInsn != null) {
 			currentInsn.addBranch(insn, 0);
+			if (structure != null) {
+				structure.addBranch(currentInsn, insn, 0);
+			}
 		}
 		currentInsn = insn;
 		instructions.put(node, insn);
@@ -146,8 +177,62 @@ class InstructionsBuilder {
 	 *            unique branch number for the last instruction
 	 */
 	void addProbe(final int probeId, final int branch) {
-		final boolean executed = probes != null && probes[probeId];
+		final boolean executed = inferredProbes == null
+				? probes != null && probes[probeId]
+				: isExecuted(probes,
+						inferredProbes.get(Integer.valueOf(probeId)), probeId);
 		currentInsn.addBranch(executed, branch);
+		if (structure != null) {
+			structure.addProbe(currentInsn, probeId, branch);
+		}
+	}
+
+	/**
+	 * Declares a probe which might not have been inserted by the
+	 * instrumentation. It has been executed if it has been recorded or one of
+	 * its successor probes has been executed.
+	 *
+	 * @param probeId
+	 *            index of the omitted probe in the probe array
+	 * @param successorIds
+	 *            indexes of the probes the execution is inferred from
+	 */
+	void addInferredProbe(final int probeId, final int[] successorIds) {
+		if (inferredProbes == null) {
+			inferredProbes = new HashMap<Integer, int[]>();
+		}
+		inferredProbes.put(Integer.valueOf(probeId), successorIds);
+		if (structure != null) {
+			structure.addInferredProbe(probeId, successorIds);
+		}
+	}
+
+	/**
+	 * Checks whether the given probe has been executed.
+	 *
+	 * @param probes
+	 *            probe array or <code>null</code>
+	 * @param successorIds
+	 *            probes the execution is inferred from or <code>null</code> if
+	 *            the probe has been inserted
+	 * @param probeId
+	 *            index of the probe
+	 * @return <code>true</code> if the probe has been executed
+	 */
+	static boolean isExecuted(final boolean[] probes, final int[] successorIds,
+			final int probeId) {
+		if (probes == null) {
+			return false;
+		}
+		if (probes[probeId] || successorIds == null) {
+			return probes[probeId];
+		}
+		for (final int id : successorIds) {
+			if (probes[id]) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	/**
@@ -160,7 +245,7 @@ class InstructionsBuilder {
 	Map<AbstractInsnNode, Instruction> getInstructions() {
 		// Wire jumps:
 		for (final Jump j : jumps) {
-			j.wire();
+			j.wire(structure);
 		}
 
 		return instructions;
@@ -178,8 +263,12 @@ class InstructionsBuilder {
 			this.branch = branch;
 		}
 
-		void wire() {
-			source.addBranch(LabelInfo.getInstruction(target), branch);
+		void wire(final MethodStructure structure) {
+			final Instruction targetInsn = LabelInfo.getInstruction(target);
+			source.addBranch(targetInsn, branch);
+			if (structure != null) {
+				structure.addBranch(source, targetInsn, branch);
+			}
 		}
 
 	}
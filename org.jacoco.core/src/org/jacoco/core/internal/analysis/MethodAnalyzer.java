@@ -150,6 +150,12 @@ public class MethodAnalyzer extends MethodProbesVisitor {
 		builder.addInstruction(currentNode);
 	}
 
+	@Override
+	public void visitInferredProbe(final int probeId,
+			final int[] successorIds) {
+		builder.addInferredProbe(probeId, successorIds);
+	}
+
 	@Override
 	public void visitProbe(final int probeId) {
 		builder.addProbe(probeId, 0);
@@ -0,0 +1,360 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.analysis;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.jacoco.core.internal.analysis.filter.IFilterOutput;
+import org.jacoco.core.internal.data.CompactDataInput;
+import org.jacoco.core.internal.data.CompactDataOutput;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnNode;
+
+/**
+ * Probe independent structure of a single method. The structure is recorded as
+ * the sequence of operations {@link InstructionsBuilder} and the filters
+ * perform on the {@link Instruction}s of the method. Replaying these operations
+ * with a probe array calculates exactly the same coverage as the analysis of
+ * the class file, but without parsing it.
+ */
+public class MethodStructure {
+
+	private static final int IGNORE = 0;
+
+	private static final int MERGE = 1;
+
+	private static final int REPLACE = 2;
+
+	private final String name;
+
+	private final String desc;
+
+	private final String signature;
+
+	/** Source line of every instruction in creation order. */
+	private final IntList lines;
+
+	/**
+	 * Triples of source instruction, target instruction or probe id (encoded as
+	 * <code>-1 - probeId</code>) and branch number.
+	 */
+	private final IntList branches;
+
+	/** Commands of the filters on instruction indexes. */
+	private final IntList filterCommands;
+
+	/**
+	 * Omitted probes as sequences of probe id, number of successor probes and
+	 * successor probe ids.
+	 */
+	private final IntList inferredProbes;
+
+	/** Index of every recorded instruction, only used while recording. */
+	private Map<Instruction, Integer> indexes;
+
+	/**
+	 * Creates a new structure to record the given method.
+	 *
+	 * @param name
+	 *            method name
+	 * @param desc
+	 *            method descriptor
+	 * @param signature
+	 *            generic signature or <code>null</code>
+	 */
+	MethodStructure(final String name, final String desc,
+			final String signature) {
+		this.name = name;
+		this.desc = desc;
+		this.signature = signature;
+		this.lines = new IntList();
+		this.branches = new IntList();
+		this.filterCommands = new IntList();
+		this.inferredProbes = new IntList();
+		this.indexes = new IdentityHashMap<Instruction, Integer>();
+	}
+
+	/**
+	 * @return name of the method
+	 */
+	public String getName() {
+		return name;
+	}
+
+	void addInstruction(final Instruction instruction) {
+		indexes.put(instruction, Integer.valueOf(lines.size()));
+		lines.add(instruction.getLine());
+	}
+
+	void addBranch(final Instruction source, final Instruction target,
+			final int branch) {
+		branches.add(indexOf(source));
+		branches.add(indexOf(target));
+		branches.add(branch);
+	}
+
+	void addProbe(final Instruction source, final int probeId,
+			final int branch) {
+		branches.add(indexOf(source));
+		branches.add(-1 - probeId);
+		branches.add(branch);
+	}
+
+	void addInferredProbe(final int probeId, final int[] successorIds) {
+		inferredProbes.add(probeId);
+		inferredProbes.add(successorIds.length);
+		for (final int id : successorIds) {
+			inferredProbes.add(id);
+		}
+	}
+
+	private int indexOf(final Instruction instruction) {
+		return indexes.get(instruction).intValue();
+	}
+
+	/**
+	 * Wraps the given filter output to record all filter commands.
+	 *
+	 * @param output
+	 *            output to delegate to
+	 * @param instructions
+	 *            instructions of the method
+	 * @return recording filter output
+	 */
+	IFilterOutput record(final IFilterOutput output,
+			final Map<AbstractInsnNode, Instruction> instructions) {
+		return new IFilterOutput() {
+
+			public void ignore(final AbstractInsnNode fromInclusive,
+					final AbstractInsnNode toInclusive) {
+				output.ignore(fromInclusive, toInclusive);
+				for (AbstractInsnNode i = fromInclusive; i != toInclusive; i = i
+						.getNext()) {
+					ignore(i);
+				}
+				ignore(toInclusive);
+			}
+
+			private void ignore(final AbstractInsnNode node) {
+				final Instruction instruction = instructions.get(node);
+				if (instruction != null) {
+					filterCommands.add(IGNORE);
+					filterCommands.add(indexOf(instruction));
+				}
+			}
+
+			public void merge(final AbstractInsnNode i1,
+					final AbstractInsnNode i2) {
+				output.merge(i1, i2);
+				filterCommands.add(MERGE);
+				filterCommands.add(indexOf(instructions.get(i1)));
+				filterCommands.add(indexOf(instructions.get(i2)));
+			}
+
+			public void replaceBranches(final AbstractInsnNode source,
+					final Set<AbstractInsnNode> newTargets) {
+				output.replaceBranches(source, newTargets);
+				filterCommands.add(REPLACE);
+				filterCommands.add(indexOf(instructions.get(source)));
+				filterCommands.add(newTargets.size());
+				for (final AbstractInsnNode target : newTargets) {
+					filterCommands.add(indexOf(instructions.get(target)));
+				}
+			}
+		};
+	}
+
+	/**
+	 * Finishes the recording of this method.
+	 */
+	void endRecording() {
+		indexes = null;
+	}
+
+	/**
+	 * Calculates the coverage of this method for the given probes.
+	 *
+	 * @param probes
+	 *            probe array of the class or <code>null</code>
+	 * @param stringPool
+	 *            shared pool to minimize the number of {@link String} instances
+	 * @return coverage of the method
+	 */
+	MethodCoverageImpl createCoverage(final boolean[] probes,
+			final StringPool stringPool) {
+		final Map<Integer, int[]> inferred = inferredProbes.size() == 0 ? null
+				: new HashMap<Integer, int[]>();
+		for (int i = 0; i < inferredProbes.size();) {
+			final int probeId = inferredProbes.get(i++);
+			final int[] successorIds = new int[inferredProbes.get(i++)];
+			for (int j = 0; j < successorIds.length; j++) {
+				successorIds[j] = inferredProbes.get(i++);
+			}
+			inferred.put(Integer.valueOf(probeId), successorIds);
+		}
+
+		final int size = lines.size();
+		final Instruction[] instructions = new Instruction[size];
+		for (int i = 0; i < size; i++) {
+			instructions[i] = new Instruction(lines.get(i));
+		}
+		for (int i = 0; i < branches.size(); i += 3) {
+			final Instruction source = instructions[branches.get(i)];
+			final int target = branches.get(i + 1);
+			final int branch = branches.get(i + 2);
+			if (target >= 0) {
+				source.addBranch(instructions[target], branch);
+			} else {
+				final int probeId = -1 - target;
+				source.addBranch(
+						inferred == null ? probes != null && probes[probeId]
+								: InstructionsBuilder.isExecuted(probes,
+										inferred.get(Integer.valueOf(probeId)),
+										probeId),
+						branch);
+			}
+		}
+
+		// The filters work on ASM nodes, so we use placeholders:
+		final AbstractInsnNode[] nodes = new AbstractInsnNode[size];
+		final Map<AbstractInsnNode, Instruction> map = new HashMap<AbstractInsnNode, Instruction>();
+		for (int i = 0; i < size; i++) {
+			nodes[i] = new InsnNode(Opcodes.NOP);
+			map.put(nodes[i], instructions[i]);
+		}
+		final MethodCoverageCalculator mcc = new MethodCoverageCalculator(map);
+		int i = 0;
+		while (i < filterCommands.size()) {
+			switch (filterCommands.get(i++)) {
+			case IGNORE:
+				final AbstractInsnNode node = nodes[filterCommands.get(i++)];
+				mcc.ignore(node, node);
+				break;
+			case MERGE:
+				final AbstractInsnNode i1 = nodes[filterCommands.get(i++)];
+				final AbstractInsnNode i2 = nodes[filterCommands.get(i++)];
+				mcc.merge(i1, i2);
+				break;
+			case REPLACE:
+				final AbstractInsnNode source = nodes[filterCommands.get(i++)];
+				final int count = filterCommands.get(i++);
+				final Set<AbstractInsnNode> targets = new HashSet<AbstractInsnNode>();
+				for (int j = 0; j < count; j++) {
+					targets.add(nodes[filterCommands.get(i++)]);
+				}
+				mcc.replaceBranches(source, targets);
+				break;
+			default:
+				throw new IllegalStateException("Unknown filter command.");
+			}
+		}
+
+		final MethodCoverageImpl coverage = new MethodCoverageImpl(
+				stringPool.get(name), stringPool.get(desc),
+				stringPool.get(signature));
+		mcc.calculate(coverage);
+		return coverage;
+	}
+
+	/**
+	 * Writes this structure to the given output.
+	 *
+	 * @param out
+	 *            output to write to
+	 * @throws IOException
+	 *             if the output can't be written
+	 */
+	void write(final CompactDataOutput out) throws IOException {
+		out.writeUTF(name);
+		out.writeUTF(desc);
+		out.writeBoolean(signature != null);
+		if (signature != null) {
+			out.writeUTF(signature);
+		}
+		lines.write(out);
+		branches.write(out);
+		filterCommands.write(out);
+		inferredProbes.write(out);
+	}
+
+	/**
+	 * Reads a structure written by {@link #write(CompactDataOutput)}.
+	 *
+	 * @param in
+	 *            input to read from
+	 * @return structure read
+	 * @throws IOException
+	 *             if the input can't be read
+	 */
+	static MethodStructure read(final CompactDataInput in) throws IOException {
+		final String name = in.readUTF();
+		final String desc = in.readUTF();
+		final String signature = in.readBoolean() ? in.readUTF() : null;
+		final MethodStructure structure = new MethodStructure(name, desc,
+				signature);
+		structure.endRecording();
+		structure.lines.read(in);
+		structure.branches.read(in);
+		structure.filterCommands.read(in);
+		structure.inferredProbes.read(in);
+		return structure;
+	}
+
+	/**
+	 * Growable list of primitive int values.
+	 */
+	private static class IntList {
+
+		private int[] values = new int[16];
+
+		private int size;
+
+		void add(final int value) {
+			if (size == values.length) {
+				final int[] newValues = new int[size * 2];
+				System.arraycopy(values, 0, newValues, 0, size);
+				values = newValues;
+			}
+			values[size++] = value;
+		}
+
+		int get(final int index) {
+			return values[index];
+		}
+
+		int size() {
+			return size;
+		}
+
+		void write(final CompactDataOutput out) throws IOException {
+			out.writeVarInt(size);
+			for (int i = 0; i < size; i++) {
+				out.writeVarInt(values[i]);
+			}
+		}
+
+		void read(final CompactDataInput in) throws IOException {
+			final int count = in.readVarInt();
+			values = new int[Math.max(count, 1)];
+			for (int i = 0; i < count; i++) {
+				values[i] = in.readVarInt();
+			}
+			size = count;
+		}
+
+	}
+
+}
@@ -15,6 +15,7 @@ package org.jacoco.core.internal.data;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 
 /**
  * Additional data input methods for compact storage of data structures.
@@ -58,6 +59,11 @@ public class CompactDataInput extends DataInputStream {
 	 */
 	public boolean[] readBooleanArray() throws IOException {
 		final boolean[] value = new boolean[readVarInt()];
+		readBits(value);
+		return value;
+	}
+
+	private void readBits(final boolean[] value) throws IOException {
 		int buffer = 0;
 		for (int i = 0; i < value.length; i++) {
 			if ((i % 8) == 0) {
@@ -66,6 +72,64 @@ public class CompactDataInput extends DataInputStream {
 			value[i] = (buffer & 0x01) != 0;
 			buffer >>>= 1;
 		}
+	}
+
+	/**
+	 * Reads a boolean array written with any of the encodings of
+	 * {@link CompactDataOutput#writeAdaptiveBooleanArray(boolean[])}.
+	 *
+	 * @return boolean array
+	 * @throws IOException
+	 *             if thrown by the underlying stream or if the encoding is
+	 *             invalid
+	 */
+	public boolean[] readAdaptiveBooleanArray() throws IOException {
+		final int header = readVarInt();
+		final boolean[] value = new boolean[header >>> 3];
+		final int encoding = header & 0x07;
+		switch (encoding) {
+		case CompactDataOutput.ARRAY_ALL_FALSE:
+			break;
+		case CompactDataOutput.ARRAY_ALL_TRUE:
+			Arrays.fill(value, true);
+			break;
+		case CompactDataOutput.ARRAY_BITS:
+			readBits(value);
+			break;
+		case CompactDataOutput.ARRAY_SPARSE:
+			final int count = readVarInt();
+			int index = -1;
+			for (int i = 0; i < count; i++) {
+				index += readVarInt() + 1;
+				if (index < 0 || index >= value.length) {
+					throw new IOException(String.format(
+							"Invalid probe index %s.", Integer.valueOf(index)));
+				}
+				value[index] = true;
+			}
+			break;
+		case CompactDataOutput.ARRAY_RUNS:
+			int pos = 0;
+			boolean runValue = false;
+			while (pos < value.length) {
+				final int length = readVarInt();
+				if (length < 0 || length > value.length - pos) {
+					throw new IOException(String.format(
+							"Invalid run length %s.", Integer.valueOf(length)));
+				}
+				final int end = pos + length;
+				if (runValue) {
+					Arrays.fill(value, pos, end, true);
+				}
+				pos = end;
+				runValue = !runValue;
+			}
+			break;
+		default:
+			throw new IOException(
+					String.format("Unknown boolean array encoding %x.",
+							Integer.valueOf(encoding)));
+		}
 		return value;
 	}
 
@@ -23,6 +23,21 @@ import java.io.OutputStream;
  */
 public class CompactDataOutput extends DataOutputStream {
 
+	/** Encoding of an adaptive boolean array without any true value. */
+	static final int ARRAY_ALL_FALSE = 0;
+
+	/** Encoding of an adaptive boolean array with true values only. */
+	static final int ARRAY_ALL_TRUE = 1;
+
+	/** Encoding of an adaptive boolean array as packed bits. */
+	static final int ARRAY_BITS = 2;
+
+	/** Encoding of an adaptive boolean array as list of true indices. */
+	static final int ARRAY_SPARSE = 3;
+
+	/** Encoding of an adaptive boolean array as alternating run lengths. */
+	static final int ARRAY_RUNS = 4;
+
 	/**
 	 * Creates a new {@link CompactDataOutput} instance that writes data to the
 	 * specified underlying output stream
@@ -64,6 +79,10 @@ public class CompactDataOutput extends DataOutputStream {
 	 */
 	public void writeBooleanArray(final boolean[] value) throws IOException {
 		writeVarInt(value.length);
+		writeBits(value);
+	}
+
+	private void writeBits(final boolean[] value) throws IOException {
 		int buffer = 0;
 		int bufferSize = 0;
 		for (final boolean b : value) {
@@ -81,4 +100,82 @@ public class CompactDataOutput extends DataOutputStream {
 		}
 	}
 
+	/**
+	 * Writes a boolean array with the smallest of several encodings: all values
+	 * <code>false</code>, all values <code>true</code>, values packed into
+	 * single bits, the list of indices of <code>true</code> values or the
+	 * lengths of alternating runs of <code>false</code> and <code>true</code>
+	 * values. The length and the encoding are written as one variable length
+	 * integer, index gaps and run lengths as variable length integers too.
+	 *
+	 * @param value
+	 *            boolean array
+	 * @throws IOException
+	 *             if thrown by the underlying stream
+	 * @see CompactDataInput#readAdaptiveBooleanArray()
+	 */
+	public void writeAdaptiveBooleanArray(final boolean[] value)
+			throws IOException {
+		int count = 0;
+		int sparseSize = 0;
+		int runsSize = 0;
+		int last = -1;
+		int runStart = 0;
+		boolean runValue = false;
+		for (int i = 0; i < value.length; i++) {
+			if (value[i]) {
+				count++;
+				sparseSize += getVarIntSize(i - last - 1);
+				last = i;
+			}
+			if (value[i] != runValue) {
+				runsSize += getVarIntSize(i - runStart);
+				runStart = i;
+				runValue = value[i];
+			}
+		}
+		runsSize += getVarIntSize(value.length - runStart);
+		sparseSize += getVarIntSize(count);
+		final int bitsSize = (value.length + 7) / 8;
+
+		if (count == 0) {
+			writeVarInt(value.length << 3 | ARRAY_ALL_FALSE);
+		} else if (count == value.length) {
+			writeVarInt(value.length << 3 | ARRAY_ALL_TRUE);
+		} else if (bitsSize <= sparseSize && bitsSize <= runsSize) {
+			writeVarInt(value.length << 3 | ARRAY_BITS);
+			writeBits(value);
+		} else if (sparseSize <= runsSize) {
+			writeVarInt(value.length << 3 | ARRAY_SPARSE);
+			writeVarInt(count);
+			last = -1;
+			for (int i = 0; i < value.length; i++) {
+				if (value[i]) {
+					writeVarInt(i - last - 1);
+					last = i;
+				}
+			}
+		} else {
+			writeVarInt(value.length << 3 | ARRAY_RUNS);
+			runStart = 0;
+			runValue = false;
+			for (int i = 0; i < value.length; i++) {
+				if (value[i] != runValue) {
+					writeVarInt(i - runStart);
+					runStart = i;
+					runValue = value[i];
+				}
+			}
+			writeVarInt(value.length - runStart);
+		}
+	}
+
+	private static int getVarIntSize(final int value) {
+		int size = 1;
+		for (int v = value >>> 7; v != 0; v >>>= 7) {
+			size++;
+		}
+		return size;
+	}
+
 }
@@ -0,0 +1,53 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.data;
+
+/**
+ * Hash functions for open addressing hash tables keyed by class ids or other
+ * values. Class ids are CRC64 checksums whose low bits are well distributed,
+ * but the tables select slots with the low bits of the hash only. Therefore all
+ * bits are mixed with the finalizer of MurmurHash3 to avoid clustering of
+ * similar keys.
+ */
+public final class LongHash {
+
+	/**
+	 * Returns the hash code for the given <code>long</code> value.
+	 *
+	 * @param value
+	 *            value to hash, e.g. a class id
+	 * @return mixed hash code
+	 */
+	public static int hash(final long value) {
+		return mix((int) (value ^ (value >>> 32)));
+	}
+
+	/**
+	 * Mixes all bits of the given hash code, e.g. of a
+	 * {@link String#hashCode()}.
+	 *
+	 * @param value
+	 *            hash code to mix
+	 * @return mixed hash code
+	 */
+	public static int mix(final int value) {
+		int h = value;
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	private LongHash() {
+	}
+
+}
@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Insertion ordered table of entries keyed by a primitive <code>long</code>,
+ * e.g. a class id. Entries are found through an open addressing hash table
+ * which directly holds the entries, so lookups neither box keys nor create
+ * entry objects. An additional array keeps the entries in insertion order.
+ * Entries can't be removed.
+ *
+ * Adding entries is not thread safe, but a single thread may add entries while
+ * other threads call {@link #get(long)}, {@link #size()} and
+ * {@link #valueAt(int)} without locking: Resized arrays are filled completely
+ * before they get published and every entry is stored before the size is
+ * increased. If entries have final fields only other threads see either no
+ * entry or a completely initialized one.
+ *
+ * @param <T>
+ *            type of the entries
+ */
+public abstract class LongKeyTable<T> {
+
+	/** All entries in insertion order */
+	private volatile Object[] values = new Object[8];
+
+	private volatile int size;
+
+	/**
+	 * Table with a length of a power of two which is at most half full. Once
+	 * published a table is only modified by adding new entries to free slots.
+	 */
+	private volatile Object[] table = new Object[16];
+
+	/**
+	 * Returns the key of the given entry.
+	 *
+	 * @param entry
+	 *            entry of this table
+	 * @return key of the entry
+	 */
+	protected abstract long getKey(T entry);
+
+	/**
+	 * Returns the hash code for the given key. Subclasses may override this
+	 * method if the low bits of {@link LongHash#hash(long)} are already used
+	 * otherwise, e.g. to select one of multiple tables.
+	 *
+	 * @param key
+	 *            key of an entry
+	 * @return hash code of the key
+	 */
+	protected int hash(final long key) {
+		return LongHash.hash(key);
+	}
+
+	/**
+	 * Returns the entry with the given key.
+	 *
+	 * @param key
+	 *            key of the entry
+	 * @return entry or <code>null</code>
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(final long key) {
+		final Object[] t = table;
+		final int mask = t.length - 1;
+		for (int i = hash(key) & mask;; i = (i + 1) & mask) {
+			final T entry = (T) t[i];
+			if (entry == null || getKey(entry) == key) {
+				return entry;
+			}
+		}
+	}
+
+	/**
+	 * Adds a new entry. The caller has to ensure that there is no entry with
+	 * the same key yet.
+	 *
+	 * @param entry
+	 *            new entry
+	 */
+	@SuppressWarnings("unchecked")
+	public void add(final T entry) {
+		final int s = size;
+		Object[] v = values;
+		if (s == v.length) {
+			final Object[] newValues = new Object[s * 2];
+			System.arraycopy(v, 0, newValues, 0, s);
+			values = v = newValues;
+		}
+		v[s] = entry;
+
+		final Object[] t = table;
+		if (2 * (s + 1) > t.length) {
+			final Object[] newTable = new Object[t.length * 2];
+			for (int i = 0; i <= s; i++) {
+				insert(newTable, (T) v[i]);
+			}
+			table = newTable;
+		} else {
+			insert(t, entry);
+		}
+		size = s + 1;
+	}
+
+	/**
+	 * Returns the number of entries.
+	 *
+	 * @return number of entries
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the entry at the given position in insertion order.
+	 *
+	 * @param index
+	 *            position of the entry, less than {@link #size()}
+	 * @return entry
+	 */
+	@SuppressWarnings("unchecked")
+	public T valueAt(final int index) {
+		return (T) values[index];
+	}
+
+	/**
+	 * Returns a new list of all entries in insertion order.
+	 *
+	 * @return list of all entries
+	 */
+	@SuppressWarnings("unchecked")
+	public List<T> values() {
+		final int s = size;
+		final Object[] v = values;
+		final List<T> list = new ArrayList<T>(s);
+		for (int i = 0; i < s; i++) {
+			list.add((T) v[i]);
+		}
+		return list;
+	}
+
+	private void insert(final Object[] t, final T entry) {
+		final int mask = t.length - 1;
+		int i = hash(getKey(entry)) & mask;
+		while (t[i] != null) {
+			i = (i + 1) & mask;
+		}
+		t[i] = entry;
+	}
+
+}
@@ -4,16 +4,30 @@ import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.dom.*;
 import sun.misc.BASE64Encoder;
 import java.io.*;
+import java.net.URL;
+import java.net.URLConnection;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.jar.Manifest;
 
 /**
  * AST compiles java source files
  */
 public class ASTGenerator {
+    /**
+     * JLS level of the parser
+     */
+    private static final int JLS_LEVEL = 8;
+
+    /**
+     * Version of the parser and its configuration. The method MD5 values are calculated from the
+     * parsed AST, so it consists of the version of the JDT core bundle and the JLS level.
+     */
+    public static final String VERSION = "jdt-" + getParserVersion() + "-jls" + JLS_LEVEL;
+
     private String javaText;
     private CompilationUnit compilationUnit;
 
@@ -27,7 +41,7 @@ public class ASTGenerator {
      */
     private void initCompilationUnit() {
         //  AST编译
-        final ASTParser astParser = ASTParser.newParser(8);
+        final ASTParser astParser = ASTParser.newParser(JLS_LEVEL);
         final Map<String, String> options = JavaCore.getOptions();
         JavaCore.setComplianceOptions(JavaCore.VERSION_1_8, options);
         astParser.setCompilerOptions(options);
@@ -39,6 +53,37 @@ public class ASTGenerator {
         compilationUnit = (CompilationUnit) astParser.createAST(null);
     }
 
+    /**
+     * Get the version of the JDT core bundle, from the package or else from the bundle manifest
+     */
+    private static String getParserVersion() {
+        final Package p = ASTParser.class.getPackage();
+        if (p != null && p.getImplementationVersion() != null) {
+            return p.getImplementationVersion();
+        }
+        final URL resource = ASTParser.class.getResource("ASTParser.class");
+        final String path = resource == null ? "" : resource.toString();
+        final int separator = path.lastIndexOf("!/");
+        if (!path.startsWith("jar:") || separator == -1) {
+            return "unknown";
+        }
+        try {
+            final URLConnection connection = new URL(path.substring(0, separator)
+                    + "!/META-INF/MANIFEST.MF").openConnection();
+            connection.setUseCaches(false);
+            final InputStream in = connection.getInputStream();
+            try {
+                final String version = new Manifest(in).getMainAttributes()
+                        .getValue("Bundle-Version");
+                return version == null ? "unknown" : version;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return "unknown";
+        }
+    }
+
     /**
      * Get java class package name
      */
@@ -140,6 +185,20 @@ public class ASTGenerator {
         return classInfo;
     }
 
+    /**
+     * Get the fingerprint of the class and all methods in it, interfaces included.
+     * The fingerprint holds everything the diff needs, so it can be cached and
+     * compared without parsing the source again.
+     */
+    public FileFingerprint getFingerprint() {
+        TypeDeclaration typeDec = getJavaClass();
+        if (typeDec == null) {
+            return new FileFingerprint();
+        }
+        return new FileFingerprint(getPackageName(), typeDec.getName().toString(),
+                typeDec.isInterface(), getMethodInfoList());
+    }
+
     /**
      * Get the modified method
      */
@@ -153,6 +212,9 @@ public class ASTGenerator {
         methodInfo.setMd5(MD5Encode(methodDeclaration.toString()));
         methodInfo.setMethodName(methodDeclaration.getName().toString());
         methodInfo.setParameters(methodDeclaration.parameters().toString());
+        int start = methodDeclaration.getStartPosition();
+        methodInfo.setStartLine(compilationUnit.getLineNumber(start));
+        methodInfo.setEndLine(compilationUnit.getLineNumber(start + methodDeclaration.getLength() - 1));
     }
 
     /**
@@ -0,0 +1,476 @@
+package org.jacoco.core.internal.diff;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.jacoco.core.internal.InputStreams;
+import org.jacoco.core.internal.instr.InstrSupport;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LookupSwitchInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+
+/**
+ * Calculates the changed methods from two versions of compiled classes instead
+ * of Java source files. Every method is fingerprinted by its instruction
+ * stream: line numbers, local variable names and stackmap frames are ignored,
+ * constants are hashed by value rather than by constant pool index and jump
+ * targets by their position in the stream. The result is independent of the
+ * source language and can be used to create a {@link DiffIndex}. The lines of
+ * changed methods are taken from their line number tables, if present.
+ */
+public final class BytecodeDiff {
+
+	private BytecodeDiff() {
+	}
+
+	/**
+	 * Compares the classes of two versions. Each version may be a class file, a
+	 * directory or a jar/zip file, directories and nested archives are searched
+	 * recursively. Versioned classes of multi-release jars are ignored, only
+	 * the base version of a class is compared. Classes which only exist in the
+	 * new version are reported with all methods, classes existing in both
+	 * versions with their new and modified methods. Classes without changed
+	 * methods and deleted classes are not reported.
+	 *
+	 * @param newClasses
+	 *            classes of the new version
+	 * @param oldClasses
+	 *            classes of the old version
+	 * @return changed classes ordered by VM name
+	 * @throws IOException
+	 *             if the classes can't be read
+	 */
+	public static List<ClassInfo> diff(final File newClasses,
+			final File oldClasses) throws IOException {
+		final Map<String, Map<String, MethodInfo>> newVersion = fingerprintAll(
+				newClasses);
+		final Map<String, Map<String, MethodInfo>> oldVersion = fingerprintAll(
+				oldClasses);
+		final List<ClassInfo> result = new ArrayList<ClassInfo>();
+		for (final Map.Entry<String, Map<String, MethodInfo>> entry : newVersion
+				.entrySet()) {
+			final Map<String, MethodInfo> oldMethods = oldVersion
+					.get(entry.getKey());
+			final List<MethodInfo> changed = new ArrayList<MethodInfo>();
+			for (final Map.Entry<String, MethodInfo> m : entry.getValue()
+					.entrySet()) {
+				final MethodInfo old = oldMethods == null ? null
+						: oldMethods.get(m.getKey());
+				if (old == null
+						|| !old.getMd5().equals(m.getValue().getMd5())) {
+					changed.add(m.getValue());
+				}
+			}
+			if (!changed.isEmpty()) {
+				result.add(newClassInfo(entry.getKey(),
+						oldMethods == null ? "ADD" : "REPLACE", changed));
+			}
+		}
+		return result;
+	}
+
+	private static ClassInfo newClassInfo(final String vmName,
+			final String changeType, final List<MethodInfo> methods) {
+		final List<int[]> lines = new ArrayList<int[]>();
+		for (final MethodInfo m : methods) {
+			if (m.getStartLine() > 0) {
+				lines.add(new int[] { m.getStartLine(), m.getEndLine() });
+			}
+		}
+		final ClassInfo classInfo = new ClassInfo();
+		final int pos = vmName.lastIndexOf('/');
+		classInfo.setPackages(
+				pos == -1 ? "" : vmName.substring(0, pos).replace('/', '.'));
+		classInfo.setClassName(vmName.substring(pos + 1));
+		classInfo.setClassFile(vmName + ".class");
+		classInfo.setType(changeType);
+		classInfo.setMethodInfos(methods);
+		classInfo.setAddLines(lines);
+		return classInfo;
+	}
+
+	private static Map<String, Map<String, MethodInfo>> fingerprintAll(
+			final File file) throws IOException {
+		final Map<String, Map<String, MethodInfo>> classes = new TreeMap<String, Map<String, MethodInfo>>();
+		collect(file, classes);
+		return classes;
+	}
+
+	private static void collect(final File file,
+			final Map<String, Map<String, MethodInfo>> classes)
+			throws IOException {
+		if (file.isDirectory()) {
+			final File[] children = file.listFiles();
+			if (children != null) {
+				for (final File child : children) {
+					if (isVersions(file.getName(), child.getName())) {
+						continue;
+					}
+					collect(child, classes);
+				}
+			}
+			return;
+		}
+		final String name = file.getName();
+		if (name.endsWith(".class")) {
+			final InputStream in = new FileInputStream(file);
+			try {
+				add(InputStreams.readFully(in), classes);
+			} finally {
+				in.close();
+			}
+		} else if (isArchive(name)) {
+			final ZipInputStream zip = new ZipInputStream(
+					new FileInputStream(file));
+			try {
+				collect(zip, classes);
+			} finally {
+				zip.close();
+			}
+		}
+	}
+
+	private static void collect(final ZipInputStream zip,
+			final Map<String, Map<String, MethodInfo>> classes)
+			throws IOException {
+		ZipEntry entry;
+		while ((entry = zip.getNextEntry()) != null) {
+			final String name = entry.getName();
+			if (name.startsWith("META-INF/versions/")) {
+				continue;
+			}
+			if (name.endsWith(".class")) {
+				add(InputStreams.readFully(zip), classes);
+			} else if (isArchive(name)) {
+				// The nested stream must not be closed, it would close the
+				// outer one
+				collect(new ZipInputStream(zip), classes);
+			}
+		}
+	}
+
+	private static boolean isArchive(final String name) {
+		return name.endsWith(".jar") || name.endsWith(".zip")
+				|| name.endsWith(".war");
+	}
+
+	private static boolean isVersions(final String parent, final String name) {
+		return "META-INF".equals(parent) && "versions".equals(name);
+	}
+
+	private static void add(final byte[] source,
+			final Map<String, Map<String, MethodInfo>> classes) {
+		final ClassReader reader = InstrSupport.classReaderFor(source);
+		if ((reader.getAccess() & Opcodes.ACC_MODULE) != 0) {
+			return;
+		}
+		classes.put(reader.getClassName(), fingerprint(reader));
+	}
+
+	/**
+	 * Calculates the fingerprints of all methods of the given class.
+	 *
+	 * @param reader
+	 *            reader for the class definition
+	 * @return fingerprints keyed by method name and descriptor in declaration
+	 *         order
+	 */
+	static Map<String, MethodInfo> fingerprint(final ClassReader reader) {
+		final Map<String, MethodInfo> methods = new LinkedHashMap<String, MethodInfo>();
+		reader.accept(new ClassVisitor(InstrSupport.ASM_API_VERSION) {
+			@Override
+			public MethodVisitor visitMethod(final int access,
+					final String name, final String desc,
+					final String signature, final String[] exceptions) {
+				final MethodInfo info = new MethodInfo();
+				info.setMethodName(name);
+				info.setParameters(desc);
+				methods.put(name + desc, info);
+				// Labels are only known to be jump targets once the whole
+				// method has been read
+				return new MethodNode(InstrSupport.ASM_API_VERSION, access,
+						name, desc, signature, exceptions) {
+					@Override
+					public void visitEnd() {
+						accept(new FingerprintVisitor(access, desc, info,
+								getTargets(this)));
+					}
+				};
+			}
+		}, ClassReader.SKIP_FRAMES);
+		return methods;
+	}
+
+	private static Set<Label> getTargets(final MethodNode method) {
+		final Set<Label> targets = new HashSet<Label>();
+		for (final AbstractInsnNode i : method.instructions) {
+			switch (i.getType()) {
+			case AbstractInsnNode.JUMP_INSN:
+				targets.add(((JumpInsnNode) i).label.getLabel());
+				break;
+			case AbstractInsnNode.TABLESWITCH_INSN:
+				final TableSwitchInsnNode table = (TableSwitchInsnNode) i;
+				targets.add(table.dflt.getLabel());
+				for (final LabelNode l : table.labels) {
+					targets.add(l.getLabel());
+				}
+				break;
+			case AbstractInsnNode.LOOKUPSWITCH_INSN:
+				final LookupSwitchInsnNode lookup = (LookupSwitchInsnNode) i;
+				targets.add(lookup.dflt.getLabel());
+				for (final LabelNode l : lookup.labels) {
+					targets.add(l.getLabel());
+				}
+				break;
+			default:
+				break;
+			}
+		}
+		for (final TryCatchBlockNode t : method.tryCatchBlocks) {
+			targets.add(t.start.getLabel());
+			targets.add(t.end.getLabel());
+			targets.add(t.handler.getLabel());
+		}
+		return targets;
+	}
+
+	/**
+	 * Feeds a normalized representation of the instruction stream into a
+	 * message digest. Labels which are no jump targets, e.g. labels of line
+	 * numbers, are ignored. The line numbers only determine the line range of
+	 * the method.
+	 */
+	private static class FingerprintVisitor extends MethodVisitor {
+
+		private final MethodInfo info;
+
+		private final MessageDigest digest;
+
+		private final Set<Label> targets;
+
+		private final Map<Label, Integer> labels = new HashMap<Label, Integer>();
+
+		FingerprintVisitor(final int access, final String desc,
+				final MethodInfo info, final Set<Label> targets) {
+			super(InstrSupport.ASM_API_VERSION);
+			this.info = info;
+			this.targets = targets;
+			try {
+				digest = MessageDigest.getInstance("MD5");
+			} catch (final NoSuchAlgorithmException e) {
+				throw new IllegalStateException(e);
+			}
+			update(access);
+			update(desc);
+		}
+
+		private void update(final int value) {
+			digest.update((byte) (value >>> 24));
+			digest.update((byte) (value >>> 16));
+			digest.update((byte) (value >>> 8));
+			digest.update((byte) value);
+		}
+
+		private void update(final String value) {
+			if (value == null) {
+				update(-1);
+				return;
+			}
+			update(value.length());
+			for (int i = 0; i < value.length(); i++) {
+				final char c = value.charAt(i);
+				digest.update((byte) (c >>> 8));
+				digest.update((byte) c);
+			}
+		}
+
+		private void update(final Label label) {
+			Integer id = labels.get(label);
+			if (id == null) {
+				id = Integer.valueOf(labels.size());
+				labels.put(label, id);
+			}
+			update(id.intValue());
+		}
+
+		private void update(final Object constant) {
+			if (constant instanceof Handle) {
+				final Handle handle = (Handle) constant;
+				update(handle.getTag());
+				update(handle.getOwner());
+				update(handle.getName());
+				update(handle.getDesc());
+			} else {
+				update(constant.getClass().getName());
+				update(String.valueOf(constant));
+			}
+		}
+
+		@Override
+		public void visitInsn(final int opcode) {
+			update(opcode);
+		}
+
+		@Override
+		public void visitIntInsn(final int opcode, final int operand) {
+			update(opcode);
+			update(operand);
+		}
+
+		@Override
+		public void visitVarInsn(final int opcode, final int var) {
+			update(opcode);
+			update(var);
+		}
+
+		@Override
+		public void visitTypeInsn(final int opcode, final String type) {
+			update(opcode);
+			update(type);
+		}
+
+		@Override
+		public void visitFieldInsn(final int opcode, final String owner,
+				final String name, final String desc) {
+			update(opcode);
+			update(owner);
+			update(name);
+			update(desc);
+		}
+
+		@Override
+		public void visitMethodInsn(final int opcode, final String owner,
+				final String name, final String desc, final boolean itf) {
+			update(opcode);
+			update(owner);
+			update(name);
+			update(desc);
+		}
+
+		@Override
+		public void visitInvokeDynamicInsn(final String name, final String desc,
+				final Handle bsm, final Object... bsmArgs) {
+			update(Opcodes.INVOKEDYNAMIC);
+			update(name);
+			update(desc);
+			update(bsm);
+			for (final Object arg : bsmArgs) {
+				update(arg);
+			}
+		}
+
+		@Override
+		public void visitJumpInsn(final int opcode, final Label label) {
+			update(opcode);
+			update(label);
+		}
+
+		@Override
+		public void visitLabel(final Label label) {
+			if (targets.contains(label)) {
+				update(-2);
+				update(label);
+			}
+		}
+
+		@Override
+		public void visitLineNumber(final int line, final Label start) {
+			if (info.getStartLine() == 0 || line < info.getStartLine()) {
+				info.setStartLine(line);
+			}
+			if (line > info.getEndLine()) {
+				info.setEndLine(line);
+			}
+		}
+
+		@Override
+		public void visitLdcInsn(final Object value) {
+			update(Opcodes.LDC);
+			update(value);
+		}
+
+		@Override
+		public void visitIincInsn(final int var, final int increment) {
+			update(Opcodes.IINC);
+			update(var);
+			update(increment);
+		}
+
+		@Override
+		public void visitTableSwitchInsn(final int min, final int max,
+				final Label dflt, final Label... labels) {
+			update(Opcodes.TABLESWITCH);
+			update(min);
+			update(max);
+			update(dflt);
+			for (final Label l : labels) {
+				update(l);
+			}
+		}
+
+		@Override
+		public void visitLookupSwitchInsn(final Label dflt, final int[] keys,
+				final Label[] labels) {
+			update(Opcodes.LOOKUPSWITCH);
+			update(dflt);
+			for (int i = 0; i < keys.length; i++) {
+				update(keys[i]);
+				update(labels[i]);
+			}
+		}
+
+		@Override
+		public void visitMultiANewArrayInsn(final String desc, final int dims) {
+			update(Opcodes.MULTIANEWARRAY);
+			update(desc);
+			update(dims);
+		}
+
+		@Override
+		public void visitTryCatchBlock(final Label start, final Label end,
+				final Label handler, final String type) {
+			update(-3);
+			update(start);
+			update(end);
+			update(handler);
+			update(type);
+		}
+
+		@Override
+		public void visitEnd() {
+			final byte[] hash = digest.digest();
+			final StringBuilder hex = new StringBuilder(hash.length * 2);
+			for (final byte b : hash) {
+				hex.append(Character.forDigit((b >>> 4) & 0xF, 16));
+				hex.append(Character.forDigit(b & 0xF, 16));
+			}
+			info.setMd5(hex.toString());
+		}
+
+	}
+
+}
@@ -1,8 +1,10 @@
 package org.jacoco.core.internal.diff;
 
-import org.eclipse.jdt.core.dom.MethodDeclaration;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.diff.*;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.NullProgressMonitor;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Ref;
@@ -13,15 +15,19 @@ import org.eclipse.jgit.treewalk.AbstractTreeIterator;
 import org.eclipse.jgit.treewalk.CanonicalTreeParser;
 import org.eclipse.jgit.treewalk.TreeWalk;
 import org.eclipse.jgit.util.StringUtils;
+import org.eclipse.jgit.util.io.DisabledOutputStream;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Code version comparison
@@ -38,10 +44,22 @@ public class CodeDiff {
      * @return
      */
     public static List<ClassInfo> diffBranchToBranch(String gitPath, String newBranchName, String oldBranchName) {
-        List<ClassInfo> classInfos = diffMethods(gitPath, newBranchName, oldBranchName);
+        return diffBranchToBranch(gitPath, newBranchName, oldBranchName, new DiffOptions());
+    }
+
+    /**
+     * Comparison between branch and branch with the given options
+     * @param gitPath
+     * @param newBranchName
+     * @param oldBranchName
+     * @param options options of this comparison
+     * @return
+     */
+    public static List<ClassInfo> diffBranchToBranch(String gitPath, String newBranchName, String oldBranchName, DiffOptions options) {
+        List<ClassInfo> classInfos = diffMethods(gitPath, newBranchName, oldBranchName, options);
         return classInfos;
     }
-    private static List<ClassInfo> diffMethods(String gitPath, String newBranchName, String oldBranchName) {
+    private static List<ClassInfo> diffMethods(String gitPath, String newBranchName, String oldBranchName, DiffOptions options) {
         try {
             //  Get local branch
             GitAdapter gitAdapter = new GitAdapter(gitPath);
@@ -51,17 +69,15 @@ public class CodeDiff {
             //  checkout local branch
             gitAdapter.checkOutAndPull(localMasterRef, oldBranchName);
             gitAdapter.checkOutAndPull(localBranchRef, newBranchName);
+            //  Diff the pulled versions, file contents are read from the same trees
+            localMasterRef = gitAdapter.getRepository().exactRef(REF_HEADS + oldBranchName);
+            localBranchRef = gitAdapter.getRepository().exactRef(REF_HEADS + newBranchName);
             //  Get branch information
             AbstractTreeIterator newTreeParser = gitAdapter.prepareTreeParser(localBranchRef);
             AbstractTreeIterator oldTreeParser = gitAdapter.prepareTreeParser(localMasterRef);
             //  Contrast difference
             List<DiffEntry> diffs = git.diff().setOldTree(oldTreeParser).setNewTree(newTreeParser).setShowNameAndStatusOnly(true).call();
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            DiffFormatter df = new DiffFormatter(out);
-            //Set the comparator to ignore blank character comparison（Ignores all whitespace）
-            df.setDiffComparator(RawTextComparator.WS_IGNORE_ALL);
-            df.setRepository(git.getRepository());
-            List<ClassInfo> allClassInfos = batchPrepareDiffMethod(gitAdapter, newBranchName, oldBranchName, df, diffs);
+            List<ClassInfo> allClassInfos = batchPrepareDiffMethod(gitAdapter.getRepository(), diffs, options);
             return allClassInfos;
         }catch (Exception e) {
             e.printStackTrace();
@@ -69,6 +85,75 @@ public class CodeDiff {
         return  new ArrayList<ClassInfo>();
     }
 
+    /**
+     * Read-only comparison between two revisions. The revisions can be anything git can resolve to a
+     * tree, e.g. branch names, tags or commit ids. They are resolved directly in the object database,
+     * the working tree is never checked out and the remote is never contacted.
+     * @param gitPath local git repository, may be bare
+     * @param newRevision new revision
+     * @param oldRevision old revision
+     * @return changed classes
+     * @throws IOException if the repository can't be read
+     * @throws IllegalArgumentException if a revision can't be resolved
+     */
+    public static List<ClassInfo> diffRevisionToRevision(String gitPath, String newRevision, String oldRevision) throws IOException {
+        return diffRevisionToRevision(gitPath, newRevision, oldRevision, new DiffOptions());
+    }
+
+    /**
+     * Read-only comparison between two revisions with the given options
+     * @param gitPath local git repository, may be bare
+     * @param newRevision new revision
+     * @param oldRevision old revision
+     * @param options options of this comparison
+     * @return changed classes
+     * @throws IOException if the repository can't be read
+     * @throws IllegalArgumentException if a revision can't be resolved
+     */
+    public static List<ClassInfo> diffRevisionToRevision(String gitPath, String newRevision, String oldRevision, DiffOptions options) throws IOException {
+        if (StringUtils.isEmptyOrNull(gitPath) || StringUtils.isEmptyOrNull(newRevision) || StringUtils.isEmptyOrNull(oldRevision)) {
+            throw new IllegalArgumentException("Parameter(local gitPath,new revision,old revision) can't be empty or null !");
+        }
+        Git git = Git.open(new File(gitPath));
+        try {
+            return diffRevisions(git.getRepository(), newRevision, oldRevision, options);
+        } finally {
+            git.close();
+        }
+    }
+
+    /**
+     * Diff the trees of the given revisions, all objects are read through one reader
+     */
+    private static List<ClassInfo> diffRevisions(Repository repo, String newRevision, String oldRevision, DiffOptions options) throws IOException {
+        ObjectReader reader = repo.newObjectReader();
+        try {
+            List<DiffEntry> diffs;
+            TreeWalk tw = new TreeWalk(repo, reader);
+            try {
+                tw.setRecursive(true);
+                tw.addTree(resolveTree(repo, oldRevision));
+                tw.addTree(resolveTree(repo, newRevision));
+                RenameDetector rd = new RenameDetector(repo);
+                rd.addAll(DiffEntry.scan(tw));
+                diffs = rd.compute(reader, NullProgressMonitor.INSTANCE);
+            } finally {
+                tw.close();
+            }
+            return batchPrepareDiffMethod(repo, reader, diffs, options);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static ObjectId resolveTree(Repository repo, String revision) throws IOException {
+        ObjectId tree = repo.resolve(revision + "^{tree}");
+        if (tree == null) {
+            throw new IllegalArgumentException(String.format("Unknown revision %s", revision));
+        }
+        return tree;
+    }
+
     /**
      * Comparison between single branch Tag versions
      * @param gitPath
@@ -77,6 +162,18 @@ public class CodeDiff {
      * @return
      */
     public static List<ClassInfo> diffTagToTag(String gitPath, String branchName, String newTag, String oldTag) {
+        return diffTagToTag(gitPath, branchName, newTag, oldTag, new DiffOptions());
+    }
+
+    /**
+     * Comparison between single branch Tag versions with the given options
+     * @param gitPath
+     * @param newTag
+     * @param oldTag
+     * @param options options of this comparison
+     * @return
+     */
+    public static List<ClassInfo> diffTagToTag(String gitPath, String branchName, String newTag, String oldTag, DiffOptions options) {
         if(StringUtils.isEmptyOrNull(gitPath) || StringUtils.isEmptyOrNull(branchName)  || StringUtils.isEmptyOrNull(newTag)  || StringUtils.isEmptyOrNull(oldTag) ){
             throw new IllegalArgumentException("Parameter(local gitPath,develop branchName,new Tag,old Tag) can't be empty or null !");
         }else if(newTag.equals(oldTag)){
@@ -87,10 +184,10 @@ public class CodeDiff {
             throw new IllegalArgumentException("Parameter local gitPath is not exit !");
         }
 
-        List<ClassInfo> classInfos = diffTagMethods(gitPath,branchName, newTag, oldTag);
+        List<ClassInfo> classInfos = diffTagMethods(gitPath,branchName, newTag, oldTag, options);
         return classInfos;
     }
-    private static List<ClassInfo> diffTagMethods(String gitPath,String branchName, String newTag, String oldTag) {
+    private static List<ClassInfo> diffTagMethods(String gitPath,String branchName, String newTag, String oldTag, DiffOptions options) {
         try {
             //  init local repository
             GitAdapter gitAdapter = new GitAdapter(gitPath);
@@ -114,318 +211,157 @@ public class CodeDiff {
 
             //  Contrast difference
             List<DiffEntry> diffs = git.diff().setOldTree(oldTreeIter).setNewTree(newTreeIter).setShowNameAndStatusOnly(true).call();
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            DiffFormatter df = new DiffFormatter(out);
-            //Set the comparator to ignore blank character comparison（Ignores all whitespace）
-            df.setDiffComparator(RawTextComparator.WS_IGNORE_ALL);
-            df.setRepository(repo);
-            List<ClassInfo> allClassInfos = batchPrepareDiffMethodForTag(gitAdapter, newTag,oldTag, df, diffs);
+            List<ClassInfo> allClassInfos = batchPrepareDiffMethod(repo, diffs, options);
             return allClassInfos;
         }catch (Exception e) {
             e.printStackTrace();
         }
         return  new ArrayList<ClassInfo>();
     }
+    private static List<ClassInfo> batchPrepareDiffMethod(Repository repo, List<DiffEntry> diffs, DiffOptions options) {
+        ObjectReader reader = repo.newObjectReader();
+        try {
+            return batchPrepareDiffMethod(repo, reader, diffs, options);
+        } finally {
+            reader.close();
+        }
+    }
+
     /**
-     * Multi-threaded execute comparison
+     * Parallel execution comparison. The changed java files are split into chunks and compared on a
+     * fixed thread pool, every chunk reads the object database through its own reader derived from
+     * the given one and its own diff formatter. Without parallelism the given reader is used directly.
+     * The result keeps the order of the diff entries, independent of the parallelism.
      */
-    private static List<ClassInfo> batchPrepareDiffMethodForTag(final GitAdapter gitAdapter, final String newTag, final String oldTag, final DiffFormatter df, List<DiffEntry> diffs) {
-        int threadSize = 100;
-        int dataSize = diffs.size();
-        int threadNum = dataSize / threadSize + 1;
-        boolean special = dataSize % threadSize == 0;
-        ExecutorService executorService = Executors.newFixedThreadPool(threadNum);
-
-        List<Callable<List<ClassInfo>>> tasks = new ArrayList<Callable<List<ClassInfo>>>();
-        Callable<List<ClassInfo>> task = null;
-        List<DiffEntry> cutList = null;
-        //  Break down the data of each thread
-        for (int i = 0; i < threadNum; i++) {
-            if (i == threadNum - 1) {
-                if (special) {
-                    break;
-                }
-                cutList = diffs.subList(threadSize * i, dataSize);
-            } else {
-                cutList = diffs.subList(threadSize * i, threadSize * (i + 1));
+    private static List<ClassInfo> batchPrepareDiffMethod(Repository repo, ObjectReader reader, List<DiffEntry> diffs, DiffOptions options) {
+        List<DiffEntry> javaDiffs = new ArrayList<DiffEntry>();
+        for (DiffEntry diffEntry : diffs) {
+            if (isJavaChange(diffEntry)) {
+                javaDiffs.add(diffEntry);
             }
-            final List<DiffEntry> diffEntryList = cutList;
-            task = new Callable<List<ClassInfo>>() {
-                public List<ClassInfo> call() throws Exception {
-                    List<ClassInfo> allList = new ArrayList<ClassInfo>();
-                    for (DiffEntry diffEntry : diffEntryList) {
-                        ClassInfo classInfo = prepareDiffMethodForTag(gitAdapter, newTag, oldTag, df, diffEntry);
-                        if (classInfo != null) {
-                            allList.add(classInfo);
-                        }
-                    }
-                    return allList;
-                }
-            };
-            // There is a corresponding relationship between the task container list submitted here and the returned Future list
-            tasks.add(task);
         }
-        List<ClassInfo> allClassInfoList = new ArrayList<ClassInfo>();
+        FingerprintCache cache = options.createFingerprintCache();
+        Charset encoding = options.getEncoding();
+        int threads = options.getParallelism();
+        if (threads == 1 || javaDiffs.size() <= 1) {
+            return prepareDiffMethods(reader, repo.getConfig(), cache, encoding, javaDiffs);
+        }
+        //  Several chunks per thread, so that threads finishing early take over the remaining chunks
+        int chunk = Math.max(1, javaDiffs.size() / (threads * 4));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
         try {
-            List<Future<List<ClassInfo>>> results = executorService.invokeAll(tasks);
-            //Summary of results
-            for (Future<List<ClassInfo>> future : results ) {
-                allClassInfoList.addAll(future.get());
+            List<Future<List<ClassInfo>>> futures = new ArrayList<Future<List<ClassInfo>>>();
+            for (int start = 0; start < javaDiffs.size(); start += chunk) {
+                int end = Math.min(start + chunk, javaDiffs.size());
+                futures.add(executor.submit(new DiffTask(reader, repo.getConfig(), cache, encoding, javaDiffs.subList(start, end))));
             }
-        }catch (Exception e) {
-            e.printStackTrace();
-        }finally {
-            // Close thread pool
-            executorService.shutdown();
+            List<ClassInfo> result = new ArrayList<ClassInfo>();
+            for (Future<List<ClassInfo>> future : futures) {
+                result.addAll(getResult(future));
+            }
+            return result;
+        } finally {
+            executor.shutdownNow();
         }
-        return allClassInfoList;
     }
 
     /**
-     * Multi-threaded execution comparison
+     * Compares a chunk of diff entries with its own reader
      */
-    private static List<ClassInfo> batchPrepareDiffMethodForCommit(final GitAdapter gitAdapter, final String newCommitId, final String oldCommitId, final DiffFormatter df, List<DiffEntry> diffs) {
-        int threadSize = 100;
-        int dataSize = diffs.size();
-        int threadNum = dataSize / threadSize + 1;
-        boolean special = dataSize % threadSize == 0;
-        ExecutorService executorService = Executors.newFixedThreadPool(threadNum);
+    private static class DiffTask implements Callable<List<ClassInfo>> {
+        private final ObjectReader reader;
+        private final Config config;
+        private final FingerprintCache cache;
+        private final Charset encoding;
+        private final List<DiffEntry> diffs;
 
-        List<Callable<List<ClassInfo>>> tasks = new ArrayList<Callable<List<ClassInfo>>>();
-        Callable<List<ClassInfo>> task = null;
-        List<DiffEntry> cutList = null;
-        //  Break down the data of each thread
-        for (int i = 0; i < threadNum; i++) {
-            if (i == threadNum - 1) {
-                if (special) {
-                    break;
-                }
-                cutList = diffs.subList(threadSize * i, dataSize);
-            } else {
-                cutList = diffs.subList(threadSize * i, threadSize * (i + 1));
-            }
-            final List<DiffEntry> diffEntryList = cutList;
-            task = new Callable<List<ClassInfo>>() {
-                public List<ClassInfo> call() throws Exception {
-                    List<ClassInfo> allList = new ArrayList<ClassInfo>();
-                    for (DiffEntry diffEntry : diffEntryList) {
-                        ClassInfo classInfo = prepareDiffMethodForCommit(gitAdapter, newCommitId, oldCommitId, df, diffEntry);
-                        if (classInfo != null) {
-                            allList.add(classInfo);
-                        }
-                    }
-                    return allList;
-                }
-            };
-            // There is a corresponding relationship between the task container list submitted here and the returned Future list
-            tasks.add(task);
+        DiffTask(ObjectReader reader, Config config, FingerprintCache cache, Charset encoding, List<DiffEntry> diffs) {
+            this.reader = reader;
+            this.config = config;
+            this.cache = cache;
+            this.encoding = encoding;
+            this.diffs = diffs;
         }
-        List<ClassInfo> allClassInfoList = new ArrayList<ClassInfo>();
-        try {
-            List<Future<List<ClassInfo>>> results = executorService.invokeAll(tasks);
-            //Summary of results
-            for (Future<List<ClassInfo>> future : results ) {
-                allClassInfoList.addAll(future.get());
+
+        public List<ClassInfo> call() {
+            ObjectReader workerReader = reader.newReader();
+            try {
+                return prepareDiffMethods(workerReader, config, cache, encoding, diffs);
+            } finally {
+                workerReader.close();
             }
-        }catch (Exception e) {
-            e.printStackTrace();
-        }finally {
-            // Close thread pool
-            executorService.shutdown();
         }
-        return allClassInfoList;
     }
 
     /**
-     * Single difference file comparison
+     * Waits for the result of a chunk, failures of the worker are rethrown unchanged
      */
-    private synchronized static ClassInfo prepareDiffMethodForTag(GitAdapter gitAdapter, String newTag, String oldTag, DiffFormatter df, DiffEntry diffEntry) {
-        List<MethodInfo> methodInfoList = new ArrayList<MethodInfo>();
+    private static List<ClassInfo> getResult(Future<List<ClassInfo>> future) {
         try {
-            String newJavaPath = diffEntry.getNewPath();
-            //  Exclude test class
-            if (newJavaPath.contains("/src/test/java/")) {
-                return null;
-            }
-            //  Not java files and delete types are not recorded
-            if (!newJavaPath.endsWith(".java") || diffEntry.getChangeType() == DiffEntry.ChangeType.DELETE){
-                return null;
-            }
-            String newClassContent = gitAdapter.getTagRevisionSpecificFileContent(newTag,newJavaPath);
-            ASTGenerator newAstGenerator = new ASTGenerator(newClassContent);
-            /*  ADD type   */
-            if (diffEntry.getChangeType() == DiffEntry.ChangeType.ADD) {
-                return newAstGenerator.getClassInfo();
-            }
-            /*  Modify type  */
-            //  Get the file difference position, so as to count the number of different lines, such as increasing the number of lines, reducing the number of lines
-            FileHeader fileHeader = df.toFileHeader(diffEntry);
-            List<int[]> addLines = new ArrayList<int[]>();
-            List<int[]> delLines = new ArrayList<int[]>();
-            EditList editList = fileHeader.toEditList();
-            for(Edit edit : editList){
-                if (edit.getLengthA() > 0) {
-                    delLines.add(new int[]{edit.getBeginA(), edit.getEndA()});
-                }
-                if (edit.getLengthB() > 0 ) {
-                    addLines.add(new int[]{edit.getBeginB(), edit.getEndB()});
-                }
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Diff interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
             }
-            String oldJavaPath = diffEntry.getOldPath();
-            String oldClassContent = gitAdapter.getTagRevisionSpecificFileContent(oldTag,oldJavaPath);
-            ASTGenerator oldAstGenerator = new ASTGenerator(oldClassContent);
-            MethodDeclaration[] newMethods = newAstGenerator.getMethods();
-            MethodDeclaration[] oldMethods = oldAstGenerator.getMethods();
-            Map<String, MethodDeclaration> methodsMap = new HashMap<String, MethodDeclaration>();
-            for (int i = 0; i < oldMethods.length; i++) {
-                methodsMap.put(oldMethods[i].getName().toString()+ oldMethods[i].parameters().toString(), oldMethods[i]);
+            if (cause instanceof Error) {
+                throw (Error) cause;
             }
-            for (final MethodDeclaration method : newMethods) {
-                // If the method name is new, add the method directly to the List
-                if (!ASTGenerator.isMethodExist(method, methodsMap)) {
-                    MethodInfo methodInfo = newAstGenerator.getMethodInfo(method);
-                    methodInfoList.add(methodInfo);
-                    continue;
-                }
-                // If both versions have this method, judge whether the method is consistent according to MD5
-                if (!ASTGenerator.isMethodTheSame(method, methodsMap.get(method.getName().toString()+ method.parameters().toString()))) {
-                    MethodInfo methodInfo =  newAstGenerator.getMethodInfo(method);
-                    methodInfoList.add(methodInfo);
-                }
-            }
-            return newAstGenerator.getClassInfo(methodInfoList, addLines, delLines);
-        }catch (Exception e) {
-            e.printStackTrace();
+            throw new RuntimeException(cause);
         }
-        return null;
     }
 
     /**
-     * Single difference file comparison
+     * Compares the given diff entries with a reader and formatter owned by the current worker
      */
-    private synchronized static ClassInfo prepareDiffMethodForCommit(GitAdapter gitAdapter, String log1, String log2, DiffFormatter df, DiffEntry diffEntry) {
-        List<MethodInfo> methodInfoList = new ArrayList<MethodInfo>();
+    private static List<ClassInfo> prepareDiffMethods(ObjectReader reader, Config config, FingerprintCache cache, Charset encoding, List<DiffEntry> diffs) {
+        List<ClassInfo> result = new ArrayList<ClassInfo>();
+        DiffFormatter df = new DiffFormatter(DisabledOutputStream.INSTANCE);
         try {
-            String newJavaPath = diffEntry.getNewPath();
-            if (newJavaPath.contains("/src/test/java/")) {
-                return null;
-            }
-            if (!newJavaPath.endsWith(".java") || diffEntry.getChangeType() == DiffEntry.ChangeType.DELETE){
-                return null;
-            }
-            String newClassContent = gitAdapter.getCommitLogSpecificFileContent(log1,newJavaPath);
-            ASTGenerator newAstGenerator = new ASTGenerator(newClassContent);
-            if (diffEntry.getChangeType() == DiffEntry.ChangeType.ADD) {
-                return newAstGenerator.getClassInfo();
-            }
-            FileHeader fileHeader = df.toFileHeader(diffEntry);
-            List<int[]> addLines = new ArrayList<int[]>();
-            List<int[]> delLines = new ArrayList<int[]>();
-            EditList editList = fileHeader.toEditList();
-            for(Edit edit : editList){
-                if (edit.getLengthA() > 0) {
-                    delLines.add(new int[]{edit.getBeginA(), edit.getEndA()});
-                }
-                if (edit.getLengthB() > 0 ) {
-                    addLines.add(new int[]{edit.getBeginB(), edit.getEndB()});
-                }
-            }
-            String oldJavaPath = diffEntry.getOldPath();
-            String oldClassContent = gitAdapter.getCommitLogSpecificFileContent(log2,oldJavaPath);
-            ASTGenerator oldAstGenerator = new ASTGenerator(oldClassContent);
-            MethodDeclaration[] newMethods = newAstGenerator.getMethods();
-            MethodDeclaration[] oldMethods = oldAstGenerator.getMethods();
-            Map<String, MethodDeclaration> methodsMap = new HashMap<String, MethodDeclaration>();
-            for (int i = 0; i < oldMethods.length; i++) {
-                methodsMap.put(oldMethods[i].getName().toString()+ oldMethods[i].parameters().toString(), oldMethods[i]);
-            }
-            for (final MethodDeclaration method : newMethods) {
-                if (!ASTGenerator.isMethodExist(method, methodsMap)) {
-                    MethodInfo methodInfo = newAstGenerator.getMethodInfo(method);
-                    methodInfoList.add(methodInfo);
-                    continue;
-                }
-                if (!ASTGenerator.isMethodTheSame(method, methodsMap.get(method.getName().toString()+ method.parameters().toString()))) {
-                    MethodInfo methodInfo =  newAstGenerator.getMethodInfo(method);
-                    methodInfoList.add(methodInfo);
+            df.setReader(reader, config);
+            //Set the comparator to ignore blank character comparison（Ignores all whitespace）
+            df.setDiffComparator(RawTextComparator.WS_IGNORE_ALL);
+            for (DiffEntry diffEntry : diffs) {
+                ClassInfo classInfo = prepareDiffMethod(reader, df, cache, encoding, diffEntry);
+                if (classInfo != null) {
+                    result.add(classInfo);
                 }
             }
-            return newAstGenerator.getClassInfo(methodInfoList, addLines, delLines);
-        }catch (Exception e) {
-            e.printStackTrace();
+        } finally {
+            df.close();
         }
-        return null;
+        return result;
     }
 
     /**
-     * Multi-threaded execution comparison
+     * Only changed java files are compared, test classes and deleted files are not recorded
      */
-    private static List<ClassInfo> batchPrepareDiffMethod(final GitAdapter gitAdapter, final String branchName, final String oldBranchName, final DiffFormatter df, List<DiffEntry> diffs) {
-        int threadSize = 100;
-        int dataSize = diffs.size();
-        int threadNum = dataSize / threadSize + 1;
-        boolean special = dataSize % threadSize == 0;
-        ExecutorService executorService = Executors.newFixedThreadPool(threadNum);
-
-        List<Callable<List<ClassInfo>>> tasks = new ArrayList<Callable<List<ClassInfo>>>();
-        Callable<List<ClassInfo>> task = null;
-        List<DiffEntry> cutList = null;
-        for (int i = 0; i < threadNum; i++) {
-            if (i == threadNum - 1) {
-                if (special) {
-                    break;
-                }
-                cutList = diffs.subList(threadSize * i, dataSize);
-            } else {
-                cutList = diffs.subList(threadSize * i, threadSize * (i + 1));
-            }
-            final List<DiffEntry> diffEntryList = cutList;
-            task = new Callable<List<ClassInfo>>() {
-                public List<ClassInfo> call() throws Exception {
-                    List<ClassInfo> allList = new ArrayList<ClassInfo>();
-                    for (DiffEntry diffEntry : diffEntryList) {
-                        ClassInfo classInfo = prepareDiffMethod(gitAdapter, branchName, oldBranchName, df, diffEntry);
-                        if (classInfo != null) {
-                            allList.add(classInfo);
-                        }
-                    }
-                    return allList;
-                }
-            };
-            tasks.add(task);
-        }
-        List<ClassInfo> allClassInfoList = new ArrayList<ClassInfo>();
-        try {
-            List<Future<List<ClassInfo>>> results = executorService.invokeAll(tasks);
-            for (Future<List<ClassInfo>> future : results ) {
-                allClassInfoList.addAll(future.get());
-            }
-        }catch (Exception e) {
-            e.printStackTrace();
-        }finally {
-            executorService.shutdown();
+    private static boolean isJavaChange(DiffEntry diffEntry) {
+        String newJavaPath = diffEntry.getNewPath();
+        //  Exclude test class
+        if (newJavaPath.contains("/src/test/java/")) {
+            return false;
         }
-        return allClassInfoList;
+        //  Not java files and delete types are not recorded
+        return newJavaPath.endsWith(".java") && diffEntry.getChangeType() != DiffEntry.ChangeType.DELETE;
     }
 
     /**
-     * 单个差异文件对比
+     * Single difference file comparison. Both file versions are read by their blob id, so the
+     * parse result can be taken from the fingerprint cache.
      */
-    private synchronized static ClassInfo prepareDiffMethod(GitAdapter gitAdapter, String branchName, String oldBranchName, DiffFormatter df, DiffEntry diffEntry) {
-        List<MethodInfo> methodInfoList = new ArrayList<MethodInfo>();
+    private static ClassInfo prepareDiffMethod(ObjectReader reader, DiffFormatter df, FingerprintCache cache, Charset encoding, DiffEntry diffEntry) {
         try {
-            String newJavaPath = diffEntry.getNewPath();
-            if (newJavaPath.contains("/src/test/java/")) {
-                return null;
-            }
-            if (!newJavaPath.endsWith(".java") || diffEntry.getChangeType() == DiffEntry.ChangeType.DELETE){
-                return null;
-            }
-            String newClassContent = gitAdapter.getBranchSpecificFileContent(branchName,newJavaPath);
-            ASTGenerator newAstGenerator = new ASTGenerator(newClassContent);
+            FileFingerprint newFingerprint = getFingerprint(reader, cache, encoding, diffEntry.getNewId().toObjectId());
+            /*  ADD type   */
             if (diffEntry.getChangeType() == DiffEntry.ChangeType.ADD) {
-                return newAstGenerator.getClassInfo();
+                return newFingerprint.toClassInfo();
             }
+            /*  Modify type  */
+            //  Get the file difference position, so as to count the number of different lines, such as increasing the number of lines, reducing the number of lines
             FileHeader fileHeader = df.toFileHeader(diffEntry);
             List<int[]> addLines = new ArrayList<int[]>();
             List<int[]> delLines = new ArrayList<int[]>();
@@ -438,42 +374,55 @@ public class CodeDiff {
                     addLines.add(new int[]{edit.getBeginB(), edit.getEndB()});
                 }
             }
-            String oldJavaPath = diffEntry.getOldPath();
-            String oldClassContent = gitAdapter.getBranchSpecificFileContent(oldBranchName,oldJavaPath);
-            ASTGenerator oldAstGenerator = new ASTGenerator(oldClassContent);
-            MethodDeclaration[] newMethods = newAstGenerator.getMethods();
-            MethodDeclaration[] oldMethods = oldAstGenerator.getMethods();
-            Map<String, MethodDeclaration> methodsMap = new HashMap<String, MethodDeclaration>();
-            for (int i = 0; i < oldMethods.length; i++) {
-                methodsMap.put(oldMethods[i].getName().toString()+ oldMethods[i].parameters().toString(), oldMethods[i]);
-            }
-            for (final MethodDeclaration method : newMethods) {
-                if (!ASTGenerator.isMethodExist(method, methodsMap)) {
-                    MethodInfo methodInfo = newAstGenerator.getMethodInfo(method);
-                    methodInfoList.add(methodInfo);
-                    continue;
-                }
-                if (!ASTGenerator.isMethodTheSame(method, methodsMap.get(method.getName().toString()+ method.parameters().toString()))) {
-                    MethodInfo methodInfo =  newAstGenerator.getMethodInfo(method);
-                    methodInfoList.add(methodInfo);
-                }
-            }
-            return newAstGenerator.getClassInfo(methodInfoList, addLines, delLines);
+            FileFingerprint oldFingerprint = getFingerprint(reader, cache, encoding, diffEntry.getOldId().toObjectId());
+            // A method is changed if it is new or its MD5 is different
+            return newFingerprint.toClassInfo(oldFingerprint, addLines, delLines);
         }catch (Exception e) {
             e.printStackTrace();
         }
         return null;
     }
 
+    /**
+     * Get the fingerprint of the given java file blob, from the cache if possible
+     */
+    private static FileFingerprint getFingerprint(ObjectReader reader, FingerprintCache cache, Charset encoding, ObjectId blobId) throws IOException {
+        if (cache != null) {
+            FileFingerprint fingerprint = cache.get(blobId);
+            if (fingerprint != null) {
+                return fingerprint;
+            }
+        }
+        byte[] bytes = reader.open(blobId, Constants.OBJ_BLOB).getBytes();
+        FileFingerprint fingerprint = new ASTGenerator(new String(bytes, encoding.name())).getFingerprint();
+        if (cache != null) {
+            try {
+                cache.put(blobId, fingerprint);
+            } catch (IOException e) {
+                //  Like an unreadable entry a missing entry only means the blob is parsed again next time
+            }
+        }
+        return fingerprint;
+    }
+
     public static List<ClassInfo> diffCommitToCommit(String gitPath, String branchName, String newCommitId, String oldCommitId) {
+        return diffCommitToCommit(gitPath, branchName, newCommitId, oldCommitId, new DiffOptions());
+    }
+
+    /**
+     * Comparison between two commits of a branch with the given options
+     * @param gitPath
+     * @param branchName
+     * @param newCommitId
+     * @param oldCommitId
+     * @param options options of this comparison
+     * @return changed classes
+     */
+    public static List<ClassInfo> diffCommitToCommit(String gitPath, String branchName, String newCommitId, String oldCommitId, DiffOptions options) {
         try {
             Git git = Git.open(new File(gitPath));
             List<DiffEntry> diffs = getBranchDiffCommit(git, branchName, newCommitId, oldCommitId);
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            DiffFormatter df = new DiffFormatter(out);
-            df.setDiffComparator(RawTextComparator.WS_IGNORE_ALL);
-            df.setRepository(git.getRepository());
-            List<ClassInfo> allClassInfos = batchPrepareDiffMethodForCommit(new GitAdapter(gitPath), newCommitId, oldCommitId, df, diffs);
+            List<ClassInfo> allClassInfos = batchPrepareDiffMethod(git.getRepository(), diffs, options);
             return allClassInfos;
         } catch (Exception e) {
             System.err.println(e.getMessage());
@@ -0,0 +1,245 @@
+package org.jacoco.core.internal.diff;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable lookup structure for the result of a code diff. Changed methods are
+ * indexed by VM class name and added lines by source file, so that analysis and
+ * report rendering can query the diff in constant or logarithmic time
+ * independent of the size of the diff.
+ */
+public final class DiffIndex {
+
+	/** Index without any changes, i.e. full coverage is reported. */
+	public static final DiffIndex EMPTY = new DiffIndex(
+			Collections.<ClassInfo> emptyList());
+
+	private final List<ClassInfo> classInfos;
+
+	private final Map<String, Set<String>> methods;
+
+	private final Map<String, LineRanges> sources;
+
+	private final Set<String> simpleNames;
+
+	/**
+	 * Creates a new index for the given diff result.
+	 *
+	 * @param classInfos
+	 *            changed classes, may be <code>null</code>
+	 */
+	public DiffIndex(final List<ClassInfo> classInfos) {
+		this.classInfos = classInfos == null
+				? Collections.<ClassInfo> emptyList()
+				: Collections
+						.unmodifiableList(new ArrayList<ClassInfo>(classInfos));
+		this.methods = new HashMap<String, Set<String>>();
+		this.sources = new HashMap<String, LineRanges>();
+		this.simpleNames = new HashSet<String>();
+		for (final ClassInfo classInfo : this.classInfos) {
+			final String vmName = getVMName(classInfo);
+			simpleNames.add(classInfo.getClassName());
+			Set<String> names = methods.get(vmName);
+			if (names == null) {
+				names = new HashSet<String>();
+				methods.put(vmName, names);
+			}
+			if (classInfo.getMethodInfos() != null) {
+				for (final MethodInfo m : classInfo.getMethodInfos()) {
+					names.add(m.getMethodName());
+				}
+			}
+			if (!sources.containsKey(vmName)) {
+				sources.put(vmName,
+						"ADD".equalsIgnoreCase(classInfo.getType())
+								? LineRanges.ALL
+								: new LineRanges(classInfo.getAddLines()));
+			}
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the index contains no changes
+	 */
+	public boolean isEmpty() {
+		return classInfos.isEmpty();
+	}
+
+	/**
+	 * @return the changed classes this index has been built from
+	 */
+	public List<ClassInfo> getClassInfos() {
+		return classInfos;
+	}
+
+	/**
+	 * Checks whether the given method has been changed.
+	 *
+	 * @param className
+	 *            VM name of the class
+	 * @param methodName
+	 *            name of the method
+	 * @return <code>true</code> if the method has been added or modified
+	 */
+	public boolean containsMethod(final String className,
+			final String methodName) {
+		final Set<String> names = methods.get(className);
+		return names != null && names.contains(methodName);
+	}
+
+	/**
+	 * Checks whether a class file with the given name may contain changed
+	 * methods. As class files might be located relative to any folder only the
+	 * simple name is checked, i.e. the last segment of the name.
+	 *
+	 * @param name
+	 *            name of the class file without extension, with <code>/</code>
+	 *            as separator
+	 * @return <code>false</code> if the class file can't contain changed
+	 *         methods
+	 */
+	public boolean containsClassFile(final String name) {
+		return simpleNames.contains(name.substring(name.lastIndexOf('/') + 1));
+	}
+
+	/**
+	 * Checks whether the given source file has been changed.
+	 *
+	 * @param packageName
+	 *            VM name of the package
+	 * @param sourceFileName
+	 *            name of the source file
+	 * @return <code>true</code> if the source file has been added or modified
+	 */
+	public boolean containsSource(final String packageName,
+			final String sourceFileName) {
+		return sources.containsKey(getSourceKey(packageName, sourceFileName));
+	}
+
+	/**
+	 * Checks whether the given line of a source file has been added or
+	 * modified. All lines of a new source file are considered as added.
+	 *
+	 * @param packageName
+	 *            VM name of the package
+	 * @param sourceFileName
+	 *            name of the source file
+	 * @param line
+	 *            line number starting with 1
+	 * @return <code>true</code> if the line has been added or modified
+	 */
+	public boolean isLineAdded(final String packageName,
+			final String sourceFileName, final int line) {
+		final LineRanges ranges = getAddedLines(packageName, sourceFileName);
+		return ranges != null && ranges.contains(line);
+	}
+
+	/**
+	 * Returns the added or modified lines of the given source file. Callers
+	 * checking many lines of the same file should use this method instead of
+	 * {@link #isLineAdded(String, String, int)}.
+	 *
+	 * @param packageName
+	 *            VM name of the package
+	 * @param sourceFileName
+	 *            name of the source file
+	 * @return added lines or <code>null</code> if the source file has not been
+	 *         changed
+	 */
+	public LineRanges getAddedLines(final String packageName,
+			final String sourceFileName) {
+		return sources.get(getSourceKey(packageName, sourceFileName));
+	}
+
+	private static String getVMName(final ClassInfo classInfo) {
+		final String packages = classInfo.getPackages();
+		if (packages == null || packages.length() == 0) {
+			return classInfo.getClassName();
+		}
+		return packages.replace('.', '/') + '/' + classInfo.getClassName();
+	}
+
+	private static String getSourceKey(final String packageName,
+			final String sourceFileName) {
+		String name = sourceFileName;
+		final int dot = name.lastIndexOf('.');
+		if (dot != -1) {
+			name = name.substring(0, dot);
+		}
+		if (packageName == null || packageName.length() == 0) {
+			return name;
+		}
+		return packageName + '/' + name;
+	}
+
+	/**
+	 * Sorted and merged set of inclusive line ranges.
+	 */
+	public static class LineRanges {
+
+		static final LineRanges ALL = new LineRanges(null) {
+			@Override
+			public boolean contains(final int line) {
+				return true;
+			}
+		};
+
+		private final int[] begins;
+
+		private final int[] ends;
+
+		LineRanges(final List<int[]> ranges) {
+			if (ranges == null || ranges.isEmpty()) {
+				begins = ends = new int[0];
+				return;
+			}
+			final int[][] sorted = ranges.toArray(new int[ranges.size()][]);
+			Arrays.sort(sorted, new Comparator<int[]>() {
+				public int compare(final int[] a, final int[] b) {
+					return a[0] < b[0] ? -1 : (a[0] == b[0] ? 0 : 1);
+				}
+			});
+			final int[] b = new int[sorted.length];
+			final int[] e = new int[sorted.length];
+			int size = 0;
+			for (final int[] range : sorted) {
+				if (size > 0 && range[0] <= e[size - 1] + 1) {
+					e[size - 1] = Math.max(e[size - 1], range[1]);
+				} else {
+					b[size] = range[0];
+					e[size] = range[1];
+					size++;
+				}
+			}
+			begins = new int[size];
+			ends = new int[size];
+			System.arraycopy(b, 0, begins, 0, size);
+			System.arraycopy(e, 0, ends, 0, size);
+		}
+
+		/**
+		 * Checks whether the given line is contained in one of the ranges.
+		 *
+		 * @param line
+		 *            line number starting with 1
+		 * @return <code>true</code> if the line has been added or modified
+		 */
+		public boolean contains(final int line) {
+			int idx = Arrays.binarySearch(begins, line);
+			if (idx < 0) {
+				idx = -idx - 2;
+			}
+			return idx >= 0 && line <= ends[idx];
+		}
+
+	}
+
+}
@@ -0,0 +1,89 @@
+package org.jacoco.core.internal.diff;
+
+import java.io.File;
+import java.nio.charset.Charset;
+
+/**
+ * Options for the comparisons of {@link CodeDiff}. An instance is only read
+ * while a comparison is running, so the same options can be passed to
+ * comparisons running concurrently.
+ */
+public class DiffOptions {
+
+	private File fingerprintCacheDirectory;
+
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+
+	private Charset encoding = Charset.forName("UTF-8");
+
+	/**
+	 * Sets the directory of the on-disk method fingerprint cache. Java files
+	 * are parsed only once per git blob, later comparisons containing the same
+	 * blob take the methods from the cache. Default is <code>null</code>.
+	 *
+	 * @param directory
+	 *            cache directory, <code>null</code> disables the cache
+	 */
+	public void setFingerprintCacheDirectory(final File directory) {
+		this.fingerprintCacheDirectory = directory;
+	}
+
+	/**
+	 * @return the directory of the fingerprint cache or <code>null</code>
+	 */
+	public File getFingerprintCacheDirectory() {
+		return fingerprintCacheDirectory;
+	}
+
+	/**
+	 * Sets the number of threads used to compare the changed files. Default is
+	 * the number of available processors.
+	 *
+	 * @param threads
+	 *            number of threads
+	 * @throws IllegalArgumentException
+	 *             if the number of threads is not positive
+	 */
+	public void setParallelism(final int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Parallelism must be positive");
+		}
+		this.parallelism = threads;
+	}
+
+	/**
+	 * @return the number of threads used to compare the changed files
+	 */
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Sets the encoding of the Java source files in the repository. Default is
+	 * <code>UTF-8</code>.
+	 *
+	 * @param encoding
+	 *            encoding of the source files
+	 */
+	public void setEncoding(final Charset encoding) {
+		this.encoding = encoding;
+	}
+
+	/**
+	 * @return the encoding of the source files
+	 */
+	public Charset getEncoding() {
+		return encoding;
+	}
+
+	/**
+	 * Creates the fingerprint cache for a single comparison.
+	 *
+	 * @return new cache or <code>null</code> if the cache is disabled
+	 */
+	FingerprintCache createFingerprintCache() {
+		return fingerprintCacheDirectory == null ? null
+				: new FingerprintCache(fingerprintCacheDirectory, encoding);
+	}
+
+}
@@ -0,0 +1,156 @@
+package org.jacoco.core.internal.diff;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parse result of a single Java source file version: the top level type and the
+ * fingerprints of all its methods. Two fingerprints of the same file are
+ * sufficient to calculate the changed methods, the source itself is not
+ * required any more.
+ */
+public class FileFingerprint {
+
+	private final boolean type;
+
+	private final String packages;
+
+	private final String className;
+
+	private final boolean isInterface;
+
+	private final List<MethodInfo> methodInfos;
+
+	/**
+	 * Creates a fingerprint for a source file without top level type.
+	 */
+	public FileFingerprint() {
+		this.type = false;
+		this.packages = "";
+		this.className = "";
+		this.isInterface = false;
+		this.methodInfos = Collections.emptyList();
+	}
+
+	/**
+	 * Creates a fingerprint for a source file with the given top level type.
+	 *
+	 * @param packages
+	 *            package name
+	 * @param className
+	 *            simple name of the top level type
+	 * @param isInterface
+	 *            whether the top level type is an interface
+	 * @param methodInfos
+	 *            fingerprints of all methods of the type
+	 */
+	public FileFingerprint(final String packages, final String className,
+			final boolean isInterface, final List<MethodInfo> methodInfos) {
+		this.type = true;
+		this.packages = packages;
+		this.className = className;
+		this.isInterface = isInterface;
+		this.methodInfos = methodInfos;
+	}
+
+	/**
+	 * @return <code>true</code> if the file declares a top level type
+	 */
+	public boolean hasType() {
+		return type;
+	}
+
+	/**
+	 * @return package name of the top level type
+	 */
+	public String getPackages() {
+		return packages;
+	}
+
+	/**
+	 * @return simple name of the top level type
+	 */
+	public String getClassName() {
+		return className;
+	}
+
+	/**
+	 * @return <code>true</code> if the top level type is an interface
+	 */
+	public boolean isInterface() {
+		return isInterface;
+	}
+
+	/**
+	 * @return fingerprints of all methods of the top level type
+	 */
+	public List<MethodInfo> getMethodInfos() {
+		return methodInfos;
+	}
+
+	/**
+	 * Creates the diff information for a newly added file, i.e. all methods are
+	 * considered as changed.
+	 *
+	 * @return class information or <code>null</code> for interfaces and files
+	 *         without type
+	 */
+	public ClassInfo toClassInfo() {
+		if (!type || isInterface) {
+			return null;
+		}
+		final ClassInfo classInfo = newClassInfo("ADD");
+		classInfo.setMethodInfos(new ArrayList<MethodInfo>(methodInfos));
+		return classInfo;
+	}
+
+	/**
+	 * Creates the diff information for a modified file. A method is considered
+	 * as changed if it does not exist in the old version or its MD5 value is
+	 * different.
+	 *
+	 * @param old
+	 *            fingerprint of the old version of the file
+	 * @param addLines
+	 *            line ranges added in the new version
+	 * @param delLines
+	 *            line ranges deleted from the old version
+	 * @return class information or <code>null</code> for interfaces and files
+	 *         without type
+	 */
+	public ClassInfo toClassInfo(final FileFingerprint old,
+			final List<int[]> addLines, final List<int[]> delLines) {
+		if (!type || isInterface) {
+			return null;
+		}
+		final Map<String, String> oldMethods = new HashMap<String, String>();
+		for (final MethodInfo m : old.getMethodInfos()) {
+			oldMethods.put(m.getMethodName() + m.getParameters(), m.getMd5());
+		}
+		final List<MethodInfo> changed = new ArrayList<MethodInfo>();
+		for (final MethodInfo m : methodInfos) {
+			final String md5 = oldMethods
+					.get(m.getMethodName() + m.getParameters());
+			if (md5 == null || !md5.equals(m.getMd5())) {
+				changed.add(m);
+			}
+		}
+		final ClassInfo classInfo = newClassInfo("REPLACE");
+		classInfo.setMethodInfos(changed);
+		classInfo.setAddLines(addLines);
+		classInfo.setDelLines(delLines);
+		return classInfo;
+	}
+
+	private ClassInfo newClassInfo(final String changeType) {
+		final ClassInfo classInfo = new ClassInfo();
+		classInfo.setClassName(className);
+		classInfo.setPackages(packages);
+		classInfo.setType(changeType);
+		return classInfo;
+	}
+
+}
@@ -0,0 +1,177 @@
+package org.jacoco.core.internal.diff;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+
+/**
+ * On-disk cache of {@link FileFingerprint}s keyed by the id of the git blob
+ * they have been calculated from, the encoding the blob has been decoded with
+ * and the {@link ASTGenerator#VERSION version of the parser}. As a blob id
+ * identifies the file content, cached entries never become stale and a blob has
+ * to be parsed only once. Entries are stored in one file per blob in a separate
+ * folder for every parser version and encoding, laid out like the git object
+ * database. Entries are written to a temporary file first and then renamed, so
+ * the cache can be shared by concurrent threads and processes.
+ */
+public class FingerprintCache {
+
+	/** Marker at the beginning of every cache entry. */
+	private static final int MAGIC = 0xC0C0D1FF;
+
+	/**
+	 * Version of the entry format. Must be incremented whenever the format or
+	 * the way fingerprints are calculated changes.
+	 */
+	private static final int VERSION = 3;
+
+	private final File directory;
+
+	private final File entries;
+
+	/**
+	 * Creates a cache that stores its entries in the given directory.
+	 *
+	 * @param directory
+	 *            cache directory, created on demand
+	 * @param encoding
+	 *            encoding the source files are decoded with
+	 */
+	public FingerprintCache(final File directory, final Charset encoding) {
+		this.directory = directory;
+		this.entries = new File(new File(directory, ASTGenerator.VERSION),
+				encoding.name());
+	}
+
+	/**
+	 * @return the cache directory
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Returns the cached fingerprint of the given blob.
+	 *
+	 * @param blobId
+	 *            id of the git blob
+	 * @return fingerprint or <code>null</code> if no valid entry exists
+	 */
+	public FileFingerprint get(final AnyObjectId blobId) {
+		final File file = getFile(blobId);
+		if (!file.isFile()) {
+			return null;
+		}
+		try {
+			final DataInputStream in = new DataInputStream(
+					new BufferedInputStream(new FileInputStream(file)));
+			try {
+				return read(in);
+			} finally {
+				in.close();
+			}
+		} catch (final IOException e) {
+			// Incomplete or foreign entries are treated as cache misses
+			return null;
+		}
+	}
+
+	/**
+	 * Stores the fingerprint of the given blob.
+	 *
+	 * @param blobId
+	 *            id of the git blob
+	 * @param fingerprint
+	 *            fingerprint calculated from the blob content
+	 * @throws IOException
+	 *             if the entry can't be written
+	 */
+	public void put(final AnyObjectId blobId, final FileFingerprint fingerprint)
+			throws IOException {
+		final File file = getFile(blobId);
+		final File folder = file.getParentFile();
+		folder.mkdirs();
+		final File tmp = File.createTempFile(file.getName(), ".tmp", folder);
+		try {
+			final DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(tmp)));
+			try {
+				write(out, fingerprint);
+			} finally {
+				out.close();
+			}
+			// Some other thread or process might have won the race. As the
+			// content is the same we don't care which entry survives.
+			if (!tmp.renameTo(file) && !file.isFile()) {
+				throw new IOException(
+						String.format("Can't write cache entry %s.", file));
+			}
+		} finally {
+			tmp.delete();
+		}
+	}
+
+	private File getFile(final AnyObjectId blobId) {
+		final String name = blobId.name();
+		return new File(new File(entries, name.substring(0, 2)),
+				name.substring(2));
+	}
+
+	private static void write(final DataOutputStream out,
+			final FileFingerprint fingerprint) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeUTF(ASTGenerator.VERSION);
+		out.writeBoolean(fingerprint.hasType());
+		out.writeUTF(fingerprint.getPackages());
+		out.writeUTF(fingerprint.getClassName());
+		out.writeBoolean(fingerprint.isInterface());
+		final List<MethodInfo> methods = fingerprint.getMethodInfos();
+		out.writeInt(methods.size());
+		for (final MethodInfo m : methods) {
+			out.writeUTF(m.getMethodName());
+			out.writeUTF(m.getParameters());
+			out.writeUTF(m.getMd5());
+			out.writeInt(m.getStartLine());
+			out.writeInt(m.getEndLine());
+		}
+	}
+
+	private static FileFingerprint read(final DataInputStream in)
+			throws IOException {
+		if (in.readInt() != MAGIC || in.readInt() != VERSION
+				|| !ASTGenerator.VERSION.equals(in.readUTF())) {
+			return null;
+		}
+		final boolean type = in.readBoolean();
+		final String packages = in.readUTF();
+		final String className = in.readUTF();
+		final boolean isInterface = in.readBoolean();
+		final int count = in.readInt();
+		final List<MethodInfo> methods = new ArrayList<MethodInfo>(count);
+		for (int i = 0; i < count; i++) {
+			final MethodInfo m = new MethodInfo();
+			m.setMethodName(in.readUTF());
+			m.setParameters(in.readUTF());
+			m.setMd5(in.readUTF());
+			m.setStartLine(in.readInt());
+			m.setEndLine(in.readInt());
+			methods.add(m);
+		}
+		if (!type) {
+			return new FileFingerprint();
+		}
+		return new FileFingerprint(packages, className, isInterface, methods);
+	}
+
+}
@@ -8,6 +8,10 @@ public class MethodInfo {
 
     public String parameters;
 
+    public int startLine;
+
+    public int endLine;
+
     public String getMd5() {
         return md5;
     }
@@ -31,4 +35,20 @@ public class MethodInfo {
     public void setParameters(String parameters) {
         this.parameters = parameters;
     }
+
+    public int getStartLine() {
+        return startLine;
+    }
+
+    public void setStartLine(int startLine) {
+        this.startLine = startLine;
+    }
+
+    public int getEndLine() {
+        return endLine;
+    }
+
+    public void setEndLine(int endLine) {
+        this.endLine = endLine;
+    }
 }
\ No newline at end of file
@@ -12,15 +12,15 @@
  *******************************************************************************/
 package org.jacoco.core.internal.flow;
 
-import org.jacoco.core.analysis.CoverageBuilder;
-import org.jacoco.core.internal.diff.ClassInfo;
-import org.jacoco.core.internal.diff.MethodInfo;
+import java.util.Map;
+
+import org.jacoco.core.internal.diff.DiffIndex;
 import org.jacoco.core.internal.instr.InstrSupport;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.commons.AnalyzerAdapter;
-
-import java.util.List;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
 
 /**
  * A {@link org.objectweb.asm.ClassVisitor} that calculates probes for every
@@ -36,6 +36,12 @@ public class ClassProbesAdapter extends ClassVisitor
 
 	private final boolean trackFrames;
 
+	private final DiffIndex diffIndex;
+
+	private final boolean minimizeProbes;
+
+	private final boolean countProbes;
+
 	private int counter = 0;
 
 	private String name;
@@ -50,9 +56,75 @@ public class ClassProbesAdapter extends ClassVisitor
 	 */
 	public ClassProbesAdapter(final ClassProbesVisitor cv,
 			final boolean trackFrames) {
+		this(cv, trackFrames, DiffIndex.EMPTY);
+	}
+
+	/**
+	 * Creates a new adapter that delegates to the given visitor. Only methods
+	 * contained in the given diff scope are passed to the visitor, unless the
+	 * scope is empty.
+	 *
+	 * @param cv
+	 *            instance to delegate to
+	 * @param trackFrames
+	 *            if <code>true</code> stackmap frames are tracked and provided
+	 * @param diffIndex
+	 *            changed classes, empty for all methods
+	 */
+	public ClassProbesAdapter(final ClassProbesVisitor cv,
+			final boolean trackFrames, final DiffIndex diffIndex) {
+		this(cv, trackFrames, diffIndex, false);
+	}
+
+	/**
+	 * Creates a new adapter that delegates to the given visitor. Only methods
+	 * contained in the given diff scope are passed to the visitor, unless the
+	 * scope is empty. With probe minimization probes which can be inferred from
+	 * other probes are reported with
+	 * {@link MethodProbesVisitor#visitInferredProbe(int, int[])} before the
+	 * instructions of every method. Probe ids do not depend on this setting.
+	 *
+	 * @param cv
+	 *            instance to delegate to
+	 * @param trackFrames
+	 *            if <code>true</code> stackmap frames are tracked and provided
+	 * @param diffIndex
+	 *            changed classes, empty for all methods
+	 * @param minimizeProbes
+	 *            if <code>true</code> inferable probes are reported
+	 */
+	public ClassProbesAdapter(final ClassProbesVisitor cv,
+			final boolean trackFrames, final DiffIndex diffIndex,
+			final boolean minimizeProbes) {
+		this(cv, trackFrames, diffIndex, minimizeProbes, false);
+	}
+
+	/**
+	 * Creates a new adapter that delegates to the given visitor. In addition to
+	 * the previous constructor the number of probes of every method can be
+	 * reported with {@link MethodProbesVisitor#visitProbeCount(int)} before its
+	 * instructions.
+	 *
+	 * @param cv
+	 *            instance to delegate to
+	 * @param trackFrames
+	 *            if <code>true</code> stackmap frames are tracked and provided
+	 * @param diffIndex
+	 *            changed classes, empty for all methods
+	 * @param minimizeProbes
+	 *            if <code>true</code> inferable probes are reported
+	 * @param countProbes
+	 *            if <code>true</code> the number of probes is reported
+	 */
+	public ClassProbesAdapter(final ClassProbesVisitor cv,
+			final boolean trackFrames, final DiffIndex diffIndex,
+			final boolean minimizeProbes, final boolean countProbes) {
 		super(InstrSupport.ASM_API_VERSION, cv);
 		this.cv = cv;
 		this.trackFrames = trackFrames;
+		this.diffIndex = diffIndex;
+		this.minimizeProbes = minimizeProbes;
+		this.countProbes = countProbes;
 	}
 
 	@Override
@@ -70,8 +142,8 @@ public class ClassProbesAdapter extends ClassVisitor
 		final MethodProbesVisitor methodProbes;
 		final MethodProbesVisitor mv = cv.visitMethod(access, name, desc,
 				signature, exceptions);
-		//    calculate diff coverage rate
-		if (mv !=null && isContainsMethod(name, CoverageBuilder.classInfos)) {
+		// calculate diff coverage rate
+		if (mv != null && isContainsMethod(name)) {
 			methodProbes = mv;
 		} else {
 			// We need to visit the method in any case, otherwise probe ids
@@ -85,6 +157,9 @@ public class ClassProbesAdapter extends ClassVisitor
 			public void visitEnd() {
 				super.visitEnd();
 				LabelFlowAnalyzer.markLabels(this);
+				if (minimizeProbes || countProbes) {
+					previewProbes(this, methodProbes);
+				}
 				final MethodProbesAdapter probesAdapter = new MethodProbesAdapter(
 						methodProbes, ClassProbesAdapter.this);
 				if (trackFrames) {
@@ -100,6 +175,40 @@ public class ClassProbesAdapter extends ClassVisitor
 		};
 	}
 
+	/**
+	 * Calculates the probes ids of the given method in advance to report the
+	 * probes which can be inferred from others and the number of probes.
+	 */
+	private void previewProbes(final MethodNode method,
+			final MethodProbesVisitor methodProbes) {
+		final ProbeMinimizer minimizer = new ProbeMinimizer();
+		final int[] next = new int[] { counter };
+		final MethodProbesAdapter probesAdapter = new MethodProbesAdapter(
+				minimizeProbes ? minimizer : EMPTY_METHOD_PROBES_VISITOR,
+				new IProbeIdGenerator() {
+					public int nextId() {
+						return next[0]++;
+					}
+				});
+		// We do not use the accept() method as ASM resets labels after every
+		// call to accept()
+		for (final TryCatchBlockNode block : method.tryCatchBlocks) {
+			block.accept(probesAdapter);
+		}
+		method.instructions.accept(probesAdapter);
+		if (minimizeProbes) {
+			minimizer.visitEnd();
+			for (final Map.Entry<Integer, int[]> entry : minimizer
+					.getOmittedProbes().entrySet()) {
+				methodProbes.visitInferredProbe(entry.getKey().intValue(),
+						entry.getValue());
+			}
+		}
+		if (countProbes) {
+			methodProbes.visitProbeCount(next[0] - counter);
+		}
+	}
+
 	@Override
 	public void visitEnd() {
 		cv.visitTotalProbeCount(counter);
@@ -110,23 +219,9 @@ public class ClassProbesAdapter extends ClassVisitor
 		return counter++;
 	}
 
-	private boolean isContainsMethod(String currentMethod, List<ClassInfo> classInfos) {
-		if (classInfos== null || classInfos.isEmpty()) {
-			return true;
-		}
-		String currentClassName = name.replaceAll("/",".");
-		for (ClassInfo classInfo : classInfos) {
-			String className = classInfo.getPackages() + "." + classInfo.getClassName();
-			if (currentClassName.equals(className)) {
-				for (MethodInfo methodInfo: classInfo.getMethodInfos()) {
-					String methodName = methodInfo.getMethodName();
-					if (currentMethod.equals(methodName)) {
-						return true;
-					}
-				}
-			}
-		}
-		return false;
+	private boolean isContainsMethod(String currentMethod) {
+		return diffIndex.isEmpty()
+				|| diffIndex.containsMethod(name, currentMethod);
 	}
 
 }
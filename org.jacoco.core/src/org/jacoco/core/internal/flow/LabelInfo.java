@@ -43,6 +43,8 @@ public final class LabelInfo {
 
 	private Instruction instruction = null;
 
+	private int node = -1;
+
 	// instances are only created within this class
 	private LabelInfo() {
 	}
@@ -270,6 +272,32 @@ public final class LabelInfo {
 		return info == null ? null : info.instruction;
 	}
 
+	/**
+	 * Sets the index of the node representing the given label in a control flow
+	 * graph.
+	 *
+	 * @param label
+	 *            label to set the node for
+	 * @param node
+	 *            index of the node
+	 */
+	public static void setNode(final Label label, final int node) {
+		create(label).node = node;
+	}
+
+	/**
+	 * Returns the index of the node representing the given label in a control
+	 * flow graph.
+	 *
+	 * @param label
+	 *            label to look for
+	 * @return index of the node or -1 if no node has been set
+	 */
+	public static int getNode(final Label label) {
+		final LabelInfo info = get(label);
+		return info == null ? -1 : info.node;
+	}
+
 	private static LabelInfo get(final Label label) {
 		final Object info = label.info;
 		return info instanceof LabelInfo ? (LabelInfo) info : null;
@@ -40,6 +40,36 @@ public abstract class MethodProbesVisitor extends MethodVisitor {
 		super(InstrSupport.ASM_API_VERSION, mv);
 	}
 
+	/**
+	 * Visits a probe which does not need to be inserted as its execution can be
+	 * inferred from other probes of the method. The probe has been executed if
+	 * any of the given successor probes has been executed. This method is
+	 * called before the instructions of the method are visited and only if
+	 * probe minimization is enabled. The omitted probe is still visited at its
+	 * position.
+	 *
+	 * @param probeId
+	 *            id of the omitted probe
+	 * @param successorIds
+	 *            ids of the probes the execution is inferred from
+	 */
+	@SuppressWarnings("unused")
+	public void visitInferredProbe(final int probeId,
+			final int[] successorIds) {
+	}
+
+	/**
+	 * Visits the total number of probes of the method including the omitted
+	 * ones. This method is called before the instructions of the method are
+	 * visited, after the omitted probes and only if probe counting is enabled.
+	 *
+	 * @param count
+	 *            number of probes of the method
+	 */
+	@SuppressWarnings("unused")
+	public void visitProbeCount(final int count) {
+	}
+
 	/**
 	 * Visits an unconditional probe that should be inserted at the current
 	 * position.
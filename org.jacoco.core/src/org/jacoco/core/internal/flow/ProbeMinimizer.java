@@ -0,0 +1,625 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.flow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Calculates the probes of a method which can be omitted because their
+ * execution can be inferred from other probes. For this the control flow
+ * between the probes, including the edges to exception handlers, is recorded
+ * from the probe events of the method.
+ *
+ * A probe is omitted if it dominates all probes which can be reached next from
+ * it, i.e. every path from the method entry to these successor probes passes
+ * the omitted probe. In addition every path from the omitted probe has to reach
+ * one of the successor probes without passing an instruction which might throw
+ * an exception, a loop or an exit of the method. In this case the omitted probe
+ * has been executed if and only if one of its successor probes has been
+ * executed. Successor probes of omitted probes are always kept, so the
+ * inference does not need to be applied recursively.
+ */
+final class ProbeMinimizer extends MethodProbesVisitor {
+
+	/** Probe id of every node or {@link LabelInfo#NO_PROBE}. */
+	private int[] nodeProbes = new int[64];
+
+	/** Whether the instruction of a node might throw an exception. */
+	private boolean[] nodeThrows = new boolean[64];
+
+	private int nodeCount;
+
+	/** Pairs of source and target node. */
+	private int[] edges = new int[128];
+
+	private int edgeCount;
+
+	/** Jumps to labels which are resolved after the method has been visited. */
+	private final List<Object[]> jumps = new ArrayList<Object[]>();
+
+	private final List<Label[]> tryCatchBlocks = new ArrayList<Label[]>();
+
+	/** Whether the last added instruction node falls through to the next. */
+	private boolean fallThrough = true;
+
+	private int lastNode = -1;
+
+	/**
+	 * Returns the omitted probes and their successor probes, i.e. pairs of a
+	 * probe id and the ids of the probes it is inferred from.
+	 *
+	 * @return omitted probes in the order of their probe ids
+	 */
+	Map<Integer, int[]> getOmittedProbes() {
+		final Adjacency successors = new Adjacency(false);
+		final Search search = new Search(successors);
+		int[][] candidates = null;
+		for (int node = 0; node < nodeCount; node++) {
+			if (nodeProbes[node] == LabelInfo.NO_PROBE) {
+				continue;
+			}
+			final int[] next = search.findSuccessorProbes(node);
+			if (next != null) {
+				if (candidates == null) {
+					candidates = new int[nodeCount][];
+				}
+				candidates[node] = next;
+			}
+		}
+		if (candidates == null) {
+			// Dominators are only calculated if a probe might be omitted
+			return Collections.emptyMap();
+		}
+
+		final Adjacency predecessors = new Adjacency(true);
+		final int[] idom = calculateDominators(successors, predecessors);
+		final Map<Integer, int[]> omitted = new TreeMap<Integer, int[]>();
+		final boolean[] dropped = new boolean[nodeCount];
+		final boolean[] required = new boolean[nodeCount];
+		for (int node = 0; node < nodeCount; node++) {
+			final int[] next = candidates[node];
+			if (next == null || required[node] || idom[node] == -1
+					|| !dominatesAll(node, next, idom, dropped)) {
+				continue;
+			}
+			dropped[node] = true;
+			final int[] ids = new int[next.length];
+			for (int i = 0; i < next.length; i++) {
+				required[next[i]] = true;
+				ids[i] = nodeProbes[next[i]];
+			}
+			Arrays.sort(ids);
+			omitted.put(Integer.valueOf(nodeProbes[node]), ids);
+		}
+		return omitted;
+	}
+
+	/**
+	 * Depth first search for the probes which are reached next from a probe
+	 * node. The state arrays are shared by all searches of a method.
+	 */
+	private class Search {
+
+		private final Adjacency successors;
+
+		/** Id of the last search which entered the node. */
+		private final int[] entered;
+
+		/** Id of the last search which left the node. */
+		private final int[] left;
+
+		private final int[] stack;
+
+		/** Index of the next edge of the nodes on the stack. */
+		private final int[] next;
+
+		Search(final Adjacency successors) {
+			this.successors = successors;
+			entered = new int[nodeCount];
+			left = new int[nodeCount];
+			stack = new int[nodeCount];
+			next = new int[nodeCount];
+		}
+
+		/**
+		 * Finds all probe nodes which can be reached from the given node
+		 * without passing another probe node.
+		 *
+		 * @return successor probe nodes or <code>null</code> if the probe nodes
+		 *         might not be reached because the method can be left without
+		 *         passing a probe, an instruction in between might throw an
+		 *         exception or there is a loop without probe
+		 */
+		int[] findSuccessorProbes(final int start) {
+			final int id = start + 1;
+			final List<Integer> result = new ArrayList<Integer>();
+			final int[] offsets = successors.offsets;
+			int top = 0;
+			stack[top] = start;
+			next[top++] = offsets[start];
+			entered[start] = id;
+			while (top > 0) {
+				final int node = stack[top - 1];
+				if (next[top - 1] == offsets[node + 1]) {
+					left[node] = id;
+					top--;
+					continue;
+				}
+				final int s = successors.targets[next[top - 1]++];
+				if (entered[s] == id) {
+					if (left[s] != id) {
+						// Loop without a probe in between
+						return null;
+					}
+					continue;
+				}
+				entered[s] = id;
+				if (nodeProbes[s] != LabelInfo.NO_PROBE) {
+					left[s] = id;
+					result.add(Integer.valueOf(s));
+					continue;
+				}
+				if (nodeThrows[s] || offsets[s] == offsets[s + 1]) {
+					return null;
+				}
+				stack[top] = s;
+				next[top++] = offsets[s];
+			}
+			if (result.isEmpty()) {
+				return null;
+			}
+			final int[] nodes = new int[result.size()];
+			for (int i = 0; i < nodes.length; i++) {
+				nodes[i] = result.get(i).intValue();
+			}
+			return nodes;
+		}
+
+	}
+
+	private static boolean dominatesAll(final int dominator, final int[] nodes,
+			final int[] idom, final boolean[] dropped) {
+		for (final int node : nodes) {
+			if (dropped[node] || !dominates(dominator, node, idom)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean dominates(final int dominator, int node,
+			final int[] idom) {
+		while (true) {
+			if (node == dominator) {
+				return true;
+			}
+			final int parent = idom[node];
+			if (parent == node || parent == -1) {
+				return false;
+			}
+			node = parent;
+		}
+	}
+
+	/**
+	 * Calculates the immediate dominator of every node with the algorithm of
+	 * Cooper, Harvey and Kennedy. The method entry is the first node.
+	 *
+	 * @return immediate dominator of every node, -1 for unreachable nodes
+	 */
+	private int[] calculateDominators(final Adjacency successors,
+			final Adjacency predecessors) {
+		final int[] idom = new int[nodeCount];
+		for (int i = 0; i < nodeCount; i++) {
+			idom[i] = -1;
+		}
+		if (nodeCount == 0) {
+			return idom;
+		}
+		final int[] postorder = new int[nodeCount];
+		final int[] order = postorder(successors, postorder);
+		idom[0] = 0;
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			// reverse postorder without the entry node
+			for (int i = order.length - 2; i >= 0; i--) {
+				final int node = order[i];
+				int newIdom = -1;
+				for (int e = predecessors.offsets[node]; e < predecessors.offsets[node
+						+ 1]; e++) {
+					final int p = predecessors.targets[e];
+					if (idom[p] == -1) {
+						continue;
+					}
+					newIdom = newIdom == -1 ? p
+							: intersect(p, newIdom, idom, postorder);
+				}
+				if (idom[node] != newIdom) {
+					idom[node] = newIdom;
+					changed = true;
+				}
+			}
+		}
+		return idom;
+	}
+
+	private static int intersect(int a, int b, final int[] idom,
+			final int[] postorder) {
+		while (a != b) {
+			while (postorder[a] < postorder[b]) {
+				a = idom[a];
+			}
+			while (postorder[b] < postorder[a]) {
+				b = idom[b];
+			}
+		}
+		return a;
+	}
+
+	/**
+	 * Calculates the postorder of all nodes reachable from the entry node.
+	 *
+	 * @param postorder
+	 *            receives the postorder number of every node
+	 * @return reachable nodes in postorder
+	 */
+	private int[] postorder(final Adjacency successors, final int[] postorder) {
+		final int[] stack = new int[nodeCount];
+		final int[] next = new int[nodeCount];
+		final boolean[] visited = new boolean[nodeCount];
+		final int[] order = new int[nodeCount];
+		int count = 0;
+		int top = 0;
+		stack[top++] = 0;
+		visited[0] = true;
+		while (top > 0) {
+			final int node = stack[top - 1];
+			if (next[node] < successors.offsets[node + 1]
+					- successors.offsets[node]) {
+				final int s = successors.targets[successors.offsets[node]
+						+ next[node]++];
+				if (!visited[s]) {
+					visited[s] = true;
+					stack[top++] = s;
+				}
+			} else {
+				top--;
+				postorder[node] = count;
+				order[count++] = node;
+			}
+		}
+		final int[] result = new int[count];
+		System.arraycopy(order, 0, result, 0, count);
+		return result;
+	}
+
+	/**
+	 * Edges of all nodes in a single array, the edges of a node are found
+	 * between its offset and the offset of the next node.
+	 */
+	private class Adjacency {
+
+		final int[] offsets;
+
+		final int[] targets;
+
+		/**
+		 * @param reverse
+		 *            <code>true</code> to list the predecessors instead of the
+		 *            successors of every node
+		 */
+		Adjacency(final boolean reverse) {
+			final int from = reverse ? 1 : 0;
+			offsets = new int[nodeCount + 1];
+			for (int i = 0; i < edgeCount; i++) {
+				offsets[edges[2 * i + from] + 1]++;
+			}
+			for (int i = 0; i < nodeCount; i++) {
+				offsets[i + 1] += offsets[i];
+			}
+			final int[] fill = new int[nodeCount];
+			System.arraycopy(offsets, 0, fill, 0, nodeCount);
+			targets = new int[edgeCount];
+			for (int i = 0; i < edgeCount; i++) {
+				targets[fill[edges[2 * i + from]]++] = edges[2 * i + 1 - from];
+			}
+		}
+
+	}
+
+	// === Recording of the control flow ===
+
+	private int addNode(final int probeId) {
+		return addNode(probeId, false);
+	}
+
+	private int addNode(final int probeId, final boolean mayThrow) {
+		final int node = addVirtualNode(probeId);
+		nodeThrows[node] = mayThrow;
+		if (lastNode != -1 && fallThrough) {
+			addEdge(lastNode, node);
+		}
+		lastNode = node;
+		fallThrough = true;
+		return node;
+	}
+
+	private int addVirtualNode(final int probeId) {
+		if (nodeCount == nodeProbes.length) {
+			final int[] newNodes = new int[nodeCount * 2];
+			System.arraycopy(nodeProbes, 0, newNodes, 0, nodeCount);
+			nodeProbes = newNodes;
+			final boolean[] newThrows = new boolean[nodeCount * 2];
+			System.arraycopy(nodeThrows, 0, newThrows, 0, nodeCount);
+			nodeThrows = newThrows;
+		}
+		nodeProbes[nodeCount] = probeId;
+		return nodeCount++;
+	}
+
+	private void addEdge(final int from, final int to) {
+		if (2 * edgeCount == edges.length) {
+			final int[] newEdges = new int[edges.length * 2];
+			System.arraycopy(edges, 0, newEdges, 0, edges.length);
+			edges = newEdges;
+		}
+		edges[2 * edgeCount] = from;
+		edges[2 * edgeCount + 1] = to;
+		edgeCount++;
+	}
+
+	private void addJump(final int from, final Label target) {
+		jumps.add(new Object[] { Integer.valueOf(from), target });
+	}
+
+	private void addJumpWithProbe(final int from, final Label target,
+			final int probeId) {
+		final int probe = addVirtualNode(probeId);
+		addEdge(from, probe);
+		addJump(probe, target);
+	}
+
+	private void addInstruction(final boolean mayThrow) {
+		addNode(LabelInfo.NO_PROBE, mayThrow);
+	}
+
+	/**
+	 * Adds a node for an instruction which falls through to the next
+	 * instruction. Instructions which can't throw an exception only pass the
+	 * control flow on, so no node is required for them.
+	 */
+	private void addLinearInstruction(final boolean mayThrow) {
+		if (mayThrow) {
+			addNode(LabelInfo.NO_PROBE, true);
+		}
+	}
+
+	@Override
+	public void visitTryCatchBlock(final Label start, final Label end,
+			final Label handler, final String type) {
+		tryCatchBlocks.add(new Label[] { start, end, handler });
+	}
+
+	@Override
+	public void visitLabel(final Label label) {
+		// The label is represented by the next node
+		LabelInfo.setNode(label, nodeCount);
+	}
+
+	@Override
+	public void visitProbe(final int probeId) {
+		addNode(probeId);
+	}
+
+	@Override
+	public void visitInsnWithProbe(final int opcode, final int probeId) {
+		addNode(probeId);
+		fallThrough = false;
+	}
+
+	@Override
+	public void visitInsn(final int opcode) {
+		switch (opcode) {
+		case Opcodes.IRETURN:
+		case Opcodes.LRETURN:
+		case Opcodes.FRETURN:
+		case Opcodes.DRETURN:
+		case Opcodes.ARETURN:
+		case Opcodes.RETURN:
+		case Opcodes.ATHROW:
+			addInstruction(true);
+			fallThrough = false;
+			break;
+		default:
+			addLinearInstruction(mayThrow(opcode));
+			break;
+		}
+	}
+
+	@Override
+	public void visitIntInsn(final int opcode, final int operand) {
+		// NEWARRAY might throw NegativeArraySizeException
+		addLinearInstruction(opcode == Opcodes.NEWARRAY);
+	}
+
+	@Override
+	public void visitVarInsn(final int opcode, final int var) {
+		if (opcode == Opcodes.RET) {
+			// The return address is unknown, so it is treated like an exit
+			addInstruction(false);
+			fallThrough = false;
+		}
+	}
+
+	@Override
+	public void visitTypeInsn(final int opcode, final String type) {
+		addInstruction(true);
+	}
+
+	@Override
+	public void visitFieldInsn(final int opcode, final String owner,
+			final String name, final String desc) {
+		addInstruction(true);
+	}
+
+	@Override
+	public void visitMethodInsn(final int opcode, final String owner,
+			final String name, final String desc, final boolean itf) {
+		addInstruction(true);
+	}
+
+	@Override
+	public void visitInvokeDynamicInsn(final String name, final String desc,
+			final Handle bsm, final Object... bsmArgs) {
+		addInstruction(true);
+	}
+
+	@Override
+	public void visitLdcInsn(final Object cst) {
+		// Resolving types, handles and dynamic constants might fail
+		addLinearInstruction(!(cst instanceof Number || cst instanceof String));
+	}
+
+	@Override
+	public void visitMultiANewArrayInsn(final String desc, final int dims) {
+		addInstruction(true);
+	}
+
+	@Override
+	public void visitJumpInsn(final int opcode, final Label label) {
+		addInstruction(false);
+		addJump(lastNode, label);
+		fallThrough = opcode != Opcodes.GOTO;
+	}
+
+	@Override
+	public void visitJumpInsnWithProbe(final int opcode, final Label label,
+			final int probeId, final IFrame frame) {
+		addInstruction(false);
+		addJumpWithProbe(lastNode, label, probeId);
+		fallThrough = opcode != Opcodes.GOTO;
+	}
+
+	@Override
+	public void visitTableSwitchInsn(final int min, final int max,
+			final Label dflt, final Label... labels) {
+		addSwitch(dflt, labels, false);
+	}
+
+	@Override
+	public void visitLookupSwitchInsn(final Label dflt, final int[] keys,
+			final Label[] labels) {
+		addSwitch(dflt, labels, false);
+	}
+
+	@Override
+	public void visitTableSwitchInsnWithProbes(final int min, final int max,
+			final Label dflt, final Label[] labels, final IFrame frame) {
+		addSwitch(dflt, labels, true);
+	}
+
+	@Override
+	public void visitLookupSwitchInsnWithProbes(final Label dflt,
+			final int[] keys, final Label[] labels, final IFrame frame) {
+		addSwitch(dflt, labels, true);
+	}
+
+	private void addSwitch(final Label dflt, final Label[] labels,
+			final boolean probes) {
+		addInstruction(false);
+		final int node = lastNode;
+		final Map<Label, Boolean> done = new HashMap<Label, Boolean>();
+		addSwitchTarget(node, dflt, probes, done);
+		for (final Label l : labels) {
+			addSwitchTarget(node, l, probes, done);
+		}
+		fallThrough = false;
+	}
+
+	private void addSwitchTarget(final int node, final Label label,
+			final boolean probes, final Map<Label, Boolean> done) {
+		if (done.put(label, Boolean.TRUE) != null) {
+			return;
+		}
+		final int probeId = probes ? LabelInfo.getProbeId(label)
+				: LabelInfo.NO_PROBE;
+		if (probeId == LabelInfo.NO_PROBE) {
+			addJump(node, label);
+		} else {
+			addJumpWithProbe(node, label, probeId);
+		}
+	}
+
+	/**
+	 * Checks whether the given instruction without operand, which is not a
+	 * method exit, might throw an exception.
+	 */
+	private static boolean mayThrow(final int opcode) {
+		switch (opcode) {
+		case Opcodes.IALOAD:
+		case Opcodes.LALOAD:
+		case Opcodes.FALOAD:
+		case Opcodes.DALOAD:
+		case Opcodes.AALOAD:
+		case Opcodes.BALOAD:
+		case Opcodes.CALOAD:
+		case Opcodes.SALOAD:
+		case Opcodes.IASTORE:
+		case Opcodes.LASTORE:
+		case Opcodes.FASTORE:
+		case Opcodes.DASTORE:
+		case Opcodes.AASTORE:
+		case Opcodes.BASTORE:
+		case Opcodes.CASTORE:
+		case Opcodes.SASTORE:
+		case Opcodes.IDIV:
+		case Opcodes.LDIV:
+		case Opcodes.IREM:
+		case Opcodes.LREM:
+		case Opcodes.ARRAYLENGTH:
+		case Opcodes.MONITORENTER:
+		case Opcodes.MONITOREXIT:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	@Override
+	public void visitEnd() {
+		for (final Object[] jump : jumps) {
+			addEdge(((Integer) jump[0]).intValue(),
+					LabelInfo.getNode((Label) jump[1]));
+		}
+		for (final Label[] block : tryCatchBlocks) {
+			final int start = LabelInfo.getNode(block[0]);
+			final int end = LabelInfo.getNode(block[1]);
+			final int handler = LabelInfo.getNode(block[2]);
+			// Errors of the virtual machine might occur at any instruction,
+			// so the handler is also reachable from a block without nodes
+			final int last = Math.min(Math.max(end, start + 1), nodeCount);
+			for (int node = start; node < last; node++) {
+				addEdge(node, handler);
+			}
+		}
+	}
+
+}
@@ -52,10 +52,19 @@ class ClassFieldProbeArrayStrategy implements IProbeArrayStrategy {
 
 	public int storeInstance(final MethodVisitor mv, final boolean clinit,
 			final int variable) {
+		loadInstance(mv, clinit);
+		mv.visitVarInsn(Opcodes.ASTORE, variable);
+		return 1;
+	}
+
+	public boolean canLoadInstance(final boolean clinit) {
+		return true;
+	}
+
+	public int loadInstance(final MethodVisitor mv, final boolean clinit) {
 		mv.visitMethodInsn(Opcodes.INVOKESTATIC, className,
 				InstrSupport.INITMETHOD_NAME, InstrSupport.INITMETHOD_DESC,
 				false);
-		mv.visitVarInsn(Opcodes.ASTORE, variable);
 		return 1;
 	}
 
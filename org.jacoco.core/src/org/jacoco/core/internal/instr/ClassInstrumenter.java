@@ -23,8 +23,20 @@ import org.objectweb.asm.MethodVisitor;
  */
 public class ClassInstrumenter extends ClassProbesVisitor {
 
+	private static final IProbeInserter NO_PROBES = new IProbeInserter() {
+		public void insertProbe(final int id) {
+			// nothing to do
+		}
+
+		public void setProbeCount(final int count) {
+			// nothing to do
+		}
+	};
+
 	private final IProbeArrayStrategy probeArrayStrategy;
 
+	private final boolean probes;
+
 	private String className;
 
 	/**
@@ -38,8 +50,28 @@ public class ClassInstrumenter extends ClassProbesVisitor {
 	 */
 	public ClassInstrumenter(final IProbeArrayStrategy probeArrayStrategy,
 			final ClassVisitor cv) {
+		this(probeArrayStrategy, true, cv);
+	}
+
+	/**
+	 * Emits a instrumented version of this class to the given class visitor.
+	 * Without probes the emitted class has the same members and probe array
+	 * initialization as the instrumented version but does not record any
+	 * execution data.
+	 *
+	 * @param probeArrayStrategy
+	 *            this strategy will be used to access the probe array
+	 * @param probes
+	 *            <code>false</code> if no probes should be inserted
+	 * @param cv
+	 *            next delegate in the visitor chain will receive the
+	 *            instrumented class
+	 */
+	public ClassInstrumenter(final IProbeArrayStrategy probeArrayStrategy,
+			final boolean probes, final ClassVisitor cv) {
 		super(cv);
 		this.probeArrayStrategy = probeArrayStrategy;
+		this.probes = probes;
 	}
 
 	@Override
@@ -71,10 +103,17 @@ public class ClassInstrumenter extends ClassProbesVisitor {
 			return null;
 		}
 		final MethodVisitor frameEliminator = new DuplicateFrameEliminator(mv);
+		if (probeArrayStrategy instanceof IndyProbeArrayStrategy) {
+			final IndyProbeInserter indyInserter = new IndyProbeInserter(
+					frameEliminator,
+					(IndyProbeArrayStrategy) probeArrayStrategy);
+			return new MethodInstrumenter(indyInserter,
+					probes ? indyInserter : NO_PROBES);
+		}
 		final ProbeInserter probeVariableInserter = new ProbeInserter(access,
 				name, desc, frameEliminator, probeArrayStrategy);
 		return new MethodInstrumenter(probeVariableInserter,
-				probeVariableInserter);
+				probes ? probeVariableInserter : NO_PROBES);
 	}
 
 	@Override
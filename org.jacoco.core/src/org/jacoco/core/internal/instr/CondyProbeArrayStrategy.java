@@ -50,6 +50,16 @@ public class CondyProbeArrayStrategy implements IProbeArrayStrategy {
 
 	public int storeInstance(final MethodVisitor mv, final boolean clinit,
 			final int variable) {
+		loadInstance(mv, clinit);
+		mv.visitVarInsn(Opcodes.ASTORE, variable);
+		return 1;
+	}
+
+	public boolean canLoadInstance(final boolean clinit) {
+		return true;
+	}
+
+	public int loadInstance(final MethodVisitor mv, final boolean clinit) {
 		final Handle bootstrapMethod = new Handle(Opcodes.H_INVOKESTATIC,
 				className, InstrSupport.INITMETHOD_NAME, B_DESC, isInterface);
 		// As a workaround for https://bugs.openjdk.java.net/browse/JDK-8216970
@@ -57,7 +67,6 @@ public class CondyProbeArrayStrategy implements IProbeArrayStrategy {
 		mv.visitLdcInsn(new ConstantDynamic(InstrSupport.DATAFIELD_NAME,
 				"Ljava/lang/Object;", bootstrapMethod));
 		mv.visitTypeInsn(Opcodes.CHECKCAST, "[Z");
-		mv.visitVarInsn(Opcodes.ASTORE, variable);
 		return 1;
 	}
 
@@ -35,6 +35,29 @@ public interface IProbeArrayStrategy {
 	 */
 	int storeInstance(MethodVisitor mv, boolean clinit, int variable);
 
+	/**
+	 * Checks whether this strategy can create code that puts the probe array
+	 * instance on the operand stack at any location of a method.
+	 *
+	 * @param clinit
+	 *            true in case of {@code <clinit>} method
+	 * @return <code>true</code> if
+	 *         {@link #loadInstance(MethodVisitor, boolean)} is supported
+	 */
+	boolean canLoadInstance(boolean clinit);
+
+	/**
+	 * Creates code that puts the probe array instance on the operand stack.
+	 * This allows to access the probe array without a local variable.
+	 *
+	 * @param mv
+	 *            visitor to create code
+	 * @param clinit
+	 *            true in case of {@code <clinit>} method
+	 * @return maximum stack size required by the generated code
+	 */
+	int loadInstance(MethodVisitor mv, boolean clinit);
+
 	/**
 	 * Adds additional class members required by this strategy. This method is
 	 * called after all original members of the class has been processed.
@@ -26,4 +26,15 @@ interface IProbeInserter {
 	 */
 	void insertProbe(int id);
 
+	/**
+	 * Declares the number of probes which will be inserted into the method.
+	 * Must be called before the code of the method is visited, if at all.
+	 * Methods with at most one probe can access the probe array without a local
+	 * variable.
+	 *
+	 * @param count
+	 *            number of probes which will be inserted
+	 */
+	void setProbeCount(int count);
+
 }
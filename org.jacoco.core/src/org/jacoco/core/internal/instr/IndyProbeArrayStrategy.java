@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.instr;
+
+import org.jacoco.core.runtime.IExecutionDataAccessorGenerator;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Experimental strategy for Java 11+ class files which inserts probes as
+ * <code>invokedynamic</code> instructions instead of stores into the probe
+ * array. Every probe is linked to its own
+ * <code>java.lang.invoke.MutableCallSite</code>. On its first execution the
+ * call site marks the probe as executed in the probe array and relinks itself
+ * to an empty target, which the JIT compiler can remove completely. The probe
+ * array is held in a constant like for {@link CondyProbeArrayStrategy}.
+ *
+ * As probes disable themselves they do not record executions again after the
+ * execution data has been reset.
+ */
+class IndyProbeArrayStrategy extends CondyProbeArrayStrategy {
+
+	/**
+	 * Descriptor of the bootstrap method of the probes.
+	 */
+	static final String PROBE_DESC = "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;I)Ljava/lang/invoke/CallSite;";
+
+	/**
+	 * Descriptor of the method called on the first execution of a probe.
+	 */
+	static final String HIT_DESC = "(Ljava/lang/invoke/MutableCallSite;[ZI)V";
+
+	private static final String CALLSITE = "java/lang/invoke/MutableCallSite";
+
+	private static final String METHODHANDLE = "java/lang/invoke/MethodHandle";
+
+	private static final String METHODHANDLES = "java/lang/invoke/MethodHandles";
+
+	private final String className;
+
+	private final boolean isInterface;
+
+	IndyProbeArrayStrategy(final String className, final boolean isInterface,
+			final long classId,
+			final IExecutionDataAccessorGenerator accessorGenerator) {
+		super(className, isInterface, classId, accessorGenerator);
+		this.className = className;
+		this.isInterface = isInterface;
+	}
+
+	/**
+	 * Emits the code for the probe with the given id.
+	 *
+	 * @param mv
+	 *            visitor to emit the code
+	 * @param id
+	 *            id of the probe
+	 */
+	void insertProbe(final MethodVisitor mv, final int id) {
+		mv.visitInvokeDynamicInsn("probe", "()V",
+				new Handle(Opcodes.H_INVOKESTATIC, className,
+						InstrSupport.PROBEMETHOD_NAME, PROBE_DESC, isInterface),
+				Integer.valueOf(id));
+	}
+
+	@Override
+	public void addMembers(final ClassVisitor cv, final int probeCount) {
+		super.addMembers(cv, probeCount);
+		createProbeMethod(cv);
+		createHitMethod(cv);
+	}
+
+	private void createProbeMethod(final ClassVisitor cv) {
+		final MethodVisitor mv = cv.visitMethod(InstrSupport.INITMETHOD_ACC,
+				InstrSupport.PROBEMETHOD_NAME, PROBE_DESC, null, null);
+		mv.visitCode();
+
+		// Local 4: new MutableCallSite(type)
+		mv.visitTypeInsn(Opcodes.NEW, CALLSITE);
+		mv.visitInsn(Opcodes.DUP);
+		mv.visitVarInsn(Opcodes.ALOAD, 2);
+		mv.visitMethodInsn(Opcodes.INVOKESPECIAL, CALLSITE, "<init>",
+				"(Ljava/lang/invoke/MethodType;)V", false);
+		mv.visitVarInsn(Opcodes.ASTORE, 4);
+
+		// site.setTarget(insertArguments($jacocoHit, 0, site, probes, id))
+		mv.visitVarInsn(Opcodes.ALOAD, 4);
+		mv.visitLdcInsn(new Handle(Opcodes.H_INVOKESTATIC, className,
+				InstrSupport.HITMETHOD_NAME, HIT_DESC, isInterface));
+		mv.visitInsn(Opcodes.ICONST_0);
+		mv.visitInsn(Opcodes.ICONST_3);
+		mv.visitTypeInsn(Opcodes.ANEWARRAY, "java/lang/Object");
+		mv.visitInsn(Opcodes.DUP);
+		mv.visitInsn(Opcodes.ICONST_0);
+		mv.visitVarInsn(Opcodes.ALOAD, 4);
+		mv.visitInsn(Opcodes.AASTORE);
+		mv.visitInsn(Opcodes.DUP);
+		mv.visitInsn(Opcodes.ICONST_1);
+		final int accessorStack = loadInstance(mv, false);
+		mv.visitInsn(Opcodes.AASTORE);
+		mv.visitInsn(Opcodes.DUP);
+		mv.visitInsn(Opcodes.ICONST_2);
+		mv.visitVarInsn(Opcodes.ILOAD, 3);
+		mv.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Integer", "valueOf",
+				"(I)Ljava/lang/Integer;", false);
+		mv.visitInsn(Opcodes.AASTORE);
+		mv.visitMethodInsn(Opcodes.INVOKESTATIC, METHODHANDLES,
+				"insertArguments", "(L" + METHODHANDLE
+						+ ";I[Ljava/lang/Object;)L" + METHODHANDLE + ";",
+				false);
+		mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, CALLSITE, "setTarget",
+				"(L" + METHODHANDLE + ";)V", false);
+
+		mv.visitVarInsn(Opcodes.ALOAD, 4);
+		mv.visitInsn(Opcodes.ARETURN);
+		mv.visitMaxs(6 + accessorStack, 5);
+		mv.visitEnd();
+	}
+
+	private void createHitMethod(final ClassVisitor cv) {
+		final MethodVisitor mv = cv.visitMethod(InstrSupport.INITMETHOD_ACC,
+				InstrSupport.HITMETHOD_NAME, HIT_DESC, null, null);
+		mv.visitCode();
+
+		// probes[id] = true
+		mv.visitVarInsn(Opcodes.ALOAD, 1);
+		mv.visitVarInsn(Opcodes.ILOAD, 2);
+		mv.visitInsn(Opcodes.ICONST_1);
+		mv.visitInsn(Opcodes.BASTORE);
+
+		// site.setTarget(MethodHandles.empty(site.type()))
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, CALLSITE, "type",
+				"()Ljava/lang/invoke/MethodType;", false);
+		mv.visitMethodInsn(Opcodes.INVOKESTATIC, METHODHANDLES, "empty",
+				"(Ljava/lang/invoke/MethodType;)L" + METHODHANDLE + ";", false);
+		mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, CALLSITE, "setTarget",
+				"(L" + METHODHANDLE + ";)V", false);
+
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(3, 3);
+		mv.visitEnd();
+	}
+
+}
@@ -0,0 +1,46 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.instr;
+
+import org.objectweb.asm.MethodVisitor;
+
+/**
+ * Internal utility to add probes as <code>invokedynamic</code> instructions
+ * into the control flow of a method. As such a probe neither needs the probe
+ * array nor changes the operand stack, local variables and stackmap frames stay
+ * untouched.
+ */
+class IndyProbeInserter extends MethodVisitor implements IProbeInserter {
+
+	private final IndyProbeArrayStrategy arrayStrategy;
+
+	/**
+	 * Creates a new {@link IndyProbeInserter}.
+	 *
+	 * @param mv
+	 *            the method visitor to which this adapter delegates calls
+	 * @param arrayStrategy
+	 *            strategy to create the code for the probes
+	 */
+	IndyProbeInserter(final MethodVisitor mv,
+			final IndyProbeArrayStrategy arrayStrategy) {
+		super(InstrSupport.ASM_API_VERSION, mv);
+		this.arrayStrategy = arrayStrategy;
+	}
+
+	public void setProbeCount(final int count) {
+		// nothing to do
+	}
+
+	public void insertProbe(final int id) {
+		arrayStrategy.insertProbe(mv, id);
+	}
+
+}
@@ -159,6 +159,20 @@ public final class InstrSupport {
 	 */
 	static final int CLINIT_ACC = Opcodes.ACC_SYNTHETIC | Opcodes.ACC_STATIC;
 
+	// === Probe Methods ===
+
+	/**
+	 * Name of the bootstrap method of probes inserted as
+	 * <code>invokedynamic</code> instructions.
+	 */
+	public static final String PROBEMETHOD_NAME = "$jacocoProbe";
+
+	/**
+	 * Name of the method which records the first execution of a probe inserted
+	 * as <code>invokedynamic</code> instruction.
+	 */
+	public static final String HITMETHOD_NAME = "$jacocoHit";
+
 	/**
 	 * Gets major version number from given bytes of class (unsigned two bytes
 	 * at offset 6).
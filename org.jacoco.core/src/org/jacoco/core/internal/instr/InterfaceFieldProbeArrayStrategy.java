@@ -75,14 +75,24 @@ class InterfaceFieldProbeArrayStrategy implements IProbeArrayStrategy {
 			seenClinit = true;
 			return Math.max(maxStack, 2);
 		} else {
-			mv.visitMethodInsn(Opcodes.INVOKESTATIC, className,
-					InstrSupport.INITMETHOD_NAME, InstrSupport.INITMETHOD_DESC,
-					true);
+			loadInstance(mv, clinit);
 			mv.visitVarInsn(Opcodes.ASTORE, variable);
 			return 1;
 		}
 	}
 
+	public boolean canLoadInstance(final boolean clinit) {
+		// The static initializer has to initialize the probe array field
+		return !clinit;
+	}
+
+	public int loadInstance(final MethodVisitor mv, final boolean clinit) {
+		mv.visitMethodInsn(Opcodes.INVOKESTATIC, className,
+				InstrSupport.INITMETHOD_NAME, InstrSupport.INITMETHOD_DESC,
+				true);
+		return 1;
+	}
+
 	public void addMembers(final ClassVisitor cv, final int probeCount) {
 		createDataField(cv);
 		createInitMethod(cv, probeCount);
@@ -47,6 +47,14 @@ class LocalProbeArrayStrategy implements IProbeArrayStrategy {
 		return maxStack;
 	}
 
+	public boolean canLoadInstance(final boolean clinit) {
+		return false;
+	}
+
+	public int loadInstance(final MethodVisitor mv, final boolean clinit) {
+		throw new UnsupportedOperationException();
+	}
+
 	public void addMembers(final ClassVisitor delegate, final int probeCount) {
 		// nothing to do
 	}
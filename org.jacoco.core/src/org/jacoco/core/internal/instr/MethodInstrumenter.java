@@ -12,6 +12,8 @@
  *******************************************************************************/
 package org.jacoco.core.internal.instr;
 
+import java.util.BitSet;
+
 import org.jacoco.core.internal.flow.IFrame;
 import org.jacoco.core.internal.flow.LabelInfo;
 import org.jacoco.core.internal.flow.MethodProbesVisitor;
@@ -27,6 +29,9 @@ class MethodInstrumenter extends MethodProbesVisitor {
 
 	private final IProbeInserter probeInserter;
 
+	/** Probes which are not inserted as they can be inferred. */
+	private final BitSet inferredProbes;
+
 	/**
 	 * Create a new instrumenter instance for the given method.
 	 *
@@ -39,25 +44,47 @@ class MethodInstrumenter extends MethodProbesVisitor {
 			final IProbeInserter probeInserter) {
 		super(mv);
 		this.probeInserter = probeInserter;
+		this.inferredProbes = new BitSet();
+	}
+
+	private boolean isInferred(final int probeId) {
+		return probeId != LabelInfo.NO_PROBE && inferredProbes.get(probeId);
 	}
 
 	// === IMethodProbesVisitor ===
 
+	@Override
+	public void visitInferredProbe(final int probeId,
+			final int[] successorIds) {
+		inferredProbes.set(probeId);
+	}
+
+	@Override
+	public void visitProbeCount(final int count) {
+		probeInserter.setProbeCount(count - inferredProbes.cardinality());
+	}
+
 	@Override
 	public void visitProbe(final int probeId) {
-		probeInserter.insertProbe(probeId);
+		if (!isInferred(probeId)) {
+			probeInserter.insertProbe(probeId);
+		}
 	}
 
 	@Override
 	public void visitInsnWithProbe(final int opcode, final int probeId) {
-		probeInserter.insertProbe(probeId);
+		if (!isInferred(probeId)) {
+			probeInserter.insertProbe(probeId);
+		}
 		mv.visitInsn(opcode);
 	}
 
 	@Override
 	public void visitJumpInsnWithProbe(final int opcode, final Label label,
 			final int probeId, final IFrame frame) {
-		if (opcode == Opcodes.GOTO) {
+		if (isInferred(probeId)) {
+			mv.visitJumpInsn(opcode, label);
+		} else if (opcode == Opcodes.GOTO) {
 			probeInserter.insertProbe(probeId);
 			mv.visitJumpInsn(Opcodes.GOTO, label);
 		} else {
@@ -146,7 +173,8 @@ class MethodInstrumenter extends MethodProbesVisitor {
 
 	private Label createIntermediate(final Label label) {
 		final Label intermediate;
-		if (LabelInfo.getProbeId(label) == LabelInfo.NO_PROBE) {
+		final int probeId = LabelInfo.getProbeId(label);
+		if (probeId == LabelInfo.NO_PROBE || isInferred(probeId)) {
 			intermediate = label;
 		} else {
 			if (LabelInfo.isDone(label)) {
@@ -163,7 +191,8 @@ class MethodInstrumenter extends MethodProbesVisitor {
 	private void insertIntermediateProbe(final Label label,
 			final IFrame frame) {
 		final int probeId = LabelInfo.getProbeId(label);
-		if (probeId != LabelInfo.NO_PROBE && !LabelInfo.isDone(label)) {
+		if (probeId != LabelInfo.NO_PROBE && !isInferred(probeId)
+				&& !LabelInfo.isDone(label)) {
 			mv.visitLabel(LabelInfo.getIntermediateLabel(label));
 			frame.accept(mv);
 			probeInserter.insertProbe(probeId);
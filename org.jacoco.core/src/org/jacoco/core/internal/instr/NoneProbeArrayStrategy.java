@@ -26,6 +26,14 @@ class NoneProbeArrayStrategy implements IProbeArrayStrategy {
 		throw new UnsupportedOperationException();
 	}
 
+	public boolean canLoadInstance(final boolean clinit) {
+		return false;
+	}
+
+	public int loadInstance(final MethodVisitor mv, final boolean clinit) {
+		throw new UnsupportedOperationException();
+	}
+
 	public void addMembers(final ClassVisitor delegate, final int probeCount) {
 		// nothing to do
 	}
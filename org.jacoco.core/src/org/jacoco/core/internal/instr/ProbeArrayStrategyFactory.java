@@ -42,6 +42,30 @@ public final class ProbeArrayStrategyFactory {
 	public static IProbeArrayStrategy createFor(final long classId,
 			final ClassReader reader,
 			final IExecutionDataAccessorGenerator accessorGenerator) {
+		return createFor(classId, reader, accessorGenerator, false);
+	}
+
+	/**
+	 * Creates a suitable strategy instance for the class described by the given
+	 * reader. Created instance must be used only to process a class or
+	 * interface for which it has been created and must be used only once.
+	 *
+	 * @param classId
+	 *            class identifier
+	 * @param reader
+	 *            reader to get information about the class
+	 * @param accessorGenerator
+	 *            accessor to the coverage runtime
+	 * @param indyProbes
+	 *            if <code>true</code> probes of Java 11+ class files are
+	 *            inserted as self-disabling <code>invokedynamic</code>
+	 *            instructions
+	 * @return strategy instance
+	 */
+	public static IProbeArrayStrategy createFor(final long classId,
+			final ClassReader reader,
+			final IExecutionDataAccessorGenerator accessorGenerator,
+			final boolean indyProbes) {
 
 		final String className = reader.getClassName();
 		final int version = InstrSupport.getMajorVersion(reader);
@@ -52,6 +76,10 @@ public final class ProbeArrayStrategyFactory {
 				return new NoneProbeArrayStrategy();
 			}
 			if (version >= Opcodes.V11 && counter.hasMethods()) {
+				if (indyProbes) {
+					return new IndyProbeArrayStrategy(className, true, classId,
+							accessorGenerator);
+				}
 				return new CondyProbeArrayStrategy(className, true, classId,
 						accessorGenerator);
 			}
@@ -64,6 +92,10 @@ public final class ProbeArrayStrategyFactory {
 			}
 		} else {
 			if (version >= Opcodes.V11) {
+				if (indyProbes) {
+					return new IndyProbeArrayStrategy(className, false, classId,
+							accessorGenerator);
+				}
 				return new CondyProbeArrayStrategy(className, false, classId,
 						accessorGenerator);
 			}
@@ -23,7 +23,10 @@ import org.objectweb.asm.TypePath;
  * Internal utility to add probes into the control flow of a method. The code
  * for a probe simply sets a certain slot of a boolean array to true. In
  * addition the probe array has to be retrieved at the beginning of the method
- * and stored in a local variable.
+ * and stored in a local variable. If the number of probes is declared in
+ * advance and does not exceed one, the probe array is retrieved at the probe
+ * itself if the strategy supports it. This keeps small methods like accessors
+ * small and does not alter their local variables and stackmap frames.
  */
 class ProbeInserter extends MethodVisitor implements IProbeInserter {
 
@@ -41,6 +44,12 @@ class ProbeInserter extends MethodVisitor implements IProbeInserter {
 	/** Maximum stack usage of the code to access the probe array. */
 	private int accessorStackSize;
 
+	/**
+	 * <code>true</code> if the probe array is retrieved at the probe instead of
+	 * a local variable.
+	 */
+	private boolean inline;
+
 	/**
 	 * Creates a new {@link ProbeInserter}.
 	 *
@@ -68,12 +77,20 @@ class ProbeInserter extends MethodVisitor implements IProbeInserter {
 		variable = pos;
 	}
 
+	public void setProbeCount(final int count) {
+		inline = count <= 1 && arrayStrategy.canLoadInstance(clinit);
+	}
+
 	public void insertProbe(final int id) {
 
 		// For a probe we set the corresponding position in the boolean[] array
 		// to true.
 
-		mv.visitVarInsn(Opcodes.ALOAD, variable);
+		if (inline) {
+			accessorStackSize = arrayStrategy.loadInstance(mv, clinit);
+		} else {
+			mv.visitVarInsn(Opcodes.ALOAD, variable);
+		}
 
 		// Stack[0]: [Z
 
@@ -93,7 +110,10 @@ class ProbeInserter extends MethodVisitor implements IProbeInserter {
 
 	@Override
 	public void visitCode() {
-		accessorStackSize = arrayStrategy.storeInstance(mv, clinit, variable);
+		if (!inline) {
+			accessorStackSize = arrayStrategy.storeInstance(mv, clinit,
+					variable);
+		}
 		mv.visitCode();
 	}
 
@@ -128,6 +148,12 @@ class ProbeInserter extends MethodVisitor implements IProbeInserter {
 
 	@Override
 	public void visitMaxs(final int maxStack, final int maxLocals) {
+		if (inline) {
+			// Probe index and value are pushed on top of the probe array
+			mv.visitMaxs(maxStack + Math.max(3, accessorStackSize + 2),
+					maxLocals);
+			return;
+		}
 		// Max stack size of the probe code is 3 which can add to the
 		// original stack size depending on the probe locations. The accessor
 		// stack size is an absolute maximum, as the accessor code is inserted
@@ -137,7 +163,7 @@ class ProbeInserter extends MethodVisitor implements IProbeInserter {
 	}
 
 	private int map(final int var) {
-		if (var < variable) {
+		if (inline || var < variable) {
 			return var;
 		} else {
 			return var + 1;
@@ -153,6 +179,11 @@ class ProbeInserter extends MethodVisitor implements IProbeInserter {
 					"ClassReader.accept() should be called with EXPAND_FRAMES flag");
 		}
 
+		if (inline) {
+			mv.visitFrame(type, nLocal, local, nStack, stack);
+			return;
+		}
+
 		final Object[] newLocal = new Object[Math.max(nLocal, variable) + 1];
 		int idx = 0; // Arrays index for existing locals
 		int newIdx = 0; // Array index for new locals
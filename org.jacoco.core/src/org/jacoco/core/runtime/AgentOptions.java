@@ -110,7 +110,9 @@ public final class AgentOptions {
 	 *
 	 * @see OutputMode#file
 	 * @see OutputMode#tcpserver
+	 * @see OutputMode#tcpnioserver
 	 * @see OutputMode#tcpclient
+	 * @see OutputMode#mmap
 	 * @see OutputMode#none
 	 */
 	public static final String OUTPUT = "output";
@@ -137,6 +139,14 @@ public final class AgentOptions {
 		 */
 		tcpserver,
 
+		/**
+		 * Value for the {@link AgentOptions#OUTPUT} parameter: Like
+		 * {@link #tcpserver}, but any number of connections is served
+		 * concurrently by a single non-blocking thread. Dump requests which
+		 * arrive at the same time are answered with the same snapshot.
+		 */
+		tcpnioserver,
+
 		/**
 		 * Value for the {@link AgentOptions#OUTPUT} parameter: At startup the
 		 * agent connects to a TCP port specified by the
@@ -144,6 +154,13 @@ public final class AgentOptions {
 		 */
 		tcpclient,
 
+		/**
+		 * Value for the {@link AgentOptions#OUTPUT} parameter: The probes of
+		 * all classes are continuously mirrored into the memory mapped file
+		 * specified by {@link AgentOptions#DESTFILE}.
+		 */
+		mmap,
+
 		/**
 		 * Value for the {@link AgentOptions#OUTPUT} parameter: Do not produce
 		 * any output.
@@ -189,10 +206,70 @@ public final class AgentOptions {
 	 */
 	public static final String JMX = "jmx";
 
+	/**
+	 * Specifies whether dumps after the first one should only contain the
+	 * probes executed since the previous dump. Consumers have to merge all
+	 * dumps they receive, for file output this requires {@link #APPEND}.
+	 * Default is <code>false</code>.
+	 */
+	public static final String INCREMENTAL = "incremental";
+
+	/**
+	 * Specifies a directory where the agent caches instrumented class files
+	 * across JVM runs. The cache can be shared by concurrent JVMs. The location
+	 * is specified as a relative path to the working directory. Default is
+	 * <code>null</code> (no cache).
+	 */
+	public static final String CLASSCACHEDIR = "classcachedir";
+
+	/**
+	 * Specifies the maximum size of the class cache directory in megabytes.
+	 * Least recently used entries are removed if the cache grows beyond this
+	 * size. Default is <code>256</code>.
+	 */
+	public static final String CLASSCACHESIZE = "classcachesize";
+
+	/**
+	 * Default value for the "classcachesize" agent option.
+	 */
+	public static final int DEFAULT_CLASSCACHESIZE = 256;
+
+	/**
+	 * Interval in seconds the agent checks for classes where all probes have
+	 * been executed. Such classes are retransformed to a version without probes
+	 * to avoid further overhead. A value of 0 disables this feature.
+	 */
+	public static final String UNINSTRUMENTINTERVAL = "uninstrumentinterval";
+
+	/**
+	 * Specifies whether probes which can be inferred from other probes are
+	 * omitted. As the omitted probes are never set, classes are not
+	 * uninstrumented with this option. Default is <code>false</code>.
+	 */
+	public static final String MINIMIZEPROBES = "minimizeprobes";
+
+	/**
+	 * Specifies whether methods with at most one probe are instrumented in a
+	 * compact way which accesses the probe array without a local variable. This
+	 * keeps small methods below the inlining thresholds of the JIT compiler.
+	 * Default is <code>false</code>.
+	 */
+	public static final String COMPACT = "compact";
+
+	/**
+	 * Specifies whether probes of Java 11+ class files are inserted as
+	 * <code>invokedynamic</code> instructions which disable themselves after
+	 * their first execution. Such probes do not record executions again after a
+	 * reset. This option is experimental. Default is <code>false</code>.
+	 */
+	public static final String INDYPROBES = "indyprobes";
+
 	private static final Collection<String> VALID_OPTIONS = Arrays.asList(
 			DESTFILE, APPEND, INCLUDES, EXCLUDES, EXCLCLASSLOADER,
 			INCLBOOTSTRAPCLASSES, INCLNOLOCATIONCLASSES, SESSIONID, DUMPONEXIT,
-			OUTPUT, ADDRESS, PORT, CLASSDUMPDIR, JMX);
+			OUTPUT, ADDRESS, PORT, CLASSDUMPDIR, JMX, INCREMENTAL,
+			CLASSCACHEDIR, CLASSCACHESIZE, UNINSTRUMENTINTERVAL, MINIMIZEPROBES,
+			COMPACT, INDYPROBES);
 
 	private final Map<String, String> options;
 
@@ -250,9 +327,25 @@ public final class AgentOptions {
 
 	private void validateAll() {
 		validatePort(getPort());
+		validateClassCacheSize(getClassCacheSize());
+		validateUninstrumentInterval(getUninstrumentInterval());
 		getOutput();
 	}
 
+	private void validateClassCacheSize(final int size) {
+		if (size <= 0) {
+			throw new IllegalArgumentException(
+					"classcachesize must be positive");
+		}
+	}
+
+	private void validateUninstrumentInterval(final int interval) {
+		if (interval < 0) {
+			throw new IllegalArgumentException(
+					"uninstrumentinterval must be positive");
+		}
+	}
+
 	private void validatePort(final int port) {
 		if (port < 0) {
 			throw new IllegalArgumentException("port must be positive");
@@ -557,6 +650,147 @@ public final class AgentOptions {
 		setOption(JMX, jmx);
 	}
 
+	/**
+	 * Returns the directory where instrumented class files are cached.
+	 *
+	 * @return cache location or <code>null</code> (no cache)
+	 */
+	public String getClassCacheDir() {
+		return getOption(CLASSCACHEDIR, null);
+	}
+
+	/**
+	 * Sets the directory where instrumented class files should be cached.
+	 *
+	 * @param location
+	 *            cache location or <code>null</code> (no cache)
+	 */
+	public void setClassCacheDir(final String location) {
+		setOption(CLASSCACHEDIR, location);
+	}
+
+	/**
+	 * Returns the maximum size of the class cache directory.
+	 *
+	 * @return maximum size in megabytes
+	 */
+	public int getClassCacheSize() {
+		return getOption(CLASSCACHESIZE, DEFAULT_CLASSCACHESIZE);
+	}
+
+	/**
+	 * Sets the maximum size of the class cache directory.
+	 *
+	 * @param size
+	 *            maximum size in megabytes
+	 */
+	public void setClassCacheSize(final int size) {
+		validateClassCacheSize(size);
+		setOption(CLASSCACHESIZE, size);
+	}
+
+	/**
+	 * Returns the interval fully covered classes are uninstrumented.
+	 *
+	 * @return interval in seconds or 0 if classes are never uninstrumented
+	 */
+	public int getUninstrumentInterval() {
+		return getOption(UNINSTRUMENTINTERVAL, 0);
+	}
+
+	/**
+	 * Sets the interval fully covered classes should be uninstrumented.
+	 *
+	 * @param interval
+	 *            interval in seconds or 0 if classes should never be
+	 *            uninstrumented
+	 */
+	public void setUninstrumentInterval(final int interval) {
+		validateUninstrumentInterval(interval);
+		setOption(UNINSTRUMENTINTERVAL, interval);
+	}
+
+	/**
+	 * Returns whether probes which can be inferred from other probes are
+	 * omitted.
+	 *
+	 * @return <code>true</code>, when probe minimization is enabled
+	 */
+	public boolean getMinimizeProbes() {
+		return getOption(MINIMIZEPROBES, false);
+	}
+
+	/**
+	 * Sets whether probes which can be inferred from other probes should be
+	 * omitted.
+	 *
+	 * @param minimize
+	 *            <code>true</code> if probe minimization should be enabled
+	 */
+	public void setMinimizeProbes(final boolean minimize) {
+		setOption(MINIMIZEPROBES, minimize);
+	}
+
+	/**
+	 * Returns whether small methods are instrumented in a compact way.
+	 *
+	 * @return <code>true</code>, when compact instrumentation is enabled
+	 */
+	public boolean getCompact() {
+		return getOption(COMPACT, false);
+	}
+
+	/**
+	 * Sets whether small methods should be instrumented in a compact way.
+	 *
+	 * @param compact
+	 *            <code>true</code> if compact instrumentation should be enabled
+	 */
+	public void setCompact(final boolean compact) {
+		setOption(COMPACT, compact);
+	}
+
+	/**
+	 * Returns whether probes are inserted as self-disabling
+	 * <code>invokedynamic</code> instructions.
+	 *
+	 * @return <code>true</code>, when invokedynamic probes are enabled
+	 */
+	public boolean getIndyProbes() {
+		return getOption(INDYPROBES, false);
+	}
+
+	/**
+	 * Sets whether probes should be inserted as self-disabling
+	 * <code>invokedynamic</code> instructions.
+	 *
+	 * @param indyProbes
+	 *            <code>true</code> if invokedynamic probes should be enabled
+	 */
+	public void setIndyProbes(final boolean indyProbes) {
+		setOption(INDYPROBES, indyProbes);
+	}
+
+	/**
+	 * Returns whether dumps only contain the changes since the previous dump.
+	 *
+	 * @return <code>true</code>, when incremental dumps are enabled
+	 */
+	public boolean getIncremental() {
+		return getOption(INCREMENTAL, false);
+	}
+
+	/**
+	 * Sets whether dumps should only contain the changes since the previous
+	 * dump.
+	 *
+	 * @param incremental
+	 *            <code>true</code> if incremental dumps should be enabled
+	 */
+	public void setIncremental(final boolean incremental) {
+		setOption(INCREMENTAL, incremental);
+	}
+
 	private void setOption(final String key, final int value) {
 		setOption(key, Integer.toString(value));
 	}
@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.runtime;
+
+import java.util.List;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.IExecutionDataVisitor;
+import org.jacoco.core.internal.data.LongHash;
+import org.jacoco.core.internal.data.LongKeyTable;
+
+/**
+ * Thread safe table of {@link ExecutionData} objects keyed by their primitive
+ * class id. The table is split into independent stripes, each of them is a
+ * {@link LongKeyTable}. Existing entries are found without any locking, only
+ * the creation of a new entry locks the affected stripe. Therefore classes
+ * initialized concurrently by different threads rarely contend.
+ */
+final class ExecutionDataTable {
+
+	private static final int STRIPE_BITS = 6;
+
+	private static final int STRIPES = 1 << STRIPE_BITS;
+
+	private final Stripe[] stripes;
+
+	ExecutionDataTable() {
+		stripes = new Stripe[STRIPES];
+		for (int i = 0; i < STRIPES; i++) {
+			stripes[i] = new Stripe();
+		}
+	}
+
+	/**
+	 * Returns the execution data for the given class id. If there is no entry
+	 * for the id yet a new one is created.
+	 *
+	 * @param id
+	 *            class identifier
+	 * @param name
+	 *            VM name of the class
+	 * @param probecount
+	 *            probe data length
+	 * @return execution data
+	 * @throws IllegalStateException
+	 *             if the existing entry has a different name or probe count
+	 */
+	ExecutionData get(final long id, final String name, final int probecount) {
+		return stripes[LongHash.hash(id) & (STRIPES - 1)].get(id, name,
+				probecount);
+	}
+
+	/**
+	 * Adds all entries of this table to the given list.
+	 *
+	 * @param contents
+	 *            list to add entries to
+	 */
+	void getContents(final List<ExecutionData> contents) {
+		for (final Stripe stripe : stripes) {
+			final int size = stripe.size();
+			for (int i = 0; i < size; i++) {
+				contents.add(stripe.valueAt(i));
+			}
+		}
+	}
+
+	/**
+	 * Writes all entries of this table to the given visitor. No list or copy of
+	 * the entries is created.
+	 *
+	 * @param visitor
+	 *            visitor to write entries to
+	 */
+	void accept(final IExecutionDataVisitor visitor) {
+		for (final Stripe stripe : stripes) {
+			final int size = stripe.size();
+			for (int i = 0; i < size; i++) {
+				visitor.visitClassExecution(stripe.valueAt(i));
+			}
+		}
+	}
+
+	/**
+	 * Resets the probes of all entries. The entries itself are not removed.
+	 */
+	void reset() {
+		for (final Stripe stripe : stripes) {
+			final int size = stripe.size();
+			for (int i = 0; i < size; i++) {
+				stripe.valueAt(i).reset();
+			}
+		}
+	}
+
+	/**
+	 * One stripe of the table. As the fields of {@link ExecutionData} are final
+	 * lock-free readers see either <code>null</code> or a completely
+	 * initialized entry.
+	 */
+	private static final class Stripe extends LongKeyTable<ExecutionData> {
+
+		@Override
+		protected long getKey(final ExecutionData entry) {
+			return entry.getId();
+		}
+
+		@Override
+		protected int hash(final long key) {
+			// The lower bits already select the stripe
+			return LongHash.hash(key) >>> STRIPE_BITS;
+		}
+
+		ExecutionData get(final long id, final String name,
+				final int probecount) {
+			ExecutionData entry = get(id);
+			if (entry == null) {
+				synchronized (this) {
+					entry = get(id);
+					if (entry == null) {
+						entry = new ExecutionData(id, name, probecount);
+						add(entry);
+						return entry;
+					}
+				}
+			}
+			entry.assertCompatibility(id, name, probecount);
+			return entry;
+		}
+
+	}
+
+}
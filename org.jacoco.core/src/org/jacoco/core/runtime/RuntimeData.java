@@ -12,8 +12,10 @@
  *******************************************************************************/
 package org.jacoco.core.runtime;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.jacoco.core.data.ExecutionData;
-import org.jacoco.core.data.ExecutionDataStore;
 import org.jacoco.core.data.IExecutionDataVisitor;
 import org.jacoco.core.data.ISessionInfoVisitor;
 import org.jacoco.core.data.SessionInfo;
@@ -27,8 +29,11 @@ import org.objectweb.asm.Opcodes;
  */
 public class RuntimeData {
 
-	/** store for execution data */
-	protected final ExecutionDataStore store;
+	/** table for execution data */
+	private final ExecutionDataTable table;
+
+	/** lock for collecting and resetting execution data */
+	private final Object lock;
 
 	private long startTimeStamp;
 
@@ -38,7 +43,8 @@ public class RuntimeData {
 	 * Creates a new runtime.
 	 */
 	public RuntimeData() {
-		store = new ExecutionDataStore();
+		table = new ExecutionDataTable();
+		lock = new Object();
 		sessionId = "<none>";
 		startTimeStamp = System.currentTimeMillis();
 	}
@@ -69,7 +75,10 @@ public class RuntimeData {
 
 	/**
 	 * Collects the current execution data and writes it to the given
-	 * {@link IExecutionDataVisitor} object.
+	 * {@link IExecutionDataVisitor} object. The visitors receive a snapshot of
+	 * the probes which is taken under a short lock, the visitors itself are
+	 * called without holding the lock. Therefore slow visitors like network
+	 * connections do not block classes which are initialized concurrently.
 	 *
 	 * @param executionDataVisitor
 	 *            handler to write coverage data to
@@ -81,23 +90,75 @@ public class RuntimeData {
 	 */
 	public final void collect(final IExecutionDataVisitor executionDataVisitor,
 			final ISessionInfoVisitor sessionInfoVisitor, final boolean reset) {
-		synchronized (store) {
-			final SessionInfo info = new SessionInfo(sessionId, startTimeStamp,
+		final SessionInfo info;
+		final List<ExecutionData> snapshot;
+		synchronized (lock) {
+			info = new SessionInfo(sessionId, startTimeStamp,
 					System.currentTimeMillis());
-			sessionInfoVisitor.visitSessionInfo(info);
-			store.accept(executionDataVisitor);
+			snapshot = snapshot();
+			if (reset) {
+				reset();
+			}
+		}
+		sessionInfoVisitor.visitSessionInfo(info);
+		for (final ExecutionData data : snapshot) {
+			executionDataVisitor.visitClassExecution(data);
+		}
+	}
+
+	/**
+	 * Writes the current execution data to the given
+	 * {@link IExecutionDataVisitor} object without creating a snapshot. Other
+	 * than
+	 * {@link #collect(IExecutionDataVisitor, ISessionInfoVisitor, boolean)} the
+	 * visitors are called while holding the lock and receive the execution data
+	 * objects of this runtime, whose probes may be updated concurrently.
+	 * Therefore no objects are allocated per class, but the visitors must not
+	 * keep references to the execution data and should be fast, e.g. copy the
+	 * probes to a local file.
+	 *
+	 * @param executionDataVisitor
+	 *            handler to write coverage data to
+	 * @param sessionInfoVisitor
+	 *            handler to write session information to
+	 * @param reset
+	 *            if <code>true</code> the current coverage information is
+	 *            cleared after it has been visited
+	 */
+	public final void collectInPlace(
+			final IExecutionDataVisitor executionDataVisitor,
+			final ISessionInfoVisitor sessionInfoVisitor, final boolean reset) {
+		synchronized (lock) {
+			sessionInfoVisitor.visitSessionInfo(new SessionInfo(sessionId,
+					startTimeStamp, System.currentTimeMillis()));
+			table.accept(executionDataVisitor);
 			if (reset) {
 				reset();
 			}
 		}
 	}
 
+	private List<ExecutionData> snapshot() {
+		final List<ExecutionData> contents = new ArrayList<ExecutionData>();
+		table.getContents(contents);
+		final List<ExecutionData> copy = new ArrayList<ExecutionData>(
+				contents.size());
+		for (final ExecutionData data : contents) {
+			final boolean[] probes = data.getProbes();
+			final boolean[] probesCopy = new boolean[probes.length];
+			System.arraycopy(probes, 0, probesCopy, 0, probes.length);
+			copy.add(new ExecutionData(data.getId(), data.getName(),
+					probesCopy));
+		}
+		return copy;
+	}
+
 	/**
 	 * Resets all coverage information.
 	 */
 	public final void reset() {
-		synchronized (store) {
-			store.reset();
+		synchronized (lock) {
+			table.reset();
 			startTimeStamp = System.currentTimeMillis();
 		}
 	}
@@ -105,7 +166,9 @@ public class RuntimeData {
 	/**
 	 * Returns the coverage data for the class with the given identifier. If
 	 * there is no data available under the given id a new entry is created.
-	 * This is a synchronized access to the underlying store.
+	 * Existing entries are returned without locking, creating a new entry only
+	 * blocks threads which create entries in the same segment of the underlying
+	 * table.
 	 *
 	 * @param id
 	 *            class identifier
@@ -117,9 +180,26 @@ public class RuntimeData {
 	 */
 	public ExecutionData getExecutionData(final Long id, final String name,
 			final int probecount) {
-		synchronized (store) {
-			return store.get(id, name, probecount);
-		}
+		return table.get(id.longValue(), name, probecount);
+	}
+
+	/**
+	 * Returns the probe array for the class with the given identifier. If there
+	 * is no data available under the given id a new entry is created. Other
+	 * than {@link #getExecutionData(Long, String, int)} this method does not
+	 * require a boxed class identifier.
+	 *
+	 * @param id
+	 *            class identifier
+	 * @param name
+	 *            VM name of the class
+	 * @param probecount
+	 *            probe data length
+	 * @return probe array
+	 */
+	public boolean[] getProbes(final long id, final String name,
+			final int probecount) {
+		return table.get(id, name, probecount).getProbes();
 	}
 
 	/**
@@ -143,10 +223,10 @@ public class RuntimeData {
 	 *            parameter array of length 3
 	 */
 	public void getProbes(final Object[] args) {
-		final Long classid = (Long) args[0];
+		final long classid = ((Long) args[0]).longValue();
 		final String name = (String) args[1];
 		final int probecount = ((Integer) args[2]).intValue();
-		args[0] = getExecutionData(classid, name, probecount).getProbes();
+		args[0] = getProbes(classid, name, probecount);
 	}
 
 	/**
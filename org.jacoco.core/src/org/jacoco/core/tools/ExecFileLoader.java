@@ -20,10 +20,15 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Collection;
 
+import org.jacoco.core.data.ExecutionData;
 import org.jacoco.core.data.ExecutionDataReader;
 import org.jacoco.core.data.ExecutionDataStore;
 import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.IExecutionDataVisitor;
+import org.jacoco.core.data.IndexedExecutionDataReader;
+import org.jacoco.core.data.IndexedExecutionDataWriter;
 import org.jacoco.core.data.SessionInfoStore;
 
 /**
@@ -77,6 +82,53 @@ public class ExecFileLoader {
 		}
 	}
 
+	/**
+	 * Reads all session infos and the execution data of the classes whose VM
+	 * names start with one of the given prefixes from the given file. Files
+	 * written with {@link IndexedExecutionDataWriter} are read selectively,
+	 * i.e. only the blocks which contain the requested classes are inflated.
+	 * Other files are read completely but only the requested classes are added.
+	 *
+	 * @param file
+	 *            file to read data from
+	 * @param namePrefixes
+	 *            prefixes of the VM names of the classes to read
+	 * @throws IOException
+	 *             in case of problems while reading from the file
+	 */
+	public void load(final File file, final Collection<String> namePrefixes)
+			throws IOException {
+		final String[] prefixes = namePrefixes
+				.toArray(new String[namePrefixes.size()]);
+		if (IndexedExecutionDataReader.isIndexed(file)) {
+			final IndexedExecutionDataReader reader = new IndexedExecutionDataReader(
+					file);
+			reader.setExecutionDataVisitor(executionData);
+			reader.setSessionInfoVisitor(sessionInfos);
+			reader.readNamePrefixes(prefixes);
+			return;
+		}
+		final InputStream stream = new FileInputStream(file);
+		try {
+			final ExecutionDataReader reader = new ExecutionDataReader(
+					new BufferedInputStream(stream));
+			reader.setExecutionDataVisitor(new IExecutionDataVisitor() {
+				public void visitClassExecution(final ExecutionData data) {
+					for (final String prefix : prefixes) {
+						if (data.getName().startsWith(prefix)) {
+							executionData.visitClassExecution(data);
+							return;
+						}
+					}
+				}
+			});
+			reader.setSessionInfoVisitor(sessionInfos);
+			reader.read();
+		} finally {
+			stream.close();
+		}
+	}
+
 	/**
 	 * Saves the current content into the given output stream.
 	 *
@@ -105,6 +157,41 @@ public class ExecFileLoader {
 	 *             in case of problems while writing to the stream
 	 */
 	public void save(final File file, final boolean append) throws IOException {
+		final OutputStream bufferedStream = openLocked(file, append);
+		try {
+			save(bufferedStream);
+		} finally {
+			bufferedStream.close();
+		}
+	}
+
+	/**
+	 * Saves the current content into the given file in the indexed and block
+	 * compressed format of {@link IndexedExecutionDataWriter}. Such files can't
+	 * be appended, an existing file is overwritten. Parent directories are
+	 * created as needed. Also a files system lock is acquired to avoid
+	 * concurrent write access.
+	 *
+	 * @param file
+	 *            file to save content to
+	 * @throws IOException
+	 *             in case of problems while writing to the stream
+	 */
+	public void saveIndexed(final File file) throws IOException {
+		final OutputStream bufferedStream = openLocked(file, false);
+		try {
+			final IndexedExecutionDataWriter dataWriter = new IndexedExecutionDataWriter(
+					bufferedStream);
+			sessionInfos.accept(dataWriter);
+			executionData.accept(dataWriter);
+			dataWriter.finish();
+		} finally {
+			bufferedStream.close();
+		}
+	}
+
+	static OutputStream openLocked(final File file, final boolean append)
+			throws IOException {
 		final File folder = file.getParentFile();
 		if (folder != null) {
 			folder.mkdirs();
@@ -112,13 +199,7 @@ public class ExecFileLoader {
 		final FileOutputStream fileStream = new FileOutputStream(file, append);
 		// Avoid concurrent writes from other processes:
 		fileStream.getChannel().lock();
-		final OutputStream bufferedStream = new BufferedOutputStream(
-				fileStream);
-		try {
-			save(bufferedStream);
-		} finally {
-			bufferedStream.close();
-		}
+		return new BufferedOutputStream(fileStream);
 	}
 
 	/**
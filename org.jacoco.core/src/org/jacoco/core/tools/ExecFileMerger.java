@@ -0,0 +1,825 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2020 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ *******************************************************************************/
+package org.jacoco.core.tools;
+
+import static java.lang.String.format;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataReader;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.IExecutionDataVisitor;
+import org.jacoco.core.data.ISessionInfoVisitor;
+import org.jacoco.core.data.IndexedExecutionDataWriter;
+import org.jacoco.core.data.PackedExecutionData;
+import org.jacoco.core.data.PackedExecutionDataStore;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.data.SessionInfoStore;
+import org.jacoco.core.internal.data.CompactDataInput;
+import org.jacoco.core.internal.data.CompactDataOutput;
+
+/**
+ * Merges many execution data inputs into a single file. Other than
+ * {@link ExecFileLoader} the inputs are read concurrently by several threads,
+ * each of them collects the probes of its inputs packed in a separate store.
+ * The partial results are combined with a k-way merge which retains the order
+ * in which classes appear in the inputs. Therefore the merged content is
+ * identical to loading all inputs in the given order with a
+ * {@link ExecFileLoader} and saving it afterwards.
+ * <p>
+ * If the probes held by a thread exceed its share of the memory limit they are
+ * written to a temporary run file sorted by class id. When runs have been
+ * written all partial results are merged from their runs by class id and sorted
+ * back into their original order with additional runs, so inputs larger than
+ * the available memory can be merged. Temporary files are deleted with
+ * {@link #dispose()}.
+ */
+public class ExecFileMerger {
+
+	/**
+	 * Source of execution data to merge.
+	 */
+	public interface Input {
+
+		/**
+		 * Opens a new stream with the execution data of this input.
+		 *
+		 * @return stream to read execution data from
+		 * @throws IOException
+		 *             if the stream can't be opened
+		 */
+		InputStream open() throws IOException;
+
+	}
+
+	private final List<Input> inputs = new ArrayList<Input>();
+
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	private long memoryLimit = Runtime.getRuntime().maxMemory() / 4;
+
+	private File tempDirectory = null;
+
+	private boolean adaptiveEncoding = false;
+
+	private final List<File> tempFiles = new ArrayList<File>();
+
+	private SessionInfoStore sessionInfos;
+
+	private PackedExecutionDataStore executionData;
+
+	private List<File> orderedRuns;
+
+	private int classCount;
+
+	/**
+	 * Sets the maximum number of threads which read inputs concurrently. The
+	 * default is the number of available processors.
+	 *
+	 * @param threads
+	 *            number of threads, at least 1
+	 */
+	public void setThreads(final int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException(format(
+					"Invalid thread count %s.", Integer.valueOf(threads)));
+		}
+		this.threads = threads;
+	}
+
+	/**
+	 * Sets the approximate number of bytes all threads together may use for
+	 * probe data before partial results are written to temporary files. The
+	 * default is a quarter of the maximum heap size.
+	 *
+	 * @param bytes
+	 *            memory limit in bytes
+	 */
+	public void setMemoryLimit(final long bytes) {
+		this.memoryLimit = bytes;
+	}
+
+	/**
+	 * Sets the directory for temporary files. By default the temporary
+	 * directory of the system is used.
+	 *
+	 * @param directory
+	 *            directory for temporary files or <code>null</code>
+	 */
+	public void setTempDirectory(final File directory) {
+		this.tempDirectory = directory;
+	}
+
+	/**
+	 * Sets whether the merged content is saved with the adaptive probe
+	 * encoding. The default is <code>false</code> as older versions can't read
+	 * such files.
+	 *
+	 * @param adaptiveEncoding
+	 *            <code>true</code> to use the adaptive encoding
+	 * @see ExecutionDataWriter#setAdaptiveEncoding(boolean)
+	 */
+	public void setAdaptiveEncoding(final boolean adaptiveEncoding) {
+		this.adaptiveEncoding = adaptiveEncoding;
+	}
+
+	/**
+	 * Adds the given file to the inputs to merge.
+	 *
+	 * @param file
+	 *            execution data file
+	 */
+	public void add(final File file) {
+		inputs.add(new Input() {
+			public InputStream open() throws IOException {
+				return new FileInputStream(file);
+			}
+
+			@Override
+			public String toString() {
+				return file.getAbsolutePath();
+			}
+		});
+	}
+
+	/**
+	 * Adds the given input to the inputs to merge. The string representation of
+	 * the input is used in error messages.
+	 *
+	 * @param input
+	 *            execution data input
+	 */
+	public void add(final Input input) {
+		inputs.add(input);
+	}
+
+	/**
+	 * Reads all inputs and merges their content. Afterwards the merged content
+	 * can be retrieved with
+	 * {@link #accept(ISessionInfoVisitor, IExecutionDataVisitor)} or one of the
+	 * save methods.
+	 *
+	 * @throws IOException
+	 *             if an input can't be read, the message contains the failed
+	 *             input, or if a temporary file can't be written
+	 * @throws IllegalStateException
+	 *             if the execution data of the inputs is not compatible
+	 */
+	public void merge() throws IOException {
+		final List<List<SessionInfo>> sessions = new ArrayList<List<SessionInfo>>();
+		for (int i = 0; i < inputs.size(); i++) {
+			sessions.add(new ArrayList<SessionInfo>());
+		}
+		final List<Partial> partials = read(sessions);
+
+		sessionInfos = new SessionInfoStore();
+		for (final List<SessionInfo> list : sessions) {
+			for (final SessionInfo info : list) {
+				sessionInfos.visitSessionInfo(info);
+			}
+		}
+
+		boolean spilled = false;
+		for (final Partial partial : partials) {
+			spilled |= !partial.runs.isEmpty();
+		}
+		if (spilled) {
+			mergeRuns(partials);
+		} else {
+			mergeInMemory(partials);
+		}
+	}
+
+	private List<Partial> read(final List<List<SessionInfo>> sessions)
+			throws IOException {
+		final int workers = Math.max(1, Math.min(threads, inputs.size()));
+		final long limit = Math.max(1, memoryLimit / workers);
+		final AtomicInteger next = new AtomicInteger();
+		final ExecutorService executor = Executors.newFixedThreadPool(workers);
+		try {
+			final List<Future<Partial>> futures = new ArrayList<Future<Partial>>();
+			for (int w = 0; w < workers; w++) {
+				futures.add(executor.submit(new Callable<Partial>() {
+					public Partial call() throws IOException {
+						final Partial partial = new Partial(limit);
+						boolean success = false;
+						try {
+							int index;
+							while ((index = next.getAndIncrement()) < inputs
+									.size()) {
+								partial.read(index, sessions.get(index));
+							}
+							success = true;
+						} finally {
+							if (!success) {
+								// Let the other threads stop early:
+								next.set(inputs.size());
+							}
+						}
+						return partial;
+					}
+				}));
+			}
+			final List<Partial> partials = new ArrayList<Partial>();
+			for (final Future<Partial> future : futures) {
+				partials.add(get(future));
+			}
+			return partials;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static Partial get(final Future<Partial> future)
+			throws IOException {
+		try {
+			return future.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			final IOException io = new IOException("Merge interrupted.");
+			io.initCause(e);
+			throw io;
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new RuntimeException(cause);
+		}
+	}
+
+	/**
+	 * Combines the partial results in order of the first appearance of each
+	 * class. As every partial result is ordered by first appearance itself a
+	 * class is added to the merged store at its first appearance overall.
+	 */
+	private void mergeInMemory(final List<Partial> partials) {
+		final PriorityQueue<Partial> queue = new PriorityQueue<Partial>(
+				Math.max(1, partials.size()), new Comparator<Partial>() {
+					public int compare(final Partial p1, final Partial p2) {
+						return compareLong(p1.currentOrder(),
+								p2.currentOrder());
+					}
+				});
+		for (final Partial partial : partials) {
+			if (partial.rewind()) {
+				queue.add(partial);
+			}
+		}
+		executionData = new PackedExecutionDataStore();
+		while (!queue.isEmpty()) {
+			final Partial partial = queue.poll();
+			executionData.put(partial.currentData());
+			if (partial.advance()) {
+				queue.add(partial);
+			}
+		}
+		classCount = executionData.size();
+	}
+
+	/**
+	 * Merges the runs of all partial results by class id and writes the merged
+	 * classes to new runs which are sorted by first appearance.
+	 */
+	private void mergeRuns(final List<Partial> partials) throws IOException {
+		final List<File> runs = new ArrayList<File>();
+		for (final Partial partial : partials) {
+			partial.spill();
+			runs.addAll(partial.runs);
+		}
+		final RunBuffer ordered = new RunBuffer();
+		final PriorityQueue<RunReader> queue = openRuns(runs,
+				new Comparator<RunReader>() {
+					public int compare(final RunReader r1, final RunReader r2) {
+						return compareLong(r1.data.getId(), r2.data.getId());
+					}
+				});
+		try {
+			while (!queue.isEmpty()) {
+				RunReader reader = queue.poll();
+				final PackedExecutionData merged = new PackedExecutionData(
+						reader.data);
+				long order = reader.order;
+				advance(queue, reader);
+				while (!queue.isEmpty()
+						&& queue.peek().data.getId() == merged.getId()) {
+					reader = queue.poll();
+					merged.merge(reader.data);
+					order = Math.min(order, reader.order);
+					advance(queue, reader);
+				}
+				ordered.add(merged, order);
+				classCount++;
+			}
+		} finally {
+			close(queue);
+		}
+		ordered.spill();
+		orderedRuns = ordered.runs;
+		for (final File run : runs) {
+			delete(run);
+		}
+	}
+
+	private PriorityQueue<RunReader> openRuns(final List<File> runs,
+			final Comparator<RunReader> comparator) throws IOException {
+		final PriorityQueue<RunReader> queue = new PriorityQueue<RunReader>(
+				Math.max(1, runs.size()), comparator);
+		try {
+			for (final File run : runs) {
+				advance(queue, new RunReader(run));
+			}
+		} catch (final IOException e) {
+			close(queue);
+			throw e;
+		}
+		return queue;
+	}
+
+	private static void advance(final PriorityQueue<RunReader> queue,
+			final RunReader reader) throws IOException {
+		if (reader.next()) {
+			queue.add(reader);
+		} else {
+			reader.close();
+		}
+	}
+
+	private static void close(final PriorityQueue<RunReader> queue)
+			throws IOException {
+		while (!queue.isEmpty()) {
+			queue.poll().close();
+		}
+	}
+
+	/**
+	 * Returns the number of distinct classes in the merged content.
+	 *
+	 * @return number of classes
+	 */
+	public int getClassCount() {
+		return classCount;
+	}
+
+	/**
+	 * Writes the merged content to the given visitors: first all session infos,
+	 * then the execution data of all classes in order of their first appearance
+	 * in the inputs.
+	 *
+	 * @param sessionInfoVisitor
+	 *            visitor for session infos
+	 * @param executionDataVisitor
+	 *            visitor for execution data
+	 * @throws IOException
+	 *             if temporary files can't be read
+	 */
+	public void accept(final ISessionInfoVisitor sessionInfoVisitor,
+			final IExecutionDataVisitor executionDataVisitor)
+			throws IOException {
+		if (sessionInfos == null) {
+			throw new IllegalStateException("Inputs have not been merged.");
+		}
+		sessionInfos.accept(sessionInfoVisitor);
+		if (orderedRuns == null) {
+			executionData.accept(executionDataVisitor);
+			return;
+		}
+		final PriorityQueue<RunReader> queue = openRuns(orderedRuns,
+				new Comparator<RunReader>() {
+					public int compare(final RunReader r1, final RunReader r2) {
+						return compareLong(r1.order, r2.order);
+					}
+				});
+		try {
+			while (!queue.isEmpty()) {
+				final RunReader reader = queue.poll();
+				executionDataVisitor.visitClassExecution(reader.data);
+				advance(queue, reader);
+			}
+		} finally {
+			close(queue);
+		}
+	}
+
+	/**
+	 * Saves the merged content into the given output stream.
+	 *
+	 * @param stream
+	 *            stream to save content to
+	 * @throws IOException
+	 *             in case of problems while writing to the stream
+	 */
+	public void save(final OutputStream stream) throws IOException {
+		final ExecutionDataWriter dataWriter = new ExecutionDataWriter(stream);
+		dataWriter.setAdaptiveEncoding(adaptiveEncoding);
+		accept(dataWriter, dataWriter);
+	}
+
+	/**
+	 * Saves the merged content into the given file. Parent directories are
+	 * created as needed. Also a files system lock is acquired to avoid
+	 * concurrent write access.
+	 *
+	 * @param file
+	 *            file to save content to
+	 * @param append
+	 *            <code>true</code> if the content should be appended, otherwise
+	 *            the file is overwritten.
+	 * @throws IOException
+	 *             in case of problems while writing to the stream
+	 */
+	public void save(final File file, final boolean append) throws IOException {
+		final OutputStream bufferedStream = ExecFileLoader.openLocked(file,
+				append);
+		try {
+			save(bufferedStream);
+		} finally {
+			bufferedStream.close();
+		}
+	}
+
+	/**
+	 * Saves the merged content into the given file in the indexed and block
+	 * compressed format of {@link IndexedExecutionDataWriter}. An existing file
+	 * is overwritten.
+	 *
+	 * @param file
+	 *            file to save content to
+	 * @throws IOException
+	 *             in case of problems while writing to the stream
+	 */
+	public void saveIndexed(final File file) throws IOException {
+		final OutputStream bufferedStream = ExecFileLoader.openLocked(file,
+				false);
+		try {
+			final IndexedExecutionDataWriter dataWriter = new IndexedExecutionDataWriter(
+					bufferedStream);
+			dataWriter.setAdaptiveEncoding(adaptiveEncoding);
+			accept(dataWriter, dataWriter);
+			dataWriter.finish();
+		} finally {
+			bufferedStream.close();
+		}
+	}
+
+	/**
+	 * Deletes all temporary files which have been created for the merge.
+	 */
+	public void dispose() {
+		synchronized (tempFiles) {
+			for (final File file : tempFiles) {
+				file.delete();
+			}
+			tempFiles.clear();
+		}
+	}
+
+	private File createTempFile() throws IOException {
+		final File file = File.createTempFile("jacoco-merge", ".run",
+				tempDirectory);
+		synchronized (tempFiles) {
+			tempFiles.add(file);
+		}
+		return file;
+	}
+
+	private void delete(final File file) {
+		synchronized (tempFiles) {
+			tempFiles.remove(file);
+		}
+		file.delete();
+	}
+
+	/**
+	 * Approximate memory used by a packed execution data object.
+	 */
+	private static long estimateSize(final PackedExecutionData data) {
+		return 96 + 2L * data.getName().length()
+				+ 8L * ((data.getProbes().size() + 63) >>> 6);
+	}
+
+	private static int compareLong(final long l1, final long l2) {
+		return l1 < l2 ? -1 : (l1 == l2 ? 0 : 1);
+	}
+
+	private static IOException readFailure(final Input input,
+			final IOException cause) {
+		final IOException e = new IOException(
+				format("Unable to read %s", input));
+		e.initCause(cause);
+		return e;
+	}
+
+	/**
+	 * Writes execution data with their orders to the given run file.
+	 */
+	private static void writeRun(final File file,
+			final List<PackedExecutionData> data, final long[] orders)
+			throws IOException {
+		final CompactDataOutput out = new CompactDataOutput(
+				new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			for (int i = 0; i < data.size(); i++) {
+				final PackedExecutionData d = data.get(i);
+				out.writeBoolean(true);
+				out.writeLong(d.getId());
+				out.writeLong(orders[i]);
+				out.writeUTF(d.getName());
+				out.writeBooleanArray(d.getProbes().toBooleanArray());
+			}
+			out.writeBoolean(false);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Execution data of a class together with the position of its first
+	 * appearance.
+	 */
+	private static class Entry {
+
+		final PackedExecutionData data;
+
+		final long order;
+
+		Entry(final PackedExecutionData data, final long order) {
+			this.data = data;
+			this.order = order;
+		}
+
+	}
+
+	/**
+	 * Collects entries and writes them to runs sorted by the given order.
+	 */
+	private class RunBuffer {
+
+		final List<File> runs = new ArrayList<File>();
+
+		private final List<Entry> entries = new ArrayList<Entry>();
+
+		private final Comparator<Entry> comparator;
+
+		private final long limit;
+
+		private long size;
+
+		RunBuffer() {
+			this(new Comparator<Entry>() {
+				public int compare(final Entry e1, final Entry e2) {
+					return compareLong(e1.order, e2.order);
+				}
+			}, memoryLimit);
+		}
+
+		RunBuffer(final Comparator<Entry> comparator, final long limit) {
+			this.comparator = comparator;
+			this.limit = limit;
+		}
+
+		void add(final PackedExecutionData data, final long order)
+				throws IOException {
+			entries.add(new Entry(data, order));
+			size += estimateSize(data);
+			if (size > limit) {
+				spill();
+			}
+		}
+
+		void spill() throws IOException {
+			if (entries.isEmpty()) {
+				return;
+			}
+			Collections.sort(entries, comparator);
+			final List<PackedExecutionData> data = new ArrayList<PackedExecutionData>(
+					entries.size());
+			final long[] orders = new long[entries.size()];
+			for (int i = 0; i < orders.length; i++) {
+				data.add(entries.get(i).data);
+				orders[i] = entries.get(i).order;
+			}
+			final File file = createTempFile();
+			writeRun(file, data, orders);
+			runs.add(file);
+			entries.clear();
+			size = 0;
+		}
+
+	}
+
+	/**
+	 * Partial result of a single thread. Classes are kept in a packed store in
+	 * order of their first appearance in the inputs read by the thread, as
+	 * inputs are taken in ascending order. If the memory limit of the thread is
+	 * exceeded the content is written to a run sorted by class id.
+	 */
+	private class Partial {
+
+		final List<File> runs = new ArrayList<File>();
+
+		private final long limit;
+
+		private PackedExecutionDataStore store = new PackedExecutionDataStore();
+
+		private long[] orders = new long[64];
+
+		private int count;
+
+		private long size;
+
+		private List<PackedExecutionData> contents;
+
+		private int cursor;
+
+		Partial(final long limit) {
+			this.limit = limit;
+		}
+
+		void read(final int index, final List<SessionInfo> sessions)
+				throws IOException {
+			final Input input = inputs.get(index);
+			final InputStream in;
+			try {
+				in = input.open();
+			} catch (final IOException e) {
+				throw readFailure(input, e);
+			}
+			try {
+				final ExecutionDataReader reader = new ExecutionDataReader(
+						new BufferedInputStream(in));
+				reader.setSessionInfoVisitor(new ISessionInfoVisitor() {
+					public void visitSessionInfo(final SessionInfo info) {
+						sessions.add(info);
+					}
+				});
+				reader.setExecutionDataVisitor(new IExecutionDataVisitor() {
+					private int position;
+
+					public void visitClassExecution(final ExecutionData data) {
+						add(data, ((long) index << 32) | position++);
+					}
+				});
+				reader.read();
+			} catch (final SpillFailure e) {
+				throw e.failure;
+			} catch (final IOException e) {
+				throw readFailure(input, e);
+			} finally {
+				in.close();
+			}
+		}
+
+		private void add(final ExecutionData data, final long order) {
+			final PackedExecutionData entry = store.get(data.getId());
+			if (entry == null) {
+				if (count == orders.length) {
+					final long[] newOrders = new long[count * 2];
+					System.arraycopy(orders, 0, newOrders, 0, count);
+					orders = newOrders;
+				}
+				orders[count++] = order;
+				final PackedExecutionData packed = new PackedExecutionData(
+						data);
+				store.put(packed);
+				size += estimateSize(packed);
+			} else {
+				entry.merge(data);
+			}
+			if (size > limit) {
+				try {
+					spill();
+				} catch (final IOException e) {
+					// Passed through the reader which only forwards
+					// IOExceptions of the input
+					throw new SpillFailure(e);
+				}
+			}
+		}
+
+		/**
+		 * Writes the current content to a new run sorted by class id.
+		 */
+		void spill() throws IOException {
+			if (count == 0) {
+				return;
+			}
+			final List<PackedExecutionData> data = store.getContents();
+			final RunBuffer buffer = new RunBuffer(new Comparator<Entry>() {
+				public int compare(final Entry e1, final Entry e2) {
+					return compareLong(e1.data.getId(), e2.data.getId());
+				}
+			}, Long.MAX_VALUE);
+			for (int i = 0; i < count; i++) {
+				buffer.add(data.get(i), orders[i]);
+			}
+			buffer.spill();
+			runs.addAll(buffer.runs);
+			store = new PackedExecutionDataStore();
+			count = 0;
+			size = 0;
+		}
+
+		boolean rewind() {
+			contents = store.getContents();
+			cursor = 0;
+			return cursor < count;
+		}
+
+		boolean advance() {
+			return ++cursor < count;
+		}
+
+		long currentOrder() {
+			return orders[cursor];
+		}
+
+		PackedExecutionData currentData() {
+			return contents.get(cursor);
+		}
+
+	}
+
+	/**
+	 * Carries an {@link IOException} of a spill out of the execution data
+	 * visitor of {@link Partial#read(int, List)}, where it is thrown again.
+	 */
+	private static class SpillFailure extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		final IOException failure;
+
+		SpillFailure(final IOException failure) {
+			super(failure);
+			this.failure = failure;
+		}
+
+	}
+
+	/**
+	 * Sequential reader for a run file.
+	 */
+	private static class RunReader {
+
+		private final CompactDataInput in;
+
+		ExecutionData data;
+
+		long order;
+
+		RunReader(final File file) throws IOException {
+			in = new CompactDataInput(
+					new BufferedInputStream(new FileInputStream(file)));
+		}
+
+		boolean next() throws IOException {
+			if (!in.readBoolean()) {
+				return false;
+			}
+			final long id = in.readLong();
+			order = in.readLong();
+			final String name = in.readUTF();
+			data = new ExecutionData(id, name, in.readBooleanArray());
+			return true;
+		}
+
+		void close() throws IOException {
+			in.close();
+		}
+
+	}
+
+}
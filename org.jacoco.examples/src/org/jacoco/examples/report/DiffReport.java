@@ -4,6 +4,7 @@ import org.jacoco.core.analysis.Analyzer;
 import org.jacoco.core.analysis.CoverageBuilder;
 import org.jacoco.core.analysis.IBundleCoverage;
 import org.jacoco.core.internal.diff.ClassInfo;
+import org.jacoco.core.internal.diff.DiffIndex;
 import org.jacoco.core.internal.diff.GitAdapter;
 import org.jacoco.core.tools.ExecFileLoader;
 import org.jacoco.core.util.StringUtils;
@@ -52,14 +53,14 @@ public abstract class DiffReport {
         loadExecutionData();
         // git登录授权
         GitAdapter.setCredentialsProvider("<<Account>>", "<<Password>>");
-        CoverageBuilder coverageBuilder = buildCoverageBuilder();
-        excludeClass(CoverageBuilder.classInfos, packageExclusionList, nameExclusionList);
-        if(CoverageBuilder.classInfos != null && !CoverageBuilder.classInfos.isEmpty()){
-            Analyzer analyzer = new Analyzer(execFileLoader.getExecutionDataStore(), coverageBuilder);
+        DiffIndex diffIndex = new DiffIndex(excludeClass(new ArrayList<ClassInfo>(buildCoverageBuilder().getDiffIndex().getClassInfos()), packageExclusionList, nameExclusionList));
+        CoverageBuilder coverageBuilder = new CoverageBuilder(diffIndex);
+        if(!diffIndex.isEmpty()){
+            Analyzer analyzer = new Analyzer(execFileLoader.getExecutionDataStore(), coverageBuilder, diffIndex);
             analyzer.analyzeAll(classDirectory);
         }
         IBundleCoverage bundleCoverage = coverageBuilder.getBundle(executionDataFile.getName());
-        createReport(bundleCoverage);
+        createReport(bundleCoverage, diffIndex);
     }
 
     protected abstract CoverageBuilder buildCoverageBuilder();
@@ -69,10 +70,11 @@ public abstract class DiffReport {
         execFileLoader.load(executionDataFile);
     }
 
-    private void createReport(final IBundleCoverage bundleCoverage)
+    private void createReport(final IBundleCoverage bundleCoverage, final DiffIndex diffIndex)
             throws IOException {
 
         final HTMLFormatter htmlFormatter = new HTMLFormatter();
+        htmlFormatter.setDiffIndex(diffIndex);
         final IReportVisitor visitor = htmlFormatter.createVisitor(new FileMultiReportOutput(reportDirectory));
 
         visitor.visitInfo(execFileLoader.getSessionInfoStore().getInfos(),execFileLoader.getExecutionDataStore().getContents());
@@ -15,6 +15,7 @@ package org.jacoco.report.internal.html.page;
 import java.io.IOException;
 import java.util.Locale;
 
+import org.jacoco.core.internal.diff.DiffIndex;
 import org.jacoco.report.ILanguageNames;
 import org.jacoco.report.JavaNames;
 import org.jacoco.report.MemoryMultiReportOutput;
@@ -87,6 +88,10 @@ public abstract class PageTestBase {
 				return Locale.ENGLISH;
 			}
 
+			public DiffIndex getDiffIndex() {
+				return DiffIndex.EMPTY;
+			}
+
 		};
 		support = new HTMLSupport();
 	}
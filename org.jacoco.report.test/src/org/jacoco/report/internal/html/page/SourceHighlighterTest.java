@@ -16,11 +16,18 @@ import static org.junit.Assert.assertEquals;
 
 import java.io.ByteArrayOutputStream;
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Locale;
 
 import org.jacoco.core.analysis.ICoverageNode.ElementType;
 import org.jacoco.core.internal.analysis.CounterImpl;
+import org.jacoco.core.internal.analysis.SourceFileCoverageImpl;
 import org.jacoco.core.internal.analysis.SourceNodeImpl;
+import org.jacoco.core.internal.diff.ClassInfo;
+import org.jacoco.core.internal.diff.DiffIndex;
+import org.jacoco.core.internal.diff.MethodInfo;
 import org.jacoco.report.internal.html.HTMLElement;
 import org.jacoco.report.internal.html.HTMLSupport;
 import org.jacoco.report.internal.html.resources.Styles;
@@ -102,6 +109,27 @@ public class SourceHighlighterTest {
 				htmlSupport.findStr(doc, "//pre/span[text() = 'D']/@class"));
 	}
 
+	@Test
+	public void testDiffMarkers() throws Exception {
+		final ClassInfo classInfo = new ClassInfo();
+		classInfo.setPackages("org.example");
+		classInfo.setClassName("Foo");
+		classInfo.setType("REPLACE");
+		classInfo.setMethodInfos(new ArrayList<MethodInfo>());
+		classInfo.setAddLines(Arrays.asList(new int[] { 2, 3 }));
+		sourceHighlighter = new SourceHighlighter(Locale.US,
+				new DiffIndex(Collections.singletonList(classInfo)));
+
+		final SourceFileCoverageImpl sourceFile = new SourceFileCoverageImpl(
+				"Foo.java", "org/example");
+		sourceHighlighter.render(parent, sourceFile,
+				new StringReader("A\nB\nC\nD"));
+		final Document doc = parseDoc();
+
+		assertEquals(" A\n+ B\n+ C\n D\n",
+				htmlSupport.findStr(doc, "//pre/text()"));
+	}
+
 	@Test
 	public void testHighlightNone() throws Exception {
 		sourceHighlighter.highlight(parent, source.getLine(1), 1);
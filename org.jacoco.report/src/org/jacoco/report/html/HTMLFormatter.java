@@ -21,6 +21,7 @@ import org.jacoco.core.analysis.IBundleCoverage;
 import org.jacoco.core.analysis.ICoverageNode.CounterEntity;
 import org.jacoco.core.data.ExecutionData;
 import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.internal.diff.DiffIndex;
 import org.jacoco.report.ILanguageNames;
 import org.jacoco.report.IMultiReportOutput;
 import org.jacoco.report.IReportGroupVisitor;
@@ -57,6 +58,8 @@ public class HTMLFormatter implements IHTMLReportContext {
 
 	private String outputEncoding = "UTF-8";
 
+	private DiffIndex diffIndex = DiffIndex.EMPTY;
+
 	private Resources resources;
 
 	private ElementIndex index;
@@ -113,6 +116,18 @@ public class HTMLFormatter implements IHTMLReportContext {
 		this.outputEncoding = outputEncoding;
 	}
 
+	/**
+	 * Sets the diff scope the report is restricted to. Changed lines of the
+	 * contained source files are marked. Default is an empty scope, i.e. a full
+	 * coverage report.
+	 *
+	 * @param diffIndex
+	 *            changed classes
+	 */
+	public void setDiffIndex(final DiffIndex diffIndex) {
+		this.diffIndex = diffIndex;
+	}
+
 	// === IHTMLReportContext ===
 
 	public ILanguageNames getLanguageNames() {
@@ -176,6 +191,10 @@ public class HTMLFormatter implements IHTMLReportContext {
 		return locale;
 	}
 
+	public DiffIndex getDiffIndex() {
+		return diffIndex;
+	}
+
 	/**
 	 * Creates a new visitor to write a report to the given output.
 	 *
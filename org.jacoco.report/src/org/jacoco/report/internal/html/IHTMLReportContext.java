@@ -14,6 +14,7 @@ package org.jacoco.report.internal.html;
 
 import java.util.Locale;
 
+import org.jacoco.core.internal.diff.DiffIndex;
 import org.jacoco.report.ILanguageNames;
 import org.jacoco.report.internal.html.index.IIndexUpdate;
 import org.jacoco.report.internal.html.resources.Resources;
@@ -80,4 +81,11 @@ public interface IHTMLReportContext {
 	 */
 	Locale getLocale();
 
+	/**
+	 * Returns the diff scope the report is restricted to.
+	 *
+	 * @return changed classes, empty for full coverage
+	 */
+	DiffIndex getDiffIndex();
+
 }
@@ -15,15 +15,14 @@ package org.jacoco.report.internal.html.page;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
-import java.util.List;
 import java.util.Locale;
 
-import org.jacoco.core.analysis.CoverageBuilder;
 import org.jacoco.core.analysis.ICounter;
 import org.jacoco.core.analysis.ILine;
+import org.jacoco.core.analysis.ISourceFileCoverage;
 import org.jacoco.core.analysis.ISourceNode;
-import org.jacoco.core.internal.analysis.SourceFileCoverageImpl;
-import org.jacoco.core.internal.diff.ClassInfo;
+import org.jacoco.core.internal.diff.DiffIndex;
+import org.jacoco.core.internal.diff.DiffIndex.LineRanges;
 import org.jacoco.report.internal.html.HTMLElement;
 import org.jacoco.report.internal.html.resources.Styles;
 
@@ -34,6 +33,8 @@ final class SourceHighlighter {
 
 	private final Locale locale;
 
+	private final DiffIndex diffIndex;
+
 	private String lang;
 
 	/**
@@ -43,7 +44,21 @@ final class SourceHighlighter {
 	 *            locale for tooltip rendering
 	 */
 	public SourceHighlighter(final Locale locale) {
+		this(locale, DiffIndex.EMPTY);
+	}
+
+	/**
+	 * Creates a new highlighter which marks the added lines of the given diff
+	 * scope.
+	 *
+	 * @param locale
+	 *            locale for tooltip rendering
+	 * @param diffIndex
+	 *            changed classes, empty for full coverage
+	 */
+	public SourceHighlighter(final Locale locale, final DiffIndex diffIndex) {
 		this.locale = locale;
+		this.diffIndex = diffIndex;
 		lang = "java";
 	}
 
@@ -71,63 +86,36 @@ final class SourceHighlighter {
 	 *             problems while reading the source file or writing the output
 	 */
 	public void render(final HTMLElement parent, final ISourceNode source,
-					   final Reader contents) throws IOException {
-		final HTMLElement pre = parent.pre(Styles.SOURCE + " lang-" + lang
-				+ " linenums");
+			final Reader contents) throws IOException {
+		final HTMLElement pre = parent
+				.pre(Styles.SOURCE + " lang-" + lang + " linenums");
 		final BufferedReader lineBuffer = new BufferedReader(contents);
-		String classPath = ((SourceFileCoverageImpl) source).getPackageName() + "." + source.getName().replaceAll(".java","");
-		classPath = classPath.replaceAll("/",".");
+		final String packageName = source instanceof ISourceFileCoverage
+				? ((ISourceFileCoverage) source).getPackageName()
+				: null;
+		final LineRanges addedLines = packageName == null ? null
+				: diffIndex.getAddedLines(packageName, source.getName());
 		String line;
 		int nr = 0;
 		while ((line = lineBuffer.readLine()) != null) {
 			nr++;
-			renderCodeLine(pre, line, source.getLine(nr), nr,classPath);
+			final String prefix;
+			if (diffIndex.isEmpty()) {
+				// Full coverage
+				prefix = "";
+			} else if (addedLines != null && addedLines.contains(nr)) {
+				prefix = "+ ";
+			} else {
+				prefix = " ";
+			}
+			renderCodeLine(pre, prefix + line, source.getLine(nr), nr);
 		}
 	}
 
 	private void renderCodeLine(final HTMLElement pre, final String linesrc,
-								final ILine line, final int lineNr, final String classPath) throws IOException {
-		if (CoverageBuilder.classInfos == null || CoverageBuilder.classInfos.isEmpty()) {
-			//    Full coverage
-			highlight(pre, line, lineNr).text(linesrc);
-			pre.text("\n");
-		} else {
-			//    Diff coverage
-			boolean existFlag = true;
-			for (ClassInfo classInfo : CoverageBuilder.classInfos) {
-				String tClassPath = classInfo.getPackages() + "." + classInfo.getClassName();
-				if (classPath.equals(tClassPath)) {
-					//    add class
-					if ("ADD".equalsIgnoreCase(classInfo.getType())) {
-						highlight(pre, line, lineNr).text("+ " + linesrc);
-						pre.text("\n");
-					} else {
-						//    modify class
-						boolean flag = false;
-						List<int[]> addLines = classInfo.getAddLines();
-						for (int[] ints: addLines) {
-							if (ints[0] <= lineNr &&  lineNr <= ints[1]){
-								flag = true;
-								break;
-							}
-						}
-						if (flag) {
-							highlight(pre, line, lineNr).text("+ " + linesrc);
-							pre.text("\n");
-						} else {
-							highlight(pre, line, lineNr).text(" " + linesrc);
-							pre.text("\n");
-						}
-					}
-					existFlag = false;
-					break;
-				}
-			}
-			if (existFlag) {
-				highlight(pre, line, lineNr).text(" " + linesrc);
-				pre.text("\n");
-			}
-		}
+			final ILine line, final int lineNr) throws IOException {
+		highlight(pre, line, lineNr).text(linesrc);
+		pre.text("\n");
 	}
 
 	HTMLElement highlight(final HTMLElement pre, final ILine line,